@@ -0,0 +1,231 @@
+/**
+ *    Copyright 2009-2016 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.binding;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+import org.apache.ibatis.binding.MapperMethod.ParamMap;
+
+/**
+ * 固定布局的参数Map，由ParamNameResolver为多参数的映射器方法创建。
+ *
+ * 参数名（包括param1、param2等）及其在args中的位置在ParamNameResolver构造时就已算好，所有调用共享；
+ * 每次调用只创建这个对象并引用args数组，不复制参数，也不往HashMap里放值。
+ * get、containsKey按参数名在数组中顺序查找（映射器方法的参数一般只有几个），不计算hash。
+ *
+ * 仍然是ParamMap，其他Map操作（遍历、put、remove等）第一次调用时把参数放进HashMap，之后按普通ParamMap处理。
+ */
+public class IndexedParamMap extends ParamMap<Object> {
+
+	private static final long serialVersionUID = 3713442045165744727L;
+
+	// 参数名，按ParamMap的put顺序；与argIndexes一一对应，由所有调用共享，不能修改
+	private final transient String[] names;
+	private final transient int[] argIndexes;
+	private final transient Object[] args;
+	// 参数是否已放进HashMap
+	private transient boolean materialized;
+
+	public IndexedParamMap(String[] names, int[] argIndexes, Object[] args) {
+		this.names = names;
+		this.argIndexes = argIndexes;
+		this.args = args;
+	}
+
+	@Override
+	public Object get(Object key) {
+		if (!materialized) {
+			final int index = indexOf(key);
+			if (index >= 0) {
+				return args[argIndexes[index]];
+			}
+		}
+		//找不到时由ParamMap抛出BindingException
+		return super.get(key);
+	}
+
+	@Override
+	public boolean containsKey(Object key) {
+		if (!materialized) {
+			return indexOf(key) >= 0;
+		}
+		return super.containsKey(key);
+	}
+
+	//重名时后put的生效，所以从后往前找
+	private int indexOf(Object key) {
+		for (int i = names.length - 1; i >= 0; i--) {
+			if (names[i].equals(key)) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	private void materialize() {
+		if (!materialized) {
+			materialized = true;
+			for (int i = 0; i < names.length; i++) {
+				super.put(names[i], args[argIndexes[i]]);
+			}
+		}
+	}
+
+	@Override
+	public int size() {
+		materialize();
+		return super.size();
+	}
+
+	@Override
+	public boolean isEmpty() {
+		materialize();
+		return super.isEmpty();
+	}
+
+	@Override
+	public boolean containsValue(Object value) {
+		materialize();
+		return super.containsValue(value);
+	}
+
+	@Override
+	public Object put(String key, Object value) {
+		materialize();
+		return super.put(key, value);
+	}
+
+	@Override
+	public void putAll(Map<? extends String, ?> m) {
+		materialize();
+		super.putAll(m);
+	}
+
+	@Override
+	public Object remove(Object key) {
+		materialize();
+		return super.remove(key);
+	}
+
+	@Override
+	public void clear() {
+		materialize();
+		super.clear();
+	}
+
+	@Override
+	public Set<String> keySet() {
+		materialize();
+		return super.keySet();
+	}
+
+	@Override
+	public Collection<Object> values() {
+		materialize();
+		return super.values();
+	}
+
+	@Override
+	public Set<Map.Entry<String, Object>> entrySet() {
+		materialize();
+		return super.entrySet();
+	}
+
+	@Override
+	public Object getOrDefault(Object key, Object defaultValue) {
+		materialize();
+		return super.getOrDefault(key, defaultValue);
+	}
+
+	@Override
+	public Object putIfAbsent(String key, Object value) {
+		materialize();
+		return super.putIfAbsent(key, value);
+	}
+
+	@Override
+	public boolean remove(Object key, Object value) {
+		materialize();
+		return super.remove(key, value);
+	}
+
+	@Override
+	public boolean replace(String key, Object oldValue, Object newValue) {
+		materialize();
+		return super.replace(key, oldValue, newValue);
+	}
+
+	@Override
+	public Object replace(String key, Object value) {
+		materialize();
+		return super.replace(key, value);
+	}
+
+	@Override
+	public Object computeIfAbsent(String key, Function<? super String, ?> mappingFunction) {
+		materialize();
+		return super.computeIfAbsent(key, mappingFunction);
+	}
+
+	@Override
+	public Object computeIfPresent(String key, BiFunction<? super String, ? super Object, ?> remappingFunction) {
+		materialize();
+		return super.computeIfPresent(key, remappingFunction);
+	}
+
+	@Override
+	public Object compute(String key, BiFunction<? super String, ? super Object, ?> remappingFunction) {
+		materialize();
+		return super.compute(key, remappingFunction);
+	}
+
+	@Override
+	public Object merge(String key, Object value, BiFunction<? super Object, ? super Object, ?> remappingFunction) {
+		materialize();
+		return super.merge(key, value, remappingFunction);
+	}
+
+	@Override
+	public void forEach(BiConsumer<? super String, ? super Object> action) {
+		materialize();
+		super.forEach(action);
+	}
+
+	@Override
+	public void replaceAll(BiFunction<? super String, ? super Object, ?> function) {
+		materialize();
+		super.replaceAll(function);
+	}
+
+	@Override
+	public Object clone() {
+		materialize();
+		return super.clone();
+	}
+
+	//序列化为普通的ParamMap
+	private Object writeReplace() {
+		final ParamMap<Object> paramMap = new ParamMap<Object>();
+		paramMap.putAll(this);
+		return paramMap;
+	}
+
+}
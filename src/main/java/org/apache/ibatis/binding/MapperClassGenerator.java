@@ -0,0 +1,136 @@
+/**
+ *    Copyright 2009-2016 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.binding;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.ibatis.javassist.ClassPool;
+import org.apache.ibatis.javassist.CtClass;
+import org.apache.ibatis.javassist.CtField;
+import org.apache.ibatis.javassist.CtMethod;
+import org.apache.ibatis.javassist.CtNewConstructor;
+import org.apache.ibatis.javassist.LoaderClassPath;
+import org.apache.ibatis.javassist.NotFoundException;
+import org.apache.ibatis.session.SqlSession;
+
+/**
+ * 用mybatis自带的javassist（org.apache.ibatis.javassist）为映射器接口生成实现类。
+ * 生成的类与接口在同一个包中，JDK 9及以上用MethodHandles.Lookup.defineClass定义，
+ * JDK 8上用javassist的toClass（反射调用ClassLoader.defineClass，JDK 9以后不能再这样访问）。
+ *
+ * 生成的类形如：
+ * <pre>
+ * public class UserMapper$$MapperImpl1 implements UserMapper {
+ *   private final SqlSession sqlSession;
+ *   private final MapperProxy mapperProxy;
+ *   private final MapperMethod[] mapperMethods;
+ *   private final Method[] methods;
+ *
+ *   public User selectUser(int id) {
+ *     return (User) mapperMethods[0].execute(sqlSession, new Object[] { id });
+ *   }
+ *
+ *   //注册时还没有MappedStatement的方法
+ *   public void unbound() {
+ *     mapperProxy.invoke(this, methods[1], new Object[0]);
+ *   }
+ * }
+ * </pre>
+ */
+final class MapperClassGenerator {
+
+	private static final String CLASS_NAME_SUFFIX = "$$MapperImpl";
+	// 同一个接口可能注册到多个Configuration，每次生成的类名不同
+	private static final AtomicInteger SEQUENCE = new AtomicInteger();
+	// JDK 9新增的MethodHandles.privateLookupIn和Lookup.defineClass，JDK 8上为null
+	private static Method PRIVATE_LOOKUP_IN = null;
+	private static Method DEFINE_CLASS = null;
+
+	static {
+		try {
+			PRIVATE_LOOKUP_IN = MethodHandles.class.getMethod("privateLookupIn", Class.class, MethodHandles.Lookup.class);
+			DEFINE_CLASS = MethodHandles.Lookup.class.getMethod("defineClass", byte[].class);
+		} catch (Exception e) {
+			// ignore
+		}
+	}
+
+	private MapperClassGenerator() {
+		// Prevent Instantiation of Static Class
+	}
+
+	/**
+	 * @param methods 需要实现的接口方法
+	 * @param mapperMethods 与methods一一对应，注册时无法绑定的方法为null
+	 * @return 生成类的构造方法，参数为(SqlSession, MapperProxy, MapperMethod[], Method[])
+	 */
+	static Constructor<?> generate(Class<?> mapperInterface, Method[] methods, MapperMethod[] mapperMethods) throws Exception {
+		final ClassPool pool = new ClassPool(true);
+		pool.appendClassPath(new LoaderClassPath(mapperInterface.getClassLoader()));
+		pool.appendClassPath(new LoaderClassPath(MapperClassGenerator.class.getClassLoader()));
+		final CtClass cc = pool.makeClass(mapperInterface.getName() + CLASS_NAME_SUFFIX + SEQUENCE.incrementAndGet());
+		cc.addInterface(pool.get(mapperInterface.getName()));
+		cc.addField(CtField.make("private final " + SqlSession.class.getName() + " sqlSession;", cc));
+		cc.addField(CtField.make("private final " + MapperProxy.class.getName() + " mapperProxy;", cc));
+		cc.addField(CtField.make("private final " + MapperMethod.class.getName() + "[] mapperMethods;", cc));
+		cc.addField(CtField.make("private final " + Method.class.getName() + "[] methods;", cc));
+		cc.addConstructor(CtNewConstructor.make("public " + cc.getSimpleName() + "("
+				+ SqlSession.class.getName() + " sqlSession, " + MapperProxy.class.getName() + " mapperProxy, "
+				+ MapperMethod.class.getName() + "[] mapperMethods, " + Method.class.getName() + "[] methods) {"
+				+ "this.sqlSession = sqlSession; this.mapperProxy = mapperProxy;"
+				+ "this.mapperMethods = mapperMethods; this.methods = methods; }", cc));
+		for (int i = 0; i < methods.length; i++) {
+			final Method method = methods[i];
+			final Class<?>[] parameterTypes = method.getParameterTypes();
+			final CtClass[] ctParameterTypes = new CtClass[parameterTypes.length];
+			for (int j = 0; j < parameterTypes.length; j++) {
+				ctParameterTypes[j] = toCtClass(pool, parameterTypes[j]);
+			}
+			final CtMethod ctMethod = new CtMethod(toCtClass(pool, method.getReturnType()), method.getName(), ctParameterTypes, cc);
+			//$args把参数装箱成Object[]，($r)把返回值转换（拆箱）成方法的返回类型
+			final String invocation = mapperMethods[i] != null
+					? "mapperMethods[" + i + "].execute(sqlSession, $args)"
+					: "mapperProxy.invoke(this, methods[" + i + "], $args)";
+			ctMethod.setBody(void.class.equals(method.getReturnType())
+					? "{ " + invocation + "; }"
+					: "{ return ($r) " + invocation + "; }");
+			cc.addMethod(ctMethod);
+		}
+		final Class<?> generatedClass = defineClass(cc, mapperInterface);
+		cc.detach();
+		return generatedClass.getConstructor(SqlSession.class, MapperProxy.class, MapperMethod[].class, Method[].class);
+	}
+
+	//在映射器接口的类加载器和包中定义生成的类
+	private static Class<?> defineClass(CtClass cc, Class<?> mapperInterface) throws Exception {
+		if (PRIVATE_LOOKUP_IN == null || DEFINE_CLASS == null) {
+			return cc.toClass(mapperInterface.getClassLoader(), mapperInterface.getProtectionDomain());
+		}
+		final Object lookup = PRIVATE_LOOKUP_IN.invoke(null, mapperInterface, MethodHandles.lookup());
+		return (Class<?>) DEFINE_CLASS.invoke(lookup, (Object) cc.toBytecode());
+	}
+
+	private static CtClass toCtClass(ClassPool pool, Class<?> type) throws NotFoundException {
+		if (type.isArray()) {
+			return pool.get(toCtClass(pool, type.getComponentType()).getName() + "[]");
+		}
+		return pool.get(type.getName());
+	}
+
+}
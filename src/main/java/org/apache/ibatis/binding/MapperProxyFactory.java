@@ -15,11 +15,21 @@
  */
 package org.apache.ibatis.binding;
 
+import java.lang.reflect.Constructor;
 import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
 import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 
+import org.apache.ibatis.logging.Log;
+import org.apache.ibatis.logging.LogFactory;
+import org.apache.ibatis.session.Configuration;
 import org.apache.ibatis.session.SqlSession;
 
 /**
@@ -30,8 +40,14 @@ import org.apache.ibatis.session.SqlSession;
  */
 public class MapperProxyFactory<T> {
 
+	private static final Log log = LogFactory.getLog(MapperProxyFactory.class);
+
 	private final Class<T> mapperInterface;
 	private final Map<Method, MapperMethod> methodCache = new ConcurrentHashMap<Method, MapperMethod>();
+	// 生成的映射器类的构造方法，没有生成时为null，使用JDK动态代理
+	private volatile Constructor<?> generatedConstructor;
+	private Method[] generatedMethods;
+	private MapperMethod[] generatedMapperMethods;
 
 	public MapperProxyFactory(Class<T> mapperInterface) {
 		this.mapperInterface = mapperInterface;
@@ -53,7 +69,65 @@ public class MapperProxyFactory<T> {
 
 	public T newInstance(SqlSession sqlSession) {
 		final MapperProxy<T> mapperProxy = new MapperProxy<T>(sqlSession, mapperInterface, methodCache);
+		final Constructor<?> constructor = generatedConstructor;
+		if (constructor != null) {
+			return newGeneratedInstance(constructor, sqlSession, mapperProxy);
+		}
 		return newInstance(mapperProxy);
 	}
 
+	/**
+	 * 为映射器接口生成实现类，代替JDK动态代理。
+	 * 每个方法在这里就创建好MapperMethod（找到MappedStatement、预先算好参数打包方式），
+	 * 生成的方法直接调用它，不再经过Proxy、InvocationHandler和methodCache查找。
+	 * 此时还找不到MappedStatement的方法仍交给MapperProxy，调用时再绑定。
+	 * 生成失败时记录警告并返回false，继续使用JDK动态代理
+	 */
+	public boolean generateMapperClass(Configuration configuration) {
+		final List<Method> methods = new ArrayList<Method>();
+		final Set<String> signatures = new HashSet<String>();
+		for (Method method : mapperInterface.getMethods()) {
+			//接口的默认方法和静态方法不需要实现；多个父接口声明的同一方法只实现一次
+			if (Modifier.isAbstract(method.getModifiers())
+					&& signatures.add(method.getName() + Arrays.toString(method.getParameterTypes()))) {
+				methods.add(method);
+			}
+		}
+		final Method[] methodArray = methods.toArray(new Method[methods.size()]);
+		final MapperMethod[] mapperMethods = new MapperMethod[methodArray.length];
+		for (int i = 0; i < methodArray.length; i++) {
+			try {
+				mapperMethods[i] = new MapperMethod(mapperInterface, methodArray[i], configuration);
+				methodCache.put(methodArray[i], mapperMethods[i]);
+			} catch (BindingException e) {
+				// 还没有对应的MappedStatement
+			}
+		}
+		try {
+			final Constructor<?> constructor = MapperClassGenerator.generate(mapperInterface, methodArray, mapperMethods);
+			generatedMethods = methodArray;
+			generatedMapperMethods = mapperMethods;
+			generatedConstructor = constructor;
+			return true;
+		} catch (Exception e) {
+			log.warn("Could not generate mapper class for " + mapperInterface.getName() + ", using a JDK proxy. Cause: " + e);
+		} catch (LinkageError e) {
+			log.warn("Could not generate mapper class for " + mapperInterface.getName() + ", using a JDK proxy. Cause: " + e);
+		}
+		return false;
+	}
+
+	public boolean isMapperClassGenerated() {
+		return generatedConstructor != null;
+	}
+
+	@SuppressWarnings("unchecked")
+	private T newGeneratedInstance(Constructor<?> constructor, SqlSession sqlSession, MapperProxy<T> mapperProxy) {
+		try {
+			return (T) constructor.newInstance(sqlSession, mapperProxy, generatedMapperMethods, generatedMethods);
+		} catch (Exception e) {
+			throw new BindingException("Error creating generated mapper " + constructor.getDeclaringClass().getName() + ". Cause: " + e, e);
+		}
+	}
+
 }
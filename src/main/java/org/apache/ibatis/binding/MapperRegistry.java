@@ -68,12 +68,17 @@ public class MapperRegistry {
 			}
 			boolean loadCompleted = false;
 			try {
-				knownMappers.put(type, new MapperProxyFactory<T>(type));
+				final MapperProxyFactory<T> mapperProxyFactory = new MapperProxyFactory<T>(type);
+				knownMappers.put(type, mapperProxyFactory);
 				// It's important that the type is added before the parser is run
 				// otherwise the binding may automatically be attempted by the
 				// mapper parser. If the type is already known, it won't try.
 				MapperAnnotationBuilder parser = new MapperAnnotationBuilder(config, type);
 				parser.parse();
+				//解析完成后MappedStatement都已加入configuration，生成的方法可以直接绑定
+				if (config.isGenerateMapperClasses()) {
+					mapperProxyFactory.generateMapperClass(config);
+				}
 				loadCompleted = true;
 			} finally {
 				if (!loadCompleted) {
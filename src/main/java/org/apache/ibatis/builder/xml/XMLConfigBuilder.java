@@ -356,6 +356,16 @@ public class XMLConfigBuilder extends BaseBuilder {
 		  <setting name="localCacheScope"			value="SESSION"/>
 		  <setting name="jdbcTypeForNull"			value="OTHER"/>
 		  <setting name="lazyLoadTriggerMethods"	value="equals,clone,hashCode,toString"/>
+		  <setting name="compiledRowMappingEnabled"	value="false"/>
+		  <setting name="nestedResultMemoryBudget"	value="0"/>
+		  <setting name="parallelRowMappingEnabled"	value="false"/>
+		  <setting name="batchFlushStatements"		value="0"/>
+		  <setting name="batchFlushParameters"		value="0"/>
+		  <setting name="batchFlushBytes"			value="0"/>
+		  <setting name="groupCommitWindow"			value="5"/>
+		  <setting name="groupCommitBatchSize"		value="100"/>
+		  <setting name="reuseStatementCacheSize"	value="256"/>
+		  <setting name="generateMapperClasses"		value="false"/>
 		</settings>
 	 */
 	private void settingsElement(Properties props) throws Exception {
@@ -399,6 +409,23 @@ public class XMLConfigBuilder extends BaseBuilder {
 		configuration.setDefaultScriptingLanguage(resolveClass(props.getProperty("defaultScriptingLanguage")));
 		//当结果集中含有Null值时是否执行映射对象的setter或者Map对象的put方法。此设置对于原始类型如int,boolean等无效。
 		configuration.setCallSettersOnNulls(booleanValueOf(props.getProperty("callSettersOnNulls"), false));
+		//简单结果映射使用编译后的行映射器，按列序号读取并直接调用setter
+		configuration.setCompiledRowMappingEnabled(booleanValueOf(props.getProperty("compiledRowMappingEnabled"), false));
+		//无序嵌套结果映射分区缓存原始行的内存预算，超过时写入临时文件
+		configuration.setNestedResultMemoryBudget(Long.parseLong(props.getProperty("nestedResultMemoryBudget", "0")));
+		//简单结果映射并行转换列值和创建对象，结果顺序不变
+		configuration.setParallelRowMappingEnabled(booleanValueOf(props.getProperty("parallelRowMappingEnabled"), false));
+		//BATCH执行器自动executeBatch的阈值：累积的语句数、参数个数、估算的参数字节数
+		configuration.setBatchFlushStatements(Integer.parseInt(props.getProperty("batchFlushStatements", "0")));
+		configuration.setBatchFlushParameters(Integer.parseInt(props.getProperty("batchFlushParameters", "0")));
+		configuration.setBatchFlushBytes(Long.parseLong(props.getProperty("batchFlushBytes", "0")));
+		//GROUP_COMMIT执行器合并更新的时间窗口（毫秒）和每组最多的语句数
+		configuration.setGroupCommitWindow(Long.parseLong(props.getProperty("groupCommitWindow", "5")));
+		configuration.setGroupCommitBatchSize(Integer.parseInt(props.getProperty("groupCommitBatchSize", "100")));
+		//REUSE执行器最多缓存的Statement个数，超过时关闭最久未使用的
+		configuration.setReuseStatementCacheSize(Integer.parseInt(props.getProperty("reuseStatementCacheSize", "256")));
+		//注册映射器时生成实现类，代替JDK动态代理
+		configuration.setGenerateMapperClasses(booleanValueOf(props.getProperty("generateMapperClasses"), false));
 		//使用真实参数名
 		configuration.setUseActualParamName(booleanValueOf(props.getProperty("useActualParamName"), false));
 		//logger名字的前缀
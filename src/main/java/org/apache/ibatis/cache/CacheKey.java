@@ -57,7 +57,7 @@ public class CacheKey implements Cloneable, Serializable {
      */
     private int count;
     /**
-     * 已维护的对象集合
+     * 已维护的对象集合，第一次update时才创建；CompactCacheKey等自己保存值的子类不会创建
      */
     private List<Object> updateList;
 
@@ -65,7 +65,6 @@ public class CacheKey implements Cloneable, Serializable {
         this.hashcode = DEFAULT_HASHCODE;
         this.multiplier = DEFAULT_MULTIPLYER;
         this.count = 0;
-        this.updateList = new ArrayList<Object>();
     }
 
     public CacheKey(Object[] objects) {
@@ -74,7 +73,7 @@ public class CacheKey implements Cloneable, Serializable {
     }
 
     public int getUpdateCount() {
-        return updateList.size();
+        return count;
     }
 
     public void update(Object object) {
@@ -101,6 +100,9 @@ public class CacheKey implements Cloneable, Serializable {
 
         hashcode = multiplier * hashcode + baseHashCode;
 
+        if (updateList == null) {
+            updateList = new ArrayList<Object>();
+        }
         updateList.add(object);
     }
 
@@ -137,7 +139,7 @@ public class CacheKey implements Cloneable, Serializable {
             return false;
         }
         //对比维护的每一个对象
-        for (int i = 0; i < updateList.size(); i++) {
+        for (int i = 0; i < count; i++) {
             Object thisObject = updateList.get(i);
             Object thatObject = cacheKey.updateList.get(i);
             if (thisObject == null) {
@@ -161,8 +163,8 @@ public class CacheKey implements Cloneable, Serializable {
     @Override
     public String toString() {
         StringBuilder returnValue = new StringBuilder().append(hashcode).append(':').append(checksum);
-        for (Object object : updateList) {
-            returnValue.append(':').append(object);
+        for (int i = 0; i < count; i++) {
+            returnValue.append(':').append(updateList.get(i));
         }
 
         return returnValue.toString();
@@ -171,7 +173,9 @@ public class CacheKey implements Cloneable, Serializable {
     @Override
     public CacheKey clone() throws CloneNotSupportedException {
         CacheKey clonedCacheKey = (CacheKey) super.clone();
-        clonedCacheKey.updateList = new ArrayList<Object>(updateList);
+        if (updateList != null) {
+            clonedCacheKey.updateList = new ArrayList<Object>(updateList);
+        }
         return clonedCacheKey;
     }
 
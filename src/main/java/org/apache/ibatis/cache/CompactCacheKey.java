@@ -0,0 +1,190 @@
+/**
+ *    Copyright 2009-2015 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache;
+
+import java.io.Serializable;
+import java.lang.reflect.Array;
+import java.util.Arrays;
+
+/**
+ * 查询语句的紧凑缓存key，由BaseExecutor.createCacheKey创建。
+ * 1.statement id和SQL合并为一个Prefix，其64位哈希只计算一次，并缓存在MappedStatement上；
+ * 2.分页参数直接保存为int，查询参数保存在定长数组中，不再使用ArrayList；
+ * 3.equals先比较64位哈希，不同的key几乎都在这一步返回，相同时才逐个比较参数。
+ * 仍然支持update()追加值（插件常用来加入分页等信息），超过预留容量时数组扩容。
+ * 与普通CacheKey互不相等。
+ */
+public class CompactCacheKey extends CacheKey {
+
+    private static final long serialVersionUID = -2839402914742925541L;
+
+    private static final long PRIME = 0x9E3779B97F4A7C15L;
+
+    private final Prefix prefix;
+    private final int offset;
+    private final int limit;
+    private Object[] values;
+    private int valueCount;
+    private long hash;
+
+    /**
+     * @param prefix statement id和SQL
+     * @param offset 分页偏移
+     * @param limit 分页大小
+     * @param expectedValues 预计追加的值的个数，通常为参数个数加一（环境id）
+     */
+    public CompactCacheKey(Prefix prefix, int offset, int limit, int expectedValues) {
+        this.prefix = prefix;
+        this.offset = offset;
+        this.limit = limit;
+        this.values = new Object[Math.max(expectedValues, 1)];
+        this.hash = mix(mix(prefix.hash + offset) * PRIME + limit);
+    }
+
+    @Override
+    public int getUpdateCount() {
+        //id、offset、limit、sql加上追加的值，与CacheKey的计数方式一致
+        return 4 + valueCount;
+    }
+
+    @Override
+    public void update(Object object) {
+        if (object != null && object.getClass().isArray()) {
+            int length = Array.getLength(object);
+            for (int i = 0; i < length; i++) {
+                doUpdate(Array.get(object, i));
+            }
+        } else {
+            doUpdate(object);
+        }
+    }
+
+    private void doUpdate(Object object) {
+        if (valueCount == values.length) {
+            values = Arrays.copyOf(values, valueCount << 1);
+        }
+        values[valueCount++] = object;
+        hash = mix(hash * PRIME + (object == null ? 1 : object.hashCode()));
+    }
+
+    @Override
+    public boolean equals(Object object) {
+        if (this == object) {
+            return true;
+        }
+        if (object == null || object.getClass() != getClass()) {
+            return false;
+        }
+        CompactCacheKey other = (CompactCacheKey) object;
+        if (hash != other.hash || valueCount != other.valueCount
+                || offset != other.offset || limit != other.limit || !prefix.equals(other.prefix)) {
+            return false;
+        }
+        for (int i = 0; i < valueCount; i++) {
+            Object thisObject = values[i];
+            Object thatObject = other.values[i];
+            if (thisObject == null ? thatObject != null : !thisObject.equals(thatObject)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        return (int) (hash ^ (hash >>> 32));
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder returnValue = new StringBuilder().append(hashCode()).append(':').append(hash)
+                .append(':').append(prefix.statementId).append(':').append(offset)
+                .append(':').append(limit).append(':').append(prefix.sql);
+        for (int i = 0; i < valueCount; i++) {
+            returnValue.append(':').append(values[i]);
+        }
+        return returnValue.toString();
+    }
+
+    @Override
+    public CompactCacheKey clone() throws CloneNotSupportedException {
+        CompactCacheKey clonedCacheKey = (CompactCacheKey) super.clone();
+        clonedCacheKey.values = values.clone();
+        return clonedCacheKey;
+    }
+
+    //murmur3的64位混淆函数
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    /**
+     * statement id和SQL，以及两者的64位哈希
+     */
+    public static final class Prefix implements Serializable {
+
+        private static final long serialVersionUID = 6517309357219742387L;
+
+        private final String statementId;
+        private final String sql;
+        private final long hash;
+
+        public Prefix(String statementId, String sql) {
+            this.statementId = statementId;
+            this.sql = sql;
+            this.hash = mix(hash(sql, hash(statementId, 0xcbf29ce484222325L)));
+        }
+
+        //FNV-1a
+        private static long hash(String value, long h) {
+            for (int i = 0; i < value.length(); i++) {
+                h ^= value.charAt(i);
+                h *= 0x100000001b3L;
+            }
+            return h;
+        }
+
+        /**
+         * 静态SQL每次得到的是同一个字符串，先比较引用
+         */
+        public boolean matches(String statementId, String sql) {
+            return (this.sql == sql || this.sql.equals(sql)) && this.statementId.equals(statementId);
+        }
+
+        @Override
+        public boolean equals(Object object) {
+            if (this == object) {
+                return true;
+            }
+            if (!(object instanceof Prefix)) {
+                return false;
+            }
+            Prefix other = (Prefix) object;
+            return hash == other.hash && statementId.equals(other.statementId) && sql.equals(other.sql);
+        }
+
+        @Override
+        public int hashCode() {
+            return (int) (hash ^ (hash >>> 32));
+        }
+    }
+
+}
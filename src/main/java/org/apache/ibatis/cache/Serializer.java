@@ -0,0 +1,35 @@
+/**
+ *    Copyright 2009-2015 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache;
+
+/**
+ * 缓存值的序列化接口，供SerializedCache和OffHeapCache使用。
+ * 实现类需要线程安全，并有无参构造器，才能通过&lt;cache&gt;的serializerType属性配置。
+ */
+public interface Serializer {
+
+    /**
+     * 序列化一个值，失败时抛出CacheException
+     * @param value 缓存值，可能为null
+     */
+    byte[] serialize(Object value);
+
+    /**
+     * 反序列化，返回的对象与原值相互独立
+     */
+    Object deserialize(byte[] bytes);
+
+}
@@ -0,0 +1,32 @@
+/**
+ *    Copyright 2009-2015 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache;
+
+/**
+ * 缓存条目权重的估算接口，供WeightedCache使用。
+ * 实现类需要有无参构造器，才能通过&lt;cache&gt;的weigherType属性配置。
+ */
+public interface Weigher {
+
+    /**
+     * 估算一个缓存条目的权重
+     * @param key 缓存key，通常是CacheKey
+     * @param value 缓存值，readWrite缓存中是序列化后的byte[]
+     * @return 非负的权重
+     */
+    long weigh(Object key, Object value);
+
+}
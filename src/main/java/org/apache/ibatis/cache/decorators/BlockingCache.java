@@ -19,10 +19,9 @@ import org.apache.ibatis.cache.Cache;
 import org.apache.ibatis.cache.CacheException;
 
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReadWriteLock;
-import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * Simple blocking decorator 
@@ -39,6 +38,10 @@ import java.util.concurrent.locks.ReentrantLock;
  * 简单的阻塞缓存装饰器。
  * 它是仿EhCache的阻塞缓存装饰器的版本。当获取缓存时，如果未找到，则对key上锁。
  * 通过这种方式，其他线程在获取该缓存时，将会被阻塞，直到缓存被持有锁的线程填充。从而避免了查询数据库。
+ * 每个正在加载的key对应一个LoadingFlight，只在加载期间存在，填充或释放后立即移除，
+ * 内存占用只与同时未命中的key数量有关，而不是与出现过的key总数有关。
+ * 只读缓存（shareLoadedValue=true）中等待的线程直接拿到加载线程放入的值；
+ * 可读写缓存中每个线程需要独立的副本，等待结束后重新从代理缓存读取。
  */
 public class BlockingCache implements Cache {
 
@@ -46,12 +49,14 @@ public class BlockingCache implements Cache {
     private long timeout;
     //缓存代理
     private final Cache delegate;
-    //维护的缓存锁对象
-    private final ConcurrentHashMap<Object, ReentrantLock> locks;
+    //正在加载的key
+    private final ConcurrentHashMap<Object, LoadingFlight> flights;
+    //等待线程是否直接共享加载线程放入的值
+    private boolean shareLoadedValue;
 
     public BlockingCache(Cache delegate) {
         this.delegate = delegate;
-        this.locks = new ConcurrentHashMap<Object, ReentrantLock>();
+        this.flights = new ConcurrentHashMap<Object, LoadingFlight>();
     }
 
     @Override
@@ -69,30 +74,51 @@ public class BlockingCache implements Cache {
         try {
             delegate.putObject(key, value);
         } finally {
-            releaseLock(key);
+            completeFlight(key, value);
         }
     }
 
     @Override
     public Object getObject(Object key) {
-        //若key对应缓存未找到时，将对应的key上锁；若找到了，则解锁。
-        //获取锁对象
-        acquireLock(key);
-        Object value = delegate.getObject(key);
-        if (value != null) {
-            //如果缓存值不为空，则释放锁
-            releaseLock(key);
+        //若key对应缓存未找到，则当前线程成为加载者，其他线程等待加载者填充缓存
+        while (true) {
+            Object value = delegate.getObject(key);
+            if (value != null) {
+                return value;
+            }
+            LoadingFlight flight = new LoadingFlight();
+            LoadingFlight existing = flights.putIfAbsent(key, flight);
+            if (existing == null) {
+                //注册期间其他线程可能刚好完成了加载，再检查一次
+                value = delegate.getObject(key);
+                if (value != null) {
+                    completeFlight(key, null);
+                }
+                return value;
+            }
+            if (existing.loader == Thread.currentThread()) {
+                //加载线程再次读取同一个key，不能等待自己
+                return null;
+            }
+            awaitFlight(key, existing);
+            if (existing.value != null) {
+                if (shareLoadedValue) {
+                    return existing.value;
+                }
+                value = delegate.getObject(key);
+                if (value != null) {
+                    return value;
+                }
+            }
+            //加载线程没有填充缓存（回滚或结果为空），重新竞争成为加载者
         }
-
-
-        return value;
     }
 
     @Override
     public Object removeObject(Object key) {
         // despite of its name, this method is called only to release locks
         //不要在意该方法的名字，这里只是释放掉锁
-        releaseLock(key);
+        completeFlight(key, null);
         return null;
     }
 
@@ -106,44 +132,36 @@ public class BlockingCache implements Cache {
         return null;
     }
 
-    private ReentrantLock getLockForKey(Object key) {
-        ReentrantLock lock = new ReentrantLock();
-        ReentrantLock previous = locks.putIfAbsent(key, lock);
-        //如果之前有锁对象，则返回；否则返回上面new出的新锁对象
-        return previous == null ? lock : previous;
-    }
-
     /**
-     * 获取该key对应的锁
-     * @param key 锁对象的key
+     * 等待加载线程完成
      */
-    private void acquireLock(Object key) {
-        Lock lock = getLockForKey(key);
-        if (timeout > 0) {
-            //尝试在超时时间内获取锁对象
-            try {
-                boolean acquired = lock.tryLock(timeout, TimeUnit.MILLISECONDS);
-                if (!acquired) {
+    private void awaitFlight(Object key, LoadingFlight flight) {
+        try {
+            if (timeout > 0) {
+                //在超时时间内等待
+                if (!flight.latch.await(timeout, TimeUnit.MILLISECONDS)) {
                     throw new CacheException("Couldn't get a lock in " + timeout + " for the key " + key + " at the cache " + delegate.getId());
                 }
-            } catch (InterruptedException e) {
-                throw new CacheException("Got interrupted while trying to acquire lock for key " + key, e);
+            } else {
+                //无超时机制，阻塞直到加载完成
+                flight.latch.await();
             }
-        } else {
-            //无超时机制，阻塞并直到获取锁
-            lock.lock();
+        } catch (InterruptedException e) {
+            throw new CacheException("Got interrupted while trying to acquire lock for key " + key, e);
         }
     }
 
     /**
-     * 如果当前线程持有key对应的锁，则释放该锁，
-     * @param key 锁对象的key
+     * 如果当前线程是该key的加载者，则移除加载记录并唤醒所有等待线程
+     * @param key 缓存key
+     * @param value 加载到的值，未加载到时为null
      */
-    private void releaseLock(Object key) {
-        ReentrantLock lock = locks.get(key);
-        if (lock.isHeldByCurrentThread()) {
-            //如果当前线程持有该锁，则进行释放
-            lock.unlock();
+    private void completeFlight(Object key, Object value) {
+        LoadingFlight flight = flights.get(key);
+        if (flight != null && flight.loader == Thread.currentThread()) {
+            flight.value = value;
+            flights.remove(key, flight);
+            flight.latch.countDown();
         }
     }
 
@@ -154,4 +172,21 @@ public class BlockingCache implements Cache {
     public void setTimeout(long timeout) {
         this.timeout = timeout;
     }
-}
\ No newline at end of file
+
+    public boolean isShareLoadedValue() {
+        return shareLoadedValue;
+    }
+
+    public void setShareLoadedValue(boolean shareLoadedValue) {
+        this.shareLoadedValue = shareLoadedValue;
+    }
+
+    /**
+     * 一次正在进行的加载，加载线程之外的线程在latch上等待
+     */
+    private static class LoadingFlight {
+        private final Thread loader = Thread.currentThread();
+        private final CountDownLatch latch = new CountDownLatch(1);
+        private volatile Object value;
+    }
+}
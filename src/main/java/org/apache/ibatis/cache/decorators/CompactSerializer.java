@@ -0,0 +1,563 @@
+/**
+ *    Copyright 2009-2015 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache.decorators;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.ibatis.cache.CacheException;
+import org.apache.ibatis.cache.Serializer;
+import org.apache.ibatis.io.Resources;
+import org.apache.ibatis.reflection.DefaultReflectorFactory;
+import org.apache.ibatis.reflection.Reflector;
+import org.apache.ibatis.reflection.ReflectorFactory;
+import org.apache.ibatis.reflection.invoker.Invoker;
+
+/**
+ * 紧凑的序列化实现，针对查询结果（JavaBean、List、Map和基本类型）。
+ * 1.JavaBean不写字段描述，只按Reflector得到的属性顺序写属性值，类名在一次序列化中只写一次；
+ * 2.数字使用变长编码，常见类型用一个字节的标记区分；
+ * 3.同一个对象多次出现时只写引用，支持循环引用（如嵌套结果中的双向关联）；
+ * 4.不能按属性还原的对象（没有无参构造器、自定义了序列化方法、有序集合等）退回到Java标准序列化。
+ * 属性顺序只在同一个JVM中稳定，序列化结果不能持久化或跨进程传递，这对进程内的二级缓存足够了。
+ * 每个线程复用输出缓冲区和引用表。
+ */
+public class CompactSerializer implements Serializer {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final int INITIAL_BUFFER = 1024;
+    //超过该大小的缓冲区用完后丢弃，避免线程长期持有大数组
+    private static final int MAX_RETAINED_BUFFER = 64 * 1024;
+
+    private static final byte NULL = 0;
+    private static final byte STRING = 1;
+    private static final byte INTEGER = 2;
+    private static final byte LONG = 3;
+    private static final byte SHORT = 4;
+    private static final byte BYTE = 5;
+    private static final byte TRUE = 6;
+    private static final byte FALSE = 7;
+    private static final byte DOUBLE = 8;
+    private static final byte FLOAT = 9;
+    private static final byte CHARACTER = 10;
+    private static final byte BIG_DECIMAL = 11;
+    private static final byte BIG_INTEGER = 12;
+    private static final byte DATE = 13;
+    private static final byte SQL_DATE = 14;
+    private static final byte SQL_TIME = 15;
+    private static final byte SQL_TIMESTAMP = 16;
+    private static final byte BYTES = 17;
+    private static final byte ENUM = 18;
+    private static final byte COLLECTION = 19;
+    private static final byte MAP = 20;
+    private static final byte BEAN = 21;
+    private static final byte REFERENCE = 22;
+    private static final byte JAVA = 23;
+
+    //不能按属性还原的类型
+    private static final BeanLayout NOT_A_BEAN = new BeanLayout(null, new Invoker[0], new Invoker[0]);
+
+    private final ReflectorFactory reflectorFactory = new DefaultReflectorFactory();
+    private final ConcurrentMap<Class<?>, BeanLayout> layouts = new ConcurrentHashMap<Class<?>, BeanLayout>();
+    private final JavaSerializer javaSerializer = new JavaSerializer();
+
+    private final ThreadLocal<Output> outputs = new ThreadLocal<Output>() {
+        @Override
+        protected Output initialValue() {
+            return new Output();
+        }
+    };
+
+    @Override
+    public byte[] serialize(Object value) {
+        Output out = outputs.get();
+        try {
+            writeObject(out, value);
+            return Arrays.copyOf(out.buf, out.size);
+        } catch (CacheException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new CacheException("Error serializing object.  Cause: " + e, e);
+        } finally {
+            if (out.buf.length > MAX_RETAINED_BUFFER) {
+                outputs.remove();
+            } else {
+                out.reset();
+            }
+        }
+    }
+
+    @Override
+    public Object deserialize(byte[] bytes) {
+        try {
+            return readObject(new Input(bytes));
+        } catch (CacheException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new CacheException("Error deserializing object.  Cause: " + e, e);
+        }
+    }
+
+    private void writeObject(Output out, Object value) throws Exception {
+        if (value == null) {
+            out.writeByte(NULL);
+            return;
+        }
+        Class<?> type = value.getClass();
+        if (type == String.class) {
+            out.writeByte(STRING);
+            out.writeString((String) value);
+        } else if (type == Integer.class) {
+            out.writeByte(INTEGER);
+            out.writeVarLong((Integer) value);
+        } else if (type == Long.class) {
+            out.writeByte(LONG);
+            out.writeVarLong((Long) value);
+        } else if (type == Short.class) {
+            out.writeByte(SHORT);
+            out.writeVarLong((Short) value);
+        } else if (type == Byte.class) {
+            out.writeByte(BYTE);
+            out.writeByte((Byte) value);
+        } else if (type == Boolean.class) {
+            out.writeByte((Boolean) value ? TRUE : FALSE);
+        } else if (type == Double.class) {
+            out.writeByte(DOUBLE);
+            out.writeFixedLong(Double.doubleToRawLongBits((Double) value));
+        } else if (type == Float.class) {
+            out.writeByte(FLOAT);
+            out.writeVarInt(Float.floatToRawIntBits((Float) value));
+        } else if (type == Character.class) {
+            out.writeByte(CHARACTER);
+            out.writeVarInt((Character) value);
+        } else if (type == BigDecimal.class) {
+            BigDecimal decimal = (BigDecimal) value;
+            out.writeByte(BIG_DECIMAL);
+            out.writeBytes(decimal.unscaledValue().toByteArray());
+            out.writeVarLong(decimal.scale());
+        } else if (type == BigInteger.class) {
+            out.writeByte(BIG_INTEGER);
+            out.writeBytes(((BigInteger) value).toByteArray());
+        } else if (type == Date.class) {
+            out.writeByte(DATE);
+            out.writeVarLong(((Date) value).getTime());
+        } else if (type == java.sql.Date.class) {
+            out.writeByte(SQL_DATE);
+            out.writeVarLong(((Date) value).getTime());
+        } else if (type == java.sql.Time.class) {
+            out.writeByte(SQL_TIME);
+            out.writeVarLong(((Date) value).getTime());
+        } else if (type == java.sql.Timestamp.class) {
+            java.sql.Timestamp timestamp = (java.sql.Timestamp) value;
+            out.writeByte(SQL_TIMESTAMP);
+            out.writeVarLong(timestamp.getTime());
+            out.writeVarInt(timestamp.getNanos());
+        } else if (type == byte[].class) {
+            out.writeByte(BYTES);
+            out.writeBytes((byte[]) value);
+        } else if (value instanceof Enum) {
+            out.writeByte(ENUM);
+            writeClass(out, ((Enum<?>) value).getDeclaringClass());
+            out.writeString(((Enum<?>) value).name());
+        } else {
+            Integer reference = out.references.get(value);
+            if (reference != null) {
+                out.writeByte(REFERENCE);
+                out.writeVarInt(reference);
+            } else if (value instanceof Collection && isRebuildableContainer(type)) {
+                out.register(value);
+                Collection<?> collection = (Collection<?>) value;
+                out.writeByte(COLLECTION);
+                writeClass(out, type);
+                out.writeVarInt(collection.size());
+                for (Object element : collection) {
+                    writeObject(out, element);
+                }
+            } else if (value instanceof Map && isRebuildableContainer(type)) {
+                out.register(value);
+                Map<?, ?> map = (Map<?, ?>) value;
+                out.writeByte(MAP);
+                writeClass(out, type);
+                out.writeVarInt(map.size());
+                for (Map.Entry<?, ?> entry : map.entrySet()) {
+                    writeObject(out, entry.getKey());
+                    writeObject(out, entry.getValue());
+                }
+            } else {
+                BeanLayout layout = layoutFor(type);
+                if (layout != NOT_A_BEAN) {
+                    out.register(value);
+                    out.writeByte(BEAN);
+                    writeClass(out, type);
+                    for (Invoker getter : layout.getters) {
+                        writeObject(out, getter.invoke(value, null));
+                    }
+                } else {
+                    out.writeByte(JAVA);
+                    out.writeBytes(javaSerializer.serialize(value));
+                }
+            }
+        }
+    }
+
+    private Object readObject(Input in) throws Exception {
+        byte tag = in.readByte();
+        switch (tag) {
+            case NULL:
+                return null;
+            case STRING:
+                return in.readString();
+            case INTEGER:
+                return (int) in.readVarLong();
+            case LONG:
+                return in.readVarLong();
+            case SHORT:
+                return (short) in.readVarLong();
+            case BYTE:
+                return in.readByte();
+            case TRUE:
+                return Boolean.TRUE;
+            case FALSE:
+                return Boolean.FALSE;
+            case DOUBLE:
+                return Double.longBitsToDouble(in.readFixedLong());
+            case FLOAT:
+                return Float.intBitsToFloat(in.readVarInt());
+            case CHARACTER:
+                return (char) in.readVarInt();
+            case BIG_DECIMAL:
+                BigInteger unscaled = new BigInteger(in.readBytes());
+                return new BigDecimal(unscaled, (int) in.readVarLong());
+            case BIG_INTEGER:
+                return new BigInteger(in.readBytes());
+            case DATE:
+                return new Date(in.readVarLong());
+            case SQL_DATE:
+                return new java.sql.Date(in.readVarLong());
+            case SQL_TIME:
+                return new java.sql.Time(in.readVarLong());
+            case SQL_TIMESTAMP:
+                java.sql.Timestamp timestamp = new java.sql.Timestamp(in.readVarLong());
+                timestamp.setNanos(in.readVarInt());
+                return timestamp;
+            case BYTES:
+                return in.readBytes();
+            case ENUM:
+                return readEnum(readClass(in), in.readString());
+            case REFERENCE:
+                return in.references.get(in.readVarInt());
+            case COLLECTION: {
+                @SuppressWarnings("unchecked")
+                Collection<Object> collection = (Collection<Object>) readClass(in).newInstance();
+                in.references.add(collection);
+                int size = in.readVarInt();
+                for (int i = 0; i < size; i++) {
+                    collection.add(readObject(in));
+                }
+                return collection;
+            }
+            case MAP: {
+                @SuppressWarnings("unchecked")
+                Map<Object, Object> map = (Map<Object, Object>) readClass(in).newInstance();
+                in.references.add(map);
+                int size = in.readVarInt();
+                for (int i = 0; i < size; i++) {
+                    Object key = readObject(in);
+                    map.put(key, readObject(in));
+                }
+                return map;
+            }
+            case BEAN: {
+                BeanLayout layout = layoutFor(readClass(in));
+                Object bean = layout.constructor.newInstance();
+                //先登记再读取属性，属性中可能引用回这个对象
+                in.references.add(bean);
+                for (Invoker setter : layout.setters) {
+                    setter.invoke(bean, new Object[]{readObject(in)});
+                }
+                return bean;
+            }
+            case JAVA:
+                return javaSerializer.deserialize(in.readBytes());
+            default:
+                throw new CacheException("Unknown tag " + tag + " in serialized cache value");
+        }
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private Object readEnum(Class<?> type, String name) {
+        return Enum.valueOf((Class) type, name);
+    }
+
+    private void writeClass(Output out, Class<?> type) {
+        Integer index = out.classes.get(type);
+        if (index != null) {
+            out.writeVarInt(index + 1);
+        } else {
+            out.writeVarInt(0);
+            out.writeString(type.getName());
+            out.classes.put(type, out.classes.size());
+        }
+    }
+
+    private Class<?> readClass(Input in) throws ClassNotFoundException {
+        int index = in.readVarInt();
+        if (index > 0) {
+            return in.classes.get(index - 1);
+        }
+        Class<?> type = Resources.classForName(in.readString());
+        in.classes.add(type);
+        return type;
+    }
+
+    //java.util中有公共无参构造器的集合可以重建，有序集合的比较器无法保存，排除在外
+    private boolean isRebuildableContainer(Class<?> type) {
+        if (!type.getName().startsWith("java.util.")
+                || SortedSet.class.isAssignableFrom(type) || SortedMap.class.isAssignableFrom(type)) {
+            return false;
+        }
+        try {
+            return Modifier.isPublic(type.getConstructor().getModifiers());
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+    private BeanLayout layoutFor(Class<?> type) {
+        BeanLayout layout = layouts.get(type);
+        if (layout == null) {
+            layout = createLayout(type);
+            layouts.put(type, layout);
+        }
+        return layout;
+    }
+
+    private BeanLayout createLayout(Class<?> type) {
+        if (type.isArray() || type.isInterface() || Modifier.isAbstract(type.getModifiers())
+                || type.getName().startsWith("java.") || type.getName().startsWith("javax.")
+                || hasSerializationHooks(type)) {
+            return NOT_A_BEAN;
+        }
+        Reflector reflector = reflectorFactory.findForClass(type);
+        if (!reflector.hasDefaultConstructor()) {
+            return NOT_A_BEAN;
+        }
+        //可读且可写的属性，按名称排序保证读写顺序一致；静态和transient字段不属于对象状态
+        List<String> names = new ArrayList<String>();
+        for (String name : reflector.getGetablePropertyNames()) {
+            if (reflector.hasSetter(name) && !isExcludedField(type, name)) {
+                names.add(name);
+            }
+        }
+        String[] sorted = names.toArray(new String[names.size()]);
+        Arrays.sort(sorted);
+        Invoker[] getters = new Invoker[sorted.length];
+        Invoker[] setters = new Invoker[sorted.length];
+        for (int i = 0; i < sorted.length; i++) {
+            getters[i] = reflector.getGetInvoker(sorted[i]);
+            setters[i] = reflector.getSetInvoker(sorted[i]);
+        }
+        return new BeanLayout(reflector.getDefaultConstructor(), getters, setters);
+    }
+
+    //自定义了序列化过程的类（包括延迟加载的代理）必须使用Java标准序列化
+    private boolean hasSerializationHooks(Class<?> type) {
+        for (Class<?> current = type; current != null && current != Object.class; current = current.getSuperclass()) {
+            for (Method method : current.getDeclaredMethods()) {
+                String name = method.getName();
+                if ("writeObject".equals(name) || "readObject".equals(name)
+                        || "writeReplace".equals(name) || "readResolve".equals(name)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private boolean isExcludedField(Class<?> type, String name) {
+        for (Class<?> current = type; current != null && current != Object.class; current = current.getSuperclass()) {
+            try {
+                Field field = current.getDeclaredField(name);
+                int modifiers = field.getModifiers();
+                return Modifier.isStatic(modifiers) || Modifier.isTransient(modifiers);
+            } catch (NoSuchFieldException e) {
+                // 继续查找父类
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 一个JavaBean类型的属性访问器，getters与setters按相同的属性顺序排列
+     */
+    private static class BeanLayout {
+        private final Constructor<?> constructor;
+        private final Invoker[] getters;
+        private final Invoker[] setters;
+
+        BeanLayout(Constructor<?> constructor, Invoker[] getters, Invoker[] setters) {
+            this.constructor = constructor;
+            this.getters = getters;
+            this.setters = setters;
+        }
+    }
+
+    /**
+     * 可复用的输出缓冲区
+     */
+    private static class Output {
+        private byte[] buf = new byte[INITIAL_BUFFER];
+        private int size;
+        private final Map<Class<?>, Integer> classes = new HashMap<Class<?>, Integer>();
+        private final IdentityHashMap<Object, Integer> references = new IdentityHashMap<Object, Integer>();
+
+        void register(Object value) {
+            references.put(value, references.size());
+        }
+
+        void writeByte(int b) {
+            ensureCapacity(1);
+            buf[size++] = (byte) b;
+        }
+
+        void writeVarInt(int value) {
+            ensureCapacity(5);
+            while ((value & ~0x7F) != 0) {
+                buf[size++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            buf[size++] = (byte) value;
+        }
+
+        //zigzag编码，绝对值小的负数也只占少量字节
+        void writeVarLong(long value) {
+            ensureCapacity(10);
+            long zigzag = (value << 1) ^ (value >> 63);
+            while ((zigzag & ~0x7FL) != 0) {
+                buf[size++] = (byte) ((zigzag & 0x7F) | 0x80);
+                zigzag >>>= 7;
+            }
+            buf[size++] = (byte) zigzag;
+        }
+
+        void writeFixedLong(long value) {
+            ensureCapacity(8);
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                buf[size++] = (byte) (value >>> shift);
+            }
+        }
+
+        void writeBytes(byte[] bytes) {
+            writeVarInt(bytes.length);
+            ensureCapacity(bytes.length);
+            System.arraycopy(bytes, 0, buf, size, bytes.length);
+            size += bytes.length;
+        }
+
+        void writeString(String value) {
+            writeBytes(value.getBytes(UTF_8));
+        }
+
+        private void ensureCapacity(int extra) {
+            if (size + extra > buf.length) {
+                buf = Arrays.copyOf(buf, Math.max(buf.length << 1, size + extra));
+            }
+        }
+
+        void reset() {
+            size = 0;
+            classes.clear();
+            references.clear();
+        }
+    }
+
+    private static class Input {
+        private final byte[] buf;
+        private int pos;
+        private final List<Class<?>> classes = new ArrayList<Class<?>>();
+        private final List<Object> references = new ArrayList<Object>();
+
+        Input(byte[] buf) {
+            this.buf = buf;
+        }
+
+        byte readByte() {
+            return buf[pos++];
+        }
+
+        int readVarInt() {
+            int value = 0;
+            for (int shift = 0; ; shift += 7) {
+                byte b = buf[pos++];
+                value |= (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+        }
+
+        long readVarLong() {
+            long zigzag = 0;
+            for (int shift = 0; ; shift += 7) {
+                byte b = buf[pos++];
+                zigzag |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return (zigzag >>> 1) ^ -(zigzag & 1);
+                }
+            }
+        }
+
+        long readFixedLong() {
+            long value = 0;
+            for (int i = 0; i < 8; i++) {
+                value = (value << 8) | (buf[pos++] & 0xFF);
+            }
+            return value;
+        }
+
+        byte[] readBytes() {
+            int length = readVarInt();
+            byte[] bytes = Arrays.copyOfRange(buf, pos, pos + length);
+            pos += length;
+            return bytes;
+        }
+
+        String readString() {
+            int length = readVarInt();
+            String value = new String(buf, pos, length, UTF_8);
+            pos += length;
+            return value;
+        }
+    }
+
+}
@@ -0,0 +1,48 @@
+/**
+ *    Copyright 2009-2015 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache.decorators;
+
+import java.lang.reflect.Array;
+import java.util.Collection;
+import java.util.Map;
+
+import org.apache.ibatis.cache.Weigher;
+
+/**
+ * 默认的权重估算：查询结果的行数。
+ * List等集合、Map按元素个数计算，数组按长度计算，其他对象计为1。
+ * readWrite缓存中保存的是序列化后的byte[]，CacheBuilder把WeightedCache放在SerializedCache之外，
+ * 所以这里看到的仍是查询结果，maxWeight始终按行数配置。
+ */
+public class DefaultWeigher implements Weigher {
+
+    @Override
+    public long weigh(Object key, Object value) {
+        long weight;
+        if (value instanceof Collection) {
+            weight = ((Collection<?>) value).size();
+        } else if (value instanceof Map) {
+            weight = ((Map<?, ?>) value).size();
+        } else if (value != null && value.getClass().isArray()) {
+            weight = Array.getLength(value);
+        } else {
+            weight = 1;
+        }
+        //空结果也占用一个条目
+        return Math.max(1, weight);
+    }
+
+}
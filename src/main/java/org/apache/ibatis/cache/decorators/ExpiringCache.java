@@ -0,0 +1,247 @@
+/**
+ *    Copyright 2009-2015 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache.decorators;
+
+import java.lang.ref.WeakReference;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+
+import org.apache.ibatis.cache.Cache;
+
+/**
+ * 按条目过期的缓存装饰器，用来代替ScheduledCache的整体清空。
+ * ScheduledCache每隔flushInterval清空整个命名空间，所有查询在同一时刻同时未命中；
+ * 这里为每个条目单独记录过期时间（写入后过期expireAfterWrite、访问后过期expireAfterAccess，可加随机抖动expiryJitter），
+ * 读取时惰性检查，后台线程每隔sweepInterval清理已过期但未被读取的条目。
+ * 过期时间保存在独立的ConcurrentHashMap中，不包装缓存值，内层的淘汰装饰器和Weigher看到的仍是原始值。
+ * CacheBuilder把它放在SynchronizedCache之外，后台清理线程对内层缓存的调用同样经过同步。
+ */
+public class ExpiringCache implements Cache {
+
+    //所有ExpiringCache共用一个后台清理线程
+    private static final ScheduledExecutorService SWEEPER = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "ExpiringCache-sweeper");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    //缓存代理
+    private final Cache delegate;
+    private final ConcurrentMap<Object, Expiry> expiries = new ConcurrentHashMap<Object, Expiry>();
+    //写入后过期时长，毫秒，0表示不限制
+    private volatile long expireAfterWrite;
+    //访问后过期时长，毫秒，0表示不限制
+    private volatile long expireAfterAccess;
+    //过期时长随机增加的最大百分比，避免同时写入的条目同时过期
+    private volatile int expiryJitter;
+    //后台清理间隔，毫秒，0表示只惰性过期
+    private volatile long sweepInterval = 60 * 1000;
+    private volatile ScheduledFuture<?> sweepTask;
+
+    public ExpiringCache(Cache delegate) {
+        this.delegate = delegate;
+    }
+
+    public void setExpireAfterWrite(long expireAfterWrite) {
+        this.expireAfterWrite = expireAfterWrite;
+    }
+
+    public void setExpireAfterAccess(long expireAfterAccess) {
+        this.expireAfterAccess = expireAfterAccess;
+    }
+
+    public void setExpiryJitter(int expiryJitter) {
+        this.expiryJitter = expiryJitter;
+    }
+
+    public void setSweepInterval(long sweepInterval) {
+        this.sweepInterval = sweepInterval;
+    }
+
+    @Override
+    public String getId() {
+        return delegate.getId();
+    }
+
+    @Override
+    public int getSize() {
+        return delegate.getSize();
+    }
+
+    @Override
+    public void putObject(Object key, Object value) {
+        //先记录新的过期时间再写入缓存值，并发的expire(key, 旧Expiry)不会再删除刚写入的值
+        if (value == null) {
+            expiries.remove(key);
+            delegate.putObject(key, value);
+        } else {
+            long now = System.currentTimeMillis();
+            Expiry expiry = new Expiry(deadline(now, expireAfterWrite), deadline(now, expireAfterAccess));
+            expiries.put(key, expiry);
+            delegate.putObject(key, value);
+            //写入期间并发的getObject可能因为还读不到值而删除了这条记录，补回来
+            expiries.putIfAbsent(key, expiry);
+            startSweeperIfNecessary();
+        }
+    }
+
+    @Override
+    public Object getObject(Object key) {
+        Expiry expiry = expiries.get(key);
+        long now = System.currentTimeMillis();
+        if (expiry != null && expiry.isExpired(now)) {
+            expire(key, expiry);
+            return null;
+        }
+        Object value = delegate.getObject(key);
+        if (expiry != null) {
+            if (value == null) {
+                //已被内层的淘汰装饰器移除，过期记录一并删除
+                expiries.remove(key, expiry);
+            } else if (expireAfterAccess > 0) {
+                expiry.accessDeadline = deadline(now, expireAfterAccess);
+            }
+        }
+        return value;
+    }
+
+    @Override
+    public Object removeObject(Object key) {
+        expiries.remove(key);
+        return delegate.removeObject(key);
+    }
+
+    @Override
+    public void clear() {
+        expiries.clear();
+        delegate.clear();
+    }
+
+    @Override
+    public ReadWriteLock getReadWriteLock() {
+        return null;
+    }
+
+    @Override
+    public int hashCode() {
+        return delegate.hashCode();
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        return delegate.equals(obj);
+    }
+
+    /**
+     * 清理所有已过期的条目，由后台线程调用
+     */
+    void sweep() {
+        long now = System.currentTimeMillis();
+        Iterator<Map.Entry<Object, Expiry>> iterator = expiries.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<Object, Expiry> entry = iterator.next();
+            if (entry.getValue().isExpired(now)) {
+                expire(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
+    int getExpiryCount() {
+        return expiries.size();
+    }
+
+    private void expire(Object key, Expiry expiry) {
+        //只有移除成功的线程才删除缓存值，避免误删并发写入的新值
+        if (expiries.remove(key, expiry)) {
+            delegate.removeObject(key);
+        }
+    }
+
+    private long deadline(long now, long duration) {
+        if (duration <= 0) {
+            return Long.MAX_VALUE;
+        }
+        long jitter = expiryJitter <= 0 ? 0 : ThreadLocalRandom.current().nextLong(duration * expiryJitter / 100 + 1);
+        return now + duration + jitter;
+    }
+
+    private void startSweeperIfNecessary() {
+        if (sweepTask == null && sweepInterval > 0) {
+            synchronized (this) {
+                if (sweepTask == null) {
+                    Sweeper sweeper = new Sweeper(this);
+                    sweepTask = SWEEPER.scheduleWithFixedDelay(sweeper, sweepInterval, sweepInterval, TimeUnit.MILLISECONDS);
+                    sweeper.task = sweepTask;
+                }
+            }
+        }
+    }
+
+    private static class Expiry {
+        private final long writeDeadline;
+        private volatile long accessDeadline;
+
+        Expiry(long writeDeadline, long accessDeadline) {
+            this.writeDeadline = writeDeadline;
+            this.accessDeadline = accessDeadline;
+        }
+
+        boolean isExpired(long now) {
+            return now >= writeDeadline || now >= accessDeadline;
+        }
+    }
+
+    /**
+     * 清理任务只持有缓存的弱引用，缓存被回收后取消自己
+     */
+    private static class Sweeper implements Runnable {
+        private final WeakReference<ExpiringCache> cacheRef;
+        private volatile ScheduledFuture<?> task;
+
+        Sweeper(ExpiringCache cache) {
+            this.cacheRef = new WeakReference<ExpiringCache>(cache);
+        }
+
+        @Override
+        public void run() {
+            ExpiringCache cache = cacheRef.get();
+            if (cache == null) {
+                if (task != null) {
+                    task.cancel(false);
+                }
+                return;
+            }
+            try {
+                cache.sweep();
+            } catch (RuntimeException e) {
+                //异常不能抛出，否则后续的调度会被取消
+            }
+        }
+    }
+
+}
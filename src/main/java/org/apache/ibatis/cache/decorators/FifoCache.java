@@ -18,6 +18,7 @@ package org.apache.ibatis.cache.decorators;
 import java.util.Deque;
 import java.util.LinkedList;
 import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
 
 import org.apache.ibatis.cache.Cache;
 
@@ -29,6 +30,7 @@ import org.apache.ibatis.cache.Cache;
 
 /**
  * FIFO缓存装饰器。使用链表维护了已缓存的key列表。当插入数量达到上限时，移除最先缓存的元素。
+ * 读取直接访问代理缓存，只有写入和清空需要获取keyListLock。
  */
 public class FifoCache implements Cache {
     //缓存代理
@@ -36,7 +38,9 @@ public class FifoCache implements Cache {
     //链表，用于顺序存放key实现FIFO
     private Deque<Object> keyList;
     //有效缓存大小
-    private int size;
+    private volatile int size;
+    //保护keyList的锁
+    private final ReentrantLock keyListLock = new ReentrantLock();
 
     public FifoCache(Cache delegate) {
         this.delegate = delegate;
@@ -60,8 +64,13 @@ public class FifoCache implements Cache {
 
     @Override
     public void putObject(Object key, Object value) {
-        cycleKeyList(key);
-        delegate.putObject(key, value);
+        keyListLock.lock();
+        try {
+            cycleKeyList(key);
+            delegate.putObject(key, value);
+        } finally {
+            keyListLock.unlock();
+        }
     }
 
     @Override
@@ -76,8 +85,13 @@ public class FifoCache implements Cache {
 
     @Override
     public void clear() {
-        delegate.clear();
-        keyList.clear();
+        keyListLock.lock();
+        try {
+            delegate.clear();
+            keyList.clear();
+        } finally {
+            keyListLock.unlock();
+        }
     }
 
     @Override
@@ -0,0 +1,110 @@
+/**
+ *    Copyright 2009-2015 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache.decorators;
+
+import java.util.Arrays;
+
+/**
+ * TinyLFU使用的频率估计器，即4位计数器的Count-Min Sketch（参考Caffeine的FrequencySketch）。
+ * 每个long保存16个4位计数器，一个key在4行中各占一个计数器，估计频率取4个计数器的最小值，最大为15。
+ * 累计的增加次数达到样本数（容量的10倍）时所有计数器减半，使频率随时间衰减。
+ * 非线程安全，由调用者加锁。
+ */
+class FrequencySketch {
+
+    private static final long[] SEED = {
+            0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L};
+    private static final long RESET_MASK = 0x7777777777777777L;
+
+    private long[] table;
+    private int tableMask;
+    private int sampleSize;
+    private int size;
+
+    FrequencySketch(int maximumSize) {
+        ensureCapacity(maximumSize);
+    }
+
+    void ensureCapacity(int maximumSize) {
+        int capacity = Math.max(1, maximumSize);
+        //不小于容量的2的幂
+        int tableSize = capacity > (1 << 30) ? (1 << 30) : Integer.highestOneBit(capacity - 1) << 1;
+        table = new long[Math.max(tableSize, 8)];
+        tableMask = table.length - 1;
+        sampleSize = (capacity > Integer.MAX_VALUE / 10) ? Integer.MAX_VALUE : capacity * 10;
+        size = 0;
+    }
+
+    int frequency(Object key) {
+        int hash = spread(key.hashCode());
+        int start = (hash & 3) << 2;
+        int frequency = Integer.MAX_VALUE;
+        for (int i = 0; i < 4; i++) {
+            int index = indexOf(hash, i);
+            int count = (int) ((table[index] >>> ((start + i) << 2)) & 0xfL);
+            frequency = Math.min(frequency, count);
+        }
+        return frequency;
+    }
+
+    void increment(Object key) {
+        int hash = spread(key.hashCode());
+        int start = (hash & 3) << 2;
+        boolean added = false;
+        for (int i = 0; i < 4; i++) {
+            added |= incrementAt(indexOf(hash, i), start + i);
+        }
+        if (added && ++size == sampleSize) {
+            reset();
+        }
+    }
+
+    void clear() {
+        Arrays.fill(table, 0L);
+        size = 0;
+    }
+
+    private boolean incrementAt(int i, int j) {
+        int offset = j << 2;
+        long mask = 0xfL << offset;
+        if ((table[i] & mask) != mask) {
+            table[i] += 1L << offset;
+            return true;
+        }
+        return false;
+    }
+
+    //所有计数器减半
+    private void reset() {
+        for (int i = 0; i < table.length; i++) {
+            table[i] = (table[i] >>> 1) & RESET_MASK;
+        }
+        size = size >>> 1;
+    }
+
+    private int indexOf(int item, int i) {
+        long hash = (item + SEED[i]) * SEED[i];
+        hash += hash >>> 32;
+        return ((int) hash) & tableMask;
+    }
+
+    private static int spread(int x) {
+        x = ((x >>> 16) ^ x) * 0x45d9f3b;
+        x = ((x >>> 16) ^ x) * 0x45d9f3b;
+        return (x >>> 16) ^ x;
+    }
+
+}
@@ -0,0 +1,84 @@
+/**
+ *    Copyright 2009-2015 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache.decorators;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+
+import org.apache.ibatis.cache.CacheException;
+import org.apache.ibatis.cache.Serializer;
+
+/**
+ * 使用Java标准序列化，是SerializedCache的默认实现。
+ * 每个线程复用一个输出缓冲区，避免每次序列化都重新分配和扩容。
+ */
+public class JavaSerializer implements Serializer {
+
+    //超过该大小的缓冲区用完后丢弃，避免线程长期持有大数组
+    private static final int MAX_RETAINED_BUFFER = 64 * 1024;
+
+    private final ThreadLocal<ReusableOutputStream> buffers = new ThreadLocal<ReusableOutputStream>() {
+        @Override
+        protected ReusableOutputStream initialValue() {
+            return new ReusableOutputStream();
+        }
+    };
+
+    @Override
+    public byte[] serialize(Object value) {
+        ReusableOutputStream bos = buffers.get();
+        try {
+            ObjectOutputStream oos = new ObjectOutputStream(bos);
+            oos.writeObject(value);
+            oos.flush();
+            return bos.toByteArray();
+        } catch (Exception e) {
+            throw new CacheException("Error serializing object.  Cause: " + e, e);
+        } finally {
+            if (bos.capacity() > MAX_RETAINED_BUFFER) {
+                buffers.remove();
+            } else {
+                bos.reset();
+            }
+        }
+    }
+
+    @Override
+    public Object deserialize(byte[] bytes) {
+        try {
+            ObjectInputStream ois = new SerializedCache.CustomObjectInputStream(new ByteArrayInputStream(bytes));
+            Object result = ois.readObject();
+            ois.close();
+            return result;
+        } catch (Exception e) {
+            throw new CacheException("Error deserializing object.  Cause: " + e, e);
+        }
+    }
+
+    private static class ReusableOutputStream extends ByteArrayOutputStream {
+
+        ReusableOutputStream() {
+            super(1024);
+        }
+
+        int capacity() {
+            return buf.length;
+        }
+    }
+
+}
@@ -15,6 +15,7 @@
  */
 package org.apache.ibatis.cache.decorators;
 
+import java.util.concurrent.atomic.LongAdder;
 import java.util.concurrent.locks.ReadWriteLock;
 
 import org.apache.ibatis.cache.Cache;
@@ -34,10 +35,10 @@ public class LoggingCache implements Cache {
     private Log log;
     //缓存代理
     private Cache delegate;
-    //获取缓存总次数
-    protected int requests = 0;
+    //获取缓存总次数，并发缓存下不一定有外层的同步，因此使用LongAdder计数
+    protected final LongAdder requests = new LongAdder();
     //缓存命中次数
-    protected int hits = 0;
+    protected final LongAdder hits = new LongAdder();
 
     public LoggingCache(Cache delegate) {
         this.delegate = delegate;
@@ -62,11 +63,11 @@ public class LoggingCache implements Cache {
     @Override
     public Object getObject(Object key) {
         //获取缓存时记录获取次数
-        requests++;
+        requests.increment();
         final Object value = delegate.getObject(key);
         //若命中，则增加命中次数
         if (value != null) {
-            hits++;
+            hits.increment();
         }
         if (log.isDebugEnabled()) {
             log.debug("Cache Hit Ratio [" + getId() + "]: " + getHitRatio());
@@ -104,7 +105,7 @@ public class LoggingCache implements Cache {
      * @return 缓存命中率
      */
     private double getHitRatio() {
-        return (double) hits / (double) requests;
+        return (double) hits.sum() / (double) requests.sum();
     }
 
 }
@@ -18,6 +18,7 @@ package org.apache.ibatis.cache.decorators;
 import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
 
 import org.apache.ibatis.cache.Cache;
 
@@ -30,10 +31,16 @@ import org.apache.ibatis.cache.Cache;
  * LRU缓存
  * LRU（Least recently used，最近最少使用）算法根据数据的历史访问记录来进行淘汰数据，
  * 其核心思想是“如果数据最近被访问过，那么将来被访问的几率也更高”。
+ * 读取时不加锁，访问记录先写入读缓冲区，由拿到锁的线程批量回放到keyMap中；
+ * 缓冲区满时直接丢弃访问记录，只会让LRU顺序略有偏差。写入、清空在evictionLock下进行。
  */
 public class LruCache implements Cache {
     //缓存代理
     private final Cache delegate;
+    //保护keyMap的锁
+    private final ReentrantLock evictionLock = new ReentrantLock();
+    //待回放的访问记录
+    private final ReadBuffer readBuffer = new ReadBuffer();
     //用于维护缓存key，该map具有LRU特性
     private Map<Object, Object> keyMap;
     //最久未使用key，最老key
@@ -55,32 +62,43 @@ public class LruCache implements Cache {
     }
 
     public void setSize(final int size) {
-        keyMap = new LinkedHashMap<Object, Object>(size, .75F, true) {
-            private static final long serialVersionUID = 4267176411845948333L;
-
-            @Override
-            protected boolean removeEldestEntry(Map.Entry<Object, Object> eldest) {
-                //当map的put或putAll方法调用时，会触发该方法
-                boolean tooBig = size() > size;
-                if (tooBig) {
-                    eldestKey = eldest.getKey();
+        evictionLock.lock();
+        try {
+            keyMap = new LinkedHashMap<Object, Object>(size, .75F, true) {
+                private static final long serialVersionUID = 4267176411845948333L;
+
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Object, Object> eldest) {
+                    //当map的put或putAll方法调用时，会触发该方法
+                    boolean tooBig = size() > size;
+                    if (tooBig) {
+                        eldestKey = eldest.getKey();
+                    }
+                    //返回true表明移除最老键值对；false不移除
+                    return tooBig;
                 }
-                //返回true表明移除最老键值对；false不移除
-                return tooBig;
-            }
-        };
+            };
+        } finally {
+            evictionLock.unlock();
+        }
     }
 
     @Override
     public void putObject(Object key, Object value) {
-        delegate.putObject(key, value);
-        cycleKeyList(key);
+        evictionLock.lock();
+        try {
+            delegate.putObject(key, value);
+            drainReadBuffer();
+            cycleKeyList(key);
+        } finally {
+            evictionLock.unlock();
+        }
     }
 
     @Override
     public Object getObject(Object key) {
         //更新被访问缓存的访问时间，使该元素放在队列中最不容易被淘汰的位置
-        keyMap.get(key); //touch
+        recordAccess(key); //touch
         return delegate.getObject(key);
     }
 
@@ -91,8 +109,14 @@ public class LruCache implements Cache {
 
     @Override
     public void clear() {
-        delegate.clear();
-        keyMap.clear();
+        evictionLock.lock();
+        try {
+            delegate.clear();
+            keyMap.clear();
+            readBuffer.clear();
+        } finally {
+            evictionLock.unlock();
+        }
     }
 
     @Override
@@ -100,6 +124,25 @@ public class LruCache implements Cache {
         return null;
     }
 
+    private void recordAccess(Object key) {
+        //锁被占用时不等待，由下一个拿到锁的线程回放
+        if (readBuffer.offer(key) && evictionLock.tryLock()) {
+            try {
+                drainReadBuffer();
+            } finally {
+                evictionLock.unlock();
+            }
+        }
+    }
+
+    //必须在evictionLock下调用
+    private void drainReadBuffer() {
+        Object key;
+        while ((key = readBuffer.poll()) != null) {
+            keyMap.get(key);
+        }
+    }
+
     private void cycleKeyList(Object key) {
         keyMap.put(key, key);
         if (eldestKey != null) {
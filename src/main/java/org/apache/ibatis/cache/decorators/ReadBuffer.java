@@ -0,0 +1,66 @@
+/**
+ *    Copyright 2009-2015 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache.decorators;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 淘汰策略装饰器共用的读缓冲区。
+ * 读取缓存时只把key放入缓冲区，不需要获取淘汰锁；积累到一定数量后，由拿到锁的线程批量回放到淘汰策略中。
+ * 缓冲区满时直接丢弃访问记录，只会让淘汰顺序略有偏差。
+ */
+class ReadBuffer {
+    //缓冲区容量
+    private static final int MAX_SIZE = 128;
+    //缓冲区中积累多少条记录后尝试回放
+    private static final int DRAIN_THRESHOLD = 32;
+
+    private final Queue<Object> buffer = new ConcurrentLinkedQueue<Object>();
+    private final AtomicInteger size = new AtomicInteger();
+
+    /**
+     * 记录一次访问
+     * @return 是否应该尝试回放
+     */
+    boolean offer(Object key) {
+        if (size.get() < MAX_SIZE) {
+            buffer.offer(key);
+            size.incrementAndGet();
+        }
+        return size.get() >= DRAIN_THRESHOLD;
+    }
+
+    /**
+     * 取出一条访问记录，必须在淘汰锁下调用
+     * @return 缓冲区为空时返回null
+     */
+    Object poll() {
+        Object key = buffer.poll();
+        if (key != null) {
+            size.decrementAndGet();
+        }
+        return key;
+    }
+
+    void clear() {
+        while (poll() != null) {
+            // drain
+        }
+    }
+
+}
@@ -33,7 +33,7 @@ public class ScheduledCache implements Cache {
     //清理时间间隔，毫秒
     protected long clearInterval;
     //最近一次清理时间，毫秒
-    protected long lastClear;
+    protected volatile long lastClear;
 
     public ScheduledCache(Cache delegate) {
         this.delegate = delegate;
@@ -15,18 +15,17 @@
  */
 package org.apache.ibatis.cache.decorators;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
 import java.io.ObjectStreamClass;
 import java.io.Serializable;
 import java.util.concurrent.locks.ReadWriteLock;
 
 import org.apache.ibatis.cache.Cache;
 import org.apache.ibatis.cache.CacheException;
+import org.apache.ibatis.cache.Serializer;
+import org.apache.ibatis.io.Resources;
 
 /**
  * @author Clinton Begin
@@ -35,16 +34,39 @@ import org.apache.ibatis.cache.CacheException;
  * 序列化缓存
  * 用途是先将对象序列化成2进制，再缓存,好处是将对象压缩了，省内存
  * 坏处是速度慢了
+ * 序列化方式可以通过&lt;property name="serializerType"&gt;替换，默认为Java标准序列化，
+ * 内置的CompactSerializer按属性序列化查询结果，速度更快、结果更小
  *
  */
 public class SerializedCache implements Cache {
     //缓存代理
     private Cache delegate;
+    //序列化方式
+    private Serializer serializer = new JavaSerializer();
 
     public SerializedCache(Cache delegate) {
         this.delegate = delegate;
     }
 
+    public Serializer getSerializer() {
+        return serializer;
+    }
+
+    public void setSerializer(Serializer serializer) {
+        this.serializer = serializer;
+    }
+
+    /**
+     * 通过类名配置Serializer，供&lt;property name="serializerType"&gt;使用
+     */
+    public void setSerializerType(String serializerType) {
+        try {
+            setSerializer((Serializer) Resources.classForName(serializerType).newInstance());
+        } catch (Exception e) {
+            throw new CacheException("Error creating serializer " + serializerType + ".  Cause: " + e, e);
+        }
+    }
+
     @Override
     public String getId() {
         return delegate.getId();
@@ -59,7 +81,7 @@ public class SerializedCache implements Cache {
     public void putObject(Object key, Object object) {
         //插入缓存时，不是插入内存对象，而是插入序列化过的二进制字节
         if (object == null || object instanceof Serializable) {
-            delegate.putObject(key, serialize((Serializable) object));
+            delegate.putObject(key, serializer.serialize(object));
         } else {
             throw new CacheException("SharedCache failed to make a copy of a non-serializable object: " + object);
         }
@@ -68,7 +90,7 @@ public class SerializedCache implements Cache {
     @Override
     public Object getObject(Object key) {
         Object object = delegate.getObject(key);
-        return object == null ? null : deserialize((byte[]) object);
+        return object == null ? null : serializer.deserialize((byte[]) object);
     }
 
     @Override
@@ -96,32 +118,6 @@ public class SerializedCache implements Cache {
         return delegate.equals(obj);
     }
 
-    private byte[] serialize(Serializable value) {
-        try {
-            ByteArrayOutputStream bos = new ByteArrayOutputStream();
-            ObjectOutputStream oos = new ObjectOutputStream(bos);
-            oos.writeObject(value);
-            oos.flush();
-            oos.close();
-            return bos.toByteArray();
-        } catch (Exception e) {
-            throw new CacheException("Error serializing object.  Cause: " + e, e);
-        }
-    }
-
-    private Serializable deserialize(byte[] value) {
-        Serializable result;
-        try {
-            ByteArrayInputStream bis = new ByteArrayInputStream(value);
-            ObjectInputStream ois = new CustomObjectInputStream(bis);
-            result = (Serializable) ois.readObject();
-            ois.close();
-        } catch (Exception e) {
-            throw new CacheException("Error deserializing object.  Cause: " + e, e);
-        }
-        return result;
-    }
-
     public static class CustomObjectInputStream extends ObjectInputStream {
 
         public CustomObjectInputStream(InputStream in) throws IOException {
@@ -130,8 +126,7 @@ public class SerializedCache implements Cache {
 
         @Override
         protected Class<?> resolveClass(ObjectStreamClass desc) throws IOException, ClassNotFoundException {
-            //TODO
-            return null;
+            return Resources.classForName(desc.getName());
         }
 
     }
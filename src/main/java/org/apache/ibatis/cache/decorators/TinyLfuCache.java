@@ -0,0 +1,252 @@
+/**
+ *    Copyright 2009-2015 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache.decorators;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.ibatis.cache.Cache;
+
+/**
+ * W-TinyLFU缓存装饰器（参考Caffeine的淘汰策略）。
+ * 1.新key先进入窗口区（容量的1%，LRU），用于容纳突发的新数据；
+ * 2.窗口区淘汰出的候选key进入主区的试用段，主区满时与试用段最老的key比较访问频率，频率高者留下；
+ * 3.试用段中再次被访问的key晋升到保护段（主区的80%），保护段满时最老的key降级回试用段。
+ * 只被访问一次的扫描型查询结果很难挤掉频繁访问的热点数据。
+ * 读取不加锁，访问记录写入读缓冲区，由拿到锁的线程批量回放，写入和清空在evictionLock下进行。
+ */
+public class TinyLfuCache implements Cache {
+    //窗口区占总容量的百分比
+    private static final int WINDOW_PERCENT = 1;
+    //保护段占主区的百分比
+    private static final int PROTECTED_PERCENT = 80;
+
+    //缓存代理
+    private final Cache delegate;
+    private final ReentrantLock evictionLock = new ReentrantLock();
+    private final ReadBuffer readBuffer = new ReadBuffer();
+    //三个区都只保存key，按访问顺序排列，第一个元素最老
+    private final LinkedHashMap<Object, Object> window = new LinkedHashMap<Object, Object>(16, .75F, true);
+    private final LinkedHashMap<Object, Object> probation = new LinkedHashMap<Object, Object>(16, .75F, true);
+    private final LinkedHashMap<Object, Object> protectedSegment = new LinkedHashMap<Object, Object>(16, .75F, true);
+    private FrequencySketch sketch;
+    private int windowMaximum;
+    private int mainMaximum;
+    private int protectedMaximum;
+    //命中率统计
+    private final LongAdder hitCount = new LongAdder();
+    private final LongAdder missCount = new LongAdder();
+    private final LongAdder evictionCount = new LongAdder();
+
+    public TinyLfuCache(Cache delegate) {
+        this.delegate = delegate;
+        setSize(1024);
+    }
+
+    @Override
+    public String getId() {
+        return delegate.getId();
+    }
+
+    @Override
+    public int getSize() {
+        return delegate.getSize();
+    }
+
+    public void setSize(int size) {
+        int maximum = Math.max(1, size);
+        evictionLock.lock();
+        try {
+            windowMaximum = Math.max(1, maximum * WINDOW_PERCENT / 100);
+            mainMaximum = maximum - windowMaximum;
+            protectedMaximum = mainMaximum * PROTECTED_PERCENT / 100;
+            sketch = new FrequencySketch(maximum);
+            evict();
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    @Override
+    public void putObject(Object key, Object value) {
+        evictionLock.lock();
+        try {
+            delegate.putObject(key, value);
+            drainReadBuffer();
+            if (value == null) {
+                //TransactionalCache为未命中的key写入null，不占用容量
+                removeKey(key);
+                return;
+            }
+            sketch.increment(key);
+            if (!onAccess(key)) {
+                window.put(key, key);
+                evict();
+            }
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    @Override
+    public Object getObject(Object key) {
+        Object value = delegate.getObject(key);
+        if (value == null) {
+            missCount.increment();
+        } else {
+            hitCount.increment();
+        }
+        //未命中也记录频率，随后的put才能和已有数据公平竞争
+        recordAccess(key);
+        return value;
+    }
+
+    @Override
+    public Object removeObject(Object key) {
+        evictionLock.lock();
+        try {
+            removeKey(key);
+            return delegate.removeObject(key);
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    @Override
+    public void clear() {
+        evictionLock.lock();
+        try {
+            delegate.clear();
+            window.clear();
+            probation.clear();
+            protectedSegment.clear();
+            sketch.clear();
+            readBuffer.clear();
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    @Override
+    public ReadWriteLock getReadWriteLock() {
+        return null;
+    }
+
+    public long getHitCount() {
+        return hitCount.sum();
+    }
+
+    public long getMissCount() {
+        return missCount.sum();
+    }
+
+    public long getEvictionCount() {
+        return evictionCount.sum();
+    }
+
+    /**
+     * 获取缓存的命中率
+     * @return 缓存命中率，尚未有请求时为0
+     */
+    public double getHitRatio() {
+        long hits = hitCount.sum();
+        long requests = hits + missCount.sum();
+        return requests == 0 ? 0 : (double) hits / (double) requests;
+    }
+
+    private void recordAccess(Object key) {
+        //锁被占用时不等待，由下一个拿到锁的线程回放
+        if (readBuffer.offer(key) && evictionLock.tryLock()) {
+            try {
+                drainReadBuffer();
+            } finally {
+                evictionLock.unlock();
+            }
+        }
+    }
+
+    //以下方法必须在evictionLock下调用
+    private void drainReadBuffer() {
+        Object key;
+        while ((key = readBuffer.poll()) != null) {
+            sketch.increment(key);
+            onAccess(key);
+        }
+    }
+
+    /**
+     * 更新已存在key的位置，试用段中的key晋升到保护段
+     * @return key是否已存在
+     */
+    private boolean onAccess(Object key) {
+        if (window.get(key) != null || protectedSegment.get(key) != null) {
+            return true;
+        }
+        if (probation.remove(key) != null) {
+            protectedSegment.put(key, key);
+            //保护段满时，最老的key降级回试用段
+            while (protectedSegment.size() > protectedMaximum) {
+                Object demoted = eldest(protectedSegment);
+                protectedSegment.remove(demoted);
+                probation.put(demoted, demoted);
+            }
+            return true;
+        }
+        return false;
+    }
+
+    private void evict() {
+        while (window.size() > windowMaximum) {
+            Object candidate = eldest(window);
+            window.remove(candidate);
+            probation.put(candidate, candidate);
+            if (probation.size() + protectedSegment.size() > mainMaximum) {
+                Object victim = eldest(probation);
+                //候选者访问频率更高时才淘汰试用段最老的key，否则淘汰候选者自己
+                if (victim != candidate && sketch.frequency(candidate) > sketch.frequency(victim)) {
+                    evictKey(victim);
+                } else {
+                    evictKey(candidate);
+                }
+            }
+        }
+        //缩小容量后主区仍然过大时，从试用段、保护段依次淘汰
+        while (probation.size() + protectedSegment.size() > mainMaximum) {
+            evictKey(eldest(probation.isEmpty() ? protectedSegment : probation));
+        }
+    }
+
+    private void evictKey(Object key) {
+        removeKey(key);
+        delegate.removeObject(key);
+        evictionCount.increment();
+    }
+
+    private void removeKey(Object key) {
+        if (window.remove(key) == null && probation.remove(key) == null) {
+            protectedSegment.remove(key);
+        }
+    }
+
+    private static Object eldest(LinkedHashMap<Object, Object> segment) {
+        Iterator<Object> iterator = segment.keySet().iterator();
+        return iterator.next();
+    }
+
+}
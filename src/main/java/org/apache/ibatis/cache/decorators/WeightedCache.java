@@ -0,0 +1,200 @@
+/**
+ *    Copyright 2009-2015 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache.decorators;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.ibatis.cache.Cache;
+import org.apache.ibatis.cache.CacheException;
+import org.apache.ibatis.cache.Weigher;
+import org.apache.ibatis.io.Resources;
+
+/**
+ * 按权重限制容量的LRU缓存装饰器。
+ * LruCache和FifoCache只限制条目数，而一个缓存的List可能有几万行，另一个只有一行；
+ * 这里由Weigher估算每个条目的权重（默认为结果行数），总权重超过maxWeight时按LRU顺序淘汰。
+ * 权重本身就超过maxWeight的条目不会被缓存。
+ * 通过&lt;cache eviction="WEIGHTED"&gt;启用，maxWeight和weigherType通过&lt;property&gt;配置。
+ * 读取不加锁，与LruCache相同，访问记录通过读缓冲区回放。
+ */
+public class WeightedCache implements Cache {
+
+    //缓存代理
+    private final Cache delegate;
+    private final ReentrantLock evictionLock = new ReentrantLock();
+    private final ReadBuffer readBuffer = new ReadBuffer();
+    //key到权重的映射，按访问顺序排列，第一个元素最久未使用
+    private final LinkedHashMap<Object, Long> weights = new LinkedHashMap<Object, Long>(16, .75F, true);
+    private Weigher weigher = new DefaultWeigher();
+    private volatile long maxWeight = 1024 * 1024;
+    //当前总权重，只在evictionLock下修改
+    private volatile long totalWeight;
+    private final LongAdder evictionCount = new LongAdder();
+
+    public WeightedCache(Cache delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public String getId() {
+        return delegate.getId();
+    }
+
+    @Override
+    public int getSize() {
+        return delegate.getSize();
+    }
+
+    public void setMaxWeight(long maxWeight) {
+        evictionLock.lock();
+        try {
+            this.maxWeight = maxWeight;
+            evict();
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    public long getMaxWeight() {
+        return maxWeight;
+    }
+
+    public void setWeigher(Weigher weigher) {
+        this.weigher = weigher;
+    }
+
+    /**
+     * 通过类名配置Weigher，供&lt;property name="weigherType"&gt;使用
+     */
+    public void setWeigherType(String weigherType) {
+        try {
+            setWeigher((Weigher) Resources.classForName(weigherType).newInstance());
+        } catch (Exception e) {
+            throw new CacheException("Error creating weigher " + weigherType + ".  Cause: " + e, e);
+        }
+    }
+
+    public long getWeightedSize() {
+        return totalWeight;
+    }
+
+    public long getEvictionCount() {
+        return evictionCount.sum();
+    }
+
+    @Override
+    public void putObject(Object key, Object value) {
+        evictionLock.lock();
+        try {
+            drainReadBuffer();
+            removeWeight(key);
+            if (value == null) {
+                //TransactionalCache为未命中的key写入null，不占用权重
+                delegate.putObject(key, null);
+                return;
+            }
+            long weight = weigher.weigh(key, value);
+            if (weight < 0) {
+                throw new CacheException("Weigher returned a negative weight " + weight + " for key " + key);
+            }
+            if (weight > maxWeight) {
+                //单个条目已经超过上限，不缓存
+                delegate.removeObject(key);
+                return;
+            }
+            delegate.putObject(key, value);
+            weights.put(key, weight);
+            totalWeight += weight;
+            evict();
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    @Override
+    public Object getObject(Object key) {
+        //锁被占用时不等待，由下一个拿到锁的线程回放
+        if (readBuffer.offer(key) && evictionLock.tryLock()) {
+            try {
+                drainReadBuffer();
+            } finally {
+                evictionLock.unlock();
+            }
+        }
+        return delegate.getObject(key);
+    }
+
+    @Override
+    public Object removeObject(Object key) {
+        evictionLock.lock();
+        try {
+            removeWeight(key);
+            return delegate.removeObject(key);
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    @Override
+    public void clear() {
+        evictionLock.lock();
+        try {
+            delegate.clear();
+            weights.clear();
+            totalWeight = 0;
+            readBuffer.clear();
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    @Override
+    public ReadWriteLock getReadWriteLock() {
+        return null;
+    }
+
+    //以下方法必须在evictionLock下调用
+    private void drainReadBuffer() {
+        Object key;
+        while ((key = readBuffer.poll()) != null) {
+            weights.get(key);
+        }
+    }
+
+    private void removeWeight(Object key) {
+        Long weight = weights.remove(key);
+        if (weight != null) {
+            totalWeight -= weight;
+        }
+    }
+
+    private void evict() {
+        Iterator<Map.Entry<Object, Long>> iterator = weights.entrySet().iterator();
+        while (totalWeight > maxWeight && iterator.hasNext()) {
+            Map.Entry<Object, Long> eldest = iterator.next();
+            iterator.remove();
+            totalWeight -= eldest.getValue();
+            delegate.removeObject(eldest.getKey());
+            evictionCount.increment();
+        }
+    }
+
+}
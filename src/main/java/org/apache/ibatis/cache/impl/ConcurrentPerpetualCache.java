@@ -0,0 +1,104 @@
+/**
+ *    Copyright 2009-2015 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache.impl;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.ReadWriteLock;
+
+import org.apache.ibatis.cache.Cache;
+import org.apache.ibatis.cache.CacheException;
+
+/**
+ * 并发永久缓存，底层使用ConcurrentHashMap，读取不需要加锁。
+ * 以它为基础缓存、且装饰器都是线程安全的时候，CacheBuilder不再包装SynchronizedCache。
+ * ConcurrentHashMap不允许null值，TransactionalCache为未命中的key写入的null按删除处理，两者读取的结果相同。
+ */
+public class ConcurrentPerpetualCache implements Cache {
+
+    //缓存id
+    private final String id;
+
+    private final ConcurrentMap<Object, Object> cache = new ConcurrentHashMap<Object, Object>();
+
+    public ConcurrentPerpetualCache(String id) {
+        this.id = id;
+    }
+
+    @Override
+    public String getId() {
+        return id;
+    }
+
+    @Override
+    public int getSize() {
+        return cache.size();
+    }
+
+    @Override
+    public void putObject(Object key, Object value) {
+        if (value == null) {
+            cache.remove(key);
+        } else {
+            cache.put(key, value);
+        }
+    }
+
+    @Override
+    public Object getObject(Object key) {
+        return cache.get(key);
+    }
+
+    @Override
+    public Object removeObject(Object key) {
+        return cache.remove(key);
+    }
+
+    @Override
+    public void clear() {
+        cache.clear();
+    }
+
+    @Override
+    public ReadWriteLock getReadWriteLock() {
+        return null;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (getId() == null) {
+            throw new CacheException("Cache instances require an ID.");
+        }
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof Cache)) {
+            return false;
+        }
+
+        Cache otherCache = (Cache) o;
+        return getId().equals(otherCache.getId());
+    }
+
+    @Override
+    public int hashCode() {
+        if (getId() == null) {
+            throw new CacheException("Cache instances require an ID.");
+        }
+        return getId().hashCode();
+    }
+
+}
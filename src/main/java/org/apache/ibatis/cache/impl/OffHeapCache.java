@@ -0,0 +1,442 @@
+/**
+ *    Copyright 2009-2015 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache.impl;
+
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.ibatis.cache.Cache;
+import org.apache.ibatis.cache.CacheException;
+import org.apache.ibatis.cache.Serializer;
+import org.apache.ibatis.cache.decorators.JavaSerializer;
+import org.apache.ibatis.io.Resources;
+
+/**
+ * 堆外缓存，值序列化后保存在直接内存（DirectByteBuffer）中，不占用Java堆，缓存再大也不会增加GC停顿。
+ * 1.内存按slab（默认1MB）向操作系统申请，总量不超过maxMemory，申请后不再归还，clear()后复用；
+ * 2.每个slab属于一个大小级别（64字节起按2倍递增，最大为slabSize），切分为等长的块，一个值占用一个块；
+ * 3.每个大小级别各自维护LRU链表，没有空闲块且不能再申请slab时，淘汰本级别最久未使用的值；
+ *   本级别还没有任何slab时，从拥有slab最多的级别回收一个slab（淘汰其上全部的值）转给本级别。
+ * 只有值在堆外，key和索引仍在堆内。超过slabSize的值不缓存。
+ * 读写都会复制数据，效果等同于readWrite缓存；它是自定义实现，CacheBuilder只为它包装LoggingCache，
+ * 因此自身用一把锁保证线程安全，序列化和反序列化在锁外进行。
+ * 序列化方式与SerializedCache相同，可以通过serializerType属性替换。
+ * 直接内存的上限由-XX:MaxDirectMemorySize控制，maxMemory应小于该值。
+ */
+public class OffHeapCache implements Cache {
+
+    private static final int MIN_CHUNK_SIZE = 64;
+
+    //缓存id
+    private final String id;
+    //堆外内存上限，默认64MB
+    private long maxMemory = 64L * 1024 * 1024;
+    //每次申请的内存大小，也是单个值的上限，默认1MB
+    private int slabSize = 1024 * 1024;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Map<Object, Entry> index = new HashMap<Object, Entry>();
+    private final List<Slab> slabs = new ArrayList<Slab>();
+    private SizeClass[] sizeClasses;
+    private long evictionCount;
+    //序列化方式
+    private Serializer serializer = new JavaSerializer();
+
+    public OffHeapCache(String id) {
+        this.id = id;
+    }
+
+    @Override
+    public String getId() {
+        return id;
+    }
+
+    @Override
+    public int getSize() {
+        lock.lock();
+        try {
+            return index.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void putObject(Object key, Object value) {
+        if (value == null) {
+            //TransactionalCache为未命中的key写入null，按删除处理
+            removeObject(key);
+            return;
+        }
+        if (!(value instanceof Serializable)) {
+            throw new CacheException("OffHeapCache failed to store a non-serializable object: " + value);
+        }
+        byte[] bytes = serializer.serialize(value);
+        lock.lock();
+        try {
+            Entry old = index.remove(key);
+            if (old != null) {
+                release(old);
+            }
+            if (bytes.length > slabSize) {
+                return;
+            }
+            SizeClass sizeClass = sizeClassFor(bytes.length);
+            Slab slab = allocate(sizeClass);
+            if (slab == null) {
+                return;
+            }
+            int chunk = slab.popFreeChunk();
+            if (!slab.hasFreeChunk()) {
+                sizeClass.partialSlabs.remove(slab);
+            }
+            ByteBuffer buffer = slab.buffer;
+            buffer.clear();
+            buffer.position(chunk * sizeClass.chunkSize);
+            buffer.put(bytes);
+            Entry entry = new Entry(key, slab, chunk, bytes.length);
+            slab.entries[chunk] = entry;
+            sizeClass.linkFirst(entry);
+            index.put(key, entry);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Object getObject(Object key) {
+        byte[] bytes;
+        lock.lock();
+        try {
+            Entry entry = index.get(key);
+            if (entry == null) {
+                return null;
+            }
+            SizeClass sizeClass = entry.slab.sizeClass;
+            sizeClass.unlink(entry);
+            sizeClass.linkFirst(entry);
+            bytes = new byte[entry.length];
+            ByteBuffer buffer = entry.slab.buffer;
+            buffer.clear();
+            buffer.position(entry.chunk * sizeClass.chunkSize);
+            buffer.get(bytes);
+        } finally {
+            lock.unlock();
+        }
+        return serializer.deserialize(bytes);
+    }
+
+    @Override
+    public Object removeObject(Object key) {
+        lock.lock();
+        try {
+            Entry entry = index.remove(key);
+            if (entry != null) {
+                release(entry);
+            }
+            return null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void clear() {
+        lock.lock();
+        try {
+            //保留已申请的slab，之后直接复用
+            for (Entry entry : new ArrayList<Entry>(index.values())) {
+                release(entry);
+            }
+            index.clear();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public ReadWriteLock getReadWriteLock() {
+        return null;
+    }
+
+    /**
+     * 为大小级别找到一个有空闲块的slab，必要时申请新slab、淘汰本级别的值或者从其他级别回收slab
+     */
+    private Slab allocate(SizeClass sizeClass) {
+        Slab slab = sizeClass.partialSlabs.peekFirst();
+        if (slab != null) {
+            return slab;
+        }
+        if ((long) (slabs.size() + 1) * slabSize <= maxMemory) {
+            slab = new Slab(ByteBuffer.allocateDirect(slabSize));
+            slabs.add(slab);
+            assign(slab, sizeClass);
+            return slab;
+        }
+        if (sizeClass.tail != null) {
+            evict(sizeClass.tail);
+            return sizeClass.partialSlabs.peekFirst();
+        }
+        SizeClass victim = null;
+        for (SizeClass candidate : sizeClasses) {
+            if (candidate != sizeClass && candidate.slabCount > 0 && (victim == null || candidate.slabCount > victim.slabCount)) {
+                victim = candidate;
+            }
+        }
+        if (victim == null) {
+            return null;
+        }
+        //回收最久未使用的值所在的slab，没有值时任取一个
+        slab = victim.tail != null ? victim.tail.slab : victim.partialSlabs.peekFirst();
+        for (Entry entry : slab.entries) {
+            if (entry != null) {
+                evict(entry);
+            }
+        }
+        victim.partialSlabs.remove(slab);
+        victim.slabCount--;
+        assign(slab, sizeClass);
+        return slab;
+    }
+
+    private void assign(Slab slab, SizeClass sizeClass) {
+        slab.sizeClass = sizeClass;
+        slab.entries = new Entry[slabSize / sizeClass.chunkSize];
+        slab.freeChunks = new int[slab.entries.length];
+        slab.freeCount = 0;
+        for (int i = slab.entries.length - 1; i >= 0; i--) {
+            slab.freeChunks[slab.freeCount++] = i;
+        }
+        sizeClass.slabCount++;
+        sizeClass.partialSlabs.addFirst(slab);
+    }
+
+    private void evict(Entry entry) {
+        index.remove(entry.key);
+        release(entry);
+        evictionCount++;
+    }
+
+    /**
+     * 释放值占用的块，调用前需已从索引中移除
+     */
+    private void release(Entry entry) {
+        Slab slab = entry.slab;
+        slab.sizeClass.unlink(entry);
+        slab.entries[entry.chunk] = null;
+        if (!slab.hasFreeChunk()) {
+            slab.sizeClass.partialSlabs.addFirst(slab);
+        }
+        slab.freeChunks[slab.freeCount++] = entry.chunk;
+    }
+
+    private SizeClass sizeClassFor(int length) {
+        if (sizeClasses == null) {
+            //在第一次写入时创建，此时所有属性都已设置
+            List<SizeClass> classes = new ArrayList<SizeClass>();
+            for (int chunkSize = MIN_CHUNK_SIZE; chunkSize < slabSize; chunkSize <<= 1) {
+                classes.add(new SizeClass(chunkSize));
+            }
+            classes.add(new SizeClass(slabSize));
+            sizeClasses = classes.toArray(new SizeClass[classes.size()]);
+        }
+        for (SizeClass sizeClass : sizeClasses) {
+            if (length <= sizeClass.chunkSize) {
+                return sizeClass;
+            }
+        }
+        throw new IllegalStateException("No size class for " + length + " bytes");
+    }
+
+    public long getMaxMemory() {
+        return maxMemory;
+    }
+
+    public void setMaxMemory(long maxMemory) {
+        this.maxMemory = maxMemory;
+    }
+
+    public int getSlabSize() {
+        return slabSize;
+    }
+
+    public void setSlabSize(int slabSize) {
+        if (sizeClasses != null) {
+            throw new IllegalStateException("slabSize cannot be changed after the cache has been used");
+        }
+        if (slabSize < MIN_CHUNK_SIZE) {
+            throw new IllegalArgumentException("slabSize must be at least " + MIN_CHUNK_SIZE);
+        }
+        this.slabSize = slabSize;
+    }
+
+    public Serializer getSerializer() {
+        return serializer;
+    }
+
+    public void setSerializer(Serializer serializer) {
+        this.serializer = serializer;
+    }
+
+    /**
+     * 通过类名配置Serializer，供&lt;property name="serializerType"&gt;使用
+     */
+    public void setSerializerType(String serializerType) {
+        try {
+            setSerializer((Serializer) Resources.classForName(serializerType).newInstance());
+        } catch (Exception e) {
+            throw new CacheException("Error creating serializer " + serializerType + ".  Cause: " + e, e);
+        }
+    }
+
+    /**
+     * 已申请的堆外内存字节数
+     */
+    public long getAllocatedMemory() {
+        lock.lock();
+        try {
+            return (long) slabs.size() * slabSize;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getEvictionCount() {
+        lock.lock();
+        try {
+            return evictionCount;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (getId() == null) {
+            throw new CacheException("Cache instances require an ID.");
+        }
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof Cache)) {
+            return false;
+        }
+
+        Cache otherCache = (Cache) o;
+        return getId().equals(otherCache.getId());
+    }
+
+    @Override
+    public int hashCode() {
+        if (getId() == null) {
+            throw new CacheException("Cache instances require an ID.");
+        }
+        return getId().hashCode();
+    }
+
+    /**
+     * 一个大小级别，所有块等长，值按LRU顺序链接
+     */
+    private static class SizeClass {
+        private final int chunkSize;
+        //还有空闲块的slab
+        private final ArrayDeque<Slab> partialSlabs = new ArrayDeque<Slab>();
+        private int slabCount;
+        private Entry head;
+        private Entry tail;
+
+        SizeClass(int chunkSize) {
+            this.chunkSize = chunkSize;
+        }
+
+        void linkFirst(Entry entry) {
+            entry.prev = null;
+            entry.next = head;
+            if (head != null) {
+                head.prev = entry;
+            } else {
+                tail = entry;
+            }
+            head = entry;
+        }
+
+        void unlink(Entry entry) {
+            if (entry.prev != null) {
+                entry.prev.next = entry.next;
+            } else {
+                head = entry.next;
+            }
+            if (entry.next != null) {
+                entry.next.prev = entry.prev;
+            } else {
+                tail = entry.prev;
+            }
+            entry.prev = null;
+            entry.next = null;
+        }
+    }
+
+    /**
+     * 一块堆外内存，分配给某个大小级别后切分为等长的块
+     */
+    private static class Slab {
+        private final ByteBuffer buffer;
+        private SizeClass sizeClass;
+        //每个块上保存的值，回收slab时据此淘汰
+        private Entry[] entries;
+        private int[] freeChunks;
+        private int freeCount;
+
+        Slab(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        boolean hasFreeChunk() {
+            return freeCount > 0;
+        }
+
+        int popFreeChunk() {
+            return freeChunks[--freeCount];
+        }
+    }
+
+    /**
+     * 堆内的索引条目，记录值所在的位置
+     */
+    private static class Entry {
+        private final Object key;
+        private final Slab slab;
+        private final int chunk;
+        private final int length;
+        private Entry prev;
+        private Entry next;
+
+        Entry(Object key, Slab slab, int chunk, int length) {
+            this.key = key;
+            this.slab = slab;
+            this.chunk = chunk;
+            this.length = length;
+        }
+    }
+
+}
@@ -0,0 +1,268 @@
+/**
+ *    Copyright 2009-2016 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cursor.defaults;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import org.apache.ibatis.cursor.Cursor;
+import org.apache.ibatis.executor.resultset.DefaultResultSetHandler;
+import org.apache.ibatis.executor.resultset.ResultSetWrapper;
+import org.apache.ibatis.mapping.ResultMap;
+import org.apache.ibatis.session.ResultContext;
+import org.apache.ibatis.session.ResultHandler;
+import org.apache.ibatis.session.RowBounds;
+
+/**
+ * This is the default implementation of a MyBatis Cursor.
+ * This implementation is not thread safe.
+ *
+ * @author Guillaume Darmont / guillaume@dropinocean.com
+ */
+
+/**
+ * 默认的游标实现，非线程安全。
+ * 每次迭代只从结果集中映射出一个对象：DefaultResultSetHandler.handleRowValues映射出一个对象后就停止，
+ * 下一次迭代从当前行继续，resultOrdered的嵌套结果映射由handleRowValues保存的上一个对象衔接。
+ * RowBounds的offset用ResultSet.next()跳过，简单结果映射跳过的行不做映射；
+ * 取满limit、读完结果集、映射出错或者调用close()时，立即关闭ResultSet，
+ * 由执行器设置了closeOnCompletion的Statement随之关闭。
+ */
+public class DefaultCursor<T> implements Cursor<T> {
+
+    // ResultSetHandler stuff
+    private final DefaultResultSetHandler resultSetHandler;
+    private final ResultMap resultMap;
+    private final ResultSetWrapper rsw;
+    private final RowBounds rowBounds;
+    private final ObjectWrapperResultHandler<T> objectWrapperResultHandler = new ObjectWrapperResultHandler<T>();
+
+    private final CursorIterator cursorIterator = new CursorIterator();
+    private boolean iteratorRetrieved;
+
+    private CursorStatus status = CursorStatus.CREATED;
+    private int indexWithRowBound = -1;
+
+    private enum CursorStatus {
+
+        /**
+         * A freshly created cursor, database ResultSet consuming has not started
+         */
+        CREATED,
+        /**
+         * A cursor currently in use, database ResultSet consuming has started
+         */
+        OPEN,
+        /**
+         * A closed cursor, not fully consumed
+         */
+        CLOSED,
+        /**
+         * A fully consumed cursor, a consumed cursor is always closed
+         */
+        CONSUMED
+    }
+
+    public DefaultCursor(DefaultResultSetHandler resultSetHandler, ResultMap resultMap, ResultSetWrapper rsw, RowBounds rowBounds) {
+        this.resultSetHandler = resultSetHandler;
+        this.resultMap = resultMap;
+        this.rsw = rsw;
+        this.rowBounds = rowBounds;
+    }
+
+    @Override
+    public boolean isOpen() {
+        return status == CursorStatus.OPEN;
+    }
+
+    @Override
+    public boolean isConsumed() {
+        return status == CursorStatus.CONSUMED;
+    }
+
+    @Override
+    public int getCurrentIndex() {
+        return rowBounds.getOffset() + cursorIterator.iteratorIndex;
+    }
+
+    @Override
+    public Iterator<T> iterator() {
+        if (iteratorRetrieved) {
+            throw new IllegalStateException("Cannot open more than one iterator on a Cursor");
+        }
+        iteratorRetrieved = true;
+        return cursorIterator;
+    }
+
+    @Override
+    public void close() {
+        if (isClosed()) {
+            return;
+        }
+        closeResultSet();
+        status = CursorStatus.CLOSED;
+    }
+
+    protected T fetchNextUsingRowBound() {
+        if (indexWithRowBound < 0) {
+            skipOffset();
+        }
+        if (isClosed() || indexWithRowBound - rowBounds.getOffset() >= rowBounds.getLimit()) {
+            //取满limit后不再读取
+            finish();
+            return null;
+        }
+        T result = fetchNextObjectFromDatabase();
+        if (result != null) {
+            indexWithRowBound++;
+        }
+        return result;
+    }
+
+    protected T fetchNextObjectFromDatabase() {
+        if (isClosed()) {
+            return null;
+        }
+        try {
+            status = CursorStatus.OPEN;
+            resultSetHandler.handleRowValues(rsw, resultMap, objectWrapperResultHandler, RowBounds.DEFAULT, null);
+        } catch (SQLException e) {
+            close();
+            throw new RuntimeException(e);
+        } catch (RuntimeException e) {
+            close();
+            throw e;
+        }
+
+        T next = objectWrapperResultHandler.result;
+        objectWrapperResultHandler.result = null;
+        if (next == null) {
+            finish();
+        }
+        return next;
+    }
+
+    /**
+     * 跳过offset：简单结果映射一行就是一个对象，直接移动结果集；嵌套结果映射需要映射出对象才能计数
+     */
+    private void skipOffset() {
+        indexWithRowBound = 0;
+        if (resultMap.hasNestedResultMaps()) {
+            while (indexWithRowBound < rowBounds.getOffset() && fetchNextObjectFromDatabase() != null) {
+                indexWithRowBound++;
+            }
+            return;
+        }
+        try {
+            final ResultSet rs = rsw.getResultSet();
+            while (indexWithRowBound < rowBounds.getOffset()) {
+                if (!rs.next()) {
+                    finish();
+                    return;
+                }
+                indexWithRowBound++;
+            }
+        } catch (SQLException e) {
+            close();
+            throw new RuntimeException(e);
+        }
+    }
+
+    private void finish() {
+        if (!isClosed()) {
+            closeResultSet();
+            status = CursorStatus.CONSUMED;
+        }
+    }
+
+    private void closeResultSet() {
+        ResultSet rs = rsw.getResultSet();
+        try {
+            if (rs != null) {
+                Statement statement = rs.getStatement();
+                rs.close();
+                //closeOnCompletion的Statement应当由驱动随最后一个结果集关闭，没有关闭时在这里关闭
+                if (statement != null && !statement.isClosed() && statement.isCloseOnCompletion()) {
+                    statement.close();
+                }
+            }
+        } catch (SQLException e) {
+            // ignore
+        }
+    }
+
+    private boolean isClosed() {
+        return status == CursorStatus.CLOSED || status == CursorStatus.CONSUMED;
+    }
+
+    private static class ObjectWrapperResultHandler<T> implements ResultHandler<T> {
+
+        private T result;
+
+        @Override
+        public void handleResult(ResultContext<? extends T> context) {
+            this.result = context.getResultObject();
+            context.stop();
+        }
+    }
+
+    private class CursorIterator implements Iterator<T> {
+
+        /**
+         * Holder for the next object to be returned
+         */
+        T object;
+
+        /**
+         * Index of objects returned using next(), and as such, visible to users.
+         */
+        int iteratorIndex = -1;
+
+        @Override
+        public boolean hasNext() {
+            if (object == null) {
+                object = fetchNextUsingRowBound();
+            }
+            return object != null;
+        }
+
+        @Override
+        public T next() {
+            // Fill next with object fetched from hasNext()
+            T next = object;
+
+            if (next == null) {
+                next = fetchNextUsingRowBound();
+            }
+
+            if (next != null) {
+                object = null;
+                iteratorIndex++;
+                return next;
+            }
+            throw new NoSuchElementException();
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException("Cannot remove element from Cursor");
+        }
+    }
+
+}
@@ -0,0 +1,175 @@
+/**
+ *    Copyright 2009-2015 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.datasource.pooled;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 无锁的连接容器（思路来自HikariCP的ConcurrentBag）。
+ * 1.所有条目保存在CopyOnWriteArrayList中，借出与归还只对条目状态做CAS；
+ * 2.线程优先借出自己最近归还的条目（线程亲和），减少线程间的竞争；
+ * 3.没有空闲条目时，借出线程在SynchronousQueue上等待，归还线程直接把条目移交给等待者。
+ */
+class ConcurrentBag {
+
+    //每个线程最多记住的最近归还条目数
+    private static final int MAX_THREAD_LOCAL_ENTRIES = 16;
+
+    private final CopyOnWriteArrayList<PoolEntry> sharedList = new CopyOnWriteArrayList<PoolEntry>();
+    private final ThreadLocal<List<WeakReference<PoolEntry>>> threadList = new ThreadLocal<List<WeakReference<PoolEntry>>>() {
+        @Override
+        protected List<WeakReference<PoolEntry>> initialValue() {
+            return new ArrayList<WeakReference<PoolEntry>>(MAX_THREAD_LOCAL_ENTRIES);
+        }
+    };
+    //公平模式，先等待的线程先拿到移交的条目
+    private final SynchronousQueue<PoolEntry> handoffQueue = new SynchronousQueue<PoolEntry>(true);
+    //正在借出的线程数，归还线程据此决定是否需要移交
+    private final AtomicInteger waiters = new AtomicInteger();
+
+    /**
+     * 借出一个空闲条目，timeout小于等于0时不等待
+     *
+     * @return 借到的条目，超时则返回null
+     */
+    PoolEntry borrow(long timeout, TimeUnit unit) throws InterruptedException {
+        //先从本线程归还过的条目中查找，从后往前，最近归还的最可能仍然空闲
+        List<WeakReference<PoolEntry>> list = threadList.get();
+        for (int i = list.size() - 1; i >= 0; i--) {
+            PoolEntry entry = list.remove(i).get();
+            if (entry != null && entry.compareAndSetState(PoolEntry.STATE_NOT_IN_USE, PoolEntry.STATE_IN_USE)) {
+                return entry;
+            }
+        }
+
+        waiters.incrementAndGet();
+        try {
+            //再扫描全部条目
+            for (PoolEntry entry : sharedList) {
+                if (entry.compareAndSetState(PoolEntry.STATE_NOT_IN_USE, PoolEntry.STATE_IN_USE)) {
+                    return entry;
+                }
+            }
+            //最后等待其他线程移交
+            long remaining = unit.toNanos(timeout);
+            while (remaining > 0) {
+                long start = System.nanoTime();
+                PoolEntry entry = handoffQueue.poll(remaining, TimeUnit.NANOSECONDS);
+                if (entry == null || entry.compareAndSetState(PoolEntry.STATE_NOT_IN_USE, PoolEntry.STATE_IN_USE)) {
+                    return entry;
+                }
+                remaining -= System.nanoTime() - start;
+            }
+            return null;
+        } finally {
+            waiters.decrementAndGet();
+        }
+    }
+
+    /**
+     * 归还条目，有线程在等待时优先直接移交
+     */
+    void requite(PoolEntry entry) {
+        entry.setState(PoolEntry.STATE_NOT_IN_USE);
+        for (int i = 0; waiters.get() > 0; i++) {
+            //条目已被扫描的线程借走，或者成功移交，都可以结束
+            if (entry.getState() != PoolEntry.STATE_NOT_IN_USE || handoffQueue.offer(entry)) {
+                return;
+            } else if ((i & 0xff) == 0xff) {
+                LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(10));
+            } else {
+                Thread.yield();
+            }
+        }
+        List<WeakReference<PoolEntry>> list = threadList.get();
+        if (list.size() < MAX_THREAD_LOCAL_ENTRIES) {
+            list.add(new WeakReference<PoolEntry>(entry));
+        }
+    }
+
+    /**
+     * 加入一个新条目，新条目的初始状态由调用者决定（新建后直接借出时为IN_USE）
+     */
+    void add(PoolEntry entry) {
+        sharedList.add(entry);
+        //有等待者时尝试移交空闲的新条目
+        while (waiters.get() > 0 && entry.getState() == PoolEntry.STATE_NOT_IN_USE && !handoffQueue.offer(entry)) {
+            Thread.yield();
+        }
+    }
+
+    /**
+     * 从容器中删除条目，只有借出中或预留中的条目才能被删除
+     */
+    boolean remove(PoolEntry entry) {
+        if (!entry.compareAndSetState(PoolEntry.STATE_IN_USE, PoolEntry.STATE_REMOVED)
+                && !entry.compareAndSetState(PoolEntry.STATE_RESERVED, PoolEntry.STATE_REMOVED)) {
+            return false;
+        }
+        return sharedList.remove(entry);
+    }
+
+    /**
+     * 预留一个空闲条目，使其不能被借出，用于关闭连接等维护操作
+     */
+    boolean reserve(PoolEntry entry) {
+        return entry.compareAndSetState(PoolEntry.STATE_NOT_IN_USE, PoolEntry.STATE_RESERVED);
+    }
+
+    /**
+     * 取消预留，条目重新变为空闲，有线程在等待时直接移交
+     */
+    void unreserve(PoolEntry entry) {
+        if (entry.compareAndSetState(PoolEntry.STATE_RESERVED, PoolEntry.STATE_NOT_IN_USE)) {
+            while (waiters.get() > 0 && entry.getState() == PoolEntry.STATE_NOT_IN_USE && !handoffQueue.offer(entry)) {
+                Thread.yield();
+            }
+        }
+    }
+
+    /**
+     * 当前所有条目的快照
+     */
+    List<PoolEntry> values() {
+        return new ArrayList<PoolEntry>(sharedList);
+    }
+
+    int getCount(int state) {
+        int count = 0;
+        for (PoolEntry entry : sharedList) {
+            if (entry.getState() == state) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    int size() {
+        return sharedList.size();
+    }
+
+    int getWaitingThreadCount() {
+        return waiters.get();
+    }
+
+}
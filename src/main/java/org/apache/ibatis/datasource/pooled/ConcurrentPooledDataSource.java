@@ -0,0 +1,354 @@
+/**
+ *    Copyright 2009-2015 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.datasource.pooled;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.ibatis.datasource.unpooled.UnpooledDataSource;
+import org.apache.ibatis.logging.Log;
+import org.apache.ibatis.logging.LogFactory;
+
+/**
+ * 无全局锁的池化数据源。
+ * 配置项和PooledDataSource完全相同，区别在于连接保存在ConcurrentBag中：
+ * 借出和归还只对条目做CAS，没有空闲连接时通过移交队列等待，而不是在PoolState上wait/notifyAll。
+ * 通过PooledDataSourceFactory的poolType=CONCURRENT属性启用。
+ */
+public class ConcurrentPooledDataSource extends PooledDataSource {
+
+    private static final Log log = LogFactory.getLog(ConcurrentPooledDataSource.class);
+
+    private final ConcurrentBag bag = new ConcurrentBag();
+    //已创建的真实连接总数，包括借出和空闲的
+    private final AtomicInteger totalConnections = new AtomicInteger();
+
+    public ConcurrentPooledDataSource() {
+        super();
+    }
+
+    public ConcurrentPooledDataSource(UnpooledDataSource dataSource) {
+        super(dataSource);
+    }
+
+    public ConcurrentPooledDataSource(String driver, String url, String username, String password) {
+        super(driver, url, username, password);
+    }
+
+    public ConcurrentPooledDataSource(String driver, String url, Properties driverProperties) {
+        super(driver, url, driverProperties);
+    }
+
+    public ConcurrentPooledDataSource(ClassLoader driverClassLoader, String driver, String url, String username, String password) {
+        super(driverClassLoader, driver, url, username, password);
+    }
+
+    public ConcurrentPooledDataSource(ClassLoader driverClassLoader, String driver, String url, Properties driverProperties) {
+        super(driverClassLoader, driver, url, driverProperties);
+    }
+
+    @Override
+    protected PoolState createPoolState() {
+        return new ConcurrentPoolState(this);
+    }
+
+    ConcurrentBag getBag() {
+        return bag;
+    }
+
+    @Override
+    public void forceCloseAll() {
+        //父类负责重新计算expectedConnectionTypeCode
+        super.forceCloseAll();
+        if (bag == null) {
+            //父类构造期间调用时，bag尚未初始化
+            return;
+        }
+        for (PoolEntry entry : bag.values()) {
+            PooledConnection owner = entry.getOwner();
+            if (owner != null) {
+                owner.invalidate();
+            }
+            if (bag.reserve(entry) || entry.getState() == PoolEntry.STATE_IN_USE) {
+                closeEntry(entry);
+            }
+        }
+    }
+
+    @Override
+    protected void pushConnection(PooledConnection conn) throws SQLException {
+        PoolEntry entry = conn.getPoolEntry();
+        PoolState state = getPoolState();
+        //只有当前持有者才能归还，重复close或者已被回收的超时连接都会失败
+        if (entry == null || !conn.isValid() || !entry.compareAndSetOwner(conn, null)) {
+            if (log.isDebugEnabled()) {
+                log.debug("A bad connection (" + conn.getRealHashCode() + ") attempted to return to the pool, discarding connection.");
+            }
+            state.badConnectionCount.increment();
+            return;
+        }
+        long checkoutTime = conn.getCheckoutTime();
+        state.recordCheckoutTime(checkoutTime);
+        entry.setLastUsedTimestamp(conn.getLastUsedTimestamp());
+        conn.invalidate();
+        Connection realConn = entry.getRealConnection();
+        //已放弃所有权，回滚失败时条目既不能借出也不会被回收，必须关闭以释放名额
+        boolean returned = false;
+        try {
+            if (bag.getCount(PoolEntry.STATE_NOT_IN_USE) < poolMaximumIdleConnections && conn.getConnectionTypeCode() == expectedConnectionTypeCode) {
+                //池化
+                if (!realConn.getAutoCommit()) {
+                    realConn.rollback();
+                }
+                if (log.isDebugEnabled()) {
+                    log.debug("Returned connection " + entry.getRealHashCode() + " to pool.");
+                }
+                bag.requite(entry);
+            } else {
+                //池中空闲连接足够，直接关闭
+                closeEntry(entry);
+                if (log.isDebugEnabled()) {
+                    log.debug("Closed connection " + entry.getRealHashCode() + ".");
+                }
+            }
+            returned = true;
+        } finally {
+            if (!returned) {
+                state.badConnectionCount.increment();
+                closeEntry(entry);
+            }
+        }
+    }
+
+    @Override
+    protected PooledConnection popConnection(String username, String password) throws SQLException {
+        boolean countedWait = false;
+        PooledConnection conn = null;
+        long t = System.currentTimeMillis();
+        int localBadConnectionCount = 0;
+        PoolState state = getPoolState();
+
+        while (conn == null) {
+            PoolEntry entry;
+            try {
+                entry = bag.borrow(0, TimeUnit.MILLISECONDS);
+                if (entry == null) {
+                    entry = createEntry(PoolEntry.STATE_IN_USE);
+                }
+                if (entry == null) {
+                    conn = claimOverdueConnection();
+                    if (conn != null) {
+                        entry = conn.getPoolEntry();
+                    }
+                }
+                if (entry == null) {
+                    //没空闲、不能新建、没有超时连接，则等待其他线程移交
+                    if (!countedWait) {
+                        state.hadToWaitCount.increment();
+                        countedWait = true;
+                    }
+                    if (log.isDebugEnabled()) {
+                        log.debug("Waiting as long as " + poolTimeToWait + " milliseconds for connection.");
+                    }
+                    long wt = System.currentTimeMillis();
+                    entry = bag.borrow(poolTimeToWait, TimeUnit.MILLISECONDS);
+                    long waited = System.currentTimeMillis() - wt;
+                    state.recordWaitTime(waited);
+                    if (entry == null) {
+                        continue;
+                    }
+                }
+            } catch (InterruptedException e) {
+                break;
+            }
+
+            if (conn == null) {
+                conn = new PooledConnection(entry.getRealConnection(), this);
+                conn.setPoolEntry(entry);
+                conn.setCreatedTimestamp(entry.getCreatedTimestamp());
+                conn.setLastUsedTimestamp(entry.getLastUsedTimestamp());
+                entry.compareAndSetOwner(null, conn);
+            }
+            if (conn.isValid()) {
+                //已经拿到了有效连接，则回滚、记录统计信息等
+                if (!conn.getRealConnection().getAutoCommit()) {
+                    conn.getRealConnection().rollback();
+                }
+                long now = System.currentTimeMillis();
+                conn.setConnectionTypeCode(assembleConnectionTypeCode(dataSource.getUrl(), username, password));
+                conn.setCheckoutTimestamp(now);
+                conn.setLastUsedTimestamp(now);
+                entry.setCheckoutTimestamp(now);
+                entry.setLastUsedTimestamp(now);
+                state.requestCount.increment();
+                state.accumulatedRequestTime.add(now - t);
+                if (log.isDebugEnabled()) {
+                    log.debug("Checked out connection " + conn.getRealHashCode() + " from pool.");
+                }
+            } else {
+                //拿到无效链接，丢弃该条目后重试，错误次数过多则抛出异常
+                if (log.isDebugEnabled()) {
+                    log.debug("A bad connection (" + conn.getRealHashCode() + ") was returned from the pool, getting another connection.");
+                }
+                entry.compareAndSetOwner(conn, null);
+                closeEntry(entry);
+                state.badConnectionCount.increment();
+                localBadConnectionCount++;
+                conn = null;
+                if (localBadConnectionCount > (poolMaximumIdleConnections + 3)) {
+                    if (log.isDebugEnabled()) {
+                        log.debug("ConcurrentPooledDataSource: Could not get a good connection to the database.");
+                    }
+                    throw new SQLException("ConcurrentPooledDataSource: Could not get a good connection to the database.");
+                }
+            }
+        }
+        if (conn == null) {
+            if (log.isDebugEnabled()) {
+                log.debug("ConcurrentPooledDataSource: Unknown severe error condition.  The connection pool returned a null connection.");
+            }
+            throw new SQLException("ConcurrentPooledDataSource: Unknown severe error condition.  The connection pool returned a null connection.");
+        }
+        return conn;
+    }
+
+    /*
+     * 未达到最大连接数时新建一个连接，借出时新条目直接处于借出状态，预热时处于空闲状态
+     */
+    private PoolEntry createEntry(int initialState) throws SQLException {
+        int total;
+        do {
+            total = totalConnections.get();
+            if (total >= poolMaximumActiveConnections) {
+                return null;
+            }
+        } while (!totalConnections.compareAndSet(total, total + 1));
+        try {
+            PoolEntry entry = new PoolEntry(dataSource.getConnection(), initialState);
+            bag.add(entry);
+            if (log.isDebugEnabled()) {
+                log.debug("Created connection " + entry.getRealHashCode() + ".");
+            }
+            return entry;
+        } catch (SQLException e) {
+            totalConnections.decrementAndGet();
+            throw e;
+        } catch (RuntimeException e) {
+            totalConnections.decrementAndGet();
+            throw e;
+        }
+    }
+
+    /**
+     * 由维护线程调用：预留空闲条目后校验，不合格的关闭，合格的取消预留；最后预热到最小空闲数
+     */
+    @Override
+    protected void housekeep() {
+        PoolState state = getPoolState();
+        for (PoolEntry entry : bag.values()) {
+            if (!bag.reserve(entry)) {
+                continue;
+            }
+            boolean expired = isExpired(entry.getCreatedTimestamp(), entry.getLastUsedTimestamp());
+            if (expired || !validateConnection(entry.getRealConnection())) {
+                if (expired) {
+                    state.evictedConnectionCount.increment();
+                } else {
+                    state.badConnectionCount.increment();
+                }
+                closeEntry(entry);
+                if (log.isDebugEnabled()) {
+                    log.debug("Housekeeper closed " + (expired ? "expired" : "bad") + " connection " + entry.getRealHashCode() + ".");
+                }
+            } else {
+                bag.unreserve(entry);
+            }
+        }
+        //预热
+        while (bag.getCount(PoolEntry.STATE_NOT_IN_USE) < getTargetIdleConnections()) {
+            try {
+                PoolEntry entry = createEntry(PoolEntry.STATE_NOT_IN_USE);
+                if (entry == null) {
+                    break;
+                }
+            } catch (SQLException e) {
+                log.warn("Housekeeper could not create connection: " + e.getMessage());
+                break;
+            }
+        }
+    }
+
+    /*
+     * 回收借出时间最长且已超过poolMaximumCheckoutTime的连接，原持有者的代理被置为无效
+     */
+    private PooledConnection claimOverdueConnection() {
+        PoolEntry oldest = null;
+        for (PoolEntry entry : bag.values()) {
+            if (entry.getState() == PoolEntry.STATE_IN_USE && entry.getOwner() != null
+                    && (oldest == null || entry.getCheckoutTimestamp() < oldest.getCheckoutTimestamp())) {
+                oldest = entry;
+            }
+        }
+        if (oldest == null) {
+            return null;
+        }
+        PooledConnection oldestActiveConnection = oldest.getOwner();
+        long longestCheckoutTime = oldest.getCheckoutTime();
+        if (oldestActiveConnection == null || longestCheckoutTime <= poolMaximumCheckoutTime) {
+            return null;
+        }
+        PooledConnection conn = new PooledConnection(oldest.getRealConnection(), this);
+        conn.setPoolEntry(oldest);
+        conn.setCreatedTimestamp(oldest.getCreatedTimestamp());
+        conn.setLastUsedTimestamp(oldest.getLastUsedTimestamp());
+        //与原持有者的归还竞争，失败说明连接刚好被归还或被其他线程回收
+        if (!oldest.compareAndSetOwner(oldestActiveConnection, conn)) {
+            return null;
+        }
+        oldestActiveConnection.invalidate();
+        PoolState state = getPoolState();
+        state.claimedOverdueConnectionCount.increment();
+        state.accumulatedCheckoutTimeOfOverdueConnections.add(longestCheckoutTime);
+        state.recordCheckoutTime(longestCheckoutTime);
+        try {
+            if (!oldest.getRealConnection().getAutoCommit()) {
+                //最老连接没有自动提交，则回滚
+                oldest.getRealConnection().rollback();
+            }
+        } catch (SQLException e) {
+            log.debug("Bad connection. Could not roll back");
+        }
+        if (log.isDebugEnabled()) {
+            log.debug("Claimed overdue connection " + conn.getRealHashCode() + ".");
+        }
+        return conn;
+    }
+
+    /*
+     * 从容器中删除条目并关闭真实连接
+     */
+    private void closeEntry(PoolEntry entry) {
+        if (!bag.remove(entry)) {
+            return;
+        }
+        totalConnections.decrementAndGet();
+        closeQuietly(entry.getRealConnection());
+    }
+
+}
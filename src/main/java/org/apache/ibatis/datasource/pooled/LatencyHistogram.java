@@ -0,0 +1,105 @@
+/**
+ *    Copyright 2009-2015 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.datasource.pooled;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+
+/**
+ * 无锁的耗时直方图，记录和读取都不加锁。
+ * 0~15直接对应一个桶；更大的值按2的幂分段，每段再均分为8个子桶，相对误差不超过12.5%。
+ * 百分位返回所在桶的上界（不超过记录过的最大值），适合监控而非精确统计。
+ */
+public class LatencyHistogram {
+
+    private static final int LINEAR_BUCKETS = 16;
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    //16=2^4，从第4段开始分段
+    private static final int FIRST_SHIFT = 4;
+    private static final int BUCKET_COUNT = LINEAR_BUCKETS + (64 - FIRST_SHIFT) * SUB_BUCKETS;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    public void record(long value) {
+        if (value < 0) {
+            value = 0;
+        }
+        buckets.incrementAndGet(indexOf(value));
+        max.accumulate(value);
+    }
+
+    public long getMax() {
+        return max.get();
+    }
+
+    public long getCount() {
+        long count = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            count += buckets.get(i);
+        }
+        return count;
+    }
+
+    /**
+     * @param percentile 0~100之间的百分位
+     */
+    public long getPercentile(double percentile) {
+        long[] counts = new long[BUCKET_COUNT];
+        long total = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            counts[i] = buckets.get(i);
+            total += counts[i];
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(total * percentile / 100.0);
+        if (rank < 1) {
+            rank = 1;
+        }
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return Math.min(upperBoundOf(i), getMax());
+            }
+        }
+        return getMax();
+    }
+
+    static int indexOf(long value) {
+        if (value < LINEAR_BUCKETS) {
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value);
+        int subBucket = (int) (value >>> (shift - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return LINEAR_BUCKETS + (shift - FIRST_SHIFT) * SUB_BUCKETS + subBucket;
+    }
+
+    static long upperBoundOf(int index) {
+        if (index < LINEAR_BUCKETS) {
+            return index;
+        }
+        int shift = (index - LINEAR_BUCKETS) / SUB_BUCKETS + FIRST_SHIFT;
+        int subBucket = (index - LINEAR_BUCKETS) % SUB_BUCKETS;
+        long lower = (1L << shift) + ((long) subBucket << (shift - SUB_BUCKET_BITS));
+        long width = 1L << (shift - SUB_BUCKET_BITS);
+        return lower + width - 1;
+    }
+
+}
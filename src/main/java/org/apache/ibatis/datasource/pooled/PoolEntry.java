@@ -0,0 +1,101 @@
+/**
+ *    Copyright 2009-2015 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.datasource.pooled;
+
+import java.sql.Connection;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * ConcurrentBag中的条目，对应一个真实连接。
+ * 条目的状态通过CAS切换，借出和归还都不需要全局锁；
+ * 每次借出都会生成一个新的PooledConnection代理，owner记录当前持有该真实连接的代理。
+ */
+class PoolEntry {
+
+    static final int STATE_NOT_IN_USE = 0;
+    static final int STATE_IN_USE = 1;
+    static final int STATE_REMOVED = -1;
+    static final int STATE_RESERVED = -2;
+
+    private final AtomicInteger state;
+    //当前借出的代理连接，为null时表示没有被借出
+    private final AtomicReference<PooledConnection> owner = new AtomicReference<PooledConnection>();
+    private final Connection realConnection;
+    private final long createdTimestamp;
+    private volatile long lastUsedTimestamp;
+    private volatile long checkoutTimestamp;
+
+    PoolEntry(Connection realConnection, int initialState) {
+        this.realConnection = realConnection;
+        this.state = new AtomicInteger(initialState);
+        this.createdTimestamp = System.currentTimeMillis();
+        this.lastUsedTimestamp = createdTimestamp;
+    }
+
+    boolean compareAndSetState(int expect, int update) {
+        return state.compareAndSet(expect, update);
+    }
+
+    int getState() {
+        return state.get();
+    }
+
+    void setState(int update) {
+        state.set(update);
+    }
+
+    PooledConnection getOwner() {
+        return owner.get();
+    }
+
+    boolean compareAndSetOwner(PooledConnection expect, PooledConnection update) {
+        return owner.compareAndSet(expect, update);
+    }
+
+    Connection getRealConnection() {
+        return realConnection;
+    }
+
+    long getCreatedTimestamp() {
+        return createdTimestamp;
+    }
+
+    long getLastUsedTimestamp() {
+        return lastUsedTimestamp;
+    }
+
+    void setLastUsedTimestamp(long lastUsedTimestamp) {
+        this.lastUsedTimestamp = lastUsedTimestamp;
+    }
+
+    long getCheckoutTimestamp() {
+        return checkoutTimestamp;
+    }
+
+    void setCheckoutTimestamp(long checkoutTimestamp) {
+        this.checkoutTimestamp = checkoutTimestamp;
+    }
+
+    long getCheckoutTime() {
+        return System.currentTimeMillis() - checkoutTimestamp;
+    }
+
+    int getRealHashCode() {
+        return realConnection == null ? 0 : realConnection.hashCode();
+    }
+
+}
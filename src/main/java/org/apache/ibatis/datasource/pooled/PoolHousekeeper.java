@@ -0,0 +1,74 @@
+/**
+ *    Copyright 2009-2015 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.datasource.pooled;
+
+import java.lang.ref.WeakReference;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.ibatis.logging.Log;
+import org.apache.ibatis.logging.LogFactory;
+
+/**
+ * 连接池的后台维护任务，定期调用PooledDataSource.housekeep()。
+ * 只持有数据源的弱引用，数据源被回收后任务自行停止，不会因为维护线程而导致数据源无法回收。
+ */
+class PoolHousekeeper implements Runnable {
+
+    private static final Log log = LogFactory.getLog(PoolHousekeeper.class);
+
+    private final WeakReference<PooledDataSource> dataSourceRef;
+    private final ScheduledExecutorService executor;
+
+    PoolHousekeeper(PooledDataSource dataSource) {
+        this.dataSourceRef = new WeakReference<PooledDataSource>(dataSource);
+        this.executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "PooledDataSource-housekeeper");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    void start(long period) {
+        //立即执行一次，尽早完成预热
+        executor.scheduleWithFixedDelay(this, 0, period, TimeUnit.MILLISECONDS);
+    }
+
+    void stop() {
+        executor.shutdownNow();
+    }
+
+    @Override
+    public void run() {
+        PooledDataSource dataSource = dataSourceRef.get();
+        if (dataSource == null) {
+            stop();
+            return;
+        }
+        try {
+            dataSource.housekeep();
+        } catch (Throwable t) {
+            //异常不能抛出，否则后续的调度会被取消
+            log.warn("Pool housekeeping failed: " + t.getMessage());
+        }
+    }
+
+}
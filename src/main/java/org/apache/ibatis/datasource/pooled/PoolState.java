@@ -17,12 +17,15 @@ package org.apache.ibatis.datasource.pooled;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * @author Clinton Begin
  */
 /**
  * 连接池状态
+ * 统计计数使用LongAdder，读取统计信息不需要获取state的监视器，不会和借出/归还连接竞争；
+ * 两个连接列表仍由PooledDataSource在synchronized (state)中维护。
  */
 public class PoolState {
 
@@ -31,71 +34,114 @@ public class PoolState {
     protected final List<PooledConnection> idleConnections = new ArrayList<PooledConnection>();
     //活动连接
     protected final List<PooledConnection> activeConnections = new ArrayList<PooledConnection>();
+    //维护线程取出校验或正在新建、不在上面两个列表中的连接数，同样计入poolMaximumActiveConnections
+    protected int housekeepingConnectionCount;
     //请求次数
-    protected long requestCount = 0;
+    protected final LongAdder requestCount = new LongAdder();
     //累计请求时间
-    protected long accumulatedRequestTime = 0;
+    protected final LongAdder accumulatedRequestTime = new LongAdder();
     //累计清理时间？
-    protected long accumulatedCheckoutTime = 0;
+    protected final LongAdder accumulatedCheckoutTime = new LongAdder();
     //过期连接数
-    protected long claimedOverdueConnectionCount = 0;
+    protected final LongAdder claimedOverdueConnectionCount = new LongAdder();
     //过期连接的累计清理时间
-    protected long accumulatedCheckoutTimeOfOverdueConnections = 0;
+    protected final LongAdder accumulatedCheckoutTimeOfOverdueConnections = new LongAdder();
     //累计等待时间
-    protected long accumulatedWaitTime = 0;
+    protected final LongAdder accumulatedWaitTime = new LongAdder();
     //等待连接数
-    protected long hadToWaitCount = 0;
+    protected final LongAdder hadToWaitCount = new LongAdder();
     //错误请求数
-    protected long badConnectionCount = 0;
+    protected final LongAdder badConnectionCount = new LongAdder();
+    //被维护线程因空闲或存活超时而关闭的连接数
+    protected final LongAdder evictedConnectionCount = new LongAdder();
+    //等待连接耗时分布
+    protected final LatencyHistogram waitTimeHistogram = new LatencyHistogram();
+    //连接借出时长分布
+    protected final LatencyHistogram checkoutTimeHistogram = new LatencyHistogram();
 
     public PoolState(PooledDataSource dataSource) {
         this.dataSource = dataSource;
     }
 
-    public synchronized long getRequestCount() {
-        return requestCount;
+    //记录一次等待
+    void recordWaitTime(long waitTime) {
+        accumulatedWaitTime.add(waitTime);
+        waitTimeHistogram.record(waitTime);
     }
 
-    public synchronized long getAverageRequestTime() {
-        return requestCount == 0 ? 0 : accumulatedRequestTime / requestCount;
+    //记录一次连接借出时长
+    void recordCheckoutTime(long checkoutTime) {
+        accumulatedCheckoutTime.add(checkoutTime);
+        checkoutTimeHistogram.record(checkoutTime);
     }
 
-    public synchronized long getAverageWaitTime() {
-        return hadToWaitCount == 0 ? 0 : accumulatedWaitTime / hadToWaitCount;
+    /**
+     * 生成统计信息快照，不会阻塞连接的借出和归还
+     */
+    public PoolStatistics snapshot() {
+        return new PoolStatistics(this);
+    }
+
+    public long getRequestCount() {
+        return requestCount.sum();
+    }
+
+    public long getAverageRequestTime() {
+        long requests = requestCount.sum();
+        return requests == 0 ? 0 : accumulatedRequestTime.sum() / requests;
+    }
+
+    public long getAverageWaitTime() {
+        long waits = hadToWaitCount.sum();
+        return waits == 0 ? 0 : accumulatedWaitTime.sum() / waits;
 
     }
 
-    public synchronized long getHadToWaitCount() {
-        return hadToWaitCount;
+    public long getHadToWaitCount() {
+        return hadToWaitCount.sum();
     }
 
-    public synchronized long getBadConnectionCount() {
-        return badConnectionCount;
+    public long getBadConnectionCount() {
+        return badConnectionCount.sum();
     }
 
-    public synchronized long getClaimedOverdueConnectionCount() {
-        return claimedOverdueConnectionCount;
+    public long getEvictedConnectionCount() {
+        return evictedConnectionCount.sum();
     }
 
-    public synchronized long getAverageOverdueCheckoutTime() {
-        return claimedOverdueConnectionCount == 0 ? 0 : accumulatedCheckoutTimeOfOverdueConnections / claimedOverdueConnectionCount;
+    public long getClaimedOverdueConnectionCount() {
+        return claimedOverdueConnectionCount.sum();
     }
 
-    public synchronized long getAverageCheckoutTime() {
-        return requestCount == 0 ? 0 : accumulatedCheckoutTime / requestCount;
+    public long getAverageOverdueCheckoutTime() {
+        long overdue = claimedOverdueConnectionCount.sum();
+        return overdue == 0 ? 0 : accumulatedCheckoutTimeOfOverdueConnections.sum() / overdue;
     }
 
+    public long getAverageCheckoutTime() {
+        long requests = requestCount.sum();
+        return requests == 0 ? 0 : accumulatedCheckoutTime.sum() / requests;
+    }
+
+    public long getWaitTimePercentile(double percentile) {
+        return waitTimeHistogram.getPercentile(percentile);
+    }
+
+    public long getCheckoutTimePercentile(double percentile) {
+        return checkoutTimeHistogram.getPercentile(percentile);
+    }
 
-    public synchronized int getIdleConnectionCount() {
+    //不加锁读取列表大小，监控场景下允许读到稍旧的值
+    public int getIdleConnectionCount() {
         return idleConnections.size();
     }
 
-    public synchronized int getActiveConnectionCount() {
+    public int getActiveConnectionCount() {
         return activeConnections.size();
     }
 
     @Override
-    public synchronized String toString() {
+    public String toString() {
         StringBuilder builder = new StringBuilder();
         builder.append("\n===CONFINGURATION==============================================");
         builder.append("\n jdbcDriver                     ").append(dataSource.getDriver());
@@ -109,17 +155,25 @@ public class PoolState {
         builder.append("\n poolPingEnabled                ").append(dataSource.poolPingEnabled);
         builder.append("\n poolPingQuery                  ").append(dataSource.poolPingQuery);
         builder.append("\n poolPingConnectionsNotUsedFor  ").append(dataSource.poolPingConnectionsNotUsedFor);
+        builder.append("\n poolHousekeepingPeriod         ").append(dataSource.poolHousekeepingPeriod);
+        builder.append("\n poolMinimumIdleConnections     ").append(dataSource.poolMinimumIdleConnections);
+        builder.append("\n poolMaximumIdleTime            ").append(dataSource.poolMaximumIdleTime);
+        builder.append("\n poolMaximumLifetime            ").append(dataSource.poolMaximumLifetime);
+        PoolStatistics statistics = snapshot();
         builder.append("\n ---STATUS-----------------------------------------------------");
-        builder.append("\n activeConnections              ").append(getActiveConnectionCount());
-        builder.append("\n idleConnections                ").append(getIdleConnectionCount());
-        builder.append("\n requestCount                   ").append(getRequestCount());
-        builder.append("\n averageRequestTime             ").append(getAverageRequestTime());
-        builder.append("\n averageCheckoutTime            ").append(getAverageCheckoutTime());
-        builder.append("\n claimedOverdue                 ").append(getClaimedOverdueConnectionCount());
-        builder.append("\n averageOverdueCheckoutTime     ").append(getAverageOverdueCheckoutTime());
-        builder.append("\n hadToWait                      ").append(getHadToWaitCount());
-        builder.append("\n averageWaitTime                ").append(getAverageWaitTime());
-        builder.append("\n badConnectionCount             ").append(getBadConnectionCount());
+        builder.append("\n activeConnections              ").append(statistics.getActiveConnectionCount());
+        builder.append("\n idleConnections                ").append(statistics.getIdleConnectionCount());
+        builder.append("\n requestCount                   ").append(statistics.getRequestCount());
+        builder.append("\n averageRequestTime             ").append(statistics.getAverageRequestTime());
+        builder.append("\n averageCheckoutTime            ").append(statistics.getAverageCheckoutTime());
+        builder.append("\n checkoutTime p50/p99/max       ").append(statistics.getCheckoutTimeP50()).append('/').append(statistics.getCheckoutTimeP99()).append('/').append(statistics.getCheckoutTimeMax());
+        builder.append("\n claimedOverdue                 ").append(statistics.getClaimedOverdueConnectionCount());
+        builder.append("\n averageOverdueCheckoutTime     ").append(statistics.getAverageOverdueCheckoutTime());
+        builder.append("\n hadToWait                      ").append(statistics.getHadToWaitCount());
+        builder.append("\n averageWaitTime                ").append(statistics.getAverageWaitTime());
+        builder.append("\n waitTime p50/p99/max           ").append(statistics.getWaitTimeP50()).append('/').append(statistics.getWaitTimeP99()).append('/').append(statistics.getWaitTimeMax());
+        builder.append("\n badConnectionCount             ").append(statistics.getBadConnectionCount());
+        builder.append("\n evictedConnectionCount         ").append(statistics.getEvictedConnectionCount());
         builder.append("\n===============================================================");
         return builder.toString();
     }
@@ -0,0 +1,130 @@
+/**
+ *    Copyright 2009-2015 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.datasource.pooled;
+
+/**
+ * 连接池统计信息的不可变快照，由PoolState.snapshot()生成。
+ * 各项数值分别读取，彼此之间不保证是同一时刻的值，时间单位均为毫秒。
+ */
+public class PoolStatistics {
+
+    private final int activeConnectionCount;
+    private final int idleConnectionCount;
+    private final long requestCount;
+    private final long averageRequestTime;
+    private final long averageCheckoutTime;
+    private final long claimedOverdueConnectionCount;
+    private final long averageOverdueCheckoutTime;
+    private final long hadToWaitCount;
+    private final long averageWaitTime;
+    private final long badConnectionCount;
+    private final long evictedConnectionCount;
+    private final long waitTimeP50;
+    private final long waitTimeP99;
+    private final long waitTimeMax;
+    private final long checkoutTimeP50;
+    private final long checkoutTimeP99;
+    private final long checkoutTimeMax;
+
+    PoolStatistics(PoolState state) {
+        this.activeConnectionCount = state.getActiveConnectionCount();
+        this.idleConnectionCount = state.getIdleConnectionCount();
+        this.requestCount = state.getRequestCount();
+        this.averageRequestTime = state.getAverageRequestTime();
+        this.averageCheckoutTime = state.getAverageCheckoutTime();
+        this.claimedOverdueConnectionCount = state.getClaimedOverdueConnectionCount();
+        this.averageOverdueCheckoutTime = state.getAverageOverdueCheckoutTime();
+        this.hadToWaitCount = state.getHadToWaitCount();
+        this.averageWaitTime = state.getAverageWaitTime();
+        this.badConnectionCount = state.getBadConnectionCount();
+        this.evictedConnectionCount = state.getEvictedConnectionCount();
+        this.waitTimeP50 = state.waitTimeHistogram.getPercentile(50);
+        this.waitTimeP99 = state.waitTimeHistogram.getPercentile(99);
+        this.waitTimeMax = state.waitTimeHistogram.getMax();
+        this.checkoutTimeP50 = state.checkoutTimeHistogram.getPercentile(50);
+        this.checkoutTimeP99 = state.checkoutTimeHistogram.getPercentile(99);
+        this.checkoutTimeMax = state.checkoutTimeHistogram.getMax();
+    }
+
+    public int getActiveConnectionCount() {
+        return activeConnectionCount;
+    }
+
+    public int getIdleConnectionCount() {
+        return idleConnectionCount;
+    }
+
+    public long getRequestCount() {
+        return requestCount;
+    }
+
+    public long getAverageRequestTime() {
+        return averageRequestTime;
+    }
+
+    public long getAverageCheckoutTime() {
+        return averageCheckoutTime;
+    }
+
+    public long getClaimedOverdueConnectionCount() {
+        return claimedOverdueConnectionCount;
+    }
+
+    public long getAverageOverdueCheckoutTime() {
+        return averageOverdueCheckoutTime;
+    }
+
+    public long getHadToWaitCount() {
+        return hadToWaitCount;
+    }
+
+    public long getAverageWaitTime() {
+        return averageWaitTime;
+    }
+
+    public long getBadConnectionCount() {
+        return badConnectionCount;
+    }
+
+    public long getEvictedConnectionCount() {
+        return evictedConnectionCount;
+    }
+
+    public long getWaitTimeP50() {
+        return waitTimeP50;
+    }
+
+    public long getWaitTimeP99() {
+        return waitTimeP99;
+    }
+
+    public long getWaitTimeMax() {
+        return waitTimeMax;
+    }
+
+    public long getCheckoutTimeP50() {
+        return checkoutTimeP50;
+    }
+
+    public long getCheckoutTimeP99() {
+        return checkoutTimeP99;
+    }
+
+    public long getCheckoutTimeMax() {
+        return checkoutTimeMax;
+    }
+
+}
@@ -33,6 +33,7 @@ import java.sql.SQLException;
 class PooledConnection implements InvocationHandler {
     //用于匹配connection的close方法
     private static final String CLOSE = "close";
+    private static final String PREPARE_STATEMENT = "prepareStatement";
     private static final Class<?>[] IFACES = new Class<?>[] { Connection.class };
 
     private int hashCode = 0;
@@ -46,7 +47,11 @@ class PooledConnection implements InvocationHandler {
     private long lastUsedTimestamp;
     //based on url + user + password
     private int connectionTypeCode;
-    private boolean valid;
+    private volatile boolean valid;
+    //所属的ConcurrentBag条目，仅在ConcurrentPooledDataSource中使用
+    private PoolEntry poolEntry;
+    //真实连接上的PreparedStatement缓存，多次借出共用，未开启时为null
+    private final PooledStatementCache statementCache;
 
     /*
      * Constructor for SimplePooledConnection that uses the Connection and PooledDataSource passed in
@@ -62,6 +67,7 @@ class PooledConnection implements InvocationHandler {
         this.createdTimestamp = System.currentTimeMillis();
         this.lastUsedTimestamp = System.currentTimeMillis();
         this.valid = true;
+        this.statementCache = dataSource.getStatementCache(connection);
         this.proxyConnection = (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), IFACES, this);
     }
 
@@ -90,6 +96,14 @@ class PooledConnection implements InvocationHandler {
         return realConnection;
     }
 
+    PoolEntry getPoolEntry() {
+        return poolEntry;
+    }
+
+    void setPoolEntry(PoolEntry poolEntry) {
+        this.poolEntry = poolEntry;
+    }
+
     /*
      * Getter for the proxy for the connection
      *
@@ -246,6 +260,10 @@ class PooledConnection implements InvocationHandler {
             //执行close时，忽略执行，并加入池中
             dataSource.pushConnection(this);
             return null;
+        } else if (statementCache != null && PREPARE_STATEMENT.equals(methodName) && PooledStatementCache.isCacheable(method)) {
+            //从真实连接的缓存中借出PreparedStatement
+            checkConnection();
+            return statementCache.prepareStatement(proxyConnection, realConnection, args);
         } else {
             try {
                 if (!Object.class.equals(method.getDeclaringClass())) {
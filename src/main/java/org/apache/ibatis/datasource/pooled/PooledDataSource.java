@@ -23,6 +23,10 @@ import java.sql.DriverManager;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Properties;
 import java.util.logging.Logger;
 
@@ -45,10 +49,10 @@ public class PooledDataSource implements DataSource {
 
     private static final Log log = LogFactory.getLog(PooledDataSource.class);
 
-    private final PoolState state = new PoolState(this);
+    private final PoolState state = createPoolState();
 
     //对未池化数据源的封装
-    private final UnpooledDataSource dataSource;
+    protected final UnpooledDataSource dataSource;
 
     // OPTIONAL CONFIGURATION FIELDS
     // 连接池属性
@@ -77,8 +81,35 @@ public class PooledDataSource implements DataSource {
      */
     protected int poolPingConnectionsNotUsedFor = 0;
 
+    /**
+     * 后台维护线程的执行间隔（毫秒），大于0时启用。启用后借出连接时不再执行侦测查询，
+     * 而是由维护线程定期校验空闲连接、清理过期连接并预热到最小空闲数。默认值：0
+     */
+    protected int poolHousekeepingPeriod = 0;
+
+    //维护线程预热时保持的最小空闲连接数，不超过poolMaximumIdleConnections
+    protected int poolMinimumIdleConnections = 0;
+
+    //空闲超过该时长（毫秒）的连接会被维护线程关闭，0表示不限制
+    protected int poolMaximumIdleTime = 0;
+
+    //创建超过该时长（毫秒）的空闲连接会被维护线程关闭，0表示不限制
+    protected int poolMaximumLifetime = 0;
+
+    //未开启poolPingEnabled时，维护线程使用Connection.isValid校验连接的超时时间（秒）
+    protected int poolValidationTimeout = 5;
+
+    //每个真实连接上缓存的PreparedStatement个数，连接多次借出之间保留，0表示不缓存
+    protected int poolPreparedStatementCacheSize = 0;
+
     //期望连接类型
-    private int expectedConnectionTypeCode;
+    protected int expectedConnectionTypeCode;
+
+    //真实连接对应的PreparedStatement缓存
+    private final Map<Connection, PooledStatementCache> statementCaches = new IdentityHashMap<Connection, PooledStatementCache>();
+
+    //后台维护线程，在第一次获取连接时按需启动
+    private volatile PoolHousekeeper housekeeper;
 
     public PooledDataSource() {
         dataSource = new UnpooledDataSource();
@@ -110,12 +141,14 @@ public class PooledDataSource implements DataSource {
 
     @Override
     public Connection getConnection() throws SQLException {
+        startHousekeeperIfNecessary();
         //覆盖了DataSource.getConnection方法，每次都是pop一个Connection，即从池中取出一个来
         return popConnection(dataSource.getUsername(), dataSource.getPassword()).getProxyConnection();
     }
 
     @Override
     public Connection getConnection(String username, String password) throws SQLException {
+        startHousekeeperIfNecessary();
         return popConnection(username, password).getProxyConnection();
     }
 
@@ -246,6 +279,66 @@ public class PooledDataSource implements DataSource {
         forceCloseAll();
     }
 
+    /*
+     * The interval of the background housekeeping task, 0 disables it.
+     *
+     * @param milliseconds the interval in milliseconds
+     */
+    public void setPoolHousekeepingPeriod(int milliseconds) {
+        this.poolHousekeepingPeriod = milliseconds;
+        forceCloseAll();
+    }
+
+    /*
+     * The number of idle connections the housekeeping task keeps warm.
+     *
+     * @param poolMinimumIdleConnections The minimum number of idle connections
+     */
+    public void setPoolMinimumIdleConnections(int poolMinimumIdleConnections) {
+        this.poolMinimumIdleConnections = poolMinimumIdleConnections;
+        forceCloseAll();
+    }
+
+    /*
+     * Idle connections unused for longer than this are closed by the housekeeping task.
+     *
+     * @param milliseconds the maximum idle time, 0 means unlimited
+     */
+    public void setPoolMaximumIdleTime(int milliseconds) {
+        this.poolMaximumIdleTime = milliseconds;
+        forceCloseAll();
+    }
+
+    /*
+     * Idle connections older than this are closed by the housekeeping task.
+     *
+     * @param milliseconds the maximum lifetime, 0 means unlimited
+     */
+    public void setPoolMaximumLifetime(int milliseconds) {
+        this.poolMaximumLifetime = milliseconds;
+        forceCloseAll();
+    }
+
+    /*
+     * The timeout passed to Connection.isValid by the housekeeping task.
+     *
+     * @param seconds the validation timeout
+     */
+    public void setPoolValidationTimeout(int seconds) {
+        this.poolValidationTimeout = seconds;
+        forceCloseAll();
+    }
+
+    /*
+     * The number of prepared statements cached on each physical connection across checkouts.
+     *
+     * @param poolPreparedStatementCacheSize the cache size, 0 disables the cache
+     */
+    public void setPoolPreparedStatementCacheSize(int poolPreparedStatementCacheSize) {
+        this.poolPreparedStatementCacheSize = poolPreparedStatementCacheSize;
+        forceCloseAll();
+    }
+
     public String getDriver() {
         return dataSource.getDriver();
     }
@@ -302,11 +395,37 @@ public class PooledDataSource implements DataSource {
         return poolPingConnectionsNotUsedFor;
     }
 
+    public int getPoolHousekeepingPeriod() {
+        return poolHousekeepingPeriod;
+    }
+
+    public int getPoolMinimumIdleConnections() {
+        return poolMinimumIdleConnections;
+    }
+
+    public int getPoolMaximumIdleTime() {
+        return poolMaximumIdleTime;
+    }
+
+    public int getPoolMaximumLifetime() {
+        return poolMaximumLifetime;
+    }
+
+    public int getPoolPreparedStatementCacheSize() {
+        return poolPreparedStatementCacheSize;
+    }
+
+    public int getPoolValidationTimeout() {
+        return poolValidationTimeout;
+    }
+
     /*
      * Closes all active and idle connections in the pool
      */
     //关闭所有的activeConnections和idleConnections
     public void forceCloseAll() {
+        //维护线程随之停止，下次获取连接时按新的配置重新启动，不会给已关闭的池继续预热连接
+        stopHousekeeper();
         synchronized (state) {
             //此处计算一把typeCode是何用意？
             expectedConnectionTypeCode = assembleConnectionTypeCode(dataSource.getUrl(), dataSource.getUsername(), dataSource.getPassword());
@@ -317,6 +436,7 @@ public class PooledDataSource implements DataSource {
                     conn.invalidate();
 
                     Connection realConn = conn.getRealConnection();
+                    discardStatementCache(realConn);
                     if (!realConn.getAutoCommit()) {
                         realConn.rollback();
                     }
@@ -331,6 +451,7 @@ public class PooledDataSource implements DataSource {
                     conn.invalidate();
 
                     Connection realConn = conn.getRealConnection();
+                    discardStatementCache(realConn);
                     if (!realConn.getAutoCommit()) {
                         realConn.rollback();
                     }
@@ -349,8 +470,13 @@ public class PooledDataSource implements DataSource {
         return state;
     }
 
+    //由子类决定连接池状态的实现，注意此方法在构造期间被调用
+    protected PoolState createPoolState() {
+        return new PoolState(this);
+    }
+
     //组装连接类型码url + username + password的哈希码
-    private int assembleConnectionTypeCode(String url, String username, String password) {
+    protected int assembleConnectionTypeCode(String url, String username, String password) {
         return ("" + url + username + password).hashCode();
     }
 
@@ -362,7 +488,7 @@ public class PooledDataSource implements DataSource {
             if (conn.isValid()) {
                 if (state.idleConnections.size() < poolMaximumIdleConnections && conn.getConnectionTypeCode() == expectedConnectionTypeCode) {
                     //池化
-                    state.accumulatedCheckoutTime += conn.getCheckoutTime();
+                    state.recordCheckoutTime(conn.getCheckoutTime());
                     if (!conn.getRealConnection().getAutoCommit()) {
                         conn.getRealConnection().rollback();
                     }
@@ -377,10 +503,11 @@ public class PooledDataSource implements DataSource {
                     state.notifyAll();
                 } else {
                     //池中连接足够，不进行push
-                    state.accumulatedCheckoutTime += conn.getCheckoutTime();
+                    state.recordCheckoutTime(conn.getCheckoutTime());
                     if (!conn.getRealConnection().getAutoCommit()) {
                         conn.getRealConnection().rollback();
                     }
+                    discardStatementCache(conn.getRealConnection());
                     conn.getRealConnection().close();
                     if (log.isDebugEnabled()) {
                         log.debug("Closed connection " + conn.getRealHashCode() + ".");
@@ -392,12 +519,12 @@ public class PooledDataSource implements DataSource {
                 if (log.isDebugEnabled()) {
                     log.debug("A bad connection (" + conn.getRealHashCode() + ") attempted to return to the pool, discarding connection.");
                 }
-                state.badConnectionCount++;
+                state.badConnectionCount.increment();
             }
         }
     }
     //命名方式可知，像栈一样存储连接
-    private PooledConnection popConnection(String username, String password) throws SQLException {
+    protected PooledConnection popConnection(String username, String password) throws SQLException {
         boolean countedWait = false;
         PooledConnection conn = null;
         long t = System.currentTimeMillis();
@@ -415,7 +542,7 @@ public class PooledDataSource implements DataSource {
                     }
                 } else {
                     // Pool does not have available connection
-                    if (state.activeConnections.size() < poolMaximumActiveConnections) {
+                    if (state.activeConnections.size() + state.housekeepingConnectionCount < poolMaximumActiveConnections) {
                         //没有空闲链接，且未达到配置上限，则新建
                         // Can create new connection
                         conn = new PooledConnection(dataSource.getConnection(), this);
@@ -425,13 +552,14 @@ public class PooledDataSource implements DataSource {
                     } else {
                         // Cannot create new connection
                         //既没有空闲链接，也达到了配置上限，则检查第一个链接（最早生成的连接）是否超时
-                        PooledConnection oldestActiveConnection = state.activeConnections.get(0);
-                        long longestCheckoutTime = oldestActiveConnection.getCheckoutTime();
-                        if (longestCheckoutTime > poolMaximumCheckoutTime) {
+                        //名额都被维护线程占用时没有可回收的连接
+                        PooledConnection oldestActiveConnection = state.activeConnections.isEmpty() ? null : state.activeConnections.get(0);
+                        long longestCheckoutTime = oldestActiveConnection == null ? 0 : oldestActiveConnection.getCheckoutTime();
+                        if (oldestActiveConnection != null && longestCheckoutTime > poolMaximumCheckoutTime) {
                             // Can claim overdue connection
-                            state.claimedOverdueConnectionCount++;
-                            state.accumulatedCheckoutTimeOfOverdueConnections += longestCheckoutTime;
-                            state.accumulatedCheckoutTime += longestCheckoutTime;
+                            state.claimedOverdueConnectionCount.increment();
+                            state.accumulatedCheckoutTimeOfOverdueConnections.add(longestCheckoutTime);
+                            state.recordCheckoutTime(longestCheckoutTime);
                             //移除最早连接
                             state.activeConnections.remove(oldestActiveConnection);
                             if (!oldestActiveConnection.getRealConnection().getAutoCommit()) {
@@ -455,7 +583,7 @@ public class PooledDataSource implements DataSource {
                             // Must wait
                             try {
                                 if (!countedWait) {
-                                    state.hadToWaitCount++;
+                                    state.hadToWaitCount.increment();
                                     countedWait = true;
                                 }
                                 if (log.isDebugEnabled()) {
@@ -463,7 +591,7 @@ public class PooledDataSource implements DataSource {
                                 }
                                 long wt = System.currentTimeMillis();
                                 state.wait(poolTimeToWait);
-                                state.accumulatedWaitTime += System.currentTimeMillis() - wt;
+                                state.recordWaitTime(System.currentTimeMillis() - wt);
                             } catch (InterruptedException e) {
                                 break;
                             }
@@ -480,14 +608,14 @@ public class PooledDataSource implements DataSource {
                         conn.setCheckoutTimestamp(System.currentTimeMillis());
                         conn.setLastUsedTimestamp(System.currentTimeMillis());
                         state.activeConnections.add(conn);
-                        state.requestCount++;
-                        state.accumulatedRequestTime += System.currentTimeMillis() - t;
+                        state.requestCount.increment();
+                        state.accumulatedRequestTime.add(System.currentTimeMillis() - t);
                     } else {
                         //拿到无效链接，则记录错误次数，当错误次数过多，则抛出异常
                         if (log.isDebugEnabled()) {
                             log.debug("A bad connection (" + conn.getRealHashCode() + ") was returned from the pool, getting another connection.");
                         }
-                        state.badConnectionCount++;
+                        state.badConnectionCount.increment();
                         localBadConnectionCount++;
                         conn = null;
                         if (localBadConnectionCount > (poolMaximumIdleConnections + 3)) {
@@ -536,7 +664,8 @@ public class PooledDataSource implements DataSource {
 
         if (result) {
             //如果开启了poolPingEnabled，还要在此基础上执行sql语句，正常执行则为true，异常则为false
-            if (poolPingEnabled) {
+            //启用后台维护后，侦测查询由维护线程执行，借出/归还时不再执行
+            if (poolPingEnabled && poolHousekeepingPeriod <= 0) {
                 //该连接未使用时长大于一定的阈值时，执行sql检测
                 if (poolPingConnectionsNotUsedFor >= 0 && conn.getTimeElapsedSinceLastUse() > poolPingConnectionsNotUsedFor) {
                     try {
@@ -558,6 +687,7 @@ public class PooledDataSource implements DataSource {
                     } catch (Exception e) {
                         log.warn("Execution of ping query '" + poolPingQuery + "' failed: " + e.getMessage());
                         try {
+                            discardStatementCache(conn.getRealConnection());
                             conn.getRealConnection().close();
                         } catch (Exception e2) {
                             //ignore
@@ -573,6 +703,197 @@ public class PooledDataSource implements DataSource {
         return result;
     }
 
+    /**
+     * 维护线程使用的连接校验：开启poolPingEnabled时执行侦测查询，否则使用Connection.isValid
+     */
+    protected boolean validateConnection(Connection realConn) {
+        try {
+            if (realConn.isClosed()) {
+                return false;
+            }
+            if (poolPingEnabled) {
+                Statement statement = realConn.createStatement();
+                try {
+                    statement.executeQuery(poolPingQuery).close();
+                } finally {
+                    statement.close();
+                }
+                if (!realConn.getAutoCommit()) {
+                    realConn.rollback();
+                }
+                return true;
+            }
+            return realConn.isValid(poolValidationTimeout);
+        } catch (SQLException e) {
+            if (log.isDebugEnabled()) {
+                log.debug("Connection " + realConn.hashCode() + " is BAD: " + e.getMessage());
+            }
+            return false;
+        } catch (AbstractMethodError e) {
+            //JDBC4之前的驱动没有实现isValid，只能认为连接可用
+            return true;
+        }
+    }
+
+    //空闲或存活时间超过阈值的连接需要被清理
+    protected boolean isExpired(long createdTimestamp, long lastUsedTimestamp) {
+        long now = System.currentTimeMillis();
+        return (poolMaximumIdleTime > 0 && now - lastUsedTimestamp > poolMaximumIdleTime)
+                || (poolMaximumLifetime > 0 && now - createdTimestamp > poolMaximumLifetime);
+    }
+
+    //维护线程预热的目标空闲连接数
+    protected int getTargetIdleConnections() {
+        return Math.min(poolMinimumIdleConnections, poolMaximumIdleConnections);
+    }
+
+    /**
+     * 由维护线程调用：逐个取出空闲连接进行校验和过期检查，不合格的关闭，合格的放回；
+     * 最后把空闲连接补足到poolMinimumIdleConnections。校验期间不持有state的监视器。
+     */
+    protected void housekeep() {
+        List<PooledConnection> candidates;
+        synchronized (state) {
+            candidates = new ArrayList<PooledConnection>(state.idleConnections);
+        }
+        for (PooledConnection conn : candidates) {
+            synchronized (state) {
+                //已经被借出的连接跳过
+                if (!state.idleConnections.remove(conn)) {
+                    continue;
+                }
+                //校验期间仍占用一个名额
+                state.housekeepingConnectionCount++;
+            }
+            boolean expired = isExpired(conn.getCreatedTimestamp(), conn.getLastUsedTimestamp());
+            if (expired || !validateConnection(conn.getRealConnection())) {
+                if (expired) {
+                    state.evictedConnectionCount.increment();
+                } else {
+                    state.badConnectionCount.increment();
+                }
+                conn.invalidate();
+                closeQuietly(conn.getRealConnection());
+                synchronized (state) {
+                    state.housekeepingConnectionCount--;
+                    state.notifyAll();
+                }
+                if (log.isDebugEnabled()) {
+                    log.debug("Housekeeper closed " + (expired ? "expired" : "bad") + " connection " + conn.getRealHashCode() + ".");
+                }
+            } else {
+                synchronized (state) {
+                    state.housekeepingConnectionCount--;
+                    state.idleConnections.add(conn);
+                    state.notifyAll();
+                }
+            }
+        }
+        //预热
+        while (true) {
+            synchronized (state) {
+                int idle = state.idleConnections.size();
+                if (idle >= getTargetIdleConnections()
+                        || idle + state.activeConnections.size() + state.housekeepingConnectionCount >= poolMaximumActiveConnections) {
+                    break;
+                }
+                //先占用名额再在锁外新建连接
+                state.housekeepingConnectionCount++;
+            }
+            PooledConnection conn = null;
+            try {
+                conn = new PooledConnection(dataSource.getConnection(), this);
+            } catch (SQLException e) {
+                log.warn("Housekeeper could not create connection: " + e.getMessage());
+            } finally {
+                synchronized (state) {
+                    state.housekeepingConnectionCount--;
+                    if (conn != null) {
+                        conn.setConnectionTypeCode(expectedConnectionTypeCode);
+                        state.idleConnections.add(conn);
+                    }
+                    state.notifyAll();
+                }
+            }
+            if (conn == null) {
+                break;
+            }
+            if (log.isDebugEnabled()) {
+                log.debug("Housekeeper created connection " + conn.getRealHashCode() + ".");
+            }
+        }
+    }
+
+    /*
+     * 取得真实连接的PreparedStatement缓存，未开启缓存时返回null
+     */
+    PooledStatementCache getStatementCache(Connection realConn) {
+        if (poolPreparedStatementCacheSize <= 0) {
+            return null;
+        }
+        synchronized (statementCaches) {
+            PooledStatementCache statementCache = statementCaches.get(realConn);
+            if (statementCache == null) {
+                statementCache = new PooledStatementCache(poolPreparedStatementCacheSize);
+                statementCaches.put(realConn, statementCache);
+            }
+            return statementCache;
+        }
+    }
+
+    /*
+     * 真实连接关闭前关闭其缓存的PreparedStatement
+     */
+    protected void discardStatementCache(Connection realConn) {
+        final PooledStatementCache statementCache;
+        synchronized (statementCaches) {
+            statementCache = statementCaches.remove(realConn);
+        }
+        if (statementCache != null) {
+            statementCache.clear();
+        }
+    }
+
+    protected void closeQuietly(Connection realConn) {
+        discardStatementCache(realConn);
+        try {
+            if (!realConn.getAutoCommit()) {
+                realConn.rollback();
+            }
+        } catch (Exception e) {
+            // ignore
+        }
+        //回滚失败也要关闭
+        try {
+            realConn.close();
+        } catch (Exception e) {
+            // ignore
+        }
+    }
+
+    private void startHousekeeperIfNecessary() {
+        if (poolHousekeepingPeriod > 0 && housekeeper == null) {
+            synchronized (this) {
+                if (housekeeper == null) {
+                    housekeeper = new PoolHousekeeper(this);
+                    housekeeper.start(poolHousekeepingPeriod);
+                }
+            }
+        }
+    }
+
+    /*
+     * Stops the background housekeeping task, it is restarted on the next getConnection if still enabled
+     */
+    public void stopHousekeeper() {
+        synchronized (this) {
+            if (housekeeper != null) {
+                housekeeper.stop();
+                housekeeper = null;
+            }
+        }
+    }
+
     /*
      * Unwraps a pooled connection to get to the 'real' connection
      *
@@ -15,6 +15,9 @@
  */
 package org.apache.ibatis.datasource.pooled;
 
+import java.util.Properties;
+
+import org.apache.ibatis.datasource.DataSourceException;
 import org.apache.ibatis.datasource.unpooled.UnpooledDataSourceFactory;
 
 /**
@@ -23,11 +26,32 @@ import org.apache.ibatis.datasource.unpooled.UnpooledDataSourceFactory;
 
 /**
  * 池化数据源工厂
+ * 通过poolType属性选择连接池实现：SYNCHRONIZED（默认）为PooledDataSource，CONCURRENT为ConcurrentPooledDataSource
  */
 public class PooledDataSourceFactory extends UnpooledDataSourceFactory {
 
+    private static final String POOL_TYPE_PROPERTY = "poolType";
+
     public PooledDataSourceFactory() {
         this.dataSource = new PooledDataSource();
     }
 
+    @Override
+    public void setProperties(Properties properties) {
+        String poolType = properties.getProperty(POOL_TYPE_PROPERTY);
+        if (poolType != null) {
+            //poolType不是数据源的属性，需要在交给父类之前移除
+            Properties copy = new Properties();
+            copy.putAll(properties);
+            copy.remove(POOL_TYPE_PROPERTY);
+            properties = copy;
+            if ("CONCURRENT".equalsIgnoreCase(poolType)) {
+                this.dataSource = new ConcurrentPooledDataSource();
+            } else if (!"SYNCHRONIZED".equalsIgnoreCase(poolType)) {
+                throw new DataSourceException("Unknown pool type: " + poolType + ". Expected SYNCHRONIZED or CONCURRENT.");
+            }
+        }
+        super.setProperties(properties);
+    }
+
 }
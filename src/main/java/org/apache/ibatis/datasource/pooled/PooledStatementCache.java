@@ -0,0 +1,223 @@
+/**
+ *    Copyright 2009-2016 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.datasource.pooled;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.ibatis.reflection.ExceptionUtil;
+
+/**
+ * 一个真实连接上的PreparedStatement缓存，连接多次借出之间保留，按SQL、结果集类型和并发模式区分。
+ * 借出的Statement是代理，close()时不关闭真实Statement，而是清除参数、未执行的批处理并恢复fetchSize等设置后放回缓存；
+ * 同一个Statement借出期间从缓存中移除，同一次借出中重复prepare相同SQL会得到不同的Statement，互不影响。
+ * 缓存超过上限时按LRU关闭最久未归还的Statement；真实连接被连接池关闭时清空缓存。
+ */
+final class PooledStatementCache {
+
+    private static final String CLOSE = "close";
+    private static final Class<?>[] IFACES = new Class<?>[] { PreparedStatement.class };
+
+    private final int maxSize;
+    private final Map<String, CachedStatement> statements;
+    private boolean cleared;
+
+    PooledStatementCache(int maxSize) {
+        this.maxSize = maxSize;
+        this.statements = new LinkedHashMap<String, CachedStatement>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedStatement> eldest) {
+                if (size() > PooledStatementCache.this.maxSize) {
+                    closeQuietly(eldest.getValue().statement);
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * 只缓存prepareStatement(String)和prepareStatement(String, int, int)，返回生成主键等其他形式不缓存
+     */
+    static boolean isCacheable(Method method) {
+        final Class<?>[] parameterTypes = method.getParameterTypes();
+        return parameterTypes.length == 1
+                || (parameterTypes.length == 3 && parameterTypes[1] == int.class && parameterTypes[2] == int.class);
+    }
+
+    /**
+     * @param proxyConnection Statement.getConnection()返回的代理连接
+     * @param args prepareStatement的参数
+     */
+    PreparedStatement prepareStatement(Connection proxyConnection, Connection realConnection, Object[] args) throws SQLException {
+        final String sql = (String) args[0];
+        final String key = args.length == 1 ? sql : args[1] + ":" + args[2] + ":" + sql;
+        CachedStatement cached;
+        synchronized (this) {
+            cached = statements.remove(key);
+        }
+        if (cached == null) {
+            final PreparedStatement statement = args.length == 1
+                    ? realConnection.prepareStatement(sql)
+                    : realConnection.prepareStatement(sql, (Integer) args[1], (Integer) args[2]);
+            cached = new CachedStatement(key, statement);
+        }
+        return (PreparedStatement) Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(), IFACES,
+                new StatementHandle(cached, proxyConnection));
+    }
+
+    /**
+     * 关闭缓存中的所有Statement，之后归还的Statement直接关闭
+     */
+    void clear() {
+        final List<CachedStatement> closing;
+        synchronized (this) {
+            cleared = true;
+            closing = new ArrayList<CachedStatement>(statements.values());
+            statements.clear();
+        }
+        for (CachedStatement cached : closing) {
+            closeQuietly(cached.statement);
+        }
+    }
+
+    synchronized int size() {
+        return statements.size();
+    }
+
+    private void release(CachedStatement cached) {
+        final PreparedStatement statement = cached.statement;
+        try {
+            //游标设置了closeOnCompletion的Statement可能已经随结果集关闭
+            if (statement.isClosed() || statement.isCloseOnCompletion()) {
+                closeQuietly(statement);
+                return;
+            }
+            statement.clearParameters();
+            statement.clearBatch();
+            statement.clearWarnings();
+            cached.restoreDefaults();
+        } catch (SQLException e) {
+            closeQuietly(statement);
+            return;
+        }
+        boolean cachedAgain = false;
+        synchronized (this) {
+            if (!cleared && !statements.containsKey(cached.key)) {
+                statements.put(cached.key, cached);
+                cachedAgain = true;
+            }
+        }
+        if (!cachedAgain) {
+            closeQuietly(statement);
+        }
+    }
+
+    private static void closeQuietly(PreparedStatement statement) {
+        try {
+            statement.close();
+        } catch (SQLException e) {
+            // ignore
+        }
+    }
+
+    /**
+     * 缓存的真实Statement，以及创建时的fetchSize、queryTimeout、maxRows
+     */
+    private static final class CachedStatement {
+        private final String key;
+        private final PreparedStatement statement;
+        private final int fetchSize;
+        private final int queryTimeout;
+        private final int maxRows;
+
+        CachedStatement(String key, PreparedStatement statement) throws SQLException {
+            this.key = key;
+            this.statement = statement;
+            this.fetchSize = statement.getFetchSize();
+            this.queryTimeout = statement.getQueryTimeout();
+            this.maxRows = statement.getMaxRows();
+        }
+
+        //执行器按需设置这些值，不恢复的话上一次借出的设置会带到下一次
+        void restoreDefaults() throws SQLException {
+            if (statement.getFetchSize() != fetchSize) {
+                statement.setFetchSize(fetchSize);
+            }
+            if (statement.getQueryTimeout() != queryTimeout) {
+                statement.setQueryTimeout(queryTimeout);
+            }
+            if (statement.getMaxRows() != maxRows) {
+                statement.setMaxRows(maxRows);
+            }
+        }
+    }
+
+    /**
+     * 一次借出的Statement代理
+     */
+    private final class StatementHandle implements InvocationHandler {
+        private final CachedStatement cached;
+        private final Connection proxyConnection;
+        private boolean closed;
+
+        StatementHandle(CachedStatement cached, Connection proxyConnection) {
+            this.cached = cached;
+            this.proxyConnection = proxyConnection;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            final String methodName = method.getName();
+            if (Object.class.equals(method.getDeclaringClass())) {
+                if ("equals".equals(methodName)) {
+                    return proxy == args[0];
+                } else if ("hashCode".equals(methodName)) {
+                    return System.identityHashCode(proxy);
+                }
+                return cached.statement.toString();
+            } else if (CLOSE.equals(methodName)) {
+                if (!closed) {
+                    closed = true;
+                    release(cached);
+                }
+                return null;
+            } else if ("isClosed".equals(methodName)) {
+                return closed || cached.statement.isClosed();
+            } else if (closed) {
+                throw new SQLException("Statement is closed.");
+            } else if ("getConnection".equals(methodName)) {
+                return proxyConnection;
+            }
+            try {
+                return method.invoke(cached.statement, args);
+            } catch (Throwable t) {
+                throw ExceptionUtil.unwrapThrowable(t);
+            }
+        }
+    }
+
+}
@@ -16,6 +16,7 @@
 package org.apache.ibatis.executor;
 
 import org.apache.ibatis.cache.CacheKey;
+import org.apache.ibatis.cache.CompactCacheKey;
 import org.apache.ibatis.cache.impl.PerpetualCache;
 import org.apache.ibatis.cursor.Cursor;
 import org.apache.ibatis.executor.statement.StatementUtil;
@@ -224,12 +225,10 @@ public abstract class BaseExecutor implements Executor {
 			throw new ExecutorException("Executor was closed.");
 		}
 		//MyBatis 对于其 Key 的生成采取规则为：[mappedStementId + offset + limit + SQL + queryParams + environment]生成一个哈希码
-		CacheKey cacheKey = new CacheKey();
-		cacheKey.update(ms.getId());
-		cacheKey.update(rowBounds.getOffset());
-		cacheKey.update(rowBounds.getLimit());
-		cacheKey.update(boundSql.getSql());
+		//id、分页和SQL组成前缀，参数和环境id依次追加
 		List<ParameterMapping> parameterMappings = boundSql.getParameterMappings();
+		CacheKey cacheKey = new CompactCacheKey(ms.getCacheKeyPrefix(boundSql.getSql()),
+				rowBounds.getOffset(), rowBounds.getLimit(), parameterMappings.size() + 1);
 		TypeHandlerRegistry typeHandlerRegistry = ms.getConfiguration().getTypeHandlerRegistry();
 		// mimic DefaultParameterHandler logic
 		//模仿DefaultParameterHandler的逻辑,不再重复，请参考DefaultParameterHandler
@@ -30,6 +30,9 @@ import org.apache.ibatis.executor.keygen.NoKeyGenerator;
 import org.apache.ibatis.executor.statement.StatementHandler;
 import org.apache.ibatis.mapping.BoundSql;
 import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.ParameterMapping;
+import org.apache.ibatis.mapping.StatementType;
+import org.apache.ibatis.reflection.MetaObject;
 import org.apache.ibatis.session.Configuration;
 import org.apache.ibatis.session.ResultHandler;
 import org.apache.ibatis.session.RowBounds;
@@ -54,6 +57,11 @@ import org.apache.ibatis.transaction.Transaction;
  * 对于PrepareStatement，只要SQL相同，就只会编译一次，如果SQL不同呢？此时和Statement一样，会编译多次。PrepareStatement的优势在于支持问号“?”参数占位符，SQL相同，参数不同时，可以减少编译次数至一次，大大提高效率；另外可以防止SQL注入漏洞。
  * BatchExecutor:
  * BatchExecutor的批处理，和JDBC的批处理，主要区别就是BatchExecutor维护了一组Statement批处理对象，它有自动路由功能，SQL1、SQL2、SQL3代表不同的SQL。（Statement或Preparestatement）
+ *
+ * 自动刷新：配置了batchFlushStatements、batchFlushParameters或batchFlushBytes时，累积的语句数、参数个数或估算的参数字节数
+ * 达到阈值后，在doUpdate中按顺序executeBatch所有未执行的批处理，避免驱动中的批处理无限增长。
+ * 自动刷新不结束批处理：最后一个Statement保留下来继续addBatch，之前的Statement不会再使用，随即关闭；
+ * 更新计数追加到原来的BatchResult中，flushStatements时仍然返回完整的BatchResult列表。
  */
 public class BatchExecutor extends BaseExecutor {
 
@@ -65,6 +73,14 @@ public class BatchExecutor extends BaseExecutor {
 	// 当前保存的sql，即上次执行的sql
 	private String currentSql;
 	private MappedStatement currentStatement;
+	// 每个BatchResult中已经执行过的参数对象个数
+	private final List<Integer> executedCounts = new ArrayList<Integer>();
+	// 每个BatchResult每次executeBatch返回的更新计数，刷新时才合并成一个数组，避免每次自动刷新都复制之前的计数
+	private final List<List<int[]>> updateCountChunks = new ArrayList<List<int[]>>();
+	// 上次executeBatch之后累积的语句数、参数个数和估算的字节数
+	private int pendingStatements;
+	private int pendingParameters;
+	private long pendingBytes;
 
 	public BatchExecutor(Configuration configuration, Transaction transaction) {
 		super(configuration, transaction);
@@ -105,12 +121,161 @@ public class BatchExecutor extends BaseExecutor {
 			// 放到Statement缓存
 			statementList.add(stmt);
 			batchResultList.add(new BatchResult(ms, sql, parameterObject));
+			executedCounts.add(0);
+			updateCountChunks.add(new ArrayList<int[]>());
 		}
 		// handler.parameterize(stmt);
 		handler.batch(stmt);
+		if (shouldAutoFlush(configuration, ms, boundSql, parameterObject)) {
+			autoFlush();
+		}
 		return BATCH_UPDATE_RETURN_VALUE;
 	}
 
+	/*
+		累积本次addBatch的语句数、参数个数和字节数，判断是否达到任一阈值
+	 */
+	private boolean shouldAutoFlush(Configuration configuration, MappedStatement ms, BoundSql boundSql, Object parameterObject) {
+		final int maxStatements = configuration.getBatchFlushStatements();
+		final int maxParameters = configuration.getBatchFlushParameters();
+		final long maxBytes = configuration.getBatchFlushBytes();
+		if (maxStatements <= 0 && maxParameters <= 0 && maxBytes <= 0) {
+			return false;
+		}
+		pendingStatements++;
+		pendingParameters += boundSql.getParameterMappings().size();
+		if (maxBytes > 0) {
+			pendingBytes += estimateBytes(configuration, ms, boundSql, parameterObject);
+		}
+		return (maxStatements > 0 && pendingStatements >= maxStatements)
+				|| (maxParameters > 0 && pendingParameters >= maxParameters)
+				|| (maxBytes > 0 && pendingBytes >= maxBytes);
+	}
+
+	/*
+		粗略估算一次addBatch在驱动中占用的内存：参数值的大小，非预编译语句再加上SQL本身
+	 */
+	private long estimateBytes(Configuration configuration, MappedStatement ms, BoundSql boundSql, Object parameterObject) {
+		long bytes = 0;
+		if (ms.getStatementType() == StatementType.STATEMENT) {
+			bytes += 40 + 2L * boundSql.getSql().length();
+		}
+		MetaObject metaObject = null;
+		for (ParameterMapping parameterMapping : boundSql.getParameterMappings()) {
+			// 与DefaultParameterHandler取参数值的方式相同
+			final String propertyName = parameterMapping.getProperty();
+			final Object value;
+			if (boundSql.hasAdditionalParameter(propertyName)) {
+				value = boundSql.getAdditionalParameter(propertyName);
+			} else if (parameterObject == null) {
+				value = null;
+			} else if (configuration.getTypeHandlerRegistry().hasTypeHandler(parameterObject.getClass())) {
+				value = parameterObject;
+			} else {
+				if (metaObject == null) {
+					metaObject = configuration.newMetaObject(parameterObject);
+				}
+				value = metaObject.getValue(propertyName);
+			}
+			if (value == null) {
+				bytes += 8;
+			} else if (value instanceof String) {
+				bytes += 40 + 2L * ((String) value).length();
+			} else if (value instanceof byte[]) {
+				bytes += 16 + ((byte[]) value).length;
+			} else {
+				bytes += 16;
+			}
+		}
+		return bytes;
+	}
+
+	/*
+		按顺序执行所有未执行的批处理；最后一个Statement保留下来继续使用，之前的Statement不会再被使用，直接关闭
+	 */
+	private void autoFlush() throws SQLException {
+		final int last = statementList.size() - 1;
+		for (int i = 0; i <= last; i++) {
+			executeBatch(i, batchResultList.subList(0, i));
+		}
+		for (int i = 0; i < last; i++) {
+			closeStatement(statementList.get(i));
+			statementList.set(i, null);
+		}
+		pendingStatements = 0;
+		pendingParameters = 0;
+		pendingBytes = 0;
+	}
+
+	/*
+		执行一个Statement上尚未执行的批处理，记下这部分更新计数，并处理这部分参数对象的主键
+	 */
+	private void executeBatch(int index, List<BatchResult> completedResults) throws SQLException {
+		final BatchResult batchResult = batchResultList.get(index);
+		final List<Object> parameterObjects = batchResult.getParameterObjects();
+		final int executed = executedCounts.get(index);
+		if (executed == parameterObjects.size()) {
+			return;
+		}
+		final Statement stmt = statementList.get(index);
+		applyTransactionTimeout(stmt);
+		try {
+			updateCountChunks.get(index).add(stmt.executeBatch());
+			executedCounts.set(index, parameterObjects.size());
+			MappedStatement ms = batchResult.getMappedStatement();
+			List<Object> executedParameterObjects = executed == 0 ? parameterObjects : parameterObjects.subList(executed, parameterObjects.size());
+			KeyGenerator keyGenerator = ms.getKeyGenerator();
+			if (Jdbc3KeyGenerator.class.equals(keyGenerator.getClass())) {
+				Jdbc3KeyGenerator jdbc3KeyGenerator = (Jdbc3KeyGenerator) keyGenerator;
+				jdbc3KeyGenerator.processBatch(ms, stmt, executedParameterObjects);
+			} else if (!NoKeyGenerator.class.equals(keyGenerator.getClass())) { //issue #141
+				for (Object parameter : executedParameterObjects) {
+					keyGenerator.processAfter(this, ms, stmt, parameter);
+				}
+			}
+		} catch (BatchUpdateException e) {
+			StringBuilder message = new StringBuilder();
+			message.append(batchResult.getMappedStatement().getId())
+					.append(" (batch index #")
+					.append(index + 1)
+					.append(")")
+					.append(" failed.");
+			if (index > 0) {
+				message.append(" ")
+						.append(index)
+						.append(" prior sub executor(s) completed successfully, but will be rolled back.");
+			}
+			for (int i = 0; i <= index; i++) {
+				completeUpdateCounts(i);
+			}
+			throw new BatchExecutorException(message.toString(), e, new ArrayList<BatchResult>(completedResults), batchResult);
+		}
+	}
+
+	/*
+		把一个BatchResult所有已执行部分的更新计数合并后设置到BatchResult中，可重复调用
+	 */
+	private void completeUpdateCounts(int index) {
+		final List<int[]> chunks = updateCountChunks.get(index);
+		if (chunks.isEmpty()) {
+			return;
+		}
+		int[] updateCounts = chunks.get(0);
+		if (chunks.size() > 1) {
+			int length = 0;
+			for (int[] chunk : chunks) {
+				length += chunk.length;
+			}
+			updateCounts = new int[length];
+			int offset = 0;
+			for (int[] chunk : chunks) {
+				System.arraycopy(chunk, 0, updateCounts, offset, chunk.length);
+				offset += chunk.length;
+			}
+		}
+		batchResultList.get(index).setUpdateCounts(updateCounts);
+	}
+
 	@Override
 	public <E> List<E> doQuery(MappedStatement ms, Object parameterObject, RowBounds rowBounds, ResultHandler resultHandler, BoundSql boundSql)
 			throws SQLException {
@@ -136,6 +301,8 @@ public class BatchExecutor extends BaseExecutor {
 		Connection connection = getConnection(ms.getStatementLog());
 		Statement stmt = handler.prepare(connection, transaction.getTimeout());
 		handler.parameterize(stmt);
+		//游标关闭结果集时一并关闭Statement
+		stmt.closeOnCompletion();
 		return handler.<E>queryCursor(stmt);
 	}
 
@@ -150,37 +317,10 @@ public class BatchExecutor extends BaseExecutor {
 				return Collections.emptyList();
 			}
 			for (int i = 0, n = statementList.size(); i < n; i++) {
-				Statement stmt = statementList.get(i);
-				applyTransactionTimeout(stmt);
-				BatchResult batchResult = batchResultList.get(i);
-				try {
-					batchResult.setUpdateCounts(stmt.executeBatch());
-					MappedStatement ms = batchResult.getMappedStatement();
-					List<Object> parameterObjects = batchResult.getParameterObjects();
-					KeyGenerator keyGenerator = ms.getKeyGenerator();
-					if (Jdbc3KeyGenerator.class.equals(keyGenerator.getClass())) {
-						Jdbc3KeyGenerator jdbc3KeyGenerator = (Jdbc3KeyGenerator) keyGenerator;
-						jdbc3KeyGenerator.processBatch(ms, stmt, parameterObjects);
-					} else if (!NoKeyGenerator.class.equals(keyGenerator.getClass())) { //issue #141
-						for (Object parameter : parameterObjects) {
-							keyGenerator.processAfter(this, ms, stmt, parameter);
-						}
-					}
-				} catch (BatchUpdateException e) {
-					StringBuilder message = new StringBuilder();
-					message.append(batchResult.getMappedStatement().getId())
-							.append(" (batch index #")
-							.append(i + 1)
-							.append(")")
-							.append(" failed.");
-					if (i > 0) {
-						message.append(" ")
-								.append(i)
-								.append(" prior sub executor(s) completed successfully, but will be rolled back.");
-					}
-					throw new BatchExecutorException(message.toString(), e, results, batchResult);
-				}
-				results.add(batchResult);
+				// 自动刷新时已经执行完并关闭的Statement只返回其BatchResult
+				executeBatch(i, results);
+				completeUpdateCounts(i);
+				results.add(batchResultList.get(i));
 			}
 			return results;
 		} finally {
@@ -190,6 +330,11 @@ public class BatchExecutor extends BaseExecutor {
 			currentSql = null;
 			statementList.clear();
 			batchResultList.clear();
+			executedCounts.clear();
+			updateCountChunks.clear();
+			pendingStatements = 0;
+			pendingParameters = 0;
+			pendingBytes = 0;
 		}
 	}
 
@@ -0,0 +1,274 @@
+/**
+ *    Copyright 2009-2016 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.executor;
+
+import java.sql.BatchUpdateException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import javax.sql.DataSource;
+
+import org.apache.ibatis.executor.statement.StatementHandler;
+import org.apache.ibatis.logging.Log;
+import org.apache.ibatis.logging.jdbc.ConnectionLogger;
+import org.apache.ibatis.mapping.MappedStatement;
+
+/**
+ * 组提交的批处理队列，每个Configuration一个，多个会话共享。
+ * 同一个MappedStatement、同一条SQL的更新按时间窗口分组：窗口内第一个到达的线程作为组长，
+ * 等待窗口结束或者凑满groupCommitBatchSize条，然后从DataSource取一个连接，
+ * 把整组更新addBatch到一个PreparedStatement上，executeBatch后提交，再把每条更新的行数交给各自的调用者。
+ * 其他线程只等待自己那条更新的结果。executeBatch失败（BatchUpdateException）时回滚，再把组内的更新逐条执行、各自提交，
+ * 只有出错的那条更新的调用者收到异常；取连接等其他失败时整组回滚，每个调用者都收到同一个异常。
+ * 每一组执行完就从map中移除，只有正在等待窗口的组留在map中。
+ * 注意：组长另外从DataSource取一个连接，而它所在的会话可能已经因为之前的查询持有一个连接。
+ * 连接池的最大连接数必须大于同时持有连接并做组提交的会话数，否则所有组长都可能在等待连接，
+ * 而连接被等待结果的会话占着，直到poolTimeToWait后才报错。
+ */
+public final class GroupCommitBatches {
+
+    private final ConcurrentMap<String, Group> groups = new ConcurrentHashMap<String, Group>();
+
+    /**
+     * 加入当前窗口的批处理，等待整组提交后返回本条更新的行数
+     *
+     * @param windowMillis 窗口时长（毫秒）
+     * @param batchSize 凑满这么多条时不再等待窗口结束
+     */
+    int update(MappedStatement ms, StatementHandler handler, DataSource dataSource, long windowMillis, int batchSize) throws SQLException {
+        final String key = ms.getId() + ":" + handler.getBoundSql().getSql();
+        final Request request = new Request(handler);
+        List<Request> batch = null;
+        while (true) {
+            Group group = groups.get(key);
+            if (group == null) {
+                final Group newGroup = new Group();
+                group = groups.putIfAbsent(key, newGroup);
+                if (group == null) {
+                    group = newGroup;
+                }
+            }
+            synchronized (group) {
+                if (group.retired) {
+                    //组长已经取走这一组并从map中移除，重新查找或创建
+                    continue;
+                }
+                group.pending.add(request);
+                if (group.pending.size() == 1) {
+                    //窗口内第一个到达的线程作为组长，wait期间其他线程可以加入
+                    final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(windowMillis);
+                    long remaining;
+                    while (group.pending.size() < batchSize && (remaining = deadline - System.nanoTime()) > 0) {
+                        try {
+                            TimeUnit.NANOSECONDS.timedWait(group, remaining);
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                            break;
+                        }
+                    }
+                    batch = new ArrayList<Request>(group.pending);
+                    group.pending.clear();
+                    //取空的组立即移除，动态SQL的每种SQL文本不会一直留在map中
+                    group.retired = true;
+                    groups.remove(key, group);
+                } else if (group.pending.size() >= batchSize) {
+                    group.notifyAll();
+                }
+            }
+            break;
+        }
+        if (batch != null) {
+            execute(ms, batch, dataSource);
+        }
+        return request.await();
+    }
+
+    /**
+     * 正在等待窗口结束的组数
+     */
+    int getGroupCount() {
+        return groups.size();
+    }
+
+    private void execute(MappedStatement ms, List<Request> batch, DataSource dataSource) {
+        Connection connection = null;
+        boolean autoCommit = false;
+        try {
+            connection = dataSource.getConnection();
+            autoCommit = connection.getAutoCommit();
+            if (autoCommit) {
+                connection.setAutoCommit(false);
+            }
+            final Connection loggedConnection = loggedConnection(connection, ms.getStatementLog());
+            try {
+                executeBatch(loggedConnection, batch);
+            } catch (BatchUpdateException e) {
+                rollbackQuietly(connection);
+                if (batch.size() == 1) {
+                    batch.get(0).complete(0, e);
+                } else {
+                    //不知道是哪条更新失败，逐条重新执行并各自提交，只有出错的那条收到异常
+                    for (Request request : batch) {
+                        executeOne(loggedConnection, request);
+                    }
+                }
+            }
+        } catch (Throwable t) {
+            if (connection != null) {
+                rollbackQuietly(connection);
+            }
+            for (Request request : batch) {
+                if (!request.isDone()) {
+                    request.complete(0, t);
+                }
+            }
+        } finally {
+            if (connection != null) {
+                try {
+                    if (autoCommit) {
+                        connection.setAutoCommit(true);
+                    }
+                    connection.close();
+                } catch (SQLException e) {
+                    // ignore
+                }
+            }
+        }
+    }
+
+    private void executeBatch(Connection connection, List<Request> batch) throws SQLException {
+        final Statement stmt = batch.get(0).handler.prepare(connection, null);
+        try {
+            for (Request request : batch) {
+                request.handler.parameterize(stmt);
+                request.handler.batch(stmt);
+            }
+            final int[] updateCounts = stmt.executeBatch();
+            connection.commit();
+            for (int i = 0; i < batch.size(); i++) {
+                //驱动可能不返回每条语句的行数
+                batch.get(i).complete(i < updateCounts.length ? updateCounts[i] : Statement.SUCCESS_NO_INFO, null);
+            }
+        } finally {
+            closeQuietly(stmt);
+        }
+    }
+
+    private void executeOne(Connection connection, Request request) {
+        Statement stmt = null;
+        try {
+            stmt = request.handler.prepare(connection, null);
+            request.handler.parameterize(stmt);
+            final int updateCount = request.handler.update(stmt);
+            connection.commit();
+            request.complete(updateCount, null);
+        } catch (Throwable t) {
+            rollbackQuietly(connection);
+            request.complete(0, t);
+        } finally {
+            closeQuietly(stmt);
+        }
+    }
+
+    private static void rollbackQuietly(Connection connection) {
+        try {
+            connection.rollback();
+        } catch (SQLException e) {
+            // ignore
+        }
+    }
+
+    private static void closeQuietly(Statement stmt) {
+        if (stmt != null) {
+            try {
+                stmt.close();
+            } catch (SQLException e) {
+                // ignore
+            }
+        }
+    }
+
+    private static Connection loggedConnection(Connection connection, Log statementLog) {
+        if (statementLog.isDebugEnabled()) {
+            return ConnectionLogger.newInstance(connection, statementLog, 0);
+        }
+        return connection;
+    }
+
+    private static final class Group {
+        private final List<Request> pending = new ArrayList<Request>();
+        //已被组长取走并从map中移除，由持有锁的线程读写
+        private boolean retired;
+    }
+
+    /**
+     * 一个调用者的更新
+     */
+    private static final class Request {
+        private final StatementHandler handler;
+        private final CountDownLatch done = new CountDownLatch(1);
+        private int updateCount;
+        private Throwable failure;
+
+        Request(StatementHandler handler) {
+            this.handler = handler;
+        }
+
+        boolean isDone() {
+            return done.getCount() == 0;
+        }
+
+        void complete(int updateCount, Throwable failure) {
+            this.updateCount = updateCount;
+            this.failure = failure;
+            done.countDown();
+        }
+
+        int await() throws SQLException {
+            boolean interrupted = false;
+            //组长一定会完成整组，这里不能提前返回
+            while (true) {
+                try {
+                    done.await();
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+            if (failure instanceof SQLException) {
+                throw (SQLException) failure;
+            } else if (failure instanceof RuntimeException) {
+                throw (RuntimeException) failure;
+            } else if (failure instanceof Error) {
+                throw (Error) failure;
+            } else if (failure != null) {
+                throw new ExecutorException("Error executing group commit batch. Cause: " + failure, failure);
+            }
+            return updateCount;
+        }
+    }
+
+}
@@ -0,0 +1,71 @@
+/**
+ *    Copyright 2009-2016 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.executor;
+
+import java.sql.SQLException;
+
+import org.apache.ibatis.executor.keygen.NoKeyGenerator;
+import org.apache.ibatis.executor.statement.StatementHandler;
+import org.apache.ibatis.mapping.Environment;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.SqlCommandType;
+import org.apache.ibatis.mapping.StatementType;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.RowBounds;
+import org.apache.ibatis.transaction.Transaction;
+
+/**
+ *
+ * 组提交执行器
+ *
+ * 查询与SimpleExecutor相同。不生成主键的预编译insert、update、delete不在会话的连接上执行，
+ * 而是交给Configuration中的GroupCommitBatches，与其他会话在同一时间窗口内的相同SQL合并为一次executeBatch，
+ * 在DataSource取出的连接上提交，update()返回本条语句的行数。
+ * 注意：合并执行的更新在返回时已经提交，不属于会话的事务，会话rollback不能撤销；
+ * 适合每个会话只做一次单行写入、原本就立即提交的场景。
+ * 组长执行合并的更新时另外从DataSource取连接，会话此前的查询可能已经占用一个连接，
+ * 所以连接池的最大连接数要大于同时使用本执行器的会话数，否则组长可能一直等不到连接。
+ */
+public class GroupCommitExecutor extends SimpleExecutor {
+
+	public GroupCommitExecutor(Configuration configuration, Transaction transaction) {
+		super(configuration, transaction);
+	}
+
+	@Override
+	public int doUpdate(MappedStatement ms, Object parameter) throws SQLException {
+		final Configuration configuration = ms.getConfiguration();
+		if (!canGroupCommit(ms, configuration)) {
+			return super.doUpdate(ms, parameter);
+		}
+		StatementHandler handler = configuration.newStatementHandler(this, ms, parameter, RowBounds.DEFAULT, null, null);
+		return configuration.getGroupCommitBatches().update(ms, handler, configuration.getEnvironment().getDataSource(),
+				configuration.getGroupCommitWindow(), configuration.getGroupCommitBatchSize());
+	}
+
+	/*
+		主键需要按语句取回，存储过程和非预编译语句不能合并到同一个PreparedStatement
+	 */
+	private boolean canGroupCommit(MappedStatement ms, Configuration configuration) {
+		final Environment environment = configuration.getEnvironment();
+		final SqlCommandType sqlCommandType = ms.getSqlCommandType();
+		return environment != null && environment.getDataSource() != null
+				&& ms.getStatementType() == StatementType.PREPARED
+				&& NoKeyGenerator.class.equals(ms.getKeyGenerator().getClass())
+				&& (sqlCommandType == SqlCommandType.INSERT || sqlCommandType == SqlCommandType.UPDATE || sqlCommandType == SqlCommandType.DELETE);
+	}
+
+}
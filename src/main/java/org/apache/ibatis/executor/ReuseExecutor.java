@@ -19,9 +19,12 @@ import java.sql.Connection;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.Collections;
-import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import org.apache.ibatis.cursor.Cursor;
 import org.apache.ibatis.executor.statement.StatementHandler;
@@ -43,11 +46,18 @@ import org.apache.ibatis.transaction.Transaction;
  * 执行update或select，以sql作为key查找Statement对象，存在就使用，不存在就创建，用完后，不关闭Statement对象，
  * 而是放置于Map<String, Statement>内，供下一次使用。（可以是Statement或PrepareStatement对象）
  * 直到提交或者回滚之前，执行flushStatement时才关闭并清除缓存
+ *
+ * 缓存最多保留reuseStatementCacheSize个Statement，超过时按LRU淘汰最久未使用的Statement并关闭，
+ * 避免foreach等动态SQL为每种SQL文本都留下一个打开的Statement；正在执行的Statement和游标的Statement不会被淘汰。
  */
 public class ReuseExecutor extends BaseExecutor {
 
-	//可重用的执行器内部用了一个map，用来缓存SQL语句对应的Statement，即<sql, statement>
-	private final Map<String, Statement> statementMap = new HashMap<String, Statement>();
+	//可重用的执行器内部用了一个map，用来缓存SQL语句对应的Statement，即<sql, statement>，按访问顺序排列
+	private final Map<String, Statement> statementMap = new LinkedHashMap<String, Statement>(16, 0.75f, true);
+	//正在执行的Statement（嵌套查询执行时外层查询仍在读取结果）和游标的Statement
+	private final Set<Statement> activeStatements = Collections.newSetFromMap(new IdentityHashMap<Statement, Boolean>());
+	private long statementCacheHits;
+	private long statementCacheMisses;
 
 	public ReuseExecutor(Configuration configuration, Transaction transaction) {
 		super(configuration, transaction);
@@ -58,7 +68,12 @@ public class ReuseExecutor extends BaseExecutor {
 		Configuration configuration = ms.getConfiguration();
 		StatementHandler handler = configuration.newStatementHandler(this, ms, parameter, RowBounds.DEFAULT, null, null);
 		Statement stmt = prepareStatement(handler, ms.getStatementLog());
-		return handler.update(stmt);
+		activeStatements.add(stmt);
+		try {
+			return handler.update(stmt);
+		} finally {
+			activeStatements.remove(stmt);
+		}
 	}
 
 	@Override
@@ -66,7 +81,12 @@ public class ReuseExecutor extends BaseExecutor {
 		Configuration configuration = ms.getConfiguration();
 		StatementHandler handler = configuration.newStatementHandler(wrapper, ms, parameter, rowBounds, resultHandler, boundSql);
 		Statement stmt = prepareStatement(handler, ms.getStatementLog());
-		return handler.<E>query(stmt, resultHandler);
+		activeStatements.add(stmt);
+		try {
+			return handler.<E>query(stmt, resultHandler);
+		} finally {
+			activeStatements.remove(stmt);
+		}
 	}
 
 	@Override
@@ -74,6 +94,8 @@ public class ReuseExecutor extends BaseExecutor {
 		Configuration configuration = ms.getConfiguration();
 		StatementHandler handler = configuration.newStatementHandler(wrapper, ms, parameter, rowBounds, null, boundSql);
 		Statement stmt = prepareStatement(handler, ms.getStatementLog());
+		//游标读完之前不能关闭，直到flushStatements
+		activeStatements.add(stmt);
 		return handler.<E>queryCursor(stmt);
 	}
 
@@ -85,9 +107,24 @@ public class ReuseExecutor extends BaseExecutor {
 			closeStatement(stmt);
 		}
 		statementMap.clear();
+		activeStatements.clear();
 		return Collections.emptyList();
 	}
 
+	/**
+	 * 从缓存中取到Statement的次数
+	 */
+	public long getStatementCacheHits() {
+		return statementCacheHits;
+	}
+
+	/**
+	 * 缓存中没有、新建Statement的次数
+	 */
+	public long getStatementCacheMisses() {
+		return statementCacheMisses;
+	}
+
 	private Statement prepareStatement(StatementHandler handler, Log statementLog) throws SQLException {
 		Statement stmt;
 		//得到绑定的SQL语句
@@ -97,8 +134,10 @@ public class ReuseExecutor extends BaseExecutor {
 		if (hasStatementFor(sql)) {
 			stmt = getStatement(sql);
 			applyTransactionTimeout(stmt);
+			statementCacheHits++;
 		} else {
 			//如果缓存没有找到，则和SimpleExecutor处理完全一样，然后加入缓存
+			statementCacheMisses++;
 			Connection connection = getConnection(statementLog);
 			stmt = handler.prepare(connection, transaction.getTimeout());
 			putStatement(sql, stmt);
@@ -123,6 +162,24 @@ public class ReuseExecutor extends BaseExecutor {
 	//map的put
 	private void putStatement(String sql, Statement stmt) {
 		statementMap.put(sql, stmt);
+		evictStatements(stmt);
+	}
+
+	//超过上限时从最久未使用的一端开始，淘汰并关闭不在使用中的Statement（刚放入、即将执行的除外）；
+	//不能只看最久的一个，否则它是游标的Statement时，之后就再也不会淘汰
+	private void evictStatements(Statement current) {
+		final int maxSize = configuration.getReuseStatementCacheSize();
+		if (maxSize <= 0) {
+			return;
+		}
+		Iterator<Statement> iterator = statementMap.values().iterator();
+		while (statementMap.size() > maxSize && iterator.hasNext()) {
+			Statement stmt = iterator.next();
+			if (stmt != current && !activeStatements.contains(stmt)) {
+				iterator.remove();
+				closeStatement(stmt);
+			}
+		}
 	}
 
 }
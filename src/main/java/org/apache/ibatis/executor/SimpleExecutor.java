@@ -86,6 +86,8 @@ public class SimpleExecutor extends BaseExecutor {
 		Configuration configuration = ms.getConfiguration();
 		StatementHandler handler = configuration.newStatementHandler(wrapper, ms, parameter, rowBounds, null, boundSql);
 		Statement stmt = prepareStatement(handler, ms.getStatementLog());
+		//游标关闭结果集时一并关闭Statement
+		stmt.closeOnCompletion();
 		return handler.<E>queryCursor(stmt);
 	}
 
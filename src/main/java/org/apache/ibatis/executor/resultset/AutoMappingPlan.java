@@ -0,0 +1,54 @@
+/**
+ *    Copyright 2009-2015 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.executor.resultset;
+
+import java.util.List;
+
+import org.apache.ibatis.type.TypeHandler;
+
+/**
+ * 自动映射计划，对应一个（ResultMap id，结果集列签名，列前缀）组合。
+ * 保存每个未映射列对应的列序号、属性名和TypeHandler，创建后不再修改，
+ * 缓存在Configuration上由多个线程、多次查询共享，相同语句再次执行时不必重新查找属性和TypeHandler。
+ */
+public final class AutoMappingPlan {
+
+    final Column[] columns;
+
+    AutoMappingPlan(List<Column> columns) {
+        this.columns = columns.toArray(new Column[columns.size()]);
+    }
+
+    /**
+     * 一个列到属性的自动映射
+     */
+    static final class Column {
+        final String column;
+        final int columnIndex;
+        final String property;
+        final TypeHandler<?> typeHandler;
+        final boolean primitive;
+
+        Column(String column, int columnIndex, String property, TypeHandler<?> typeHandler, boolean primitive) {
+            this.column = column;
+            this.columnIndex = columnIndex;
+            this.property = property;
+            this.typeHandler = typeHandler;
+            this.primitive = primitive;
+        }
+    }
+
+}
@@ -0,0 +1,459 @@
+/**
+ *    Copyright 2009-2015 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.executor.resultset;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.ResultMap;
+import org.apache.ibatis.mapping.ResultMapping;
+import org.apache.ibatis.reflection.MetaClass;
+import org.apache.ibatis.reflection.ReflectionException;
+import org.apache.ibatis.reflection.Reflector;
+import org.apache.ibatis.reflection.factory.ObjectFactory;
+import org.apache.ibatis.reflection.invoker.Invoker;
+import org.apache.ibatis.reflection.wrapper.DefaultObjectWrapperFactory;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.type.BooleanTypeHandler;
+import org.apache.ibatis.type.ByteTypeHandler;
+import org.apache.ibatis.type.DoubleTypeHandler;
+import org.apache.ibatis.type.FloatTypeHandler;
+import org.apache.ibatis.type.IntegerTypeHandler;
+import org.apache.ibatis.type.LongTypeHandler;
+import org.apache.ibatis.type.PrimitiveTypeHandler;
+import org.apache.ibatis.type.ShortTypeHandler;
+import org.apache.ibatis.type.TypeHandler;
+import org.apache.ibatis.type.TypeHandlerRegistry;
+
+/**
+ * 编译后的结果行映射器，对应一个（ResultMap，结果集列签名）组合。
+ * 第一次遇到该组合时解析出每个要赋值的列：列序号、TypeHandler和属性的setter（MethodHandle），
+ * 之后每一行按列序号读取并直接调用setter，不再经过MetaObject、PropertyTokenizer和按列名查找。
+ * 赋值顺序与DefaultResultSetHandler相同：先自动映射的列，再result映射的列。
+ * 属性是基本类型并且TypeHandler实现了PrimitiveTypeHandler时，按基本类型读取并调用setter，不装箱。
+ * 只编译简单的JavaBean结果映射；含构造器映射、嵌套查询、多结果集、复合列、鉴别器、嵌套属性，
+ * 或者结果类型是Map、集合、有TypeHandler的类型时，返回NOT_COMPILABLE，由原有流程处理。
+ */
+public final class CompiledRowMapper {
+
+    /**
+     * 不能编译的组合也缓存起来，避免每次重新判断
+     */
+    static final CompiledRowMapper NOT_COMPILABLE = new CompiledRowMapper(null, null, new ColumnSetter[0]);
+
+    private static final MethodType OBJECT_SETTER_TYPE = MethodType.methodType(void.class, Object.class, Object.class);
+
+    private final Class<?> resultType;
+    private final ObjectFactory objectFactory;
+    private final ColumnSetter[] setters;
+
+    private CompiledRowMapper(Class<?> resultType, ObjectFactory objectFactory, ColumnSetter[] setters) {
+        this.resultType = resultType;
+        this.objectFactory = objectFactory;
+        this.setters = setters;
+    }
+
+    /**
+     * 映射当前行，所有列都为null时返回null
+     */
+    Object map(ResultSet rs) throws SQLException {
+        final Object resultObject = objectFactory.create(resultType);
+        boolean foundValues = false;
+        for (ColumnSetter setter : setters) {
+            if (setter.apply(resultObject, rs)) {
+                foundValues = true;
+            }
+        }
+        return foundValues ? resultObject : null;
+    }
+
+    static CompiledRowMapper compile(Configuration configuration, MappedStatement mappedStatement, ResultSetWrapper rsw, ResultMap resultMap,
+                                     boolean autoMapping) throws SQLException {
+        final Class<?> resultType = resultMap.getType();
+        final TypeHandlerRegistry typeHandlerRegistry = configuration.getTypeHandlerRegistry();
+        if (resultMap.hasNestedResultMaps() || resultMap.hasNestedQueries() || resultMap.getDiscriminator() != null
+                || !resultMap.getConstructorResultMappings().isEmpty()
+                || resultType.isInterface() || Modifier.isAbstract(resultType.getModifiers())
+                || Map.class.isAssignableFrom(resultType) || Collection.class.isAssignableFrom(resultType)
+                || typeHandlerRegistry.hasTypeHandler(resultType)
+                || !(configuration.getObjectWrapperFactory() instanceof DefaultObjectWrapperFactory)) {
+            return NOT_COMPILABLE;
+        }
+        final MetaClass metaClass = MetaClass.forClass(resultType, configuration.getReflectorFactory());
+        if (!metaClass.hasDefaultConstructor()) {
+            return NOT_COMPILABLE;
+        }
+        final Reflector reflector = configuration.getReflectorFactory().findForClass(resultType);
+        final boolean callSettersOnNulls = configuration.isCallSettersOnNulls();
+        final List<ColumnSetter> setters = new ArrayList<ColumnSetter>();
+        if (autoMapping) {
+            for (String columnName : rsw.getUnmappedColumnNames(resultMap, null)) {
+                final String property = metaClass.findProperty(columnName, configuration.isMapUnderscoreToCamelCase());
+                if (property != null && metaClass.hasSetter(property)) {
+                    if (isNestedProperty(property)) {
+                        return NOT_COMPILABLE;
+                    }
+                    final Class<?> propertyType = metaClass.getSetterType(property);
+                    if (typeHandlerRegistry.hasTypeHandler(propertyType, rsw.getJdbcType(columnName))) {
+                        final TypeHandler<?> typeHandler = rsw.getTypeHandler(propertyType, columnName);
+                        setters.add(newColumnSetter(columnIndex(rsw, columnName), typeHandler, resultType, reflector, property,
+                                callSettersOnNulls && !propertyType.isPrimitive()));
+                    } else {
+                        configuration.getAutoMappingUnknownColumnBehavior()
+                                .doAction(mappedStatement, columnName, property, propertyType);
+                    }
+                } else {
+                    configuration.getAutoMappingUnknownColumnBehavior()
+                            .doAction(mappedStatement, columnName, (property != null) ? property : columnName, null);
+                }
+            }
+        }
+        final List<String> mappedColumnNames = rsw.getMappedColumnNames(resultMap, null);
+        for (ResultMapping propertyMapping : resultMap.getPropertyResultMappings()) {
+            if (propertyMapping.isCompositeResult() || propertyMapping.getResultSet() != null) {
+                return NOT_COMPILABLE;
+            }
+            final String column = propertyMapping.getColumn();
+            final String property = propertyMapping.getProperty();
+            // issue #541 make property optional
+            if (column == null || property == null || !mappedColumnNames.contains(column.toUpperCase(Locale.ENGLISH))) {
+                continue;
+            }
+            if (isNestedProperty(property) || !metaClass.hasSetter(property)) {
+                return NOT_COMPILABLE;
+            }
+            final boolean primitive = metaClass.getSetterType(property).isPrimitive();
+            setters.add(newColumnSetter(columnIndex(rsw, column), propertyMapping.getTypeHandler(), resultType, reflector, property,
+                    callSettersOnNulls && !primitive));
+        }
+        return new CompiledRowMapper(resultType, configuration.getObjectFactory(), setters.toArray(new ColumnSetter[setters.size()]));
+    }
+
+    private static boolean isNestedProperty(String property) {
+        return property.indexOf('.') >= 0 || property.indexOf('[') >= 0;
+    }
+
+    private static int columnIndex(ResultSetWrapper rsw, String columnName) {
+        final int columnIndex = rsw.getColumnIndex(columnName);
+        if (columnIndex > 0) {
+            return columnIndex;
+        }
+        throw new ReflectionException("Column '" + columnName + "' not found in result set");
+    }
+
+    private static ColumnSetter newColumnSetter(int columnIndex, TypeHandler<?> typeHandler, Class<?> type, Reflector reflector,
+                                                String property, boolean setNull) {
+        final Class<?> setterType = reflector.getSetterType(property);
+        if (setterType.isPrimitive()) {
+            final MethodHandle handle = resolveHandle(type, reflector, property, MethodType.methodType(void.class, Object.class, setterType));
+            //只有内置的类型处理器才走基本类型读取：子类覆盖了getNullableResult时，继承来的getInt等方法会绕过覆盖的逻辑
+            if (handle != null) {
+                if (setterType == int.class && typeHandler.getClass() == IntegerTypeHandler.class) {
+                    return new IntColumnSetter(columnIndex, (PrimitiveTypeHandler.OfInt) typeHandler, handle, property);
+                } else if (setterType == long.class && typeHandler.getClass() == LongTypeHandler.class) {
+                    return new LongColumnSetter(columnIndex, (PrimitiveTypeHandler.OfLong) typeHandler, handle, property);
+                } else if (setterType == double.class && typeHandler.getClass() == DoubleTypeHandler.class) {
+                    return new DoubleColumnSetter(columnIndex, (PrimitiveTypeHandler.OfDouble) typeHandler, handle, property);
+                } else if (setterType == float.class && typeHandler.getClass() == FloatTypeHandler.class) {
+                    return new FloatColumnSetter(columnIndex, (PrimitiveTypeHandler.OfFloat) typeHandler, handle, property);
+                } else if (setterType == short.class && typeHandler.getClass() == ShortTypeHandler.class) {
+                    return new ShortColumnSetter(columnIndex, (PrimitiveTypeHandler.OfShort) typeHandler, handle, property);
+                } else if (setterType == byte.class && typeHandler.getClass() == ByteTypeHandler.class) {
+                    return new ByteColumnSetter(columnIndex, (PrimitiveTypeHandler.OfByte) typeHandler, handle, property);
+                } else if (setterType == boolean.class && typeHandler.getClass() == BooleanTypeHandler.class) {
+                    return new BooleanColumnSetter(columnIndex, (PrimitiveTypeHandler.OfBoolean) typeHandler, handle, property);
+                }
+            }
+        }
+        final MethodHandle handle = resolveHandle(type, reflector, property, OBJECT_SETTER_TYPE);
+        return new ObjectColumnSetter(columnIndex, typeHandler, handle, handle == null ? reflector.getSetInvoker(property) : null, property, setNull);
+    }
+
+    /**
+     * 优先使用setter方法，其次是字段，适配为setterType；都无法直接访问时返回null，由调用者退回到Reflector的Invoker。
+     * 用asType而不是explicitCastArguments：类型不符的值（如Long赋给int属性）抛出异常，不会被静默截断，与反射的行为一致
+     */
+    private static MethodHandle resolveHandle(Class<?> type, Reflector reflector, String property, MethodType setterType) {
+        final Class<?> propertyType = reflector.getSetterType(property);
+        final String methodName = "set" + Character.toUpperCase(property.charAt(0)) + property.substring(1);
+        final MethodHandles.Lookup lookup = MethodHandles.lookup();
+        for (Class<?> current = type; current != null && current != Object.class; current = current.getSuperclass()) {
+            try {
+                Method method = current.getDeclaredMethod(methodName, propertyType);
+                method.setAccessible(true);
+                return lookup.unreflect(method).asType(setterType);
+            } catch (NoSuchMethodException e) {
+                // 继续查找父类
+            } catch (Exception e) {
+                break;
+            }
+        }
+        for (Class<?> current = type; current != null && current != Object.class; current = current.getSuperclass()) {
+            try {
+                Field field = current.getDeclaredField(property);
+                if (!Modifier.isStatic(field.getModifiers()) && !Modifier.isFinal(field.getModifiers())) {
+                    field.setAccessible(true);
+                    return lookup.unreflectSetter(field).asType(setterType);
+                }
+                break;
+            } catch (NoSuchFieldException e) {
+                // 继续查找父类
+            } catch (Exception e) {
+                break;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 一个列到属性的赋值
+     */
+    private abstract static class ColumnSetter {
+        final int columnIndex;
+        final MethodHandle handle;
+        final String property;
+
+        ColumnSetter(int columnIndex, MethodHandle handle, String property) {
+            this.columnIndex = columnIndex;
+            this.handle = handle;
+            this.property = property;
+        }
+
+        /**
+         * 读取列值并赋给属性
+         * @return 列值不为null时返回true
+         */
+        abstract boolean apply(Object target, ResultSet rs) throws SQLException;
+
+        ReflectionException setFailed(Object target, Object value, Throwable t) {
+            return new ReflectionException("Could not set property '" + property + "' of '" + target.getClass() + "' with value '" + value + "' Cause: " + t.toString(), t);
+        }
+    }
+
+    private static final class ObjectColumnSetter extends ColumnSetter {
+        private final TypeHandler<?> typeHandler;
+        private final Invoker invoker;
+        private final boolean setNull;
+
+        ObjectColumnSetter(int columnIndex, TypeHandler<?> typeHandler, MethodHandle handle, Invoker invoker, String property, boolean setNull) {
+            super(columnIndex, handle, property);
+            this.typeHandler = typeHandler;
+            this.invoker = invoker;
+            this.setNull = setNull;
+        }
+
+        @Override
+        boolean apply(Object target, ResultSet rs) throws SQLException {
+            final Object value = typeHandler.getResult(rs, columnIndex);
+            if (value != null) {
+                set(target, value);
+                return true;
+            } else if (setNull) {
+                // gcode issue #377, call setter on nulls (value is not 'found')
+                set(target, null);
+            }
+            return false;
+        }
+
+        private void set(Object target, Object value) {
+            try {
+                if (handle != null) {
+                    handle.invokeExact(target, value);
+                } else {
+                    invoker.invoke(target, new Object[]{value});
+                }
+            } catch (Throwable t) {
+                throw setFailed(target, value, t);
+            }
+        }
+    }
+
+    //以下按基本类型读取和赋值，列值为null时不调用setter，与基本类型属性的原有处理一致
+
+    private static final class IntColumnSetter extends ColumnSetter {
+        private final PrimitiveTypeHandler.OfInt typeHandler;
+
+        IntColumnSetter(int columnIndex, PrimitiveTypeHandler.OfInt typeHandler, MethodHandle handle, String property) {
+            super(columnIndex, handle, property);
+            this.typeHandler = typeHandler;
+        }
+
+        @Override
+        boolean apply(Object target, ResultSet rs) throws SQLException {
+            final int value = typeHandler.getInt(rs, columnIndex);
+            if (rs.wasNull()) {
+                return false;
+            }
+            try {
+                handle.invokeExact(target, value);
+            } catch (Throwable t) {
+                throw setFailed(target, value, t);
+            }
+            return true;
+        }
+    }
+
+    private static final class LongColumnSetter extends ColumnSetter {
+        private final PrimitiveTypeHandler.OfLong typeHandler;
+
+        LongColumnSetter(int columnIndex, PrimitiveTypeHandler.OfLong typeHandler, MethodHandle handle, String property) {
+            super(columnIndex, handle, property);
+            this.typeHandler = typeHandler;
+        }
+
+        @Override
+        boolean apply(Object target, ResultSet rs) throws SQLException {
+            final long value = typeHandler.getLong(rs, columnIndex);
+            if (rs.wasNull()) {
+                return false;
+            }
+            try {
+                handle.invokeExact(target, value);
+            } catch (Throwable t) {
+                throw setFailed(target, value, t);
+            }
+            return true;
+        }
+    }
+
+    private static final class DoubleColumnSetter extends ColumnSetter {
+        private final PrimitiveTypeHandler.OfDouble typeHandler;
+
+        DoubleColumnSetter(int columnIndex, PrimitiveTypeHandler.OfDouble typeHandler, MethodHandle handle, String property) {
+            super(columnIndex, handle, property);
+            this.typeHandler = typeHandler;
+        }
+
+        @Override
+        boolean apply(Object target, ResultSet rs) throws SQLException {
+            final double value = typeHandler.getDouble(rs, columnIndex);
+            if (rs.wasNull()) {
+                return false;
+            }
+            try {
+                handle.invokeExact(target, value);
+            } catch (Throwable t) {
+                throw setFailed(target, value, t);
+            }
+            return true;
+        }
+    }
+
+    private static final class FloatColumnSetter extends ColumnSetter {
+        private final PrimitiveTypeHandler.OfFloat typeHandler;
+
+        FloatColumnSetter(int columnIndex, PrimitiveTypeHandler.OfFloat typeHandler, MethodHandle handle, String property) {
+            super(columnIndex, handle, property);
+            this.typeHandler = typeHandler;
+        }
+
+        @Override
+        boolean apply(Object target, ResultSet rs) throws SQLException {
+            final float value = typeHandler.getFloat(rs, columnIndex);
+            if (rs.wasNull()) {
+                return false;
+            }
+            try {
+                handle.invokeExact(target, value);
+            } catch (Throwable t) {
+                throw setFailed(target, value, t);
+            }
+            return true;
+        }
+    }
+
+    private static final class ShortColumnSetter extends ColumnSetter {
+        private final PrimitiveTypeHandler.OfShort typeHandler;
+
+        ShortColumnSetter(int columnIndex, PrimitiveTypeHandler.OfShort typeHandler, MethodHandle handle, String property) {
+            super(columnIndex, handle, property);
+            this.typeHandler = typeHandler;
+        }
+
+        @Override
+        boolean apply(Object target, ResultSet rs) throws SQLException {
+            final short value = typeHandler.getShort(rs, columnIndex);
+            if (rs.wasNull()) {
+                return false;
+            }
+            try {
+                handle.invokeExact(target, value);
+            } catch (Throwable t) {
+                throw setFailed(target, value, t);
+            }
+            return true;
+        }
+    }
+
+    private static final class ByteColumnSetter extends ColumnSetter {
+        private final PrimitiveTypeHandler.OfByte typeHandler;
+
+        ByteColumnSetter(int columnIndex, PrimitiveTypeHandler.OfByte typeHandler, MethodHandle handle, String property) {
+            super(columnIndex, handle, property);
+            this.typeHandler = typeHandler;
+        }
+
+        @Override
+        boolean apply(Object target, ResultSet rs) throws SQLException {
+            final byte value = typeHandler.getByte(rs, columnIndex);
+            if (rs.wasNull()) {
+                return false;
+            }
+            try {
+                handle.invokeExact(target, value);
+            } catch (Throwable t) {
+                throw setFailed(target, value, t);
+            }
+            return true;
+        }
+    }
+
+    private static final class BooleanColumnSetter extends ColumnSetter {
+        private final PrimitiveTypeHandler.OfBoolean typeHandler;
+
+        BooleanColumnSetter(int columnIndex, PrimitiveTypeHandler.OfBoolean typeHandler, MethodHandle handle, String property) {
+            super(columnIndex, handle, property);
+            this.typeHandler = typeHandler;
+        }
+
+        @Override
+        boolean apply(Object target, ResultSet rs) throws SQLException {
+            final boolean value = typeHandler.getBoolean(rs, columnIndex);
+            if (rs.wasNull()) {
+                return false;
+            }
+            try {
+                handle.invokeExact(target, value);
+            } catch (Throwable t) {
+                throw setFailed(target, value, t);
+            }
+            return true;
+        }
+    }
+
+}
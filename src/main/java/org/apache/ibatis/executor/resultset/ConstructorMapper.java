@@ -0,0 +1,254 @@
+/**
+ *    Copyright 2009-2015 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.executor.resultset;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Modifier;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+
+import org.apache.ibatis.executor.ExecutorException;
+import org.apache.ibatis.executor.result.ResultMapException;
+import org.apache.ibatis.mapping.ResultMap;
+import org.apache.ibatis.mapping.ResultMapping;
+import org.apache.ibatis.reflection.ReflectionException;
+import org.apache.ibatis.reflection.factory.DefaultObjectFactory;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.type.TypeHandler;
+
+/**
+ * 解析好的构造器映射，对应一个（ResultMap，列前缀，结果集列签名）组合。
+ * 第一次遇到该组合时找到构造器，生成接收Object[]参数的MethodHandle，并确定每个参数的列序号和TypeHandler；
+ * 之后每一行按列序号读取参数并调用MethodHandle，不再按参数类型查找构造器，也不再为每行创建参数类型和参数值的List。
+ * 只处理ObjectFactory是DefaultObjectFactory、没有嵌套查询、构造参数都是简单列的结果映射，
+ * 其他情况返回NOT_APPLICABLE，由DefaultResultSetHandler原有流程处理。
+ * 本类不可变，可以在线程间共享；每行复用的参数数组在Invocation中，每个DefaultResultSetHandler各自创建。
+ */
+public final class ConstructorMapper {
+
+    /**
+     * 不适用的组合也缓存起来，避免每次重新判断
+     */
+    static final ConstructorMapper NOT_APPLICABLE = new ConstructorMapper(null, new Class<?>[0], null, new Argument[0]);
+
+    private static final MethodType SPREAD_TYPE = MethodType.methodType(Object.class, Object[].class);
+
+    private final Class<?> resultType;
+    private final Class<?>[] parameterTypes;
+    private final MethodHandle constructor;
+    private final Argument[] arguments;
+
+    private ConstructorMapper(Class<?> resultType, Class<?>[] parameterTypes, MethodHandle constructor, Argument[] arguments) {
+        this.resultType = resultType;
+        this.parameterTypes = parameterTypes;
+        this.constructor = constructor;
+        this.arguments = arguments;
+    }
+
+    Invocation newInvocation() {
+        return new Invocation(this);
+    }
+
+    /**
+     * 按resultMap中的constructor映射解析，与DefaultObjectFactory一样按javaType查找构造器
+     */
+    static ConstructorMapper compile(Configuration configuration, ResultSetWrapper rsw, ResultMap resultMap, String columnPrefix) {
+        final Class<?> resultType = resultMap.getType();
+        if (!isApplicable(configuration, resultMap)) {
+            return NOT_APPLICABLE;
+        }
+        final List<ResultMapping> constructorMappings = resultMap.getConstructorResultMappings();
+        final Class<?>[] parameterTypes = new Class<?>[constructorMappings.size()];
+        final Argument[] arguments = new Argument[constructorMappings.size()];
+        for (int i = 0; i < arguments.length; i++) {
+            final ResultMapping constructorMapping = constructorMappings.get(i);
+            if (constructorMapping.getNestedQueryId() != null || constructorMapping.getNestedResultMapId() != null
+                    || constructorMapping.getColumn() == null || constructorMapping.isCompositeResult()
+                    || constructorMapping.getTypeHandler() == null) {
+                return NOT_APPLICABLE;
+            }
+            final int columnIndex = rsw.getColumnIndex(DefaultResultSetHandler.prependPrefix(constructorMapping.getColumn(), columnPrefix));
+            if (columnIndex < 1) {
+                return NOT_APPLICABLE;
+            }
+            parameterTypes[i] = constructorMapping.getJavaType();
+            arguments[i] = new Argument(columnIndex, constructorMapping.getTypeHandler(), constructorMapping);
+        }
+        try {
+            return newMapper(resultType, resultType.getDeclaredConstructor(parameterTypes), arguments);
+        } catch (NoSuchMethodException e) {
+            return NOT_APPLICABLE;
+        }
+    }
+
+    /**
+     * 自动映射：查找参数类型依次与结果集各列Java类型相同的构造器
+     */
+    static ConstructorMapper compileBySignature(Configuration configuration, ResultSetWrapper rsw, ResultMap resultMap, String columnPrefix) {
+        final Class<?> resultType = resultMap.getType();
+        if (!isApplicable(configuration, resultMap)) {
+            return NOT_APPLICABLE;
+        }
+        final List<String> columnNames = rsw.getColumnNames();
+        final List<String> classNames = rsw.getClassNames();
+        for (Constructor<?> constructor : resultType.getDeclaredConstructors()) {
+            final Class<?>[] parameterTypes = constructor.getParameterTypes();
+            if (!matches(parameterTypes, classNames)) {
+                continue;
+            }
+            final Argument[] arguments = new Argument[parameterTypes.length];
+            for (int i = 0; i < parameterTypes.length; i++) {
+                final String columnName = columnNames.get(i);
+                final int columnIndex = rsw.getColumnIndex(DefaultResultSetHandler.prependPrefix(columnName, columnPrefix));
+                if (columnIndex < 1) {
+                    return NOT_APPLICABLE;
+                }
+                arguments[i] = new Argument(columnIndex, rsw.getTypeHandler(parameterTypes[i], columnName), null);
+            }
+            return newMapper(resultType, constructor, arguments);
+        }
+        return NOT_APPLICABLE;
+    }
+
+    private static boolean isApplicable(Configuration configuration, ResultMap resultMap) {
+        final Class<?> resultType = resultMap.getType();
+        //自定义ObjectFactory可能改变创建对象的方式；嵌套查询的懒加载代理需要参数类型和参数值的List
+        return configuration.getObjectFactory().getClass() == DefaultObjectFactory.class
+                && !resultMap.hasNestedQueries()
+                && !resultType.isInterface() && !Modifier.isAbstract(resultType.getModifiers());
+    }
+
+    private static boolean matches(Class<?>[] parameterTypes, List<String> classNames) {
+        if (parameterTypes.length != classNames.size()) {
+            return false;
+        }
+        for (int i = 0; i < parameterTypes.length; i++) {
+            if (!parameterTypes[i].getName().equals(classNames.get(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static ConstructorMapper newMapper(Class<?> resultType, Constructor<?> constructor, Argument[] arguments) {
+        try {
+            if (!constructor.isAccessible()) {
+                constructor.setAccessible(true);
+            }
+            final MethodHandle handle = MethodHandles.lookup().unreflectConstructor(constructor)
+                    .asSpreader(Object[].class, arguments.length)
+                    .asType(SPREAD_TYPE);
+            return new ConstructorMapper(resultType, constructor.getParameterTypes(), handle, arguments);
+        } catch (Exception e) {
+            //无法访问的构造器交给DefaultObjectFactory处理，错误信息保持不变
+            return NOT_APPLICABLE;
+        }
+    }
+
+    /**
+     * 一个构造参数
+     */
+    private static final class Argument {
+        final int columnIndex;
+        final TypeHandler<?> typeHandler;
+        // constructor映射，自动映射时为null
+        final ResultMapping constructorMapping;
+
+        Argument(int columnIndex, TypeHandler<?> typeHandler, ResultMapping constructorMapping) {
+            this.columnIndex = columnIndex;
+            this.typeHandler = typeHandler;
+            this.constructorMapping = constructorMapping;
+        }
+    }
+
+    /**
+     * 构造器映射的一次使用者，持有每行复用的参数数组，非线程安全
+     */
+    static final class Invocation {
+        private final ConstructorMapper mapper;
+        private final Object[] args;
+
+        private Invocation(ConstructorMapper mapper) {
+            this.mapper = mapper;
+            this.args = new Object[mapper.arguments.length];
+        }
+
+        boolean isApplicable() {
+            return mapper != NOT_APPLICABLE;
+        }
+
+        /**
+         * 用当前行创建对象，所有参数都为null时返回null
+         */
+        Object create(ResultSet rs) throws SQLException {
+            final Argument[] arguments = mapper.arguments;
+            boolean foundValues = false;
+            try {
+                for (int i = 0; i < arguments.length; i++) {
+                    final Argument argument = arguments[i];
+                    final Object value;
+                    if (argument.constructorMapping == null) {
+                        value = argument.typeHandler.getResult(rs, argument.columnIndex);
+                    } else {
+                        try {
+                            value = argument.typeHandler.getResult(rs, argument.columnIndex);
+                        } catch (ResultMapException e) {
+                            throw new ExecutorException("Could not process result for mapping: " + argument.constructorMapping, e);
+                        } catch (SQLException e) {
+                            throw new ExecutorException("Could not process result for mapping: " + argument.constructorMapping, e);
+                        }
+                    }
+                    args[i] = value;
+                    foundValues = value != null || foundValues;
+                }
+                return foundValues ? newInstance() : null;
+            } finally {
+                //不保留上一行的值
+                for (int i = 0; i < args.length; i++) {
+                    args[i] = null;
+                }
+            }
+        }
+
+        private Object newInstance() {
+            try {
+                return (Object) mapper.constructor.invokeExact(args);
+            } catch (Throwable t) {
+                throw instantiationFailed(t);
+            }
+        }
+
+        //与DefaultObjectFactory的错误信息相同
+        private ReflectionException instantiationFailed(Throwable t) {
+            final StringBuilder argTypes = new StringBuilder();
+            final StringBuilder argValues = new StringBuilder();
+            for (int i = 0; i < args.length; i++) {
+                if (i > 0) {
+                    argTypes.append(",");
+                    argValues.append(",");
+                }
+                argTypes.append(mapper.parameterTypes[i].getSimpleName());
+                argValues.append(String.valueOf(args[i]));
+            }
+            return new ReflectionException("Error instantiating " + mapper.resultType + " with invalid types (" + argTypes + ") or values (" + argValues + "). Cause: " + t, t);
+        }
+    }
+
+}
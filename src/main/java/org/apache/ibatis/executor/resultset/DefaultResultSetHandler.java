@@ -20,13 +20,20 @@ import java.sql.CallableStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 
 import org.apache.ibatis.binding.MapperMethod.ParamMap;
 import org.apache.ibatis.cache.CacheKey;
@@ -68,6 +75,11 @@ import org.apache.ibatis.type.TypeHandlerRegistry;
 public class DefaultResultSetHandler implements ResultSetHandler {
 
 	private static final Object DEFERED = new Object();
+	//分区处理嵌套结果时，还没有组装出父对象的位置
+	private static final Object NO_ROW_VALUE = new Object();
+
+	//并行映射时每个任务处理的行数
+	private static final int PARALLEL_BATCH_SIZE = 256;
 
 	private final Executor executor;
 	private final Configuration configuration;
@@ -89,27 +101,27 @@ public class DefaultResultSetHandler implements ResultSetHandler {
 	private final Map<String, ResultMapping> nextResultMaps = new HashMap<String, ResultMapping>();
 	private final Map<CacheKey, List<PendingRelation>> pendingRelations = new HashMap<CacheKey, List<PendingRelation>>();
 
-	// Cached Automappings
-	private final Map<String, List<UnMappedColumnAutoMapping>> autoMappingsCache = new HashMap<String, List<UnMappedColumnAutoMapping>>();
+	// Cached Automappings, plans are shared through the configuration, this only saves the lookup per row
+	private final Map<String, AutoMappingPlan> autoMappingsCache = new HashMap<String, AutoMappingPlan>();
+	// column indexes in the cached automappings belong to this result set
+	private ResultSetWrapper autoMappingsRsw;
+
+	// compiled row mappers of the current result set
+	private final Map<ResultMap, CompiledRowMapper> compiledRowMappers = new IdentityHashMap<ResultMap, CompiledRowMapper>();
+	private ResultSetWrapper compiledRowMappersRsw;
+
+	// resolved constructors of the current result set, the argument arrays are reused per row
+	private final Map<String, ConstructorMapper.Invocation> constructorMappers = new HashMap<String, ConstructorMapper.Invocation>();
+	private ResultSetWrapper constructorMappersRsw;
+
+	// a cursor fetches one object at a time and must not read ahead
+	private boolean cursorResults;
 
 	private static class PendingRelation {
 		public MetaObject metaObject;
 		public ResultMapping propertyMapping;
 	}
 
-	private static class UnMappedColumnAutoMapping {
-		private final String column;
-		private final String property;
-		private final TypeHandler<?> typeHandler;
-		private final boolean primitive;
-		public UnMappedColumnAutoMapping(String column, String property, TypeHandler<?> typeHandler, boolean primitive) {
-			this.column = column;
-			this.property = property;
-			this.typeHandler = typeHandler;
-			this.primitive = primitive;
-		}
-	}
-
 	public DefaultResultSetHandler(Executor executor, MappedStatement mappedStatement, ParameterHandler parameterHandler, ResultHandler<?> resultHandler, BoundSql boundSql,
 								   RowBounds rowBounds) {
 		this.executor = executor;
@@ -219,6 +231,7 @@ public class DefaultResultSetHandler implements ResultSetHandler {
 		}
 
 		ResultMap resultMap = resultMaps.get(0);
+		cursorResults = true;
 		return new DefaultCursor<E>(this, resultMap, rsw, rowBounds);
 	}
 
@@ -331,20 +344,121 @@ public class DefaultResultSetHandler implements ResultSetHandler {
 
 	private void handleRowValuesForSimpleResultMap(ResultSetWrapper rsw, ResultMap resultMap, ResultHandler<?> resultHandler, RowBounds rowBounds, ResultMapping parentMapping)
 			throws SQLException {
+		if (shouldMapRowsInParallel(resultMap, parentMapping)) {
+			handleRowValuesInParallel(rsw, resultMap, resultHandler, rowBounds);
+			return;
+		}
 		DefaultResultContext<Object> resultContext = new DefaultResultContext<Object>();
 		// 跳到offset位置，准备读取
 		skipRows(rsw.getResultSet(), rowBounds);
 		// 读取limit条数据
 		while (shouldProcessMoreRows(resultContext, rowBounds) && rsw.getResultSet().next()) {
-			ResultMap discriminatedResultMap = resolveDiscriminatedResultMap(rsw.getResultSet(), resultMap, null);
+			ResultMap discriminatedResultMap = resolveDiscriminatedResultMap(rsw, resultMap, null);
 			Object rowValue = getRowValue(rsw, discriminatedResultMap);
-			storeObject(resultHandler, resultContext, rowValue, parentMapping, rsw.getResultSet());
+			storeObject(resultHandler, resultContext, rowValue, parentMapping, rsw);
+		}
+	}
+
+	//嵌套查询（延迟加载）要使用执行器，多结果集关联要修改本handler的状态，都不能在其他线程上映射；鉴别器可能选中这样的结果映射
+	private boolean shouldMapRowsInParallel(ResultMap resultMap, ResultMapping parentMapping) {
+		if (!configuration.isParallelRowMappingEnabled() || cursorResults || parentMapping != null
+				|| resultMap.hasNestedQueries() || resultMap.getDiscriminator() != null) {
+			return false;
 		}
+		for (ResultMapping propertyMapping : resultMap.getPropertyResultMappings()) {
+			if (propertyMapping.getResultSet() != null) {
+				return false;
+			}
+		}
+		return true;
 	}
 
-	private void storeObject(ResultHandler<?> resultHandler, DefaultResultContext<Object> resultContext, Object rowValue, ResultMapping parentMapping, ResultSet rs) throws SQLException {
+	/**
+	 * 读取线程只把各列的原始值复制到行缓冲中，每PARALLEL_BATCH_SIZE行作为一个任务提交到ForkJoinPool，
+	 * 由任务自己的DefaultResultSetHandler完成TypeHandler转换和对象创建。
+	 * 读取线程按提交顺序等待各批结果并调用ResultHandler，结果顺序与逐行映射相同；
+	 * 同时在途的批数不超过并行度的两倍，限制预读的行数。
+	 */
+	private void handleRowValuesInParallel(ResultSetWrapper rsw, ResultMap resultMap, ResultHandler<?> resultHandler, RowBounds rowBounds) throws SQLException {
+		final DefaultResultContext<Object> resultContext = new DefaultResultContext<Object>();
+		skipRows(rsw.getResultSet(), rowBounds);
+		final ForkJoinPool pool = ForkJoinPool.commonPool();
+		final int maxBatchesInFlight = Math.max(2, pool.getParallelism() * 2);
+		final Deque<ForkJoinTask<List<Object>>> batches = new ArrayDeque<ForkJoinTask<List<Object>>>();
+		final ResultSet rs = rsw.getResultSet();
+		final int columnCount = rsw.getColumnNames().size();
+		int rowsRead = 0;
+		try {
+			List<Object[]> rows = new ArrayList<Object[]>(PARALLEL_BATCH_SIZE);
+			while (rowsRead < rowBounds.getLimit() && !resultContext.isStopped() && rs.next()) {
+				rows.add(RowBufferResultSet.readRow(rs, columnCount));
+				rowsRead++;
+				if (rows.size() == PARALLEL_BATCH_SIZE) {
+					batches.add(pool.submit(newRowMappingTask(rsw, resultMap, rows)));
+					rows = new ArrayList<Object[]>(PARALLEL_BATCH_SIZE);
+					if (batches.size() >= maxBatchesInFlight) {
+						storeMappedRows(resultHandler, resultContext, rowBounds, rsw, batches.poll());
+					}
+				}
+			}
+			if (!rows.isEmpty() && !resultContext.isStopped()) {
+				batches.add(pool.submit(newRowMappingTask(rsw, resultMap, rows)));
+			}
+			while (!batches.isEmpty() && shouldProcessMoreRows(resultContext, rowBounds)) {
+				storeMappedRows(resultHandler, resultContext, rowBounds, rsw, batches.poll());
+			}
+		} finally {
+			for (ForkJoinTask<List<Object>> batch : batches) {
+				batch.cancel(false);
+			}
+		}
+	}
+
+	private Callable<List<Object>> newRowMappingTask(ResultSetWrapper rsw, final ResultMap resultMap, final List<Object[]> rows) {
+		final ResultSetWrapper batchRsw = new ResultSetWrapper(RowBufferResultSet.newResultSet(rsw, RowBufferResultSet.rows(rows)), rsw);
+		final DefaultResultSetHandler worker = new DefaultResultSetHandler(executor, mappedStatement, parameterHandler, resultHandler, boundSql, rowBounds);
+		return new Callable<List<Object>>() {
+			@Override
+			public List<Object> call() throws SQLException {
+				ErrorContext.instance().activity("mapping rows in parallel").object(mappedStatement.getId());
+				try {
+					final List<Object> rowValues = new ArrayList<Object>(rows.size());
+					while (batchRsw.getResultSet().next()) {
+						rowValues.add(worker.getRowValue(batchRsw, resultMap));
+					}
+					return rowValues;
+				} finally {
+					ErrorContext.instance().reset();
+				}
+			}
+		};
+	}
+
+	private void storeMappedRows(ResultHandler<?> resultHandler, DefaultResultContext<Object> resultContext, RowBounds rowBounds, ResultSetWrapper rsw,
+								 ForkJoinTask<List<Object>> batch) throws SQLException {
+		final List<Object> rowValues;
+		try {
+			rowValues = batch.join();
+		} catch (RuntimeException e) {
+			//任务中抛出的SQLException被包装为RuntimeException
+			for (Throwable cause = e.getCause(); cause != null; cause = cause.getCause()) {
+				if (cause instanceof SQLException) {
+					throw (SQLException) cause;
+				}
+			}
+			throw e;
+		}
+		for (Object rowValue : rowValues) {
+			if (!shouldProcessMoreRows(resultContext, rowBounds)) {
+				return;
+			}
+			storeObject(resultHandler, resultContext, rowValue, null, rsw);
+		}
+	}
+
+	private void storeObject(ResultHandler<?> resultHandler, DefaultResultContext<Object> resultContext, Object rowValue, ResultMapping parentMapping, ResultSetWrapper rsw) throws SQLException {
 		if (parentMapping != null) {
-			linkToParents(rs, parentMapping, rowValue);
+			linkToParents(rsw, parentMapping, rowValue);
 		} else {
 			callResultHandler(resultHandler, resultContext, rowValue);
 		}
@@ -379,6 +493,12 @@ public class DefaultResultSetHandler implements ResultSetHandler {
 	//
 
 	private Object getRowValue(ResultSetWrapper rsw, ResultMap resultMap) throws SQLException {
+		if (configuration.isCompiledRowMappingEnabled()) {
+			final CompiledRowMapper compiledRowMapper = getCompiledRowMapper(rsw, resultMap);
+			if (compiledRowMapper != CompiledRowMapper.NOT_COMPILABLE) {
+				return compiledRowMapper.map(rsw.getResultSet());
+			}
+		}
 		final ResultLoaderMap lazyLoader = new ResultLoaderMap();
 		Object resultObject = createResultObject(rsw, resultMap, lazyLoader, null);
 		if (resultObject != null && !hasTypeHandlerForResultObject(rsw, resultMap.getType())) {
@@ -395,6 +515,29 @@ public class DefaultResultSetHandler implements ResultSetHandler {
 		return resultObject;
 	}
 
+	//先查本结果集已用过的映射器，再查Configuration中跨查询共享的映射器，都没有时编译
+	private CompiledRowMapper getCompiledRowMapper(ResultSetWrapper rsw, ResultMap resultMap) throws SQLException {
+		if (compiledRowMappersRsw != rsw) {
+			compiledRowMappers.clear();
+			compiledRowMappersRsw = rsw;
+		}
+		CompiledRowMapper compiledRowMapper = compiledRowMappers.get(resultMap);
+		if (compiledRowMapper == null) {
+			final String key = resultMap.getId() + ":" + rsw.getColumnSignature();
+			compiledRowMapper = configuration.getCompiledRowMapper(key);
+			if (compiledRowMapper == null) {
+				if (hasTypeHandlerForResultObject(rsw, resultMap.getType())) {
+					compiledRowMapper = CompiledRowMapper.NOT_COMPILABLE;
+				} else {
+					compiledRowMapper = CompiledRowMapper.compile(configuration, mappedStatement, rsw, resultMap, shouldApplyAutomaticMappings(resultMap, false));
+				}
+				configuration.addCompiledRowMapper(key, compiledRowMapper);
+			}
+			compiledRowMappers.put(resultMap, compiledRowMapper);
+		}
+		return compiledRowMapper;
+	}
+
 	private boolean shouldApplyAutomaticMappings(ResultMap resultMap, boolean isNested) {
 		if (resultMap.getAutoMapping() != null) {
 			return resultMap.getAutoMapping();
@@ -425,7 +568,7 @@ public class DefaultResultSetHandler implements ResultSetHandler {
 			if (propertyMapping.isCompositeResult()
 					|| (column != null && mappedColumnNames.contains(column.toUpperCase(Locale.ENGLISH)))
 					|| propertyMapping.getResultSet() != null) {
-				Object value = getPropertyMappingValue(rsw.getResultSet(), metaObject, propertyMapping, lazyLoader, columnPrefix);
+				Object value = getPropertyMappingValue(rsw, metaObject, propertyMapping, lazyLoader, columnPrefix);
 				// issue #541 make property optional
 				final String property = propertyMapping.getProperty();
 				if (property == null) {
@@ -446,63 +589,95 @@ public class DefaultResultSetHandler implements ResultSetHandler {
 		return foundValues;
 	}
 
-	private Object getPropertyMappingValue(ResultSet rs, MetaObject metaResultObject, ResultMapping propertyMapping, ResultLoaderMap lazyLoader, String columnPrefix)
+	private Object getPropertyMappingValue(ResultSetWrapper rsw, MetaObject metaResultObject, ResultMapping propertyMapping, ResultLoaderMap lazyLoader, String columnPrefix)
 			throws SQLException {
 		if (propertyMapping.getNestedQueryId() != null) {
-			return getNestedQueryMappingValue(rs, metaResultObject, propertyMapping, lazyLoader, columnPrefix);
+			return getNestedQueryMappingValue(rsw, metaResultObject, propertyMapping, lazyLoader, columnPrefix);
 		} else if (propertyMapping.getResultSet() != null) {
-			addPendingChildRelation(rs, metaResultObject, propertyMapping);   // TODO is that OK?
+			addPendingChildRelation(rsw, metaResultObject, propertyMapping);   // TODO is that OK?
 			return DEFERED;
 		} else {
 			final TypeHandler<?> typeHandler = propertyMapping.getTypeHandler();
 			final String column = prependPrefix(propertyMapping.getColumn(), columnPrefix);
-			return typeHandler.getResult(rs, column);
+			return getColumnValue(rsw, typeHandler, column);
+		}
+	}
+
+	//按列序号读取，结果集中找不到该列时按列名读取，由驱动报告错误
+	private Object getColumnValue(ResultSetWrapper rsw, TypeHandler<?> typeHandler, String column) throws SQLException {
+		final int columnIndex = rsw.getColumnIndex(column);
+		if (columnIndex > 0) {
+			return typeHandler.getResult(rsw.getResultSet(), columnIndex);
+		}
+		return typeHandler.getResult(rsw.getResultSet(), column);
+	}
+
+	private String getColumnString(ResultSetWrapper rsw, String column) throws SQLException {
+		final int columnIndex = rsw.getColumnIndex(column);
+		if (columnIndex > 0) {
+			return rsw.getResultSet().getString(columnIndex);
 		}
+		return rsw.getResultSet().getString(column);
 	}
 
-	private List<UnMappedColumnAutoMapping> createAutomaticMappings(ResultSetWrapper rsw, ResultMap resultMap, MetaObject metaObject, String columnPrefix) throws SQLException {
+	private AutoMappingPlan createAutomaticMappings(ResultSetWrapper rsw, ResultMap resultMap, MetaObject metaObject, String columnPrefix) throws SQLException {
+		if (autoMappingsRsw != rsw) {
+			autoMappingsCache.clear();
+			autoMappingsRsw = rsw;
+		}
 		final String mapKey = resultMap.getId() + ":" + columnPrefix;
-		List<UnMappedColumnAutoMapping> autoMapping = autoMappingsCache.get(mapKey);
-		if (autoMapping == null) {
-			autoMapping = new ArrayList<UnMappedColumnAutoMapping>();
-			final List<String> unmappedColumnNames = rsw.getUnmappedColumnNames(resultMap, columnPrefix);
-			for (String columnName : unmappedColumnNames) {
-				String propertyName = columnName;
-				if (columnPrefix != null && !columnPrefix.isEmpty()) {
-					// When columnPrefix is specified,
-					// ignore columns without the prefix.
-					if (columnName.toUpperCase(Locale.ENGLISH).startsWith(columnPrefix)) {
-						propertyName = columnName.substring(columnPrefix.length());
-					} else {
-						continue;
-					}
+		AutoMappingPlan plan = autoMappingsCache.get(mapKey);
+		if (plan == null) {
+			//列签名包含列名、JDBC类型和Java类名，相同签名下列序号和TypeHandler的选择都相同
+			final String planKey = mapKey + ":" + rsw.getColumnSignature();
+			plan = configuration.getAutoMappingPlan(planKey);
+			if (plan == null) {
+				plan = createAutoMappingPlan(rsw, resultMap, metaObject, columnPrefix);
+				configuration.addAutoMappingPlan(planKey, plan);
+			}
+			autoMappingsCache.put(mapKey, plan);
+		}
+		return plan;
+	}
+
+	private AutoMappingPlan createAutoMappingPlan(ResultSetWrapper rsw, ResultMap resultMap, MetaObject metaObject, String columnPrefix) throws SQLException {
+		final List<AutoMappingPlan.Column> autoMapping = new ArrayList<AutoMappingPlan.Column>();
+		final List<String> unmappedColumnNames = rsw.getUnmappedColumnNames(resultMap, columnPrefix);
+		for (String columnName : unmappedColumnNames) {
+			String propertyName = columnName;
+			if (columnPrefix != null && !columnPrefix.isEmpty()) {
+				// When columnPrefix is specified,
+				// ignore columns without the prefix.
+				if (columnName.toUpperCase(Locale.ENGLISH).startsWith(columnPrefix)) {
+					propertyName = columnName.substring(columnPrefix.length());
+				} else {
+					continue;
 				}
-				final String property = metaObject.findProperty(propertyName, configuration.isMapUnderscoreToCamelCase());
-				if (property != null && metaObject.hasSetter(property)) {
-					final Class<?> propertyType = metaObject.getSetterType(property);
-					if (typeHandlerRegistry.hasTypeHandler(propertyType, rsw.getJdbcType(columnName))) {
-						final TypeHandler<?> typeHandler = rsw.getTypeHandler(propertyType, columnName);
-						autoMapping.add(new UnMappedColumnAutoMapping(columnName, property, typeHandler, propertyType.isPrimitive()));
-					} else {
-						configuration.getAutoMappingUnknownColumnBehavior()
-								.doAction(mappedStatement, columnName, property, propertyType);
-					}
-				} else{
+			}
+			final String property = metaObject.findProperty(propertyName, configuration.isMapUnderscoreToCamelCase());
+			if (property != null && metaObject.hasSetter(property)) {
+				final Class<?> propertyType = metaObject.getSetterType(property);
+				if (typeHandlerRegistry.hasTypeHandler(propertyType, rsw.getJdbcType(columnName))) {
+					final TypeHandler<?> typeHandler = rsw.getTypeHandler(propertyType, columnName);
+					autoMapping.add(new AutoMappingPlan.Column(columnName, rsw.getColumnIndex(columnName), property, typeHandler, propertyType.isPrimitive()));
+				} else {
 					configuration.getAutoMappingUnknownColumnBehavior()
-							.doAction(mappedStatement, columnName, (property != null) ? property : propertyName, null);
+							.doAction(mappedStatement, columnName, property, propertyType);
 				}
+			} else{
+				configuration.getAutoMappingUnknownColumnBehavior()
+						.doAction(mappedStatement, columnName, (property != null) ? property : propertyName, null);
 			}
-			autoMappingsCache.put(mapKey, autoMapping);
 		}
-		return autoMapping;
+		return new AutoMappingPlan(autoMapping);
 	}
 
 	private boolean applyAutomaticMappings(ResultSetWrapper rsw, ResultMap resultMap, MetaObject metaObject, String columnPrefix) throws SQLException {
-		List<UnMappedColumnAutoMapping> autoMapping = createAutomaticMappings(rsw, resultMap, metaObject, columnPrefix);
+		AutoMappingPlan plan = createAutomaticMappings(rsw, resultMap, metaObject, columnPrefix);
 		boolean foundValues = false;
-		if (autoMapping.size() > 0) {
-			for (UnMappedColumnAutoMapping mapping : autoMapping) {
-				final Object value = mapping.typeHandler.getResult(rsw.getResultSet(), mapping.column);
+		if (plan.columns.length > 0) {
+			for (AutoMappingPlan.Column mapping : plan.columns) {
+				final Object value = mapping.typeHandler.getResult(rsw.getResultSet(), mapping.columnIndex);
 				if (value != null) {
 					foundValues = true;
 				}
@@ -517,8 +692,8 @@ public class DefaultResultSetHandler implements ResultSetHandler {
 
 	// MULTIPLE RESULT SETS
 
-	private void linkToParents(ResultSet rs, ResultMapping parentMapping, Object rowValue) throws SQLException {
-		CacheKey parentKey = createKeyForMultipleResults(rs, parentMapping, parentMapping.getColumn(), parentMapping.getForeignColumn());
+	private void linkToParents(ResultSetWrapper rsw, ResultMapping parentMapping, Object rowValue) throws SQLException {
+		CacheKey parentKey = createKeyForMultipleResults(rsw, parentMapping, parentMapping.getColumn(), parentMapping.getForeignColumn());
 		List<PendingRelation> parents = pendingRelations.get(parentKey);
 		if (parents != null) {
 			for (PendingRelation parent : parents) {
@@ -529,8 +704,8 @@ public class DefaultResultSetHandler implements ResultSetHandler {
 		}
 	}
 
-	private void addPendingChildRelation(ResultSet rs, MetaObject metaResultObject, ResultMapping parentMapping) throws SQLException {
-		CacheKey cacheKey = createKeyForMultipleResults(rs, parentMapping, parentMapping.getColumn(), parentMapping.getColumn());
+	private void addPendingChildRelation(ResultSetWrapper rsw, MetaObject metaResultObject, ResultMapping parentMapping) throws SQLException {
+		CacheKey cacheKey = createKeyForMultipleResults(rsw, parentMapping, parentMapping.getColumn(), parentMapping.getColumn());
 		PendingRelation deferLoad = new PendingRelation();
 		deferLoad.metaObject = metaResultObject;
 		deferLoad.propertyMapping = parentMapping;
@@ -551,14 +726,14 @@ public class DefaultResultSetHandler implements ResultSetHandler {
 		}
 	}
 
-	private CacheKey createKeyForMultipleResults(ResultSet rs, ResultMapping resultMapping, String names, String columns) throws SQLException {
+	private CacheKey createKeyForMultipleResults(ResultSetWrapper rsw, ResultMapping resultMapping, String names, String columns) throws SQLException {
 		CacheKey cacheKey = new CacheKey();
 		cacheKey.update(resultMapping);
 		if (columns != null && names != null) {
 			String[] columnsArray = columns.split(",");
 			String[] namesArray = names.split(",");
 			for (int i = 0 ; i < columnsArray.length ; i++) {
-				Object value = rs.getString(columnsArray[i]);
+				Object value = getColumnString(rsw, columnsArray[i]);
 				if (value != null) {
 					cacheKey.update(namesArray[i]);
 					cacheKey.update(value);
@@ -592,20 +767,50 @@ public class DefaultResultSetHandler implements ResultSetHandler {
 	private Object createResultObject(ResultSetWrapper rsw, ResultMap resultMap, List<Class<?>> constructorArgTypes, List<Object> constructorArgs, String columnPrefix)
 			throws SQLException {
 		final Class<?> resultType = resultMap.getType();
-		final MetaClass metaType = MetaClass.forClass(resultType, reflectorFactory);
 		final List<ResultMapping> constructorMappings = resultMap.getConstructorResultMappings();
 		if (hasTypeHandlerForResultObject(rsw, resultType)) {
 			return createPrimitiveResultObject(rsw, resultMap, columnPrefix);
 		} else if (!constructorMappings.isEmpty()) {
+			final ConstructorMapper.Invocation constructorMapper = getConstructorMapper(rsw, resultMap, columnPrefix, false);
+			if (constructorMapper.isApplicable()) {
+				return constructorMapper.create(rsw.getResultSet());
+			}
 			return createParameterizedResultObject(rsw, resultType, constructorMappings, constructorArgTypes, constructorArgs, columnPrefix);
-		} else if (resultType.isInterface() || metaType.hasDefaultConstructor()) {
+		} else if (resultType.isInterface() || MetaClass.forClass(resultType, reflectorFactory).hasDefaultConstructor()) {
 			return objectFactory.create(resultType);
 		} else if (shouldApplyAutomaticMappings(resultMap, false)) {
+			final ConstructorMapper.Invocation constructorMapper = getConstructorMapper(rsw, resultMap, columnPrefix, true);
+			if (constructorMapper.isApplicable()) {
+				return constructorMapper.create(rsw.getResultSet());
+			}
 			return createByConstructorSignature(rsw, resultType, constructorArgTypes, constructorArgs, columnPrefix);
 		}
 		throw new ExecutorException("Do not know how to create an instance of " + resultType);
 	}
 
+	//先查本结果集已用过的构造器映射，再查Configuration中跨查询共享的，都没有时解析
+	private ConstructorMapper.Invocation getConstructorMapper(ResultSetWrapper rsw, ResultMap resultMap, String columnPrefix, boolean bySignature) {
+		if (constructorMappersRsw != rsw) {
+			constructorMappers.clear();
+			constructorMappersRsw = rsw;
+		}
+		final String mapKey = resultMap.getId() + ":" + columnPrefix;
+		ConstructorMapper.Invocation invocation = constructorMappers.get(mapKey);
+		if (invocation == null) {
+			final String key = mapKey + ":" + rsw.getColumnSignature();
+			ConstructorMapper constructorMapper = configuration.getConstructorMapper(key);
+			if (constructorMapper == null) {
+				constructorMapper = bySignature
+						? ConstructorMapper.compileBySignature(configuration, rsw, resultMap, columnPrefix)
+						: ConstructorMapper.compile(configuration, rsw, resultMap, columnPrefix);
+				configuration.addConstructorMapper(key, constructorMapper);
+			}
+			invocation = constructorMapper.newInvocation();
+			constructorMappers.put(mapKey, invocation);
+		}
+		return invocation;
+	}
+
 	Object createParameterizedResultObject(ResultSetWrapper rsw, Class<?> resultType, List<ResultMapping> constructorMappings,
 										   List<Class<?>> constructorArgTypes, List<Object> constructorArgs, String columnPrefix) {
 		boolean foundValues = false;
@@ -615,13 +820,13 @@ public class DefaultResultSetHandler implements ResultSetHandler {
 			final Object value;
 			try {
 				if (constructorMapping.getNestedQueryId() != null) {
-					value = getNestedQueryConstructorValue(rsw.getResultSet(), constructorMapping, columnPrefix);
+					value = getNestedQueryConstructorValue(rsw, constructorMapping, columnPrefix);
 				} else if (constructorMapping.getNestedResultMapId() != null) {
 					final ResultMap resultMap = configuration.getResultMap(constructorMapping.getNestedResultMapId());
 					value = getRowValue(rsw, resultMap);
 				} else {
 					final TypeHandler<?> typeHandler = constructorMapping.getTypeHandler();
-					value = typeHandler.getResult(rsw.getResultSet(), prependPrefix(column, columnPrefix));
+					value = getColumnValue(rsw, typeHandler, prependPrefix(column, columnPrefix));
 				}
 			} catch (ResultMapException e) {
 				throw new ExecutorException("Could not process result for mapping: " + constructorMapping, e);
@@ -644,7 +849,7 @@ public class DefaultResultSetHandler implements ResultSetHandler {
 					Class<?> parameterType = constructor.getParameterTypes()[i];
 					String columnName = rsw.getColumnNames().get(i);
 					TypeHandler<?> typeHandler = rsw.getTypeHandler(parameterType, columnName);
-					Object value = typeHandler.getResult(rsw.getResultSet(), prependPrefix(columnName, columnPrefix));
+					Object value = getColumnValue(rsw, typeHandler, prependPrefix(columnName, columnPrefix));
 					constructorArgTypes.add(parameterType);
 					constructorArgs.add(value);
 					foundValues = value != null || foundValues;
@@ -674,18 +879,18 @@ public class DefaultResultSetHandler implements ResultSetHandler {
 			columnName = rsw.getColumnNames().get(0);
 		}
 		final TypeHandler<?> typeHandler = rsw.getTypeHandler(resultType, columnName);
-		return typeHandler.getResult(rsw.getResultSet(), columnName);
+		return getColumnValue(rsw, typeHandler, columnName);
 	}
 
 	//
 	// NESTED QUERY
 	//
 
-	private Object getNestedQueryConstructorValue(ResultSet rs, ResultMapping constructorMapping, String columnPrefix) throws SQLException {
+	private Object getNestedQueryConstructorValue(ResultSetWrapper rsw, ResultMapping constructorMapping, String columnPrefix) throws SQLException {
 		final String nestedQueryId = constructorMapping.getNestedQueryId();
 		final MappedStatement nestedQuery = configuration.getMappedStatement(nestedQueryId);
 		final Class<?> nestedQueryParameterType = nestedQuery.getParameterMap().getType();
-		final Object nestedQueryParameterObject = prepareParameterForNestedQuery(rs, constructorMapping, nestedQueryParameterType, columnPrefix);
+		final Object nestedQueryParameterObject = prepareParameterForNestedQuery(rsw, constructorMapping, nestedQueryParameterType, columnPrefix);
 		Object value = null;
 		if (nestedQueryParameterObject != null) {
 			final BoundSql nestedBoundSql = nestedQuery.getBoundSql(nestedQueryParameterObject);
@@ -697,13 +902,13 @@ public class DefaultResultSetHandler implements ResultSetHandler {
 		return value;
 	}
 
-	private Object getNestedQueryMappingValue(ResultSet rs, MetaObject metaResultObject, ResultMapping propertyMapping, ResultLoaderMap lazyLoader, String columnPrefix)
+	private Object getNestedQueryMappingValue(ResultSetWrapper rsw, MetaObject metaResultObject, ResultMapping propertyMapping, ResultLoaderMap lazyLoader, String columnPrefix)
 			throws SQLException {
 		final String nestedQueryId = propertyMapping.getNestedQueryId();
 		final String property = propertyMapping.getProperty();
 		final MappedStatement nestedQuery = configuration.getMappedStatement(nestedQueryId);
 		final Class<?> nestedQueryParameterType = nestedQuery.getParameterMap().getType();
-		final Object nestedQueryParameterObject = prepareParameterForNestedQuery(rs, propertyMapping, nestedQueryParameterType, columnPrefix);
+		final Object nestedQueryParameterObject = prepareParameterForNestedQuery(rsw, propertyMapping, nestedQueryParameterType, columnPrefix);
 		Object value = null;
 		if (nestedQueryParameterObject != null) {
 			final BoundSql nestedBoundSql = nestedQuery.getBoundSql(nestedQueryParameterObject);
@@ -725,32 +930,32 @@ public class DefaultResultSetHandler implements ResultSetHandler {
 		return value;
 	}
 
-	private Object prepareParameterForNestedQuery(ResultSet rs, ResultMapping resultMapping, Class<?> parameterType, String columnPrefix) throws SQLException {
+	private Object prepareParameterForNestedQuery(ResultSetWrapper rsw, ResultMapping resultMapping, Class<?> parameterType, String columnPrefix) throws SQLException {
 		if (resultMapping.isCompositeResult()) {
-			return prepareCompositeKeyParameter(rs, resultMapping, parameterType, columnPrefix);
+			return prepareCompositeKeyParameter(rsw, resultMapping, parameterType, columnPrefix);
 		} else {
-			return prepareSimpleKeyParameter(rs, resultMapping, parameterType, columnPrefix);
+			return prepareSimpleKeyParameter(rsw, resultMapping, parameterType, columnPrefix);
 		}
 	}
 
-	private Object prepareSimpleKeyParameter(ResultSet rs, ResultMapping resultMapping, Class<?> parameterType, String columnPrefix) throws SQLException {
+	private Object prepareSimpleKeyParameter(ResultSetWrapper rsw, ResultMapping resultMapping, Class<?> parameterType, String columnPrefix) throws SQLException {
 		final TypeHandler<?> typeHandler;
 		if (typeHandlerRegistry.hasTypeHandler(parameterType)) {
 			typeHandler = typeHandlerRegistry.getTypeHandler(parameterType);
 		} else {
 			typeHandler = typeHandlerRegistry.getUnknownTypeHandler();
 		}
-		return typeHandler.getResult(rs, prependPrefix(resultMapping.getColumn(), columnPrefix));
+		return getColumnValue(rsw, typeHandler, prependPrefix(resultMapping.getColumn(), columnPrefix));
 	}
 
-	private Object prepareCompositeKeyParameter(ResultSet rs, ResultMapping resultMapping, Class<?> parameterType, String columnPrefix) throws SQLException {
+	private Object prepareCompositeKeyParameter(ResultSetWrapper rsw, ResultMapping resultMapping, Class<?> parameterType, String columnPrefix) throws SQLException {
 		final Object parameterObject = instantiateParameterObject(parameterType);
 		final MetaObject metaObject = configuration.newMetaObject(parameterObject);
 		boolean foundValues = false;
 		for (ResultMapping innerResultMapping : resultMapping.getComposites()) {
 			final Class<?> propType = metaObject.getSetterType(innerResultMapping.getProperty());
 			final TypeHandler<?> typeHandler = typeHandlerRegistry.getTypeHandler(propType);
-			final Object propValue = typeHandler.getResult(rs, prependPrefix(innerResultMapping.getColumn(), columnPrefix));
+			final Object propValue = getColumnValue(rsw, typeHandler, prependPrefix(innerResultMapping.getColumn(), columnPrefix));
 			// issue #353 & #560 do not execute nested query if key is null
 			if (propValue != null) {
 				metaObject.setValue(innerResultMapping.getProperty(), propValue);
@@ -775,10 +980,14 @@ public class DefaultResultSetHandler implements ResultSetHandler {
 	//
 
 	public ResultMap resolveDiscriminatedResultMap(ResultSet rs, ResultMap resultMap, String columnPrefix) throws SQLException {
+		return resolveDiscriminatedResultMap(new ResultSetWrapper(rs, configuration), resultMap, columnPrefix);
+	}
+
+	public ResultMap resolveDiscriminatedResultMap(ResultSetWrapper rsw, ResultMap resultMap, String columnPrefix) throws SQLException {
 		Set<String> pastDiscriminators = new HashSet<String>();
 		Discriminator discriminator = resultMap.getDiscriminator();
 		while (discriminator != null) {
-			final Object value = getDiscriminatorValue(rs, discriminator, columnPrefix);
+			final Object value = getDiscriminatorValue(rsw, discriminator, columnPrefix);
 			final String discriminatedMapId = discriminator.getMapIdFor(String.valueOf(value));
 			if (configuration.hasResultMap(discriminatedMapId)) {
 				resultMap = configuration.getResultMap(discriminatedMapId);
@@ -794,13 +1003,13 @@ public class DefaultResultSetHandler implements ResultSetHandler {
 		return resultMap;
 	}
 
-	private Object getDiscriminatorValue(ResultSet rs, Discriminator discriminator, String columnPrefix) throws SQLException {
+	private Object getDiscriminatorValue(ResultSetWrapper rsw, Discriminator discriminator, String columnPrefix) throws SQLException {
 		final ResultMapping resultMapping = discriminator.getResultMapping();
 		final TypeHandler<?> typeHandler = resultMapping.getTypeHandler();
-		return typeHandler.getResult(rs, prependPrefix(resultMapping.getColumn(), columnPrefix));
+		return getColumnValue(rsw, typeHandler, prependPrefix(resultMapping.getColumn(), columnPrefix));
 	}
 
-	private String prependPrefix(String columnName, String prefix) {
+	static String prependPrefix(String columnName, String prefix) {
 		if (columnName == null || columnName.length() == 0 || prefix == null || prefix.length() == 0) {
 			return columnName;
 		}
@@ -812,35 +1021,106 @@ public class DefaultResultSetHandler implements ResultSetHandler {
 	//
 
 	private void handleRowValuesForNestedResultMap(ResultSetWrapper rsw, ResultMap resultMap, ResultHandler<?> resultHandler, RowBounds rowBounds, ResultMapping parentMapping) throws SQLException {
+		if (shouldPartitionNestedResults(resultHandler, rowBounds, parentMapping)) {
+			handleRowValuesForPartitionedNestedResultMap(rsw, resultMap, resultHandler, rowBounds);
+			return;
+		}
 		final DefaultResultContext<Object> resultContext = new DefaultResultContext<Object>();
 		skipRows(rsw.getResultSet(), rowBounds);
 		Object rowValue = previousRowValue;
 		while (shouldProcessMoreRows(resultContext, rowBounds) && rsw.getResultSet().next()) {
-			final ResultMap discriminatedResultMap = resolveDiscriminatedResultMap(rsw.getResultSet(), resultMap, null);
+			final ResultMap discriminatedResultMap = resolveDiscriminatedResultMap(rsw, resultMap, null);
 			final CacheKey rowKey = createRowKey(discriminatedResultMap, rsw, null);
 			Object partialObject = nestedResultObjects.get(rowKey);
 			// issue #577 && #542
 			if (mappedStatement.isResultOrdered()) {
 				if (partialObject == null && rowValue != null) {
 					nestedResultObjects.clear();
-					storeObject(resultHandler, resultContext, rowValue, parentMapping, rsw.getResultSet());
+					storeObject(resultHandler, resultContext, rowValue, parentMapping, rsw);
 				}
 				rowValue = getRowValue(rsw, discriminatedResultMap, rowKey, null, partialObject);
 			} else {
 				rowValue = getRowValue(rsw, discriminatedResultMap, rowKey, null, partialObject);
 				if (partialObject == null) {
-					storeObject(resultHandler, resultContext, rowValue, parentMapping, rsw.getResultSet());
+					storeObject(resultHandler, resultContext, rowValue, parentMapping, rsw);
 				}
 			}
 		}
 		if (rowValue != null && mappedStatement.isResultOrdered() && shouldProcessMoreRows(resultContext, rowBounds)) {
-			storeObject(resultHandler, resultContext, rowValue, parentMapping, rsw.getResultSet());
+			storeObject(resultHandler, resultContext, rowValue, parentMapping, rsw);
 			previousRowValue = null;
 		} else if (rowValue != null) {
 			previousRowValue = rowValue;
 		}
 	}
 
+	//无序的嵌套结果才需要分区；只用于整个结果集都放进列表的查询：
+	//Cursor等自定义ResultHandler会在每个对象后停止再继续读取，不能先读完整个结果集；
+	//RowBounds要取前N个父对象，应当读到第N个为止；多结果集（parentMapping）要按行关联到父对象
+	private boolean shouldPartitionNestedResults(ResultHandler<?> resultHandler, RowBounds rowBounds, ResultMapping parentMapping) {
+		return configuration.getNestedResultMemoryBudget() > 0 && !mappedStatement.isResultOrdered()
+				&& resultHandler instanceof DefaultResultHandler && parentMapping == null
+				&& rowBounds.getOffset() == RowBounds.NO_ROW_OFFSET && rowBounds.getLimit() == RowBounds.NO_ROW_LIMIT;
+	}
+
+	/**
+	 * 先读完结果集，把原始行按父对象的行key分区（超过内存预算的分区写入临时文件），并记录每个父对象第一次出现的序号；
+	 * 再逐个分区组装父对象，每个分区处理完就清空nestedResultObjects。
+	 * 所有分区处理完后按序号输出，父对象的顺序与不分区时相同（保留ORDER BY的顺序）。
+	 */
+	private void handleRowValuesForPartitionedNestedResultMap(ResultSetWrapper rsw, ResultMap resultMap, ResultHandler<?> resultHandler, RowBounds rowBounds) throws SQLException {
+		final DefaultResultContext<Object> resultContext = new DefaultResultContext<Object>();
+		final int columnCount = rsw.getColumnNames().size();
+		final NestedResultPartitions partitions = new NestedResultPartitions(configuration.getNestedResultMemoryBudget());
+		//父对象的行key -> 第一次出现的序号
+		final Map<CacheKey, Integer> firstSeen = new HashMap<CacheKey, Integer>();
+		try {
+			while (rsw.getResultSet().next()) {
+				final ResultMap discriminatedResultMap = resolveDiscriminatedResultMap(rsw, resultMap, null);
+				final CacheKey rowKey = createRowKey(discriminatedResultMap, rsw, null);
+				if (!firstSeen.containsKey(rowKey)) {
+					firstSeen.put(rowKey, firstSeen.size());
+				}
+				partitions.add(rowKey, RowBufferResultSet.readRow(rsw.getResultSet(), columnCount));
+			}
+			final Object[] rowValues = new Object[firstSeen.size()];
+			Arrays.fill(rowValues, NO_ROW_VALUE);
+			//回放时的行key与读取时不同（类型处理器读出的值不一致）的父对象排在最后
+			final List<Object> unsequenced = new ArrayList<Object>();
+			for (int i = 0; i < partitions.size(); i++) {
+				final ResultSetWrapper partitionRsw = new ResultSetWrapper(partitions.open(i, rsw), rsw);
+				while (partitionRsw.getResultSet().next()) {
+					final ResultMap discriminatedResultMap = resolveDiscriminatedResultMap(partitionRsw, resultMap, null);
+					final CacheKey rowKey = createRowKey(discriminatedResultMap, partitionRsw, null);
+					final Object partialObject = nestedResultObjects.get(rowKey);
+					final Object rowValue = getRowValue(partitionRsw, discriminatedResultMap, rowKey, null, partialObject);
+					if (partialObject == null) {
+						final Integer sequence = firstSeen.get(rowKey);
+						if (sequence != null) {
+							rowValues[sequence] = rowValue;
+						} else {
+							unsequenced.add(rowValue);
+						}
+					}
+				}
+				partitionRsw.getResultSet().close();
+				nestedResultObjects.clear();
+			}
+			for (Object rowValue : rowValues) {
+				if (rowValue != NO_ROW_VALUE && shouldProcessMoreRows(resultContext, rowBounds)) {
+					storeObject(resultHandler, resultContext, rowValue, null, rsw);
+				}
+			}
+			for (Object rowValue : unsequenced) {
+				if (shouldProcessMoreRows(resultContext, rowBounds)) {
+					storeObject(resultHandler, resultContext, rowValue, null, rsw);
+				}
+			}
+		} finally {
+			partitions.close();
+		}
+	}
+
 	//
 	// GET VALUE FROM ROW FOR NESTED RESULT MAP
 	//
@@ -891,7 +1171,7 @@ public class DefaultResultSetHandler implements ResultSetHandler {
 			if (nestedResultMapId != null && resultMapping.getResultSet() == null) {
 				try {
 					final String columnPrefix = getColumnPrefix(parentPrefix, resultMapping);
-					final ResultMap nestedResultMap = getNestedResultMap(rsw.getResultSet(), nestedResultMapId, columnPrefix);
+					final ResultMap nestedResultMap = getNestedResultMap(rsw, nestedResultMapId, columnPrefix);
 					if (resultMapping.getColumnPrefix() == null) {
 						// try to fill circular reference only when columnPrefix
 						// is not specified for the nested result map (issue #215)
@@ -939,7 +1219,13 @@ public class DefaultResultSetHandler implements ResultSetHandler {
 		if (notNullColumns != null && !notNullColumns.isEmpty()) {
 			ResultSet rs = rsw.getResultSet();
 			for (String column: notNullColumns) {
-				rs.getObject(prependPrefix(column, columnPrefix));
+				final String prefixedColumn = prependPrefix(column, columnPrefix);
+				final int columnIndex = rsw.getColumnIndex(prefixedColumn);
+				if (columnIndex > 0) {
+					rs.getObject(columnIndex);
+				} else {
+					rs.getObject(prefixedColumn);
+				}
 				if (!rs.wasNull()) {
 					return true;
 				}
@@ -956,9 +1242,9 @@ public class DefaultResultSetHandler implements ResultSetHandler {
 		return true;
 	}
 
-	private ResultMap getNestedResultMap(ResultSet rs, String nestedResultMapId, String columnPrefix) throws SQLException {
+	private ResultMap getNestedResultMap(ResultSetWrapper rsw, String nestedResultMapId, String columnPrefix) throws SQLException {
 		ResultMap nestedResultMap = configuration.getResultMap(nestedResultMapId);
-		return resolveDiscriminatedResultMap(rs, nestedResultMap, columnPrefix);
+		return resolveDiscriminatedResultMap(rsw, nestedResultMap, columnPrefix);
 	}
 
 	//
@@ -1019,7 +1305,7 @@ public class DefaultResultSetHandler implements ResultSetHandler {
 				List<String> mappedColumnNames = rsw.getMappedColumnNames(resultMap, columnPrefix);
 				// Issue #114
 				if (column != null && mappedColumnNames.contains(column.toUpperCase(Locale.ENGLISH))) {
-					final Object value = th.getResult(rsw.getResultSet(), column);
+					final Object value = getColumnValue(rsw, th, column);
 					if (value != null) {
 						cacheKey.update(column);
 						cacheKey.update(value);
@@ -1043,7 +1329,7 @@ public class DefaultResultSetHandler implements ResultSetHandler {
 				}
 			}
 			if (metaType.findProperty(property, configuration.isMapUnderscoreToCamelCase()) != null) {
-				String value = rsw.getResultSet().getString(column);
+				String value = getColumnString(rsw, column);
 				if (value != null) {
 					cacheKey.update(column);
 					cacheKey.update(value);
@@ -1055,7 +1341,7 @@ public class DefaultResultSetHandler implements ResultSetHandler {
 	private void createRowKeyForMap(ResultSetWrapper rsw, CacheKey cacheKey) throws SQLException {
 		List<String> columnNames = rsw.getColumnNames();
 		for (String columnName : columnNames) {
-			final String value = rsw.getResultSet().getString(columnName);
+			final String value = getColumnString(rsw, columnName);
 			if (value != null) {
 				cacheKey.update(columnName);
 				cacheKey.update(value);
@@ -0,0 +1,234 @@
+/**
+ *    Copyright 2009-2015 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.executor.resultset;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.sql.Blob;
+import java.sql.Clob;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.ibatis.cache.CacheKey;
+import org.apache.ibatis.executor.ExecutorException;
+
+/**
+ * 无序嵌套结果映射的分组缓冲区。
+ * 按父对象的行key把原始行（每列getObject的值）分到固定数量的分区中，所有分区估算的内存占用超过预算时，
+ * 把最大的分区写入本地临时文件。读完结果集后逐个分区回放：先回放临时文件中的行，再回放内存中的行，
+ * 同一个父对象的所有行都在同一个分区里，所以每个分区处理完就可以清空nestedResultObjects。
+ * 行由RowBufferResultSet.readRow读取，Blob、Clob和Array已转为可序列化的实现，其他值必须可序列化。
+ */
+public final class NestedResultPartitions {
+
+    private static final int PARTITIONS = 32;
+
+    private final long memoryBudget;
+    private final Partition[] partitions = new Partition[PARTITIONS];
+    private long bufferedBytes;
+
+    NestedResultPartitions(long memoryBudget) {
+        this.memoryBudget = memoryBudget;
+        for (int i = 0; i < PARTITIONS; i++) {
+            partitions[i] = new Partition();
+        }
+    }
+
+    void add(CacheKey rowKey, Object[] row) {
+        int h = rowKey.hashCode();
+        h ^= h >>> 16;
+        final Partition partition = partitions[(h & 0x7fffffff) % PARTITIONS];
+        final long size = estimateSize(row);
+        partition.rows.add(row);
+        partition.bytes += size;
+        bufferedBytes += size;
+        while (bufferedBytes > memoryBudget) {
+            spill(largestPartition());
+        }
+    }
+
+    int size() {
+        return PARTITIONS;
+    }
+
+    /**
+     * 回放一个分区的行，元数据取自ResultSetWrapper中的列信息
+     */
+    ResultSet open(int index, ResultSetWrapper rsw) {
+        final Partition partition = partitions[index];
+        partition.finishSpill();
+        return RowBufferResultSet.newResultSet(rsw, new PartitionRows(partition));
+    }
+
+    /**
+     * 删除临时文件
+     */
+    void close() {
+        for (Partition partition : partitions) {
+            partition.close();
+        }
+    }
+
+    private Partition largestPartition() {
+        Partition largest = partitions[0];
+        for (Partition partition : partitions) {
+            if (partition.bytes > largest.bytes) {
+                largest = partition;
+            }
+        }
+        return largest;
+    }
+
+    private void spill(Partition partition) {
+        try {
+            if (partition.output == null) {
+                partition.file = File.createTempFile("mybatis-nested-", ".rows");
+                partition.output = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(partition.file)));
+            }
+            for (Object[] row : partition.rows) {
+                partition.output.writeObject(row);
+            }
+            //不保留已写出对象的引用
+            partition.output.reset();
+        } catch (IOException e) {
+            throw new ExecutorException("Error spilling nested result rows to a temporary file. Cause: " + e, e);
+        }
+        partition.spilledRows += partition.rows.size();
+        partition.rows.clear();
+        bufferedBytes -= partition.bytes;
+        partition.bytes = 0;
+    }
+
+    //粗略估算一行占用的堆内存
+    private static long estimateSize(Object[] row) {
+        long size = 16 + 8L * row.length;
+        for (Object value : row) {
+            if (value == null) {
+                continue;
+            } else if (value instanceof String) {
+                size += 40 + 2L * ((String) value).length();
+            } else if (value instanceof byte[]) {
+                size += 16 + ((byte[]) value).length;
+            } else if (value instanceof Blob || value instanceof Clob) {
+                try {
+                    size += 64 + (value instanceof Blob ? ((Blob) value).length() : 2 * ((Clob) value).length());
+                } catch (SQLException e) {
+                    size += 64;
+                }
+            } else {
+                size += 32;
+            }
+        }
+        return size;
+    }
+
+    private static final class Partition {
+        private final List<Object[]> rows = new ArrayList<Object[]>();
+        private long bytes;
+        private File file;
+        private ObjectOutputStream output;
+        private int spilledRows;
+
+        void finishSpill() {
+            if (output != null) {
+                try {
+                    output.close();
+                } catch (IOException e) {
+                    throw new ExecutorException("Error spilling nested result rows to a temporary file. Cause: " + e, e);
+                }
+                output = null;
+            }
+        }
+
+        void close() {
+            if (output != null) {
+                try {
+                    output.close();
+                } catch (IOException e) {
+                    // ignore
+                }
+                output = null;
+            }
+            if (file != null) {
+                file.delete();
+                file = null;
+            }
+            rows.clear();
+        }
+    }
+
+    /**
+     * 先读临时文件中的行，再读内存中的行
+     */
+    private static final class PartitionRows implements RowBufferResultSet.RowSource {
+
+        private final Partition partition;
+        private ObjectInputStream input;
+        private int spilledRead;
+        private int bufferedRead;
+
+        PartitionRows(Partition partition) {
+            this.partition = partition;
+        }
+
+        @Override
+        public Object[] nextRow() throws SQLException {
+            if (spilledRead < partition.spilledRows) {
+                final Object[] row;
+                try {
+                    if (input == null) {
+                        input = new ObjectInputStream(new BufferedInputStream(new FileInputStream(partition.file)));
+                    }
+                    row = (Object[]) input.readObject();
+                } catch (Exception e) {
+                    throw new SQLException("Error reading spilled nested result rows. Cause: " + e, e);
+                }
+                if (++spilledRead == partition.spilledRows) {
+                    close();
+                }
+                return row;
+            }
+            if (bufferedRead < partition.rows.size()) {
+                final Object[] row = partition.rows.get(bufferedRead);
+                //回放过的行不再需要
+                partition.rows.set(bufferedRead++, null);
+                return row;
+            }
+            return null;
+        }
+
+        @Override
+        public void close() {
+            if (input != null) {
+                try {
+                    input.close();
+                } catch (IOException e) {
+                    // ignore
+                }
+                input = null;
+            }
+        }
+    }
+
+}
@@ -42,17 +42,24 @@ public class ResultSetWrapper {
 
 	private final ResultSet resultSet;
 	private final TypeHandlerRegistry typeHandlerRegistry;
-	private final List<String> columnNames = new ArrayList<String>();
-	private final List<String> classNames = new ArrayList<String>();
-	private final List<JdbcType> jdbcTypes = new ArrayList<JdbcType>();
+	private final List<String> columnNames;
+	private final List<String> classNames;
+	private final List<JdbcType> jdbcTypes;
+	//列名到列序号（从1开始）的映射，同时保存原始列名和大写列名
+	private final Map<String, Integer> columnIndexes;
 	private final Map<String, Map<Class<?>, TypeHandler<?>>> typeHandlerMap = new HashMap<String, Map<Class<?>, TypeHandler<?>>>();
 	private Map<String, List<String>> mappedColumnNamesMap = new HashMap<String, List<String>>();
 	private Map<String, List<String>> unMappedColumnNamesMap = new HashMap<String, List<String>>();
+	private String columnSignature;
 
 	public ResultSetWrapper(ResultSet rs, Configuration configuration) throws SQLException {
 		super();
 		this.typeHandlerRegistry = configuration.getTypeHandlerRegistry();
 		this.resultSet = rs;
+		this.columnNames = new ArrayList<String>();
+		this.classNames = new ArrayList<String>();
+		this.jdbcTypes = new ArrayList<JdbcType>();
+		this.columnIndexes = new HashMap<String, Integer>();
 		final ResultSetMetaData metaData = rs.getMetaData();
 		final int columnCount = metaData.getColumnCount();
 		for (int i = 1; i <= columnCount; i++) {
@@ -60,6 +67,33 @@ public class ResultSetWrapper {
 			jdbcTypes.add(JdbcType.forCode(metaData.getColumnType(i)));
 			classNames.add(metaData.getColumnClassName(i));
 		}
+		for (int i = 0; i < columnNames.size(); i++) {
+			final String columnName = columnNames.get(i);
+			final String upperColumnName = columnName.toUpperCase(Locale.ENGLISH);
+			//与JDBC按列名读取的规则一致：忽略大小写，重名时取第一列
+			Integer index = columnIndexes.get(upperColumnName);
+			if (index == null) {
+				index = i + 1;
+				columnIndexes.put(upperColumnName, index);
+			}
+			if (!columnIndexes.containsKey(columnName)) {
+				columnIndexes.put(columnName, index);
+			}
+		}
+	}
+
+	/**
+	 * 与另一个结果集共用列信息，不读取rs的元数据。
+	 * 列信息创建后不再修改，可以在多个线程之间共享；TypeHandler和映射列名的缓存各自独立
+	 */
+	ResultSetWrapper(ResultSet rs, ResultSetWrapper columns) {
+		this.typeHandlerRegistry = columns.typeHandlerRegistry;
+		this.resultSet = rs;
+		this.columnNames = columns.columnNames;
+		this.classNames = columns.classNames;
+		this.jdbcTypes = columns.jdbcTypes;
+		this.columnIndexes = columns.columnIndexes;
+		this.columnSignature = columns.getColumnSignature();
 	}
 
 	public ResultSet getResultSet() {
@@ -74,13 +108,42 @@ public class ResultSetWrapper {
 		return Collections.unmodifiableList(classNames);
 	}
 
-	public JdbcType getJdbcType(String columnName) {
-		for (int i = 0 ; i < columnNames.size(); i++) {
-			if (columnNames.get(i).equalsIgnoreCase(columnName)) {
-				return jdbcTypes.get(i);
+	public List<JdbcType> getJdbcTypes() {
+		return Collections.unmodifiableList(jdbcTypes);
+	}
+
+	/**
+	 * 列名、JDBC类型和Java类名组成的签名，签名相同的结果集可以共用按列解析出的映射方案
+	 */
+	public String getColumnSignature() {
+		if (columnSignature == null) {
+			StringBuilder signature = new StringBuilder();
+			for (int i = 0; i < columnNames.size(); i++) {
+				signature.append(columnNames.get(i)).append(':').append(jdbcTypes.get(i)).append(':').append(classNames.get(i)).append(',');
 			}
+			columnSignature = signature.toString();
 		}
-		return null;
+		return columnSignature;
+	}
+
+	/**
+	 * 获取列序号，列名不区分大小写
+	 * @return 从1开始的列序号，结果集中没有该列时返回-1
+	 */
+	public int getColumnIndex(String columnName) {
+		if (columnName == null) {
+			return -1;
+		}
+		Integer index = columnIndexes.get(columnName);
+		if (index == null) {
+			index = columnIndexes.get(columnName.toUpperCase(Locale.ENGLISH));
+		}
+		return index == null ? -1 : index;
+	}
+
+	public JdbcType getJdbcType(String columnName) {
+		final int index = getColumnIndex(columnName);
+		return index > 0 ? jdbcTypes.get(index - 1) : null;
 	}
 
 	/**
@@ -107,8 +170,8 @@ public class ResultSetWrapper {
 			// Replicate logic of UnknownTypeHandler#resolveTypeHandler
 			// See issue #59 comment 10
 			if (handler == null || handler instanceof UnknownTypeHandler) {
-				final int index = columnNames.indexOf(columnName);
-				final Class<?> javaType = resolveClass(classNames.get(index));
+				final int index = getColumnIndex(columnName);
+				final Class<?> javaType = index > 0 ? resolveClass(classNames.get(index - 1)) : null;
 				if (javaType != null && jdbcType != null) {
 					handler = typeHandlerRegistry.getTypeHandler(javaType, jdbcType);
 				} else if (javaType != null) {
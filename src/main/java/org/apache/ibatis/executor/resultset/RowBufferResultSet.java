@@ -0,0 +1,280 @@
+/**
+ *    Copyright 2009-2015 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.executor.resultset;
+
+import java.io.ByteArrayInputStream;
+import java.io.StringReader;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.sql.Array;
+import java.sql.Blob;
+import java.sql.Clob;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.List;
+
+import javax.sql.rowset.serial.SerialArray;
+import javax.sql.rowset.serial.SerialBlob;
+import javax.sql.rowset.serial.SerialClob;
+
+import org.apache.ibatis.type.JdbcType;
+
+/**
+ * 在内存行缓冲上回放的只读结果集，行是readRow读取的各列原始值。
+ * 只实现结果映射用到的读取方法，按值的类型做与驱动相近的转换；
+ * 元数据由ResultSetWrapper中已经读取的列信息生成，不再访问原结果集，可以在其他线程上使用。
+ */
+final class RowBufferResultSet implements InvocationHandler {
+
+    /**
+     * 行的来源
+     */
+    interface RowSource {
+        /**
+         * @return 下一行，没有更多行时返回null
+         */
+        Object[] nextRow() throws SQLException;
+
+        void close();
+    }
+
+    private final ResultSetWrapper rsw;
+    private final RowSource rows;
+    private Object[] current;
+    private boolean wasNull;
+    private boolean closed;
+
+    private RowBufferResultSet(ResultSetWrapper rsw, RowSource rows) {
+        this.rsw = rsw;
+        this.rows = rows;
+    }
+
+    /**
+     * @param rsw 原结果集的列信息
+     */
+    static ResultSet newResultSet(ResultSetWrapper rsw, RowSource rows) {
+        return (ResultSet) Proxy.newProxyInstance(ResultSet.class.getClassLoader(), new Class<?>[]{ResultSet.class},
+                new RowBufferResultSet(rsw, rows));
+    }
+
+    static RowSource rows(final List<Object[]> rows) {
+        return new RowSource() {
+            private int index;
+
+            @Override
+            public Object[] nextRow() {
+                return index < rows.size() ? rows.get(index++) : null;
+            }
+
+            @Override
+            public void close() {
+                index = rows.size();
+            }
+        };
+    }
+
+    /**
+     * 读取当前行所有列的值，Blob、Clob和Array转为javax.sql.rowset.serial中的实现，移动结果集后仍然可用
+     */
+    static Object[] readRow(ResultSet rs, int columnCount) throws SQLException {
+        final Object[] row = new Object[columnCount];
+        for (int i = 0; i < columnCount; i++) {
+            Object value = rs.getObject(i + 1);
+            if (value instanceof Blob) {
+                value = new SerialBlob((Blob) value);
+            } else if (value instanceof Clob) {
+                value = new SerialClob((Clob) value);
+            } else if (value instanceof Array) {
+                value = new SerialArray((Array) value);
+            }
+            row[i] = value;
+        }
+        return row;
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        final String name = method.getName();
+        if (method.getDeclaringClass() == Object.class) {
+            try {
+                return method.invoke(this, args);
+            } catch (InvocationTargetException e) {
+                throw e.getTargetException();
+            }
+        } else if ("next".equals(name)) {
+            current = closed ? null : rows.nextRow();
+            return current != null;
+        } else if ("wasNull".equals(name)) {
+            return wasNull;
+        } else if ("getMetaData".equals(name)) {
+            return newMetaData();
+        } else if ("getStatement".equals(name)) {
+            return null;
+        } else if ("getType".equals(name)) {
+            return ResultSet.TYPE_FORWARD_ONLY;
+        } else if ("findColumn".equals(name)) {
+            return findColumn((String) args[0]);
+        } else if ("close".equals(name)) {
+            if (!closed) {
+                rows.close();
+                closed = true;
+            }
+            return null;
+        } else if ("isClosed".equals(name)) {
+            return closed;
+        } else if ("isWrapperFor".equals(name)) {
+            return false;
+        } else if (name.startsWith("get") && args != null && args.length >= 1
+                && (args[0] instanceof Integer || args[0] instanceof String)) {
+            if (current == null) {
+                throw new SQLException("No current row");
+            }
+            final int index = args[0] instanceof Integer ? (Integer) args[0] : findColumn((String) args[0]);
+            final Object value = current[index - 1];
+            wasNull = value == null;
+            if ("getObject".equals(name) && args.length == 2 && args[1] instanceof Class) {
+                return convert(value, (Class<?>) args[1], name);
+            }
+            return convert(value, method.getReturnType(), name);
+        }
+        throw new SQLFeatureNotSupportedException("Method " + name + " is not supported on buffered result rows");
+    }
+
+    private int findColumn(String columnLabel) throws SQLException {
+        final int index = rsw.getColumnIndex(columnLabel);
+        if (index < 1) {
+            throw new SQLException("Column '" + columnLabel + "' not found");
+        }
+        return index;
+    }
+
+    private ResultSetMetaData newMetaData() {
+        final List<String> columnNames = rsw.getColumnNames();
+        final List<String> classNames = rsw.getClassNames();
+        final List<JdbcType> jdbcTypes = rsw.getJdbcTypes();
+        return (ResultSetMetaData) Proxy.newProxyInstance(ResultSetMetaData.class.getClassLoader(), new Class<?>[]{ResultSetMetaData.class},
+                new InvocationHandler() {
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                        final String name = method.getName();
+                        if ("getColumnCount".equals(name)) {
+                            return columnNames.size();
+                        } else if ("getColumnLabel".equals(name) || "getColumnName".equals(name)) {
+                            return columnNames.get((Integer) args[0] - 1);
+                        } else if ("getColumnClassName".equals(name)) {
+                            return classNames.get((Integer) args[0] - 1);
+                        } else if ("getColumnType".equals(name)) {
+                            final JdbcType jdbcType = jdbcTypes.get((Integer) args[0] - 1);
+                            return jdbcType == null ? java.sql.Types.OTHER : jdbcType.TYPE_CODE;
+                        }
+                        throw new SQLFeatureNotSupportedException("Method " + name + " is not supported on buffered result rows");
+                    }
+                });
+    }
+
+    private static Object convert(Object value, Class<?> type, String method) throws SQLException {
+        if (type.isPrimitive()) {
+            return convertPrimitive(value, type);
+        } else if (value == null) {
+            return null;
+        } else if (type == String.class) {
+            return toString(value);
+        } else if (type == BigDecimal.class) {
+            if (value instanceof BigDecimal) {
+                return value;
+            } else if (value instanceof BigInteger) {
+                return new BigDecimal((BigInteger) value);
+            }
+            return new BigDecimal(toString(value).trim());
+        } else if (type == byte[].class) {
+            return toBytes(value);
+        } else if (type == java.sql.Timestamp.class && value instanceof java.util.Date) {
+            return value instanceof java.sql.Timestamp ? value : new java.sql.Timestamp(((java.util.Date) value).getTime());
+        } else if (type == java.sql.Date.class && value instanceof java.util.Date) {
+            return value instanceof java.sql.Date ? value : new java.sql.Date(((java.util.Date) value).getTime());
+        } else if (type == java.sql.Time.class && value instanceof java.util.Date) {
+            return value instanceof java.sql.Time ? value : new java.sql.Time(((java.util.Date) value).getTime());
+        } else if (type == java.io.Reader.class) {
+            return new StringReader(toString(value));
+        } else if (type == java.io.InputStream.class) {
+            return new ByteArrayInputStream("getAsciiStream".equals(method) ? toString(value).getBytes() : toBytes(value));
+        } else if (type.isInstance(value)) {
+            return value;
+        }
+        throw new SQLException("Cannot convert " + value.getClass().getName() + " to " + type.getName());
+    }
+
+    private static Object convertPrimitive(Object value, Class<?> type) {
+        if (type == boolean.class) {
+            if (value == null) {
+                return false;
+            } else if (value instanceof Boolean) {
+                return value;
+            } else if (value instanceof Number) {
+                return ((Number) value).intValue() != 0;
+            }
+            final String string = value.toString().trim();
+            return "1".equals(string) || "true".equalsIgnoreCase(string);
+        }
+        final Number number;
+        if (value == null) {
+            number = 0;
+        } else if (value instanceof Number) {
+            number = (Number) value;
+        } else if (value instanceof Boolean) {
+            number = (Boolean) value ? 1 : 0;
+        } else {
+            number = new BigDecimal(value.toString().trim());
+        }
+        if (type == int.class) {
+            return number.intValue();
+        } else if (type == long.class) {
+            return number.longValue();
+        } else if (type == double.class) {
+            return number.doubleValue();
+        } else if (type == float.class) {
+            return number.floatValue();
+        } else if (type == short.class) {
+            return number.shortValue();
+        }
+        return number.byteValue();
+    }
+
+    private static String toString(Object value) throws SQLException {
+        if (value instanceof Clob) {
+            final Clob clob = (Clob) value;
+            return clob.getSubString(1, (int) clob.length());
+        }
+        return value.toString();
+    }
+
+    private static byte[] toBytes(Object value) throws SQLException {
+        if (value instanceof byte[]) {
+            return (byte[]) value;
+        } else if (value instanceof Blob) {
+            final Blob blob = (Blob) value;
+            return blob.getBytes(1, (int) blob.length());
+        }
+        throw new SQLException("Cannot convert " + value.getClass().getName() + " to byte[]");
+    }
+
+}
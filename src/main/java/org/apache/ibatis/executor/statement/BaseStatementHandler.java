@@ -52,6 +52,9 @@ public abstract class BaseStatementHandler implements StatementHandler {
 	protected final MappedStatement mappedStatement;
 	protected final RowBounds rowBounds;
 
+	//游标查询默认的fetchSize
+	protected static final int CURSOR_FETCH_SIZE = 1000;
+
 	protected BoundSql boundSql;
 
 	protected BaseStatementHandler(Executor executor, MappedStatement mappedStatement, Object parameterObject, RowBounds rowBounds, ResultHandler resultHandler, BoundSql boundSql) {
@@ -130,6 +133,21 @@ public abstract class BaseStatementHandler implements StatementHandler {
 		}
 	}
 
+	/**
+	 * 游标查询在执行前调用：没有配置fetchSize时设置一个适合逐行读取的值，避免驱动一次取回全部结果；
+	 * 有limit时不超过offset+limit
+	 */
+	protected void setCursorFetchSize(Statement stmt) throws SQLException {
+		if (mappedStatement.getFetchSize() != null || configuration.getDefaultFetchSize() != null) {
+			return;
+		}
+		int fetchSize = CURSOR_FETCH_SIZE;
+		if (rowBounds != null && rowBounds.getLimit() != RowBounds.NO_ROW_LIMIT) {
+			fetchSize = (int) Math.max(1, Math.min(fetchSize, (long) rowBounds.getOffset() + rowBounds.getLimit()));
+		}
+		stmt.setFetchSize(fetchSize);
+	}
+
 	protected void closeStatement(Statement statement) {
 		try {
 			if (statement != null) {
@@ -73,6 +73,7 @@ public class CallableStatementHandler extends BaseStatementHandler {
 	@Override
 	public <E> Cursor<E> queryCursor(Statement statement) throws SQLException {
 		CallableStatement cs = (CallableStatement) statement;
+		setCursorFetchSize(cs);
 		cs.execute();
 		Cursor<E> resultList = resultSetHandler.<E>handleCursorResultSets(cs);
 		resultSetHandler.handleOutputParameters(cs);
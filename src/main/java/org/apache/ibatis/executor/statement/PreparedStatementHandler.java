@@ -67,6 +67,7 @@ public class PreparedStatementHandler extends BaseStatementHandler {
 	@Override
 	public <E> Cursor<E> queryCursor(Statement statement) throws SQLException {
 		PreparedStatement ps = (PreparedStatement) statement;
+		setCursorFetchSize(ps);
 		ps.execute();
 		return resultSetHandler.<E> handleCursorResultSets(ps);
 	}
@@ -77,6 +77,7 @@ public class SimpleStatementHandler extends BaseStatementHandler {
 	@Override
 	public <E> Cursor<E> queryCursor(Statement statement) throws SQLException {
 		String sql = boundSql.getSql();
+		setCursorFetchSize(statement);
 		statement.execute(sql);
 		return resultSetHandler.<E>handleCursorResultSets(statement);
 	}
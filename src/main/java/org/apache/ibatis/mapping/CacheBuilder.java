@@ -17,18 +17,26 @@ package org.apache.ibatis.mapping;
 
 import java.lang.reflect.Constructor;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
 
 import org.apache.ibatis.cache.Cache;
 import org.apache.ibatis.cache.CacheException;
 import org.apache.ibatis.cache.decorators.BlockingCache;
+import org.apache.ibatis.cache.decorators.ExpiringCache;
+import org.apache.ibatis.cache.decorators.FifoCache;
 import org.apache.ibatis.cache.decorators.LoggingCache;
 import org.apache.ibatis.cache.decorators.LruCache;
 import org.apache.ibatis.cache.decorators.ScheduledCache;
 import org.apache.ibatis.cache.decorators.SerializedCache;
 import org.apache.ibatis.cache.decorators.SynchronizedCache;
+import org.apache.ibatis.cache.decorators.TinyLfuCache;
+import org.apache.ibatis.cache.decorators.WeightedCache;
+import org.apache.ibatis.cache.impl.ConcurrentPerpetualCache;
 import org.apache.ibatis.cache.impl.PerpetualCache;
 import org.apache.ibatis.reflection.MetaObject;
 import org.apache.ibatis.reflection.SystemMetaObject;
@@ -41,6 +49,12 @@ import org.apache.ibatis.reflection.SystemMetaObject;
  *
  */
 public class CacheBuilder {
+	//配置了这些属性时使用按条目过期的ExpiringCache，代替ScheduledCache的整体清空
+	private static final String[] EXPIRY_PROPERTIES = {"expireAfterWrite", "expireAfterAccess"};
+	//自身保证线程安全的装饰器，基础缓存为ConcurrentPerpetualCache且只使用这些装饰器时，不再包装SynchronizedCache
+	private static final Set<Class<? extends Cache>> THREAD_SAFE_DECORATORS = new HashSet<Class<? extends Cache>>(
+			Arrays.<Class<? extends Cache>>asList(LruCache.class, FifoCache.class, TinyLfuCache.class, WeightedCache.class));
+
 	//缓存ID
 	private String id;
 	//缓存实现类
@@ -108,9 +122,13 @@ public class CacheBuilder {
 		//为实例设置属性
 		setCacheProperties(cache);
 		// issue #352, do not apply decorators to custom caches
-		if (PerpetualCache.class.equals(cache.getClass())) {
+		if (PerpetualCache.class.equals(cache.getClass()) || ConcurrentPerpetualCache.class.equals(cache.getClass())) {
 			//如果是系统提供的默认实现，则进行包装
 			for (Class<? extends Cache> decorator : decorators) {
+				//readWrite缓存的WeightedCache放在SerializedCache之外，见setStandardDecorators
+				if (readWrite && WeightedCache.class.equals(decorator)) {
+					continue;
+				}
 				cache = newCacheDecoratorInstance(decorator, cache);
 				setCacheProperties(cache);
 			}
@@ -139,17 +157,40 @@ public class CacheBuilder {
 			if (size != null && metaCache.hasSetter("size")) {
 				metaCache.setValue("size", size);
 			}
-			if (clearInterval != null) {
+			boolean perEntryExpiry = isPerEntryExpiry();
+			if (clearInterval != null && !perEntryExpiry) {
 				cache = new ScheduledCache(cache);
 				((ScheduledCache) cache).setClearInterval(clearInterval);
 			}
 			if (readWrite) {
 				cache = new SerializedCache(cache);
+				//serializerType等属性
+				setCacheProperties(cache);
+				if (decorators.contains(WeightedCache.class)) {
+					//在序列化之前估算权重，Weigher看到的是查询结果而不是byte[]
+					cache = new WeightedCache(cache);
+					setCacheProperties(cache);
+				}
 			}
 			cache = new LoggingCache(cache);
-			cache = new SynchronizedCache(cache);
+			if (!isThreadSafe()) {
+				cache = new SynchronizedCache(cache);
+			}
+			if (perEntryExpiry) {
+				//放在同步装饰器之外，后台清理线程对内层缓存的调用也经过同步
+				ExpiringCache expiringCache = new ExpiringCache(cache);
+				if (clearInterval != null) {
+					//flushInterval作为写入后过期时长的默认值
+					expiringCache.setExpireAfterWrite(clearInterval);
+				}
+				setCacheProperties(expiringCache);
+				cache = expiringCache;
+			}
 			if (blocking) {
-				cache = new BlockingCache(cache);
+				BlockingCache blockingCache = new BlockingCache(cache);
+				//只读缓存本来就返回同一个实例，等待线程可以直接共享加载结果
+				blockingCache.setShareLoadedValue(!readWrite);
+				cache = blockingCache;
 			}
 			return cache;
 		} catch (Exception e) {
@@ -157,6 +198,30 @@ public class CacheBuilder {
 		}
 	}
 
+	private boolean isPerEntryExpiry() {
+		if (properties != null) {
+			for (String name : EXPIRY_PROPERTIES) {
+				if (properties.containsKey(name)) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	//基础缓存是并发实现，且所有装饰器自身线程安全时，整条装饰链不需要全局锁
+	private boolean isThreadSafe() {
+		if (!ConcurrentPerpetualCache.class.equals(implementation)) {
+			return false;
+		}
+		for (Class<? extends Cache> decorator : decorators) {
+			if (!THREAD_SAFE_DECORATORS.contains(decorator)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
 	private void setCacheProperties(Cache cache) {
 		if (properties != null) {
 			//可以认为是MetaObject的一个应用实例
@@ -20,6 +20,7 @@ import java.util.Collections;
 import java.util.List;
 
 import org.apache.ibatis.cache.Cache;
+import org.apache.ibatis.cache.CompactCacheKey;
 import org.apache.ibatis.executor.keygen.Jdbc3KeyGenerator;
 import org.apache.ibatis.executor.keygen.KeyGenerator;
 import org.apache.ibatis.executor.keygen.NoKeyGenerator;
@@ -62,6 +63,8 @@ public final class MappedStatement {
 	private Log statementLog;
 	private LanguageDriver lang;
 	private String[] resultSets;
+	//最近一次生成缓存key时的id和SQL，静态SQL只计算一次哈希
+	private volatile CompactCacheKey.Prefix cacheKeyPrefix;
 
 	MappedStatement() {
 		// constructor disabled
@@ -321,6 +324,16 @@ public final class MappedStatement {
 
 		return boundSql;
 	}
+	//获取缓存key的前缀，SQL与上次相同时直接复用
+	public CompactCacheKey.Prefix getCacheKeyPrefix(String sql) {
+		CompactCacheKey.Prefix prefix = cacheKeyPrefix;
+		if (prefix == null || !prefix.matches(id, sql)) {
+			prefix = new CompactCacheKey.Prefix(id, sql);
+			cacheKeyPrefix = prefix;
+		}
+		return prefix;
+	}
+
 	//把字符串分解成数组
 	private static String[] delimitedStringToArray(String in) {
 		if (in == null || in.trim().length() == 0) {
@@ -18,13 +18,15 @@ package org.apache.ibatis.reflection;
 
 import java.lang.annotation.Annotation;
 import java.lang.reflect.Method;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 import java.util.SortedMap;
 import java.util.TreeMap;
 
 import org.apache.ibatis.annotations.Param;
-import org.apache.ibatis.binding.MapperMethod.ParamMap;
+import org.apache.ibatis.binding.IndexedParamMap;
 import org.apache.ibatis.io.Resources;
 import org.apache.ibatis.session.Configuration;
 import org.apache.ibatis.session.ResultHandler;
@@ -82,6 +84,12 @@ public class ParamNameResolver {
 
     private boolean hasParamAnnotation;
 
+    //构造时预先算好的参数打包方式：各参数在args中的位置
+    private final int[] paramIndexes;
+    //多参数时IndexedParamMap的布局：参数名和paramX名称，按原来put进ParamMap的顺序，以及对应的args位置
+    private final String[] namedParamKeys;
+    private final int[] namedParamArgIndexes;
+
     public ParamNameResolver(Configuration config, Method method) {
         final Class<?>[] paramTypes = method.getParameterTypes();
         final Annotation[][] paramAnnotations = method.getParameterAnnotations();
@@ -118,6 +126,27 @@ public class ParamNameResolver {
             map.put(paramIndex, name);
         }
         names = Collections.unmodifiableSortedMap(map);
+        paramIndexes = new int[map.size()];
+        final List<String> keys = new ArrayList<String>();
+        final List<Integer> argIndexes = new ArrayList<Integer>();
+        int i = 0;
+        for (Map.Entry<Integer, String> entry : map.entrySet()) {
+            paramIndexes[i] = entry.getKey();
+            keys.add(entry.getValue());
+            argIndexes.add(entry.getKey());
+            final String genericParamName = GENERIC_NAME_PREFIX + String.valueOf(i + 1);
+            // ensure not to overwrite parameter named with @Param
+            if (!map.containsValue(genericParamName)) {
+                keys.add(genericParamName);
+                argIndexes.add(entry.getKey());
+            }
+            i++;
+        }
+        namedParamKeys = keys.toArray(new String[keys.size()]);
+        namedParamArgIndexes = new int[argIndexes.size()];
+        for (int j = 0; j < namedParamArgIndexes.length; j++) {
+            namedParamArgIndexes[j] = argIndexes.get(j);
+        }
     }
 
     //获取实际参数名，经过测试，名字叫做arg0，arg1等等
@@ -158,27 +187,16 @@ public class ParamNameResolver {
      * ...).
      * </p>
      */
-    //TODO 返回[参数名-索引]格式，其中参数名包括已解析名和默认paramX的名称，值冗余
+    //多参数时返回IndexedParamMap，参数名包括已解析名和默认paramX的名称
     public Object getNamedParams(Object[] args) {
-        final int paramCount = names.size();
+        final int paramCount = paramIndexes.length;
         if (args == null || paramCount == 0) {
             return null;
         } else if (!hasParamAnnotation && paramCount == 1) {
-            return args[names.firstKey()];
+            return args[paramIndexes[0]];
         } else {
-            final Map<String, Object> param = new ParamMap<Object>();
-            int i = 0;
-            for (Map.Entry<Integer, String> entry : names.entrySet()) {
-                param.put(entry.getValue(), args[entry.getKey()]);
-                // add generic param names (param1, param2, ...)
-                final String genericParamName = GENERIC_NAME_PREFIX + String.valueOf(i + 1);
-                // ensure not to overwrite parameter named with @Param
-                if (!names.containsValue(genericParamName)) {
-                    param.put(genericParamName, args[entry.getKey()]);
-                }
-                i++;
-            }
-            return param;
+            //名称到args位置的映射是共享的，这里只引用args，不往HashMap里放值
+            return new IndexedParamMap(namedParamKeys, namedParamArgIndexes, args);
         }
     }
 }
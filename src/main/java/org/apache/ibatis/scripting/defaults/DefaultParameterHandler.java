@@ -19,6 +19,7 @@ import java.sql.PreparedStatement;
 import java.sql.SQLException;
 import java.util.List;
 
+import org.apache.ibatis.binding.IndexedParamMap;
 import org.apache.ibatis.executor.ErrorContext;
 import org.apache.ibatis.executor.parameter.ParameterHandler;
 import org.apache.ibatis.mapping.BoundSql;
@@ -70,6 +71,9 @@ public class DefaultParameterHandler implements ParameterHandler {
 		ErrorContext.instance().activity("setting parameters").object(mappedStatement.getParameterMap().getId());
 		List<ParameterMapping> parameterMappings = boundSql.getParameterMappings();
 		if (parameterMappings != null) {
+			//多参数的映射器方法，参数名直接在IndexedParamMap中查找，不经过MetaObject
+			final IndexedParamMap indexedParams = parameterObject instanceof IndexedParamMap ? (IndexedParamMap) parameterObject : null;
+			MetaObject metaObject = null;
 			for (int i = 0; i < parameterMappings.size(); i++) {
 				ParameterMapping parameterMapping = parameterMappings.get(i);
 				if (parameterMapping.getMode() != ParameterMode.OUT) {
@@ -79,10 +83,15 @@ public class DefaultParameterHandler implements ParameterHandler {
 						value = boundSql.getAdditionalParameter(propertyName);
 					} else if (parameterObject == null) {
 						value = null;
+					} else if (indexedParams != null && indexedParams.containsKey(propertyName)) {
+						value = indexedParams.get(propertyName);
 					} else if (typeHandlerRegistry.hasTypeHandler(parameterObject.getClass())) {
 						value = parameterObject;
 					} else {
-						MetaObject metaObject = configuration.newMetaObject(parameterObject);
+						//所有参数共用一个MetaObject
+						if (metaObject == null) {
+							metaObject = configuration.newMetaObject(parameterObject);
+						}
 						value = metaObject.getValue(propertyName);
 					}
 					TypeHandler typeHandler = parameterMapping.getTypeHandler();
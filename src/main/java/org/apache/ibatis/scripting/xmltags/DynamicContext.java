@@ -23,6 +23,7 @@ import ognl.OgnlException;
 import ognl.OgnlRuntime;
 import ognl.PropertyAccessor;
 
+import org.apache.ibatis.binding.IndexedParamMap;
 import org.apache.ibatis.reflection.MetaObject;
 import org.apache.ibatis.session.Configuration;
 
@@ -64,9 +65,11 @@ public class DynamicContext {
 	public DynamicContext(Configuration configuration, Object parameterObject) {
 		if (parameterObject != null && !(parameterObject instanceof Map)) {
 			MetaObject metaObject = configuration.newMetaObject(parameterObject);
-			bindings = new ContextMap(metaObject);
+			bindings = new ContextMap(metaObject, null);
+		} else if (parameterObject instanceof IndexedParamMap) {
+			bindings = new ContextMap(null, (IndexedParamMap) parameterObject);
 		} else {
-			bindings = new ContextMap(null);
+			bindings = new ContextMap(null, null);
 		}
 		bindings.put(PARAMETER_OBJECT_KEY, parameterObject);
 		bindings.put(DATABASE_ID_KEY, configuration.getDatabaseId());
@@ -97,8 +100,11 @@ public class DynamicContext {
 		private static final long serialVersionUID = 2977601501966151582L;
 
 		private MetaObject parameterMetaObject;
-		public ContextMap(MetaObject parameterMetaObject) {
+		//多参数的映射器方法，直接按参数名取值
+		private IndexedParamMap indexedParams;
+		public ContextMap(MetaObject parameterMetaObject, IndexedParamMap indexedParams) {
 			this.parameterMetaObject = parameterMetaObject;
+			this.indexedParams = indexedParams;
 		}
 
 		@Override
@@ -114,6 +120,10 @@ public class DynamicContext {
 				// issue #61 do not modify the context when reading
 				return parameterMetaObject.getValue(strKey);
 			}
+			//找不到时返回null，由ContextAccessor再去参数Map中找，与原来一样抛出BindingException
+			if (indexedParams != null && indexedParams.containsKey(strKey)) {
+				return indexedParams.get(strKey);
+			}
 
 			return null;
 		}
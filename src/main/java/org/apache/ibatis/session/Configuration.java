@@ -24,6 +24,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.ibatis.binding.MapperRegistry;
 import org.apache.ibatis.builder.CacheRefResolver;
@@ -34,7 +35,11 @@ import org.apache.ibatis.cache.Cache;
 import org.apache.ibatis.cache.decorators.FifoCache;
 import org.apache.ibatis.cache.decorators.LruCache;
 import org.apache.ibatis.cache.decorators.SoftCache;
+import org.apache.ibatis.cache.decorators.TinyLfuCache;
+import org.apache.ibatis.cache.decorators.WeightedCache;
 import org.apache.ibatis.cache.decorators.WeakCache;
+import org.apache.ibatis.cache.impl.ConcurrentPerpetualCache;
+import org.apache.ibatis.cache.impl.OffHeapCache;
 import org.apache.ibatis.cache.impl.PerpetualCache;
 import org.apache.ibatis.datasource.jndi.JndiDataSourceFactory;
 import org.apache.ibatis.datasource.pooled.PooledDataSourceFactory;
@@ -42,6 +47,8 @@ import org.apache.ibatis.datasource.unpooled.UnpooledDataSourceFactory;
 import org.apache.ibatis.executor.BatchExecutor;
 import org.apache.ibatis.executor.CachingExecutor;
 import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.executor.GroupCommitBatches;
+import org.apache.ibatis.executor.GroupCommitExecutor;
 import org.apache.ibatis.executor.ReuseExecutor;
 import org.apache.ibatis.executor.SimpleExecutor;
 import org.apache.ibatis.executor.keygen.KeyGenerator;
@@ -49,6 +56,9 @@ import org.apache.ibatis.executor.loader.ProxyFactory;
 import org.apache.ibatis.executor.loader.cglib.CglibProxyFactory;
 import org.apache.ibatis.executor.loader.javassist.JavassistProxyFactory;
 import org.apache.ibatis.executor.parameter.ParameterHandler;
+import org.apache.ibatis.executor.resultset.AutoMappingPlan;
+import org.apache.ibatis.executor.resultset.CompiledRowMapper;
+import org.apache.ibatis.executor.resultset.ConstructorMapper;
 import org.apache.ibatis.executor.resultset.DefaultResultSetHandler;
 import org.apache.ibatis.executor.resultset.ResultSetHandler;
 import org.apache.ibatis.executor.statement.RoutingStatementHandler;
@@ -130,6 +140,24 @@ public class Configuration {
 	//默认开启缓存
 	protected boolean cacheEnabled = true;
 	protected boolean callSettersOnNulls = false;
+	//为简单结果映射编译行映射器
+	protected boolean compiledRowMappingEnabled = false;
+	//无序嵌套结果映射按父对象分区缓存原始行的内存预算（字节），超过时写入临时文件，0表示不分区；
+	//父对象仍按第一次出现的顺序返回，使用RowBounds、ResultHandler、Cursor或多结果集的查询不分区
+	protected long nestedResultMemoryBudget = 0;
+	//简单结果映射在ForkJoinPool中并行转换列值和创建对象
+	protected boolean parallelRowMappingEnabled = false;
+	//BATCH执行器累积的语句数、参数个数、估算字节数达到阈值时自动executeBatch，0表示不限制
+	protected int batchFlushStatements = 0;
+	protected int batchFlushParameters = 0;
+	protected long batchFlushBytes = 0;
+	//GROUP_COMMIT执行器合并更新的时间窗口（毫秒）和每组最多的语句数
+	protected long groupCommitWindow = 5;
+	protected int groupCommitBatchSize = 100;
+	//REUSE执行器最多缓存的Statement个数，超过时按LRU关闭，0表示不限制
+	protected int reuseStatementCacheSize = 256;
+	//注册映射器时用javassist生成实现类代替JDK动态代理
+	protected boolean generateMapperClasses = false;
 	protected boolean useActualParamName = true;
 	//日志前缀
 	protected String logPrefix;
@@ -189,6 +217,14 @@ public class Configuration {
 	//参数映射的map
 	protected final Map<String, ParameterMap> parameterMaps = new StrictMap<ParameterMap>("Parameter Maps collection");
 	protected final Map<String, KeyGenerator> keyGenerators = new StrictMap<KeyGenerator>("Key Generators collection");
+	//已编译的行映射器，多个线程共享
+	protected final Map<String, CompiledRowMapper> compiledRowMappers = new ConcurrentHashMap<String, CompiledRowMapper>();
+	//自动映射计划，多个线程共享
+	protected final Map<String, AutoMappingPlan> autoMappingPlans = new ConcurrentHashMap<String, AutoMappingPlan>();
+	//解析好的构造器映射，多个线程共享
+	protected final Map<String, ConstructorMapper> constructorMappers = new ConcurrentHashMap<String, ConstructorMapper>();
+	//GROUP_COMMIT执行器合并更新的队列，多个会话共享
+	protected final GroupCommitBatches groupCommitBatches = new GroupCommitBatches();
 
 	protected final Set<String> loadedResources = new HashSet<String>();
 	protected final Map<String, XNode> sqlFragments = new StrictMap<XNode>("XML fragments parsed from previous mappers");
@@ -230,8 +266,12 @@ public class Configuration {
 		typeAliasRegistry.registerAlias("UNPOOLED", UnpooledDataSourceFactory.class);
 
 		typeAliasRegistry.registerAlias("PERPETUAL", PerpetualCache.class);
+		typeAliasRegistry.registerAlias("CONCURRENT", ConcurrentPerpetualCache.class);
+		typeAliasRegistry.registerAlias("OFFHEAP", OffHeapCache.class);
 		typeAliasRegistry.registerAlias("FIFO", FifoCache.class);
 		typeAliasRegistry.registerAlias("LRU", LruCache.class);
+		typeAliasRegistry.registerAlias("TINYLFU", TinyLfuCache.class);
+		typeAliasRegistry.registerAlias("WEIGHTED", WeightedCache.class);
 		typeAliasRegistry.registerAlias("SOFT", SoftCache.class);
 		typeAliasRegistry.registerAlias("WEAK", WeakCache.class);
 
@@ -293,6 +333,129 @@ public class Configuration {
 		this.callSettersOnNulls = callSettersOnNulls;
 	}
 
+	public boolean isCompiledRowMappingEnabled() {
+		return compiledRowMappingEnabled;
+	}
+
+	public void setCompiledRowMappingEnabled(boolean compiledRowMappingEnabled) {
+		this.compiledRowMappingEnabled = compiledRowMappingEnabled;
+	}
+
+	public boolean isParallelRowMappingEnabled() {
+		return parallelRowMappingEnabled;
+	}
+
+	public void setParallelRowMappingEnabled(boolean parallelRowMappingEnabled) {
+		this.parallelRowMappingEnabled = parallelRowMappingEnabled;
+	}
+
+	public int getBatchFlushStatements() {
+		return batchFlushStatements;
+	}
+
+	public void setBatchFlushStatements(int batchFlushStatements) {
+		this.batchFlushStatements = batchFlushStatements;
+	}
+
+	public int getBatchFlushParameters() {
+		return batchFlushParameters;
+	}
+
+	public void setBatchFlushParameters(int batchFlushParameters) {
+		this.batchFlushParameters = batchFlushParameters;
+	}
+
+	public long getBatchFlushBytes() {
+		return batchFlushBytes;
+	}
+
+	public void setBatchFlushBytes(long batchFlushBytes) {
+		this.batchFlushBytes = batchFlushBytes;
+	}
+
+	public int getReuseStatementCacheSize() {
+		return reuseStatementCacheSize;
+	}
+
+	public void setReuseStatementCacheSize(int reuseStatementCacheSize) {
+		this.reuseStatementCacheSize = reuseStatementCacheSize;
+	}
+
+	public boolean isGenerateMapperClasses() {
+		return generateMapperClasses;
+	}
+
+	/**
+	 * 只影响之后注册的映射器
+	 */
+	public void setGenerateMapperClasses(boolean generateMapperClasses) {
+		this.generateMapperClasses = generateMapperClasses;
+	}
+
+	public long getGroupCommitWindow() {
+		return groupCommitWindow;
+	}
+
+	public void setGroupCommitWindow(long groupCommitWindow) {
+		this.groupCommitWindow = groupCommitWindow;
+	}
+
+	public int getGroupCommitBatchSize() {
+		return groupCommitBatchSize;
+	}
+
+	public void setGroupCommitBatchSize(int groupCommitBatchSize) {
+		this.groupCommitBatchSize = groupCommitBatchSize;
+	}
+
+	/**
+	 * GROUP_COMMIT执行器共享的批处理队列
+	 */
+	public GroupCommitBatches getGroupCommitBatches() {
+		return groupCommitBatches;
+	}
+
+	public long getNestedResultMemoryBudget() {
+		return nestedResultMemoryBudget;
+	}
+
+	public void setNestedResultMemoryBudget(long nestedResultMemoryBudget) {
+		this.nestedResultMemoryBudget = nestedResultMemoryBudget;
+	}
+
+	/**
+	 * 按"ResultMap id:结果集列签名"获取已编译的行映射器
+	 */
+	public CompiledRowMapper getCompiledRowMapper(String key) {
+		return compiledRowMappers.get(key);
+	}
+
+	public void addCompiledRowMapper(String key, CompiledRowMapper compiledRowMapper) {
+		compiledRowMappers.put(key, compiledRowMapper);
+	}
+
+	/**
+	 * 按"ResultMap id:列前缀:结果集列签名"获取自动映射计划
+	 */
+	public AutoMappingPlan getAutoMappingPlan(String key) {
+		return autoMappingPlans.get(key);
+	}
+
+	public void addAutoMappingPlan(String key, AutoMappingPlan autoMappingPlan) {
+		autoMappingPlans.put(key, autoMappingPlan);
+	}
+
+	/**
+	 * 按"ResultMap id:列前缀:结果集列签名"获取解析好的构造器映射
+	 */
+	public ConstructorMapper getConstructorMapper(String key) {
+		return constructorMappers.get(key);
+	}
+
+	public void addConstructorMapper(String key, ConstructorMapper constructorMapper) {
+		constructorMappers.put(key, constructorMapper);
+	}
+
 	public boolean isUseActualParamName() {
 		return useActualParamName;
 	}
@@ -607,6 +770,8 @@ public class Configuration {
 			executor = new BatchExecutor(this, transaction);
 		} else if (ExecutorType.REUSE == executorType) {
 			executor = new ReuseExecutor(this, transaction);
+		} else if (ExecutorType.GROUP_COMMIT == executorType) {
+			executor = new GroupCommitExecutor(this, transaction);
 		} else {
 			executor = new SimpleExecutor(this, transaction);
 		}
@@ -23,7 +23,8 @@ package org.apache.ibatis.session;
  * SIMPLE：这个执行器类型不做特殊的事情。它为每个语句的执行创建一个新的预处理语句。
  * REUSE：这个执行器类型会复用预处理语句。
  * BATCH：这个执行器会批量执行所有更新语句，如果SELECT在它们中间执行还会标定它们是必须的，来保证一个简单并易于理解的行为。
+ * GROUP_COMMIT：与SIMPLE相同，但是简单的更新语句与其他会话在同一时间窗口内的相同SQL合并为一次批处理并立即提交。
  */
 public enum ExecutorType {
-    SIMPLE, REUSE, BATCH
+    SIMPLE, REUSE, BATCH, GROUP_COMMIT
 }
@@ -27,7 +27,7 @@ import java.sql.SQLException;
  * Boolean类型与JdbcType类型的转换处理器
  *
  */
-public class BooleanTypeHandler extends BaseTypeHandler<Boolean> {
+public class BooleanTypeHandler extends BaseTypeHandler<Boolean> implements PrimitiveTypeHandler.OfBoolean {
 
     @Override
     public void setNonNullParameter(PreparedStatement ps, int i, Boolean parameter, JdbcType jdbcType)
@@ -52,4 +52,10 @@ public class BooleanTypeHandler extends BaseTypeHandler<Boolean> {
             throws SQLException {
         return cs.getBoolean(columnIndex);
     }
+
+    @Override
+    public boolean getBoolean(ResultSet rs, int columnIndex)
+            throws SQLException {
+        return rs.getBoolean(columnIndex);
+    }
 }
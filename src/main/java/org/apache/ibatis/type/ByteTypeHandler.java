@@ -27,7 +27,7 @@ import java.sql.SQLException;
  * Byte类型与JdbcType类型的转换处理器
  *
  */
-public class ByteTypeHandler extends BaseTypeHandler<Byte> {
+public class ByteTypeHandler extends BaseTypeHandler<Byte> implements PrimitiveTypeHandler.OfByte {
 
     @Override
     public void setNonNullParameter(PreparedStatement ps, int i, Byte parameter, JdbcType jdbcType)
@@ -52,4 +52,10 @@ public class ByteTypeHandler extends BaseTypeHandler<Byte> {
             throws SQLException {
         return cs.getByte(columnIndex);
     }
+
+    @Override
+    public byte getByte(ResultSet rs, int columnIndex)
+            throws SQLException {
+        return rs.getByte(columnIndex);
+    }
 }
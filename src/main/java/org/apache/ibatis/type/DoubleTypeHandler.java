@@ -27,7 +27,7 @@ import java.sql.SQLException;
  * java的Double包装类型的存取关系处理
  * 重点是setDouble和getDouble
  */
-public class DoubleTypeHandler extends BaseTypeHandler<Double> {
+public class DoubleTypeHandler extends BaseTypeHandler<Double> implements PrimitiveTypeHandler.OfDouble {
 
     @Override
     public void setNonNullParameter(PreparedStatement ps, int i, Double parameter, JdbcType jdbcType)
@@ -53,4 +53,9 @@ public class DoubleTypeHandler extends BaseTypeHandler<Double> {
         return cs.getDouble(columnIndex);
     }
 
+    @Override
+    public double getDouble(ResultSet rs, int columnIndex)
+            throws SQLException {
+        return rs.getDouble(columnIndex);
+    }
 }
@@ -27,7 +27,7 @@ import java.sql.SQLException;
  * java的Float类型类型的存取关系处理
  * 重点是setFloat和getFloat
  */
-public class FloatTypeHandler extends BaseTypeHandler<Float> {
+public class FloatTypeHandler extends BaseTypeHandler<Float> implements PrimitiveTypeHandler.OfFloat {
 
     @Override
     public void setNonNullParameter(PreparedStatement ps, int i, Float parameter, JdbcType jdbcType)
@@ -52,4 +52,10 @@ public class FloatTypeHandler extends BaseTypeHandler<Float> {
             throws SQLException {
         return cs.getFloat(columnIndex);
     }
+
+    @Override
+    public float getFloat(ResultSet rs, int columnIndex)
+            throws SQLException {
+        return rs.getFloat(columnIndex);
+    }
 }
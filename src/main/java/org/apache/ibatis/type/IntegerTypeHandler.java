@@ -28,7 +28,7 @@ import java.sql.SQLException;
  * 重点是setInt和getInt
  *
  */
-public class IntegerTypeHandler extends BaseTypeHandler<Integer> {
+public class IntegerTypeHandler extends BaseTypeHandler<Integer> implements PrimitiveTypeHandler.OfInt {
 
     @Override
     public void setNonNullParameter(PreparedStatement ps, int i, Integer parameter, JdbcType jdbcType)
@@ -54,4 +54,10 @@ public class IntegerTypeHandler extends BaseTypeHandler<Integer> {
             throws SQLException {
         return cs.getInt(columnIndex);
     }
+
+    @Override
+    public int getInt(ResultSet rs, int columnIndex)
+            throws SQLException {
+        return rs.getInt(columnIndex);
+    }
 }
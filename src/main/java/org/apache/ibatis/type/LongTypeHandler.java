@@ -27,7 +27,7 @@ import java.sql.SQLException;
  * java的Long类型类型的存取关系处理
  * setLong和getLong
  */
-public class LongTypeHandler extends BaseTypeHandler<Long> {
+public class LongTypeHandler extends BaseTypeHandler<Long> implements PrimitiveTypeHandler.OfLong {
 
     @Override
     public void setNonNullParameter(PreparedStatement ps, int i, Long parameter, JdbcType jdbcType)
@@ -52,4 +52,10 @@ public class LongTypeHandler extends BaseTypeHandler<Long> {
             throws SQLException {
         return cs.getLong(columnIndex);
     }
+
+    @Override
+    public long getLong(ResultSet rs, int columnIndex)
+            throws SQLException {
+        return rs.getLong(columnIndex);
+    }
 }
@@ -0,0 +1,56 @@
+/**
+ *    Copyright 2009-2015 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.type;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * 可以直接读取基本类型值的TypeHandler，结果映射的目标属性是基本类型时使用，避免每个值装箱再拆箱。
+ * 与getResult不同，列值为SQL NULL时返回0或false，调用者需要用ResultSet.wasNull()判断。
+ * 按基本类型分为OfInt、OfLong等子接口，TypeHandler实现其中对应的一个。
+ */
+public interface PrimitiveTypeHandler {
+
+    interface OfInt extends PrimitiveTypeHandler {
+        int getInt(ResultSet rs, int columnIndex) throws SQLException;
+    }
+
+    interface OfLong extends PrimitiveTypeHandler {
+        long getLong(ResultSet rs, int columnIndex) throws SQLException;
+    }
+
+    interface OfDouble extends PrimitiveTypeHandler {
+        double getDouble(ResultSet rs, int columnIndex) throws SQLException;
+    }
+
+    interface OfFloat extends PrimitiveTypeHandler {
+        float getFloat(ResultSet rs, int columnIndex) throws SQLException;
+    }
+
+    interface OfShort extends PrimitiveTypeHandler {
+        short getShort(ResultSet rs, int columnIndex) throws SQLException;
+    }
+
+    interface OfByte extends PrimitiveTypeHandler {
+        byte getByte(ResultSet rs, int columnIndex) throws SQLException;
+    }
+
+    interface OfBoolean extends PrimitiveTypeHandler {
+        boolean getBoolean(ResultSet rs, int columnIndex) throws SQLException;
+    }
+
+}
@@ -27,7 +27,7 @@ import java.sql.SQLException;
  * java的Short类型类型的存取关系处理
  * setShort和getShort
  */
-public class ShortTypeHandler extends BaseTypeHandler<Short> {
+public class ShortTypeHandler extends BaseTypeHandler<Short> implements PrimitiveTypeHandler.OfShort {
 
     @Override
     public void setNonNullParameter(PreparedStatement ps, int i, Short parameter, JdbcType jdbcType)
@@ -52,4 +52,10 @@ public class ShortTypeHandler extends BaseTypeHandler<Short> {
             throws SQLException {
         return cs.getShort(columnIndex);
     }
+
+    @Override
+    public short getShort(ResultSet rs, int columnIndex)
+            throws SQLException {
+        return rs.getShort(columnIndex);
+    }
 }
@@ -0,0 +1,91 @@
+/**
+ * Copyright 2009-2016 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ibatis.binding;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.ibatis.annotations.Insert;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.SqlSession;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class MapperProxyFactoryTest {
+
+    // SqlSession收到的调用：方法名、statement id、参数
+    private final List<Object[]> calls = new ArrayList<Object[]>();
+
+    @Test
+    public void shouldBindGeneratedMapperMethodsAtRegistration() {
+        Configuration configuration = new Configuration();
+        configuration.setGenerateMapperClasses(true);
+        configuration.addMapper(GeneratedMapper.class);
+        GeneratedMapper mapper = configuration.getMapper(GeneratedMapper.class, newSqlSession(configuration));
+        assertFalse(Proxy.isProxyClass(mapper.getClass()));
+
+        assertEquals(1, mapper.insert(5, "a"));
+        Object[] call = calls.get(0);
+        assertEquals("insert", call[0]);
+        assertEquals(GeneratedMapper.class.getName() + ".insert", call[1]);
+        Map<?, ?> param = (Map<?, ?>) call[2];
+        assertEquals(5, param.get("id"));
+        assertEquals("a", param.get("param2"));
+
+        assertEquals("selected", mapper.selectName(7L));
+        assertEquals(7L, calls.get(1)[2]);
+
+        //没有MappedStatement的方法交给MapperProxy，调用时才报错
+        try {
+            mapper.unbound();
+            fail();
+        } catch (BindingException e) {
+            assertTrue(e.getMessage().contains("unbound"));
+        }
+    }
+
+    private SqlSession newSqlSession(final Configuration configuration) {
+        return (SqlSession) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{SqlSession.class}, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                if ("getConfiguration".equals(method.getName())) {
+                    return configuration;
+                }
+                calls.add(new Object[]{method.getName(), args[0], args[1]});
+                return "insert".equals(method.getName()) ? (Object) 1 : "selected";
+            }
+        });
+    }
+
+    public interface GeneratedMapper {
+
+        @Insert("insert into t values (#{id}, #{name})")
+        int insert(@Param("id") int id, @Param("name") String name);
+
+        @Select("select name from t where id = #{id}")
+        String selectName(long id);
+
+        void unbound();
+    }
+
+}
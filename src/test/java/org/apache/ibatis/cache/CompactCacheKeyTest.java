@@ -0,0 +1,96 @@
+/**
+ * Copyright 2009-2015 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ibatis.cache;
+
+import java.lang.reflect.Field;
+
+import org.apache.ibatis.cache.decorators.JavaSerializer;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class CompactCacheKeyTest {
+
+    private static final String SQL = "select * from blog where id = ?";
+
+    @Test
+    public void shouldBeEqualWithSameStatementAndParameters() {
+        CacheKey key1 = newKey(new CompactCacheKey.Prefix("ns.select", SQL), 1, "a", null);
+        CacheKey key2 = newKey(new CompactCacheKey.Prefix("ns.select", new String(SQL)), 1, "a", null);
+        assertEquals(key1, key2);
+        assertEquals(key1.hashCode(), key2.hashCode());
+        assertEquals(key1.toString(), key2.toString());
+        assertEquals(7, key1.getUpdateCount());
+    }
+
+    @Test
+    public void shouldNotBeEqualWhenAnyPartDiffers() {
+        CompactCacheKey.Prefix prefix = new CompactCacheKey.Prefix("ns.select", SQL);
+        CacheKey key = newKey(prefix, 1, "a", null);
+        assertFalse(key.equals(newKey(prefix, 2, "a", null)));
+        assertFalse(key.equals(newKey(prefix, 1, "a", "b")));
+        assertFalse(key.equals(newKey(new CompactCacheKey.Prefix("ns.other", SQL), 1, "a", null)));
+        CacheKey paged = new CompactCacheKey(prefix, 10, 20, 3);
+        paged.updateAll(new Object[]{1, "a", null});
+        assertFalse(key.equals(paged));
+        CacheKey plain = new CacheKey(new Object[]{"ns.select", 0, Integer.MAX_VALUE, SQL, 1, "a", null});
+        assertFalse(key.equals(plain));
+        assertFalse(plain.equals(key));
+    }
+
+    @Test
+    public void shouldGrowAndCloneIndependently() throws Exception {
+        CompactCacheKey key = new CompactCacheKey(new CompactCacheKey.Prefix("ns.select", SQL), 0, 10, 1);
+        key.update(new int[]{1, 2, 3});
+        CacheKey clone = key.clone();
+        assertEquals(key, clone);
+        clone.update("page");
+        assertFalse(key.equals(clone));
+        assertEquals(7, key.getUpdateCount());
+    }
+
+    @Test
+    public void shouldSurviveSerialization() {
+        CacheKey key = newKey(new CompactCacheKey.Prefix("ns.select", SQL), 1, "a", null);
+        JavaSerializer serializer = new JavaSerializer();
+        assertEquals(key, serializer.deserialize(serializer.serialize(key)));
+    }
+
+    @Test
+    public void shouldNotAllocateUpdateListOfCacheKey() throws Exception {
+        Field updateList = CacheKey.class.getDeclaredField("updateList");
+        updateList.setAccessible(true);
+        CacheKey key = newKey(new CompactCacheKey.Prefix("ns.select", SQL), 1, "a", null);
+        assertNull(updateList.get(key));
+        assertNull(updateList.get(key.clone()));
+        //普通CacheKey第一次update时才创建
+        CacheKey plain = new CacheKey();
+        assertNull(updateList.get(plain));
+        assertEquals(plain, plain.clone());
+        plain.update("a");
+        assertEquals(1, plain.getUpdateCount());
+        assertEquals(plain, plain.clone());
+    }
+
+    private CacheKey newKey(CompactCacheKey.Prefix prefix, Object... params) {
+        CacheKey key = new CompactCacheKey(prefix, 0, Integer.MAX_VALUE, params.length);
+        for (Object param : params) {
+            key.update(param);
+        }
+        return key;
+    }
+
+}
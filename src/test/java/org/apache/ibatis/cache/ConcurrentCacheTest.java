@@ -0,0 +1,68 @@
+/**
+ * Copyright 2009-2015 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ibatis.cache;
+
+import org.apache.ibatis.cache.decorators.LoggingCache;
+import org.apache.ibatis.cache.decorators.LruCache;
+import org.apache.ibatis.cache.decorators.SoftCache;
+import org.apache.ibatis.cache.decorators.SynchronizedCache;
+import org.apache.ibatis.cache.impl.ConcurrentPerpetualCache;
+import org.apache.ibatis.cache.impl.PerpetualCache;
+import org.apache.ibatis.mapping.CacheBuilder;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class ConcurrentCacheTest {
+
+    @Test
+    public void shouldNotSynchronizeConcurrentCacheWithThreadSafeDecorators() {
+        Cache cache = new CacheBuilder("ns").implementation(ConcurrentPerpetualCache.class).addDecorator(LruCache.class).build();
+        assertTrue(cache instanceof LoggingCache);
+    }
+
+    @Test
+    public void shouldSynchronizeWhenAnyDecoratorIsNotThreadSafe() {
+        Cache cache = new CacheBuilder("ns").implementation(ConcurrentPerpetualCache.class).addDecorator(SoftCache.class).build();
+        assertTrue(cache instanceof SynchronizedCache);
+        cache = new CacheBuilder("ns").implementation(PerpetualCache.class).addDecorator(LruCache.class).build();
+        assertTrue(cache instanceof SynchronizedCache);
+    }
+
+    @Test
+    public void shouldTreatNullValueAsRemoval() {
+        Cache cache = new ConcurrentPerpetualCache("ns");
+        cache.putObject("a", 1);
+        cache.putObject("a", null);
+        assertNull(cache.getObject("a"));
+        assertEquals(0, cache.getSize());
+    }
+
+    @Test
+    public void shouldEvictLeastRecentlyUsedOnConcurrentCache() {
+        LruCache cache = new LruCache(new ConcurrentPerpetualCache("ns"));
+        cache.setSize(5);
+        for (int i = 0; i < 5; i++) {
+            cache.putObject(i, i);
+        }
+        cache.getObject(0);
+        cache.putObject(5, 5);
+        assertEquals(0, cache.getObject(0));
+        assertNull(cache.getObject(1));
+        assertEquals(5, cache.getSize());
+    }
+
+}
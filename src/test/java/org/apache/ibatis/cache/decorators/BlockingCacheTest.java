@@ -0,0 +1,84 @@
+/**
+ * Copyright 2009-2015 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ibatis.cache.decorators;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.ibatis.cache.CacheException;
+import org.apache.ibatis.cache.impl.PerpetualCache;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class BlockingCacheTest {
+
+    @Test
+    public void shouldHandLoadedValueToWaitingThread() throws Exception {
+        final BlockingCache cache = new BlockingCache(new PerpetualCache("ns"));
+        cache.setShareLoadedValue(true);
+        assertNull(cache.getObject("a"));
+        final AtomicReference<Object> result = new AtomicReference<Object>();
+        Thread waiter = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                result.set(cache.getObject("a"));
+            }
+        });
+        waiter.start();
+        Thread.sleep(50);
+        assertTrue(waiter.isAlive());
+        Object value = new Object();
+        cache.putObject("a", value);
+        waiter.join(1000);
+        assertSame(value, result.get());
+    }
+
+    @Test
+    public void shouldLetWaitingThreadLoadAfterRelease() throws Exception {
+        final BlockingCache cache = new BlockingCache(new PerpetualCache("ns"));
+        assertNull(cache.getObject("a"));
+        final AtomicReference<Object> result = new AtomicReference<Object>("unset");
+        Thread waiter = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                result.set(cache.getObject("a"));
+                cache.putObject("a", "loaded");
+            }
+        });
+        waiter.start();
+        Thread.sleep(50);
+        cache.removeObject("a");
+        waiter.join(1000);
+        assertNull(result.get());
+        assertEquals("loaded", cache.getObject("a"));
+    }
+
+    @Test(expected = CacheException.class)
+    public void shouldTimeOutWaitingForLoader() throws Exception {
+        final BlockingCache cache = new BlockingCache(new PerpetualCache("ns"));
+        cache.setTimeout(20);
+        Thread loader = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                cache.getObject("a");
+            }
+        });
+        loader.start();
+        loader.join();
+        cache.getObject("a");
+    }
+
+}
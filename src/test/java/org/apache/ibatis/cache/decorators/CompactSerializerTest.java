@@ -0,0 +1,176 @@
+/**
+ * Copyright 2009-2015 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ibatis.cache.decorators;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+
+import org.apache.ibatis.cache.Cache;
+import org.apache.ibatis.mapping.CacheBuilder;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class CompactSerializerTest {
+
+    @Test
+    public void shouldCopyBeansWithBackReferences() {
+        Author author = new Author();
+        author.setId(7L);
+        author.setName("jim");
+        author.setRank(Rank.GOLD);
+        author.setSalary(new BigDecimal("-12.50"));
+        author.setCreated(new Timestamp(1234567L));
+        author.cached = "transient";
+        Post post = new Post();
+        post.setAuthor(author);
+        post.setTitle("hello");
+        author.getPosts().add(post);
+        author.getPosts().add(post);
+
+        CompactSerializer serializer = new CompactSerializer();
+        Author copy = (Author) serializer.deserialize(serializer.serialize(author));
+        assertNotSame(author, copy);
+        assertEquals(Long.valueOf(7L), copy.getId());
+        assertEquals("jim", copy.getName());
+        assertEquals(Rank.GOLD, copy.getRank());
+        assertEquals(new BigDecimal("-12.50"), copy.getSalary());
+        assertEquals(new Timestamp(1234567L), copy.getCreated());
+        assertNull(copy.cached);
+        assertEquals(2, copy.getPosts().size());
+        assertSame(copy.getPosts().get(0), copy.getPosts().get(1));
+        assertSame(copy, copy.getPosts().get(0).getAuthor());
+    }
+
+    @Test
+    public void shouldFallBackToJavaSerialization() {
+        CompactSerializer serializer = new CompactSerializer();
+        Map<String, Object> map = new HashMap<String, Object>();
+        map.put("sorted", new TreeMap<String, Integer>(Collections.singletonMap("a", 1)));
+        map.put("fixed", Collections.singletonList(3.5d));
+        map.put("chars", 'c');
+        assertEquals(map, serializer.deserialize(serializer.serialize(map)));
+        assertNull(serializer.deserialize(serializer.serialize(null)));
+    }
+
+    @Test
+    public void shouldConfigureSerializerThroughCacheProperties() {
+        Properties props = new Properties();
+        props.setProperty("serializerType", CompactSerializer.class.getName());
+        Cache cache = new CacheBuilder("ns").readWrite(true).properties(props).build();
+        List<Post> value = new ArrayList<Post>();
+        Post post = new Post();
+        post.setTitle("t");
+        value.add(post);
+        cache.putObject("k", value);
+        @SuppressWarnings("unchecked")
+        List<Post> copy = (List<Post>) cache.getObject("k");
+        assertNotSame(value, copy);
+        assertEquals("t", copy.get(0).getTitle());
+    }
+
+    public enum Rank {
+        SILVER, GOLD
+    }
+
+    public static class Author implements Serializable {
+        private Long id;
+        private String name;
+        private Rank rank;
+        private BigDecimal salary;
+        private Timestamp created;
+        private List<Post> posts = new ArrayList<Post>();
+        private transient String cached;
+
+        public Long getId() {
+            return id;
+        }
+
+        public void setId(Long id) {
+            this.id = id;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+
+        public Rank getRank() {
+            return rank;
+        }
+
+        public void setRank(Rank rank) {
+            this.rank = rank;
+        }
+
+        public BigDecimal getSalary() {
+            return salary;
+        }
+
+        public void setSalary(BigDecimal salary) {
+            this.salary = salary;
+        }
+
+        public Timestamp getCreated() {
+            return created;
+        }
+
+        public void setCreated(Timestamp created) {
+            this.created = created;
+        }
+
+        public List<Post> getPosts() {
+            return posts;
+        }
+
+        public void setPosts(List<Post> posts) {
+            this.posts = posts;
+        }
+    }
+
+    public static class Post implements Serializable {
+        private String title;
+        private Author author;
+
+        public String getTitle() {
+            return title;
+        }
+
+        public void setTitle(String title) {
+            this.title = title;
+        }
+
+        public Author getAuthor() {
+            return author;
+        }
+
+        public void setAuthor(Author author) {
+            this.author = author;
+        }
+    }
+
+}
@@ -0,0 +1,112 @@
+/**
+ * Copyright 2009-2015 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ibatis.cache.decorators;
+
+import java.util.Properties;
+
+import org.apache.ibatis.cache.Cache;
+import org.apache.ibatis.cache.impl.PerpetualCache;
+import org.apache.ibatis.mapping.CacheBuilder;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class ExpiringCacheTest {
+
+    @Test
+    public void shouldExpireEntriesIndividually() throws Exception {
+        ExpiringCache cache = new ExpiringCache(new PerpetualCache("ns"));
+        cache.setExpireAfterWrite(50);
+        cache.setSweepInterval(0);
+        cache.putObject("old", 1);
+        Thread.sleep(80);
+        cache.putObject("new", 2);
+        assertNull(cache.getObject("old"));
+        assertEquals(2, cache.getObject("new"));
+        assertEquals(1, cache.getSize());
+    }
+
+    @Test
+    public void shouldExtendDeadlineOnAccess() throws Exception {
+        ExpiringCache cache = new ExpiringCache(new PerpetualCache("ns"));
+        cache.setExpireAfterAccess(100);
+        cache.setSweepInterval(0);
+        cache.putObject("a", 1);
+        for (int i = 0; i < 4; i++) {
+            Thread.sleep(40);
+            assertEquals(1, cache.getObject("a"));
+        }
+        Thread.sleep(150);
+        assertNull(cache.getObject("a"));
+    }
+
+    @Test
+    public void shouldSweepExpiredEntries() throws Exception {
+        ExpiringCache cache = new ExpiringCache(new PerpetualCache("ns"));
+        cache.setExpireAfterWrite(10);
+        cache.setSweepInterval(0);
+        cache.putObject("a", 1);
+        cache.putObject("b", 2);
+        Thread.sleep(30);
+        cache.sweep();
+        assertEquals(0, cache.getSize());
+    }
+
+    @Test
+    public void shouldKeepValueWrittenWhileOldEntryExpires() throws Exception {
+        final ExpiringCache[] holder = new ExpiringCache[1];
+        ExpiringCache cache = new ExpiringCache(new PerpetualCache("ns") {
+            @Override
+            public void putObject(Object key, Object value) {
+                super.putObject(key, value);
+                //写入后立即清理，模拟后台线程与写入并发
+                holder[0].sweep();
+            }
+        });
+        holder[0] = cache;
+        cache.setExpireAfterWrite(10);
+        cache.setSweepInterval(0);
+        cache.putObject("a", 1);
+        Thread.sleep(30);
+        cache.putObject("a", 2);
+        assertEquals(2, cache.getObject("a"));
+    }
+
+    @Test
+    public void shouldDropExpiryOfEntryEvictedByDelegate() {
+        LruCache lru = new LruCache(new PerpetualCache("ns"));
+        lru.setSize(1);
+        ExpiringCache cache = new ExpiringCache(lru);
+        cache.setExpireAfterWrite(60000);
+        cache.setSweepInterval(0);
+        cache.putObject("a", 1);
+        cache.putObject("b", 2);
+        assertEquals(2, cache.getExpiryCount());
+        assertNull(cache.getObject("a"));
+        assertEquals(1, cache.getExpiryCount());
+    }
+
+    @Test
+    public void shouldReplaceScheduledCacheWhenExpiryConfigured() {
+        Properties props = new Properties();
+        props.setProperty("expireAfterAccess", "1000");
+        Cache cache = new CacheBuilder("ns").clearInterval(60000L).properties(props).build();
+        assertTrue(cache instanceof ExpiringCache);
+        cache = new CacheBuilder("ns").clearInterval(60000L).build();
+        assertFalse(cache instanceof ExpiringCache);
+    }
+
+}
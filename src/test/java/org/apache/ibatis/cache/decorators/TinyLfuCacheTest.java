@@ -0,0 +1,83 @@
+/**
+ * Copyright 2009-2015 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ibatis.cache.decorators;
+
+import org.apache.ibatis.cache.impl.ConcurrentPerpetualCache;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class TinyLfuCacheTest {
+
+    @Test
+    public void shouldNeverExceedMaximumSize() {
+        TinyLfuCache cache = new TinyLfuCache(new ConcurrentPerpetualCache("ns"));
+        cache.setSize(100);
+        for (int i = 0; i < 1000; i++) {
+            cache.putObject(i, i);
+        }
+        assertEquals(100, cache.getSize());
+        assertEquals(900, cache.getEvictionCount());
+    }
+
+    @Test
+    public void shouldKeepHotEntriesDuringScan() {
+        TinyLfuCache cache = new TinyLfuCache(new ConcurrentPerpetualCache("ns"));
+        cache.setSize(100);
+        for (int round = 0; round < 10; round++) {
+            for (int i = 0; i < 50; i++) {
+                if (cache.getObject("hot" + i) == null) {
+                    cache.putObject("hot" + i, i);
+                }
+            }
+        }
+        for (int i = 0; i < 1000; i++) {
+            cache.getObject("scan" + i);
+            cache.putObject("scan" + i, i);
+        }
+        int survivors = 0;
+        for (int i = 0; i < 50; i++) {
+            if (cache.getObject("hot" + i) != null) {
+                survivors++;
+            }
+        }
+        assertTrue("hot entries survived: " + survivors, survivors >= 45);
+    }
+
+    @Test
+    public void shouldReportHitRatio() {
+        TinyLfuCache cache = new TinyLfuCache(new ConcurrentPerpetualCache("ns"));
+        assertEquals(0, cache.getHitRatio(), 0);
+        cache.putObject("a", 1);
+        cache.getObject("a");
+        cache.getObject("b");
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+        assertEquals(0.5, cache.getHitRatio(), 0.0001);
+    }
+
+    @Test
+    public void shouldNotTrackNullValues() {
+        TinyLfuCache cache = new TinyLfuCache(new ConcurrentPerpetualCache("ns"));
+        cache.setSize(2);
+        cache.putObject("a", 1);
+        cache.putObject("missing", null);
+        cache.putObject("b", 2);
+        assertEquals(2, cache.getSize());
+        assertEquals(0, cache.getEvictionCount());
+    }
+
+}
@@ -0,0 +1,108 @@
+/**
+ * Copyright 2009-2015 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ibatis.cache.decorators;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+
+import org.apache.ibatis.cache.Cache;
+import org.apache.ibatis.cache.Weigher;
+import org.apache.ibatis.cache.impl.PerpetualCache;
+import org.apache.ibatis.mapping.CacheBuilder;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class WeightedCacheTest {
+
+    public static class ConstantWeigher implements Weigher {
+        @Override
+        public long weigh(Object key, Object value) {
+            return 10;
+        }
+    }
+
+    @Test
+    public void shouldEvictByRowCount() {
+        WeightedCache cache = new WeightedCache(new PerpetualCache("ns"));
+        cache.setMaxWeight(100);
+        cache.putObject("big", rows(60));
+        cache.putObject("small", rows(1));
+        cache.getObject("big");
+        cache.putObject("medium", rows(50));
+        //small最久未使用，但淘汰它仍不够，big也被淘汰
+        assertNull(cache.getObject("small"));
+        assertNull(cache.getObject("big"));
+        assertNotNull(cache.getObject("medium"));
+        assertEquals(50, cache.getWeightedSize());
+        assertEquals(2, cache.getEvictionCount());
+    }
+
+    @Test
+    public void shouldNotCacheEntryHeavierThanMaxWeight() {
+        WeightedCache cache = new WeightedCache(new PerpetualCache("ns"));
+        cache.setMaxWeight(10);
+        cache.putObject("a", rows(5));
+        cache.putObject("huge", rows(11));
+        assertNull(cache.getObject("huge"));
+        assertNotNull(cache.getObject("a"));
+        assertEquals(5, cache.getWeightedSize());
+    }
+
+    @Test
+    public void shouldCountEmptyResultAsOne() {
+        assertEquals(1, new DefaultWeigher().weigh("k", Collections.emptyList()));
+        assertEquals(3, new DefaultWeigher().weigh("k", new byte[3]));
+    }
+
+    @Test
+    public void shouldConfigureFromCacheProperties() {
+        Properties props = new Properties();
+        props.setProperty("maxWeight", "25");
+        props.setProperty("weigherType", ConstantWeigher.class.getName());
+        Cache cache = new CacheBuilder("ns").addDecorator(WeightedCache.class).properties(props).build();
+        for (int i = 0; i < 5; i++) {
+            cache.putObject(i, "value");
+        }
+        assertEquals(2, cache.getSize());
+    }
+
+    @Test
+    public void shouldWeighRowsOfReadWriteCache() {
+        Properties props = new Properties();
+        props.setProperty("maxWeight", "100");
+        Cache cache = new CacheBuilder("ns").addDecorator(WeightedCache.class).readWrite(true).properties(props).build();
+        //按行数计算，而不是序列化后的字节数
+        cache.putObject("a", rows(40));
+        cache.putObject("b", rows(40));
+        cache.putObject("c", rows(40));
+        assertNull(cache.getObject("a"));
+        assertEquals(rows(40), cache.getObject("b"));
+        assertNotSame(cache.getObject("c"), cache.getObject("c"));
+        assertEquals(2, cache.getSize());
+    }
+
+    private List<Integer> rows(int count) {
+        List<Integer> rows = new ArrayList<Integer>();
+        for (int i = 0; i < count; i++) {
+            rows.add(i);
+        }
+        return rows;
+    }
+
+}
@@ -0,0 +1,84 @@
+/**
+ * Copyright 2009-2015 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ibatis.cache.impl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.ibatis.cache.Cache;
+import org.apache.ibatis.cache.decorators.LoggingCache;
+import org.apache.ibatis.mapping.CacheBuilder;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class OffHeapCacheTest {
+
+    @Test
+    public void shouldStoreCopiesOfValues() {
+        OffHeapCache cache = new OffHeapCache("ns");
+        List<String> value = new ArrayList<String>(Arrays.asList("a", "b"));
+        cache.putObject("k", value);
+        Object read = cache.getObject("k");
+        assertEquals(value, read);
+        assertNotSame(value, read);
+        cache.putObject("k", null);
+        assertNull(cache.getObject("k"));
+        assertEquals(0, cache.getSize());
+    }
+
+    @Test
+    public void shouldEvictLeastRecentlyUsedWhenMemoryIsFull() {
+        OffHeapCache cache = new OffHeapCache("ns");
+        cache.setSlabSize(1024);
+        cache.setMaxMemory(1024);
+        //每个值占用同一大小级别的块，1KB的slab能放下的数量有限
+        for (int i = 0; i < 100; i++) {
+            cache.putObject(i, i);
+            cache.getObject(0);
+        }
+        assertEquals(1024, cache.getAllocatedMemory());
+        assertTrue(cache.getEvictionCount() > 0);
+        assertEquals(0, cache.getObject(0));
+        assertEquals(99, cache.getObject(99));
+        assertNull(cache.getObject(1));
+    }
+
+    @Test
+    public void shouldMoveSlabToAnotherSizeClass() {
+        OffHeapCache cache = new OffHeapCache("ns");
+        cache.setSlabSize(1024);
+        cache.setMaxMemory(1024);
+        cache.putObject("small", 1);
+        char[] chars = new char[600];
+        Arrays.fill(chars, 'x');
+        String large = new String(chars);
+        cache.putObject("large", large);
+        assertEquals(large, cache.getObject("large"));
+        assertNull(cache.getObject("small"));
+        assertEquals(1, cache.getSize());
+    }
+
+    @Test
+    public void shouldOnlyWrapWithLogging() {
+        Cache cache = new CacheBuilder("ns").implementation(OffHeapCache.class).build();
+        assertTrue(cache instanceof LoggingCache);
+        cache.putObject("k", "v");
+        assertEquals("v", cache.getObject("k"));
+    }
+
+}
@@ -0,0 +1,80 @@
+/**
+ * Copyright 2009-2016 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ibatis.cursor.defaults;
+
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.ibatis.builder.StaticSqlSource;
+import org.apache.ibatis.cursor.Cursor;
+import org.apache.ibatis.executor.resultset.DefaultResultSetHandler;
+import org.apache.ibatis.executor.resultset.FakeResultSet;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.ResultMap;
+import org.apache.ibatis.mapping.ResultMapping;
+import org.apache.ibatis.mapping.SqlCommandType;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.RowBounds;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class DefaultCursorTest {
+
+    @Test
+    public void shouldApplyRowBoundsAndCloseWhenLimitReached() throws Exception {
+        FakeResultSet rs = newResultSet();
+        Cursor<Map<String, Object>> cursor = openCursor(rs, new RowBounds(1, 2));
+        List<Object> ids = new ArrayList<Object>();
+        for (Map<String, Object> row : cursor) {
+            ids.add(row.get("ID"));
+        }
+        assertEquals("[2, 3]", ids.toString());
+        assertEquals(2, cursor.getCurrentIndex());
+        assertTrue(cursor.isConsumed());
+        assertTrue(rs.isClosed());
+    }
+
+    @Test
+    public void shouldCloseResultSetWhenClosedBeforeConsumed() throws Exception {
+        FakeResultSet rs = newResultSet();
+        Cursor<Map<String, Object>> cursor = openCursor(rs, RowBounds.DEFAULT);
+        assertEquals(1, cursor.iterator().next().get("ID"));
+        assertTrue(cursor.isOpen());
+        cursor.close();
+        assertFalse(cursor.isOpen());
+        assertFalse(cursor.isConsumed());
+        assertTrue(rs.isClosed());
+    }
+
+    private Cursor<Map<String, Object>> openCursor(FakeResultSet rs, RowBounds rowBounds) throws Exception {
+        Configuration configuration = new Configuration();
+        ResultMap resultMap = new ResultMap.Builder(configuration, "rowMap", Map.class, new ArrayList<ResultMapping>()).build();
+        MappedStatement ms = new MappedStatement.Builder(configuration, "selectRows", new StaticSqlSource(configuration, "select"), SqlCommandType.SELECT)
+                .resultMaps(Collections.singletonList(resultMap)).build();
+        DefaultResultSetHandler handler = new DefaultResultSetHandler(null, ms, null, null, ms.getBoundSql(null), rowBounds);
+        return handler.handleCursorResultSets(rs.statement());
+    }
+
+    private FakeResultSet newResultSet() {
+        return new FakeResultSet(new String[]{"ID"}, new int[]{Types.INTEGER}, new String[]{"java.lang.Integer"})
+                .addRow(1).addRow(2).addRow(3).addRow(4);
+    }
+
+}
@@ -0,0 +1,126 @@
+/**
+ * Copyright 2009-2016 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ibatis.datasource.pooled;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class ConcurrentPooledDataSourceTest {
+
+    private final FakeDataSource fakeDataSource = new FakeDataSource();
+
+    private ConcurrentPooledDataSource newPool(int maximumActiveConnections) {
+        ConcurrentPooledDataSource dataSource = new ConcurrentPooledDataSource(fakeDataSource);
+        //setUrl重新计算expectedConnectionTypeCode，归还的连接才会放回池中
+        dataSource.setUrl("jdbc:fake");
+        dataSource.setPoolMaximumActiveConnections(maximumActiveConnections);
+        dataSource.setPoolTimeToWait(5000);
+        return dataSource;
+    }
+
+    @Test(timeout = 10000)
+    public void shouldReuseReturnedConnection() throws Exception {
+        ConcurrentPooledDataSource dataSource = newPool(2);
+        Connection first = dataSource.getConnection();
+        Connection realConnection = PooledDataSource.unwrapConnection(first);
+        first.close();
+        assertEquals(1, dataSource.getPoolState().getIdleConnectionCount());
+        Connection second = dataSource.getConnection();
+        assertSame(realConnection, PooledDataSource.unwrapConnection(second));
+        assertEquals(1, fakeDataSource.connections.size());
+        //重复close同一个代理不会再次归还
+        first.close();
+        assertEquals(0, dataSource.getPoolState().getIdleConnectionCount());
+        second.close();
+        assertEquals(1, dataSource.getPoolState().getIdleConnectionCount());
+    }
+
+    @Test(timeout = 10000)
+    public void shouldHandOffReturnedConnectionToWaiter() throws Exception {
+        final ConcurrentPooledDataSource dataSource = newPool(1);
+        Connection held = dataSource.getConnection();
+        ExecutorService threads = Executors.newSingleThreadExecutor();
+        try {
+            Future<Connection> waiter = threads.submit(new Callable<Connection>() {
+                @Override
+                public Connection call() throws Exception {
+                    return dataSource.getConnection();
+                }
+            });
+            while (dataSource.getBag().getWaitingThreadCount() == 0) {
+                Thread.sleep(1);
+            }
+            held.close();
+            Connection handedOff = waiter.get(5, TimeUnit.SECONDS);
+            assertSame(PooledDataSource.unwrapConnection(held), PooledDataSource.unwrapConnection(handedOff));
+            assertEquals(1, fakeDataSource.connections.size());
+            assertEquals(1, dataSource.getPoolState().getHadToWaitCount());
+        } finally {
+            threads.shutdown();
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void shouldClaimOverdueConnection() throws Exception {
+        ConcurrentPooledDataSource dataSource = newPool(1);
+        dataSource.setPoolMaximumCheckoutTime(10);
+        Connection overdue = dataSource.getConnection();
+        fakeDataSource.get(0).autoCommit = false;
+        Thread.sleep(30);
+        Connection claimed = dataSource.getConnection();
+        assertSame(PooledDataSource.unwrapConnection(overdue), PooledDataSource.unwrapConnection(claimed));
+        assertEquals(1, dataSource.getPoolState().getClaimedOverdueConnectionCount());
+        //原持有者的代理已失效，归还也不影响新的持有者
+        try {
+            overdue.createStatement();
+            fail();
+        } catch (SQLException e) {
+            assertTrue(e.getMessage().contains("invalid"));
+        }
+        overdue.close();
+        assertFalse(claimed.isClosed());
+        assertEquals(0, dataSource.getPoolState().getIdleConnectionCount());
+    }
+
+    @Test(timeout = 10000)
+    public void shouldCloseConnectionWhenRollbackFailsOnReturn() throws Exception {
+        ConcurrentPooledDataSource dataSource = newPool(1);
+        Connection connection = dataSource.getConnection();
+        fakeDataSource.get(0).autoCommit = false;
+        fakeDataSource.get(0).failRollback = true;
+        try {
+            connection.close();
+            fail();
+        } catch (SQLException e) {
+            assertEquals("rollback failed", e.getMessage());
+        }
+        //回滚失败的连接被关闭，名额释放，不会一直等待
+        assertTrue(fakeDataSource.get(0).closed);
+        assertEquals(0, dataSource.getPoolState().getActiveConnectionCount());
+        Connection next = dataSource.getConnection();
+        assertSame(fakeDataSource.get(1).proxy, PooledDataSource.unwrapConnection(next));
+    }
+
+}
@@ -0,0 +1,100 @@
+/**
+ * Copyright 2009-2016 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ibatis.datasource.pooled;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.ibatis.datasource.unpooled.UnpooledDataSource;
+
+/**
+ * 连接池测试用的数据源，不连接数据库，记录创建的每个连接的状态
+ */
+class FakeDataSource extends UnpooledDataSource {
+
+    // 按创建顺序记录的连接
+    final List<FakeConnection> connections = Collections.synchronizedList(new ArrayList<FakeConnection>());
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        FakeConnection connection = new FakeConnection();
+        connections.add(connection);
+        return connection.proxy;
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return getConnection();
+    }
+
+    FakeConnection get(int index) {
+        return connections.get(index);
+    }
+
+    int openCount() {
+        int count = 0;
+        synchronized (connections) {
+            for (FakeConnection connection : connections) {
+                if (!connection.closed) {
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    static class FakeConnection implements InvocationHandler {
+        volatile boolean closed;
+        volatile boolean autoCommit = true;
+        volatile boolean failRollback;
+        volatile boolean valid = true;
+        final Connection proxy = (Connection) Proxy.newProxyInstance(FakeDataSource.class.getClassLoader(), new Class<?>[]{Connection.class}, this);
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws SQLException {
+            String name = method.getName();
+            if ("equals".equals(name)) {
+                return proxy == args[0];
+            } else if ("hashCode".equals(name)) {
+                return System.identityHashCode(proxy);
+            } else if ("toString".equals(name)) {
+                return "FakeConnection@" + System.identityHashCode(proxy);
+            } else if ("close".equals(name)) {
+                closed = true;
+            } else if ("isClosed".equals(name)) {
+                return closed;
+            } else if ("isValid".equals(name)) {
+                return valid && !closed;
+            } else if ("getAutoCommit".equals(name)) {
+                return autoCommit;
+            } else if ("rollback".equals(name) && failRollback) {
+                throw new SQLException("rollback failed");
+            } else if (method.getReturnType() == boolean.class) {
+                return false;
+            } else if (method.getReturnType() == int.class) {
+                return 0;
+            }
+            return null;
+        }
+    }
+
+}
@@ -0,0 +1,68 @@
+/**
+ * Copyright 2009-2015 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ibatis.datasource.pooled;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void shouldReturnZeroWhenEmpty() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getPercentile(99));
+        assertEquals(0, histogram.getMax());
+    }
+
+    @Test
+    public void shouldKeepSmallValuesExact() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 10; i++) {
+            histogram.record(i);
+        }
+        assertEquals(10, histogram.getCount());
+        assertEquals(5, histogram.getPercentile(50));
+        assertEquals(10, histogram.getPercentile(99));
+        assertEquals(10, histogram.getMax());
+    }
+
+    @Test
+    public void shouldBoundRelativeErrorOfLargeValues() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 0; i < 99; i++) {
+            histogram.record(100);
+        }
+        histogram.record(20000);
+        long p50 = histogram.getPercentile(50);
+        assertTrue(p50 >= 100 && p50 <= 112);
+        assertEquals(20000, histogram.getPercentile(100));
+        assertEquals(20000, histogram.getMax());
+    }
+
+    @Test
+    public void shouldMapEveryValueIntoItsBucket() {
+        for (long value = 0; value < 100000; value += 7) {
+            int index = LatencyHistogram.indexOf(value);
+            assertTrue(LatencyHistogram.upperBoundOf(index) >= value);
+            if (index > 0) {
+                assertTrue(LatencyHistogram.upperBoundOf(index - 1) < value);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,156 @@
+/**
+ * Copyright 2009-2016 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ibatis.datasource.pooled;
+
+import java.sql.Connection;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * 维护任务的测试，直接调用housekeep()，不启动后台线程
+ */
+public class PooledDataSourceTest {
+
+    private final FakeDataSource fakeDataSource = new FakeDataSource();
+
+    private PooledDataSource init(PooledDataSource dataSource) {
+        //setUrl重新计算expectedConnectionTypeCode，归还的连接才会放回池中
+        dataSource.setUrl("jdbc:fake");
+        return dataSource;
+    }
+
+    private void checkoutAndReturn(PooledDataSource dataSource, int count) throws Exception {
+        Connection[] connections = new Connection[count];
+        for (int i = 0; i < count; i++) {
+            connections[i] = dataSource.getConnection();
+        }
+        for (Connection connection : connections) {
+            connection.close();
+        }
+    }
+
+    @Test
+    public void shouldCloseConnectionsFailingValidation() throws Exception {
+        PooledDataSource dataSource = init(new PooledDataSource(fakeDataSource));
+        checkoutAndReturn(dataSource, 2);
+        fakeDataSource.get(0).valid = false;
+        dataSource.housekeep();
+        assertTrue(fakeDataSource.get(0).closed);
+        assertFalse(fakeDataSource.get(1).closed);
+        assertEquals(1, dataSource.getPoolState().getIdleConnectionCount());
+        assertEquals(1, dataSource.getPoolState().getBadConnectionCount());
+    }
+
+    @Test
+    public void shouldEvictIdleConnections() throws Exception {
+        PooledDataSource dataSource = init(new PooledDataSource(fakeDataSource));
+        dataSource.setPoolMaximumIdleTime(10);
+        checkoutAndReturn(dataSource, 1);
+        Thread.sleep(30);
+        dataSource.housekeep();
+        assertTrue(fakeDataSource.get(0).closed);
+        assertEquals(0, dataSource.getPoolState().getIdleConnectionCount());
+        assertEquals(1, dataSource.getPoolState().getEvictedConnectionCount());
+    }
+
+    @Test
+    public void shouldEvictConnectionsOlderThanMaximumLifetime() throws Exception {
+        PooledDataSource dataSource = init(new PooledDataSource(fakeDataSource));
+        dataSource.setPoolMaximumLifetime(10);
+        checkoutAndReturn(dataSource, 1);
+        Thread.sleep(30);
+        //刚刚使用过，但创建时间已超过上限
+        checkoutAndReturn(dataSource, 1);
+        assertEquals(1, fakeDataSource.connections.size());
+        dataSource.housekeep();
+        assertTrue(fakeDataSource.get(0).closed);
+        assertEquals(1, dataSource.getPoolState().getEvictedConnectionCount());
+    }
+
+    @Test
+    public void shouldPrewarmWithinMaximumActiveConnections() throws Exception {
+        PooledDataSource dataSource = init(new PooledDataSource(fakeDataSource));
+        dataSource.setPoolMaximumActiveConnections(3);
+        dataSource.setPoolMinimumIdleConnections(5);
+        Connection active = dataSource.getConnection();
+        dataSource.housekeep();
+        //1个借出 + 2个预热 = 最大连接数
+        assertEquals(2, dataSource.getPoolState().getIdleConnectionCount());
+        assertEquals(3, fakeDataSource.connections.size());
+        active.close();
+        dataSource.housekeep();
+        assertEquals(3, fakeDataSource.connections.size());
+    }
+
+    @Test(timeout = 10000)
+    public void shouldStopHousekeeperOnForceCloseAll() throws Exception {
+        PooledDataSource dataSource = init(new PooledDataSource(fakeDataSource));
+        dataSource.setPoolMinimumIdleConnections(2);
+        dataSource.setPoolHousekeepingPeriod(20);
+        Connection active = dataSource.getConnection();
+        while (fakeDataSource.connections.size() < 3) {
+            Thread.sleep(5);
+        }
+        active.close();
+        dataSource.forceCloseAll();
+        //维护线程已停止，不会再为关闭的池预热连接
+        Thread.sleep(100);
+        assertEquals(3, fakeDataSource.connections.size());
+        assertEquals(0, fakeDataSource.openCount());
+    }
+
+    @Test(timeout = 10000)
+    public void shouldCountConnectionsUnderValidationAgainstMaximum() throws Exception {
+        final ExecutorService threads = Executors.newSingleThreadExecutor();
+        final Future<?>[] waiter = new Future<?>[1];
+        final PooledDataSource dataSource = init(new PooledDataSource(fakeDataSource) {
+            @Override
+            protected boolean validateConnection(Connection realConn) {
+                //校验期间另一个线程借连接，名额已被占用，只能等待校验结束
+                waiter[0] = threads.submit(new Callable<Connection>() {
+                    @Override
+                    public Connection call() throws Exception {
+                        return getConnection();
+                    }
+                });
+                try {
+                    Thread.sleep(100);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return super.validateConnection(realConn);
+            }
+        });
+        dataSource.setPoolMaximumActiveConnections(1);
+        try {
+            checkoutAndReturn(dataSource, 1);
+            dataSource.housekeep();
+            Connection connection = (Connection) waiter[0].get(5, TimeUnit.SECONDS);
+            assertSame(fakeDataSource.get(0).proxy, PooledDataSource.unwrapConnection(connection));
+            assertEquals(1, fakeDataSource.connections.size());
+        } finally {
+            threads.shutdown();
+        }
+    }
+
+}
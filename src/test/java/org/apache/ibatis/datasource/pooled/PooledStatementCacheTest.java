@@ -0,0 +1,120 @@
+/**
+ * Copyright 2009-2016 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ibatis.datasource.pooled;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class PooledStatementCacheTest {
+
+    // 按创建顺序记录的真实Statement，值为是否已关闭
+    private final List<boolean[]> statements = new ArrayList<boolean[]>();
+
+    private final Connection realConnection = (Connection) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{Connection.class}, new InvocationHandler() {
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) {
+            if ("prepareStatement".equals(method.getName())) {
+                return newStatement();
+            }
+            return defaultValue(method.getReturnType());
+        }
+    });
+
+    @Test
+    public void shouldReuseStatementAcrossCheckouts() throws Exception {
+        PooledStatementCache cache = new PooledStatementCache(2);
+        PreparedStatement first = prepare(cache, "select 1");
+        //借出期间再次prepare相同SQL得到另一个Statement
+        PreparedStatement second = prepare(cache, "select 1");
+        assertEquals(2, statements.size());
+        first.close();
+        second.close();
+        //同一个key只保留一个，多余的关闭
+        assertEquals(1, cache.size());
+        assertTrue(statements.get(1)[0]);
+        assertTrue(first.isClosed());
+        try {
+            first.executeQuery();
+            fail();
+        } catch (SQLException e) {
+            assertEquals("Statement is closed.", e.getMessage());
+        }
+        prepare(cache, "select 1").close();
+        assertEquals(2, statements.size());
+        assertFalse(statements.get(0)[0]);
+    }
+
+    @Test
+    public void shouldEvictLeastRecentlyReturnedAndCloseOnClear() throws Exception {
+        PooledStatementCache cache = new PooledStatementCache(2);
+        prepare(cache, "select 1").close();
+        prepare(cache, "select 2").close();
+        PreparedStatement scrollable = cache.prepareStatement(realConnection, realConnection,
+                new Object[]{"select 1", ResultSet.TYPE_SCROLL_INSENSITIVE, ResultSet.CONCUR_READ_ONLY});
+        //结果集类型不同，不使用缓存的Statement
+        assertEquals(3, statements.size());
+        scrollable.close();
+        assertTrue(statements.get(0)[0]);
+        assertEquals(2, cache.size());
+        cache.clear();
+        assertTrue(statements.get(1)[0]);
+        assertTrue(statements.get(2)[0]);
+        assertEquals(0, cache.size());
+    }
+
+    private PreparedStatement prepare(PooledStatementCache cache, String sql) throws Exception {
+        return cache.prepareStatement(realConnection, realConnection, new Object[]{sql});
+    }
+
+    private PreparedStatement newStatement() {
+        final boolean[] closed = new boolean[1];
+        statements.add(closed);
+        return (PreparedStatement) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{PreparedStatement.class}, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                if ("close".equals(method.getName())) {
+                    closed[0] = true;
+                } else if ("isClosed".equals(method.getName())) {
+                    return closed[0];
+                }
+                return defaultValue(method.getReturnType());
+            }
+        });
+    }
+
+    private static Object defaultValue(Class<?> type) {
+        if (type == boolean.class) {
+            return false;
+        } else if (type == int.class) {
+            return 0;
+        } else if (type == long.class) {
+            return 0L;
+        }
+        return null;
+    }
+
+}
@@ -0,0 +1,154 @@
+/**
+ * Copyright 2009-2016 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ibatis.executor;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.ibatis.builder.StaticSqlSource;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.ParameterMapping;
+import org.apache.ibatis.mapping.SqlCommandType;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.transaction.Transaction;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class BatchExecutorTest {
+
+    // 每次executeBatch执行的语句数
+    private final List<Integer> executedBatches = new ArrayList<Integer>();
+
+    @Test
+    public void shouldAutoFlushAndAggregateBatchResults() throws Exception {
+        Configuration configuration = new Configuration();
+        configuration.setBatchFlushStatements(3);
+        BatchExecutor executor = new BatchExecutor(configuration, new FakeTransaction());
+        MappedStatement ms = newInsert(configuration);
+        for (int i = 0; i < 7; i++) {
+            executor.update(ms, i);
+        }
+        assertEquals("[3, 3]", executedBatches.toString());
+        List<BatchResult> results = executor.flushStatements();
+        assertEquals("[3, 3, 1]", executedBatches.toString());
+        assertEquals(1, results.size());
+        //各次executeBatch的更新计数按顺序合并
+        assertEquals("[0, 1, 2, 3, 4, 5, 6]", Arrays.toString(results.get(0).getUpdateCounts()));
+        assertEquals(7, results.get(0).getParameterObjects().size());
+    }
+
+    @Test
+    public void shouldNotAutoFlushByDefault() throws Exception {
+        Configuration configuration = new Configuration();
+        BatchExecutor executor = new BatchExecutor(configuration, new FakeTransaction());
+        MappedStatement ms = newInsert(configuration);
+        for (int i = 0; i < 7; i++) {
+            executor.update(ms, i);
+        }
+        assertTrue(executedBatches.isEmpty());
+        List<BatchResult> results = executor.flushStatements();
+        assertEquals("[7]", executedBatches.toString());
+        assertEquals(7, results.get(0).getUpdateCounts().length);
+    }
+
+    private MappedStatement newInsert(Configuration configuration) {
+        List<ParameterMapping> parameterMappings = Collections.singletonList(
+                new ParameterMapping.Builder(configuration, "value", Integer.class).build());
+        return new MappedStatement.Builder(configuration, "insertValue",
+                new StaticSqlSource(configuration, "insert into t values (?)", parameterMappings), SqlCommandType.INSERT).build();
+    }
+
+    private PreparedStatement newStatement() {
+        return (PreparedStatement) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{PreparedStatement.class}, new InvocationHandler() {
+            // 用绑定的参数值作为每条语句的更新计数
+            private final List<Integer> batch = new ArrayList<Integer>();
+            private int value;
+
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                if ("setInt".equals(method.getName())) {
+                    value = (Integer) args[1];
+                } else if ("addBatch".equals(method.getName())) {
+                    batch.add(value);
+                } else if ("executeBatch".equals(method.getName())) {
+                    executedBatches.add(batch.size());
+                    int[] updateCounts = new int[batch.size()];
+                    for (int i = 0; i < updateCounts.length; i++) {
+                        updateCounts[i] = batch.get(i);
+                    }
+                    batch.clear();
+                    return updateCounts;
+                }
+                return defaultValue(method.getReturnType());
+            }
+        });
+    }
+
+    private static Object defaultValue(Class<?> type) {
+        if (type == boolean.class) {
+            return false;
+        } else if (type == int.class) {
+            return 0;
+        } else if (type == long.class) {
+            return 0L;
+        }
+        return null;
+    }
+
+    private class FakeTransaction implements Transaction {
+        private final Connection connection = (Connection) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{Connection.class}, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                if ("prepareStatement".equals(method.getName())) {
+                    return newStatement();
+                }
+                return defaultValue(method.getReturnType());
+            }
+        });
+
+        @Override
+        public Connection getConnection() throws SQLException {
+            return connection;
+        }
+
+        @Override
+        public void commit() throws SQLException {
+        }
+
+        @Override
+        public void rollback() throws SQLException {
+        }
+
+        @Override
+        public void close() throws SQLException {
+        }
+
+        @Override
+        public Integer getTimeout() throws SQLException {
+            return null;
+        }
+    }
+
+}
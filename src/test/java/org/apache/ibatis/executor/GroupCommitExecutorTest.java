@@ -0,0 +1,203 @@
+/**
+ * Copyright 2009-2016 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ibatis.executor;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.BatchUpdateException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.sql.DataSource;
+
+import org.apache.ibatis.builder.StaticSqlSource;
+import org.apache.ibatis.mapping.Environment;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.ParameterMapping;
+import org.apache.ibatis.mapping.SqlCommandType;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.transaction.jdbc.JdbcTransaction;
+import org.apache.ibatis.transaction.jdbc.JdbcTransactionFactory;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class GroupCommitExecutorTest {
+
+    private static final int SESSIONS = 4;
+
+    private final Configuration configuration = new Configuration();
+    // 每次executeBatch执行的语句数
+    private final List<Integer> executedBatches = Collections.synchronizedList(new ArrayList<Integer>());
+    private int commits;
+    // 违反约束的参数值，0表示都成功
+    private volatile int failingValue;
+
+    @Test
+    public void shouldCoalesceUpdatesFromConcurrentSessions() throws Exception {
+        List<Future<Integer>> updateCounts = updateConcurrently();
+        int total = 0;
+        for (Future<Integer> updateCount : updateCounts) {
+            total += updateCount.get();
+        }
+        //每条更新拿到自己的行数
+        assertEquals(1 + 2 + 3 + 4, total);
+        assertEquals("[" + SESSIONS + "]", executedBatches.toString());
+        assertEquals(1, commits);
+        //执行完的组不留在队列中
+        assertEquals(0, configuration.getGroupCommitBatches().getGroupCount());
+    }
+
+    @Test
+    public void shouldFailOnlyTheUpdateThatViolatesConstraint() throws Exception {
+        failingValue = 3;
+        List<Future<Integer>> updateCounts = updateConcurrently();
+        for (int i = 0; i < SESSIONS; i++) {
+            if (i + 1 == failingValue) {
+                try {
+                    updateCounts.get(i).get();
+                    fail();
+                } catch (ExecutionException e) {
+                    assertEquals("bad value", e.getCause().getMessage());
+                }
+            } else {
+                assertEquals(i + 1, (int) updateCounts.get(i).get());
+            }
+        }
+        //整组失败后逐条重新执行，成功的三条各自提交
+        assertEquals("[" + SESSIONS + "]", executedBatches.toString());
+        assertEquals(SESSIONS - 1, commits);
+    }
+
+    private List<Future<Integer>> updateConcurrently() throws Exception {
+        final DataSource dataSource = newDataSource();
+        configuration.setEnvironment(new Environment("test", new JdbcTransactionFactory(), dataSource));
+        //凑满一组后立即执行，窗口只是等待的上限
+        configuration.setGroupCommitWindow(10000);
+        configuration.setGroupCommitBatchSize(SESSIONS);
+        final MappedStatement ms = newInsert(configuration);
+        ExecutorService threads = Executors.newFixedThreadPool(SESSIONS);
+        try {
+            List<Future<Integer>> updateCounts = new ArrayList<Future<Integer>>();
+            for (int i = 0; i < SESSIONS; i++) {
+                final int value = i + 1;
+                updateCounts.add(threads.submit(new Callable<Integer>() {
+                    @Override
+                    public Integer call() throws Exception {
+                        GroupCommitExecutor executor = new GroupCommitExecutor(configuration, new JdbcTransaction(dataSource, null, false));
+                        return executor.update(ms, value);
+                    }
+                }));
+            }
+            for (Future<Integer> updateCount : updateCounts) {
+                try {
+                    updateCount.get();
+                } catch (ExecutionException e) {
+                    // 由调用者检查
+                }
+            }
+            return updateCounts;
+        } finally {
+            threads.shutdown();
+        }
+    }
+
+    private MappedStatement newInsert(Configuration configuration) {
+        List<ParameterMapping> parameterMappings = Collections.singletonList(
+                new ParameterMapping.Builder(configuration, "value", Integer.class).build());
+        return new MappedStatement.Builder(configuration, "insertValue",
+                new StaticSqlSource(configuration, "insert into t values (?)", parameterMappings), SqlCommandType.INSERT).build();
+    }
+
+    private DataSource newDataSource() {
+        final Connection connection = (Connection) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{Connection.class}, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                if ("prepareStatement".equals(method.getName())) {
+                    return newStatement();
+                } else if ("commit".equals(method.getName())) {
+                    commits++;
+                }
+                return defaultValue(method.getReturnType());
+            }
+        });
+        return (DataSource) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{DataSource.class}, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                if ("getConnection".equals(method.getName())) {
+                    return connection;
+                }
+                return defaultValue(method.getReturnType());
+            }
+        });
+    }
+
+    //用绑定的参数值作为这条语句的行数
+    private PreparedStatement newStatement() {
+        return (PreparedStatement) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{PreparedStatement.class}, new InvocationHandler() {
+            private final List<Integer> batch = new ArrayList<Integer>();
+            private int value;
+
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) throws SQLException {
+                if ("setInt".equals(method.getName())) {
+                    value = (Integer) args[1];
+                } else if ("addBatch".equals(method.getName())) {
+                    batch.add(value);
+                } else if ("execute".equals(method.getName())) {
+                    if (value == failingValue) {
+                        throw new SQLException("bad value");
+                    }
+                } else if ("getUpdateCount".equals(method.getName())) {
+                    return value;
+                } else if ("executeBatch".equals(method.getName())) {
+                    executedBatches.add(batch.size());
+                    if (batch.contains(failingValue)) {
+                        throw new BatchUpdateException();
+                    }
+                    int[] updateCounts = new int[batch.size()];
+                    for (int i = 0; i < updateCounts.length; i++) {
+                        updateCounts[i] = batch.get(i);
+                    }
+                    return updateCounts;
+                }
+                return defaultValue(method.getReturnType());
+            }
+        });
+    }
+
+    private static Object defaultValue(Class<?> type) {
+        if (type == boolean.class) {
+            return false;
+        } else if (type == int.class) {
+            return 0;
+        } else if (type == long.class) {
+            return 0L;
+        }
+        return null;
+    }
+
+}
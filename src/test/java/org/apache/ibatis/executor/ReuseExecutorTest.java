@@ -0,0 +1,164 @@
+/**
+ * Copyright 2009-2016 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ibatis.executor;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+
+import org.apache.ibatis.builder.StaticSqlSource;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.ResultMap;
+import org.apache.ibatis.mapping.ResultMapping;
+import org.apache.ibatis.mapping.SqlCommandType;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.RowBounds;
+import org.apache.ibatis.transaction.Transaction;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class ReuseExecutorTest {
+
+    // 按创建顺序记录的Statement，值为是否已关闭
+    private final List<boolean[]> statements = new ArrayList<boolean[]>();
+
+    @Test
+    public void shouldEvictAndCloseLeastRecentlyUsedStatement() throws Exception {
+        Configuration configuration = new Configuration();
+        configuration.setReuseStatementCacheSize(2);
+        ReuseExecutor executor = new ReuseExecutor(configuration, new FakeTransaction());
+        MappedStatement a = newUpdate(configuration, "a");
+        MappedStatement b = newUpdate(configuration, "b");
+        MappedStatement c = newUpdate(configuration, "c");
+        executor.update(a, null);
+        executor.update(b, null);
+        executor.update(a, null);
+        //b最久未使用，被淘汰
+        executor.update(c, null);
+        assertEquals(3, statements.size());
+        assertFalse(statements.get(0)[0]);
+        assertTrue(statements.get(1)[0]);
+        assertFalse(statements.get(2)[0]);
+        executor.update(b, null);
+        assertEquals(4, statements.size());
+        assertEquals(1, executor.getStatementCacheHits());
+        assertEquals(4, executor.getStatementCacheMisses());
+        executor.flushStatements();
+        assertTrue(statements.get(0)[0]);
+        assertTrue(statements.get(3)[0]);
+    }
+
+    @Test
+    public void shouldKeepEvictingWhenCursorStatementIsEldest() throws Exception {
+        Configuration configuration = new Configuration();
+        configuration.setReuseStatementCacheSize(2);
+        ReuseExecutor executor = new ReuseExecutor(configuration, new FakeTransaction());
+        ResultMap resultMap = new ResultMap.Builder(configuration, "rowMap", HashMap.class, new ArrayList<ResultMapping>()).build();
+        MappedStatement select = new MappedStatement.Builder(configuration, "select_cursor",
+                new StaticSqlSource(configuration, "select * from t"), SqlCommandType.SELECT)
+                .resultMaps(Collections.singletonList(resultMap)).build();
+        executor.queryCursor(select, null, RowBounds.DEFAULT);
+        //游标的Statement一直是最久未使用的，之后的Statement仍然按上限淘汰
+        executor.update(newUpdate(configuration, "a"), null);
+        executor.update(newUpdate(configuration, "b"), null);
+        executor.update(newUpdate(configuration, "c"), null);
+        assertEquals(4, statements.size());
+        assertFalse(statements.get(0)[0]);
+        assertTrue(statements.get(1)[0]);
+        assertTrue(statements.get(2)[0]);
+        assertFalse(statements.get(3)[0]);
+        executor.flushStatements();
+        assertTrue(statements.get(0)[0]);
+        assertTrue(statements.get(3)[0]);
+    }
+
+    private MappedStatement newUpdate(Configuration configuration, String table) {
+        return new MappedStatement.Builder(configuration, "update_" + table,
+                new StaticSqlSource(configuration, "update " + table + " set x = 1"), SqlCommandType.UPDATE).build();
+    }
+
+    private static Object defaultValue(Class<?> type) {
+        if (type == boolean.class) {
+            return false;
+        } else if (type == int.class) {
+            return 0;
+        } else if (type == long.class) {
+            return 0L;
+        }
+        return null;
+    }
+
+    private class FakeTransaction implements Transaction {
+        private final Connection connection = (Connection) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{Connection.class}, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                if ("prepareStatement".equals(method.getName())) {
+                    return newStatement((Connection) proxy);
+                }
+                return defaultValue(method.getReturnType());
+            }
+        });
+
+        private PreparedStatement newStatement(final Connection connection) {
+            final boolean[] closed = new boolean[1];
+            statements.add(closed);
+            return (PreparedStatement) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{PreparedStatement.class}, new InvocationHandler() {
+                @Override
+                public Object invoke(Object proxy, Method method, Object[] args) {
+                    if ("close".equals(method.getName())) {
+                        closed[0] = true;
+                    } else if ("getConnection".equals(method.getName())) {
+                        return connection;
+                    } else if ("getUpdateCount".equals(method.getName())) {
+                        return -1;
+                    }
+                    return defaultValue(method.getReturnType());
+                }
+            });
+        }
+
+        @Override
+        public Connection getConnection() throws SQLException {
+            return connection;
+        }
+
+        @Override
+        public void commit() throws SQLException {
+        }
+
+        @Override
+        public void rollback() throws SQLException {
+        }
+
+        @Override
+        public void close() throws SQLException {
+        }
+
+        @Override
+        public Integer getTimeout() throws SQLException {
+            return null;
+        }
+    }
+
+}
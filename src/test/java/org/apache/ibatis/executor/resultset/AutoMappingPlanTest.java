@@ -0,0 +1,108 @@
+/**
+ * Copyright 2009-2015 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ibatis.executor.resultset;
+
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.ibatis.builder.StaticSqlSource;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.ResultMap;
+import org.apache.ibatis.mapping.ResultMapping;
+import org.apache.ibatis.mapping.SqlCommandType;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.RowBounds;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class AutoMappingPlanTest {
+
+    private final Configuration configuration = new Configuration();
+
+    @Test
+    public void shouldShareThePlanAcrossHandlersWithSameColumns() throws Exception {
+        MappedStatement ms = newStatement();
+        assertEquals("[1:jim]", handle(ms, idAndName()).toString());
+        AutoMappingPlan plan = configuration.getAutoMappingPlan(planKey(ms, idAndName()));
+        assertNotNull(plan);
+        //另一个DefaultResultSetHandler，列签名相同，直接使用同一个方案
+        assertEquals("[1:jim]", handle(ms, idAndName()).toString());
+        assertSame(plan, configuration.getAutoMappingPlan(planKey(ms, idAndName())));
+    }
+
+    @Test
+    public void shouldBuildNewPlanWhenColumnsChange() throws Exception {
+        MappedStatement ms = newStatement();
+        handle(ms, idAndName());
+        AutoMappingPlan plan = configuration.getAutoMappingPlan(planKey(ms, idAndName()));
+        //同一条语句返回的列顺序变了（如select *后表结构变化），列序号不能沿用
+        FakeResultSet reordered = new FakeResultSet(new String[]{"NAME", "ID"},
+                new int[]{Types.VARCHAR, Types.INTEGER},
+                new String[]{"java.lang.String", "java.lang.Integer"})
+                .addRow("tom", 2);
+        assertEquals("[2:tom]", handle(ms, reordered).toString());
+        AutoMappingPlan reorderedPlan = configuration.getAutoMappingPlan(planKey(ms, reordered));
+        assertNotNull(reorderedPlan);
+        assertNotSame(plan, reorderedPlan);
+        assertEquals("id", reorderedPlan.columns[1].property);
+        assertEquals(2, reorderedPlan.columns[1].columnIndex);
+        assertSame(plan, configuration.getAutoMappingPlan(planKey(ms, idAndName())));
+    }
+
+    private List<Object> handle(MappedStatement ms, FakeResultSet resultSet) throws Exception {
+        DefaultResultSetHandler handler = new DefaultResultSetHandler(null, ms, null, null, ms.getBoundSql(null), RowBounds.DEFAULT);
+        return handler.handleResultSets(resultSet.statement());
+    }
+
+    private String planKey(MappedStatement ms, FakeResultSet resultSet) throws Exception {
+        return ms.getResultMaps().get(0).getId() + ":null:" + new ResultSetWrapper(resultSet.resultSet(), configuration).getColumnSignature();
+    }
+
+    private MappedStatement newStatement() {
+        ResultMap resultMap = new ResultMap.Builder(configuration, "userMap", User.class, new ArrayList<ResultMapping>()).build();
+        return new MappedStatement.Builder(configuration, "selectUsers", new StaticSqlSource(configuration, "select"), SqlCommandType.SELECT)
+                .resultMaps(Collections.singletonList(resultMap)).build();
+    }
+
+    private FakeResultSet idAndName() {
+        return new FakeResultSet(new String[]{"ID", "NAME"},
+                new int[]{Types.INTEGER, Types.VARCHAR},
+                new String[]{"java.lang.Integer", "java.lang.String"})
+                .addRow(1, "jim");
+    }
+
+    public static class User {
+        private int id;
+        private String name;
+
+        public void setId(int id) {
+            this.id = id;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public String toString() {
+            return id + ":" + name;
+        }
+    }
+
+}
@@ -0,0 +1,191 @@
+/**
+ * Copyright 2009-2015 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ibatis.executor.resultset;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.ibatis.builder.StaticSqlSource;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.ResultMap;
+import org.apache.ibatis.mapping.ResultMapping;
+import org.apache.ibatis.mapping.SqlCommandType;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.RowBounds;
+import org.apache.ibatis.type.IntegerTypeHandler;
+import org.apache.ibatis.type.LongTypeHandler;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class CompiledRowMapperTest {
+
+    @Test
+    public void shouldMapSameValuesAsReflectivePath() throws Exception {
+        List<Object> reflective = query(false);
+        List<Object> compiled = query(true);
+        assertEquals(3, compiled.size());
+        assertEquals(reflective.toString(), compiled.toString());
+        User user = (User) compiled.get(0);
+        assertEquals(1, user.getId());
+        assertEquals("jim", user.getName());
+        assertEquals(Long.valueOf(20L), user.score);
+        assertNull(compiled.get(2));
+    }
+
+    @Test
+    public void shouldShareCompiledMapperThroughConfiguration() throws Exception {
+        Configuration configuration = newConfiguration(true);
+        MappedStatement ms = newStatement(configuration);
+        handle(configuration, ms);
+        handle(configuration, ms);
+        String key = ms.getResultMaps().get(0).getId() + ":" + new ResultSetWrapper(newResultSet().resultSet(), configuration).getColumnSignature();
+        assertNotNull(configuration.getCompiledRowMapper(key));
+        assertNotSame(CompiledRowMapper.NOT_COMPILABLE, configuration.getCompiledRowMapper(key));
+    }
+
+    @Test
+    public void shouldReadColumnsByIndexOnReflectivePath() throws Exception {
+        Configuration configuration = newConfiguration(false);
+        MappedStatement ms = newStatement(configuration);
+        FakeResultSet resultSet = newResultSet();
+        DefaultResultSetHandler handler = new DefaultResultSetHandler(null, ms, null, null, ms.getBoundSql(null), RowBounds.DEFAULT);
+        List<Object> results = handler.handleResultSets(resultSet.statement());
+        assertEquals("jim", ((User) results.get(0)).getName());
+        assertEquals(0, resultSet.getLabelReads());
+    }
+
+    @Test
+    public void shouldShareAutoMappingPlanThroughConfiguration() throws Exception {
+        Configuration configuration = newConfiguration(false);
+        MappedStatement ms = newStatement(configuration);
+        handle(configuration, ms);
+        String key = ms.getResultMaps().get(0).getId() + ":null:" + new ResultSetWrapper(newResultSet().resultSet(), configuration).getColumnSignature();
+        AutoMappingPlan plan = configuration.getAutoMappingPlan(key);
+        assertNotNull(plan);
+        assertEquals(2, plan.columns.length);
+        handle(configuration, ms);
+        assertSame(plan, configuration.getAutoMappingPlan(key));
+    }
+
+    @Test
+    public void shouldUseOverriddenResultOfTypeHandlerSubclass() throws Exception {
+        for (boolean compiled : new boolean[]{false, true}) {
+            Configuration configuration = newConfiguration(compiled);
+            List<ResultMapping> mappings = new ArrayList<ResultMapping>();
+            mappings.add(new ResultMapping.Builder(configuration, "id", "id", new OffsetIntegerTypeHandler()).build());
+            ResultMap resultMap = new ResultMap.Builder(configuration, "offsetUserMap", User.class, mappings).build();
+            MappedStatement ms = new MappedStatement.Builder(configuration, "selectUsers", new StaticSqlSource(configuration, "select"), SqlCommandType.SELECT)
+                    .resultMaps(Collections.singletonList(resultMap)).build();
+            List<Object> results = handle(configuration, ms);
+            assertEquals(101, ((User) results.get(0)).getId());
+        }
+    }
+
+    @Test
+    public void shouldRejectMismatchedValueLikeReflectivePath() throws Exception {
+        for (boolean compiled : new boolean[]{false, true}) {
+            Configuration configuration = newConfiguration(compiled);
+            List<ResultMapping> mappings = new ArrayList<ResultMapping>();
+            //Long赋给int属性：反射调用setter会失败，编译路径也不能截断后赋值
+            mappings.add(new ResultMapping.Builder(configuration, "id", "id", new LongTypeHandler()).build());
+            ResultMap resultMap = new ResultMap.Builder(configuration, "longUserMap", User.class, mappings).build();
+            MappedStatement ms = new MappedStatement.Builder(configuration, "selectUsers", new StaticSqlSource(configuration, "select"), SqlCommandType.SELECT)
+                    .resultMaps(Collections.singletonList(resultMap)).build();
+            try {
+                handle(configuration, ms);
+                fail("compiled=" + compiled);
+            } catch (RuntimeException e) {
+                assertTrue(e.getMessage(), e.getMessage().contains("'id'"));
+            }
+        }
+    }
+
+    private List<Object> query(boolean compiled) throws Exception {
+        Configuration configuration = newConfiguration(compiled);
+        return handle(configuration, newStatement(configuration));
+    }
+
+    private Configuration newConfiguration(boolean compiled) {
+        Configuration configuration = new Configuration();
+        configuration.setCompiledRowMappingEnabled(compiled);
+        configuration.setMapUnderscoreToCamelCase(true);
+        return configuration;
+    }
+
+    private MappedStatement newStatement(Configuration configuration) {
+        List<ResultMapping> mappings = new ArrayList<ResultMapping>();
+        mappings.add(new ResultMapping.Builder(configuration, "name", "user_name", String.class).build());
+        ResultMap resultMap = new ResultMap.Builder(configuration, "userMap", User.class, mappings).build();
+        return new MappedStatement.Builder(configuration, "selectUsers", new StaticSqlSource(configuration, "select"), SqlCommandType.SELECT)
+                .resultMaps(Collections.singletonList(resultMap)).build();
+    }
+
+    private List<Object> handle(Configuration configuration, MappedStatement ms) throws Exception {
+        DefaultResultSetHandler handler = new DefaultResultSetHandler(null, ms, null, null, ms.getBoundSql(null), RowBounds.DEFAULT);
+        return handler.handleResultSets(newResultSet().statement());
+    }
+
+    private FakeResultSet newResultSet() {
+        return new FakeResultSet(new String[]{"ID", "USER_NAME", "SCORE"},
+                new int[]{Types.INTEGER, Types.VARCHAR, Types.BIGINT},
+                new String[]{"java.lang.Integer", "java.lang.String", "java.lang.Long"})
+                .addRow(1, "jim", 20L)
+                .addRow(2, null, 30L)
+                .addRow(null, null, null);
+    }
+
+    //继承内置的处理器并覆盖getNullableResult
+    public static class OffsetIntegerTypeHandler extends IntegerTypeHandler {
+        @Override
+        public Integer getNullableResult(ResultSet rs, int columnIndex) throws SQLException {
+            return rs.getInt(columnIndex) + 100;
+        }
+    }
+
+    public static class User {
+        private int id;
+        private String name;
+        //没有setter，通过字段赋值
+        private Long score;
+
+        public int getId() {
+            return id;
+        }
+
+        public void setId(int id) {
+            this.id = id;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public String toString() {
+            return id + ":" + name + ":" + score;
+        }
+    }
+
+}
@@ -0,0 +1,102 @@
+/**
+ * Copyright 2009-2015 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ibatis.executor.resultset;
+
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.ibatis.builder.StaticSqlSource;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.ResultFlag;
+import org.apache.ibatis.mapping.ResultMap;
+import org.apache.ibatis.mapping.ResultMapping;
+import org.apache.ibatis.mapping.SqlCommandType;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.RowBounds;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class ConstructorMapperTest {
+
+    @Test
+    public void shouldMapConstructorArgsWithCachedConstructor() throws Exception {
+        Configuration configuration = new Configuration();
+        List<ResultMapping> mappings = new ArrayList<ResultMapping>();
+        mappings.add(new ResultMapping.Builder(configuration, null, "ID", int.class)
+                .flags(Collections.singletonList(ResultFlag.CONSTRUCTOR)).build());
+        mappings.add(new ResultMapping.Builder(configuration, null, "NAME", String.class)
+                .flags(Collections.singletonList(ResultFlag.CONSTRUCTOR)).build());
+        ResultMap resultMap = new ResultMap.Builder(configuration, "pointMap", Point.class, mappings).build();
+        List<Object> results = handle(configuration, resultMap);
+        assertEquals("[1:a(int), 2:b(int), null]", results.toString());
+        handle(configuration, resultMap);
+        String key = "pointMap:null:" + new ResultSetWrapper(newResultSet().resultSet(), configuration).getColumnSignature();
+        assertTrue(configuration.getConstructorMapper(key).newInvocation().isApplicable());
+    }
+
+    @Test
+    public void shouldMapByConstructorSignatureWithCachedConstructor() throws Exception {
+        Configuration configuration = new Configuration();
+        ResultMap resultMap = new ResultMap.Builder(configuration, "pointAutoMap", Point.class, new ArrayList<ResultMapping>()).build();
+        List<Object> results = handle(configuration, resultMap);
+        assertEquals("[1:a(Integer), 2:b(Integer), null]", results.toString());
+        String key = "pointAutoMap:null:" + new ResultSetWrapper(newResultSet().resultSet(), configuration).getColumnSignature();
+        assertTrue(configuration.getConstructorMapper(key).newInvocation().isApplicable());
+    }
+
+    private List<Object> handle(Configuration configuration, ResultMap resultMap) throws Exception {
+        MappedStatement ms = new MappedStatement.Builder(configuration, "selectPoints", new StaticSqlSource(configuration, "select"), SqlCommandType.SELECT)
+                .resultMaps(Collections.singletonList(resultMap)).build();
+        DefaultResultSetHandler handler = new DefaultResultSetHandler(null, ms, null, null, ms.getBoundSql(null), RowBounds.DEFAULT);
+        return handler.handleResultSets(newResultSet().statement());
+    }
+
+    private FakeResultSet newResultSet() {
+        return new FakeResultSet(new String[]{"ID", "NAME"},
+                new int[]{Types.INTEGER, Types.VARCHAR},
+                new String[]{"java.lang.Integer", "java.lang.String"})
+                .addRow(1, "a")
+                .addRow(2, "b")
+                .addRow(null, null);
+    }
+
+    public static class Point {
+        private final Integer id;
+        private final String name;
+        private final String constructor;
+
+        public Point(int id, String name) {
+            this.id = id;
+            this.name = name;
+            this.constructor = "int";
+        }
+
+        public Point(Integer id, String name) {
+            this.id = id;
+            this.name = name;
+            this.constructor = "Integer";
+        }
+
+        @Override
+        public String toString() {
+            return id + ":" + name + "(" + constructor + ")";
+        }
+    }
+
+}
@@ -0,0 +1,177 @@
+/**
+ * Copyright 2009-2015 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ibatis.executor.resultset;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 测试用的内存结果集，只实现结果映射用到的方法，并记录按列名读取的次数
+ */
+public class FakeResultSet implements InvocationHandler {
+
+    private final String[] labels;
+    private final int[] sqlTypes;
+    private final String[] classNames;
+    // getColumnName返回的列名，为null时与列标签相同
+    private String[] columnNames;
+    private final List<Object[]> rows = new ArrayList<Object[]>();
+    private int row = -1;
+    private boolean wasNull;
+    private int labelReads;
+    private boolean closed;
+
+    public FakeResultSet(String[] labels, int[] sqlTypes, String[] classNames) {
+        this.labels = labels;
+        this.sqlTypes = sqlTypes;
+        this.classNames = classNames;
+    }
+
+    /**
+     * 列名与列标签不同，例如select kind_code as kind
+     */
+    public FakeResultSet columnNames(String... columnNames) {
+        this.columnNames = columnNames;
+        return this;
+    }
+
+    public FakeResultSet addRow(Object... values) {
+        rows.add(values);
+        return this;
+    }
+
+    public int getLabelReads() {
+        return labelReads;
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    public ResultSet resultSet() {
+        return (ResultSet) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{ResultSet.class}, this);
+    }
+
+    public Statement statement() {
+        final ResultSet rs = resultSet();
+        return (Statement) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{Statement.class}, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                if ("getResultSet".equals(method.getName())) {
+                    return rs;
+                } else if ("getUpdateCount".equals(method.getName())) {
+                    return -1;
+                }
+                return defaultValue(method.getReturnType());
+            }
+        });
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        String name = method.getName();
+        if ("next".equals(name)) {
+            return ++row < rows.size();
+        } else if ("getType".equals(name)) {
+            return ResultSet.TYPE_FORWARD_ONLY;
+        } else if ("close".equals(name)) {
+            closed = true;
+            return null;
+        } else if ("wasNull".equals(name)) {
+            return wasNull;
+        } else if ("getMetaData".equals(name)) {
+            return Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{ResultSetMetaData.class}, new InvocationHandler() {
+                @Override
+                public Object invoke(Object proxy, Method method, Object[] args) {
+                    String name = method.getName();
+                    if ("getColumnCount".equals(name)) {
+                        return labels.length;
+                    }
+                    int index = (Integer) args[0] - 1;
+                    if ("getColumnType".equals(name)) {
+                        return sqlTypes[index];
+                    } else if ("getColumnClassName".equals(name)) {
+                        return classNames[index];
+                    } else if ("getColumnName".equals(name) && columnNames != null) {
+                        return columnNames[index];
+                    }
+                    return labels[index];
+                }
+            });
+        } else if ("findColumn".equals(name)) {
+            return findColumn((String) args[0]);
+        } else if (name.startsWith("get") && args != null && args.length == 1) {
+            int index;
+            if (args[0] instanceof String) {
+                labelReads++;
+                index = findColumn((String) args[0]);
+            } else {
+                index = (Integer) args[0];
+            }
+            Object value = rows.get(row)[index - 1];
+            wasNull = value == null;
+            return convert(value, method.getReturnType());
+        }
+        return defaultValue(method.getReturnType());
+    }
+
+    private int findColumn(String label) throws SQLException {
+        for (int i = 0; i < labels.length; i++) {
+            if (labels[i].equalsIgnoreCase(label)) {
+                return i + 1;
+            }
+        }
+        throw new SQLException("Column '" + label + "' not found");
+    }
+
+    private static Object convert(Object value, Class<?> type) {
+        if (value == null) {
+            return defaultValue(type);
+        } else if (type == String.class) {
+            return String.valueOf(value);
+        } else if (type == int.class) {
+            return ((Number) value).intValue();
+        } else if (type == long.class) {
+            return ((Number) value).longValue();
+        } else if (type == double.class) {
+            return ((Number) value).doubleValue();
+        } else if (type == boolean.class) {
+            return value;
+        }
+        return value;
+    }
+
+    private static Object defaultValue(Class<?> type) {
+        if (type == boolean.class) {
+            return false;
+        } else if (type == int.class) {
+            return 0;
+        } else if (type == long.class) {
+            return 0L;
+        } else if (type == double.class) {
+            return 0d;
+        }
+        return null;
+    }
+
+}
@@ -0,0 +1,134 @@
+/**
+ * Copyright 2009-2015 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ibatis.executor.resultset;
+
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.ibatis.builder.StaticSqlSource;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.ResultFlag;
+import org.apache.ibatis.mapping.ResultMap;
+import org.apache.ibatis.mapping.ResultMapping;
+import org.apache.ibatis.mapping.SqlCommandType;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.RowBounds;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class NestedResultPartitionsTest {
+
+    @Test
+    public void shouldGroupUnorderedRowsLikeInMemoryPath() throws Exception {
+        List<String> inMemory = query(0, RowBounds.DEFAULT);
+        List<String> spilled = query(1, RowBounds.DEFAULT);
+        List<String> buffered = query(1024 * 1024, RowBounds.DEFAULT);
+        //父对象按在结果集中第一次出现的顺序输出
+        assertEquals("[3:c[30:v], 1:a[10:x, 11:y], 2:b[20:z, 21:w]]", inMemory.toString());
+        assertEquals(inMemory, spilled);
+        assertEquals(inMemory, buffered);
+    }
+
+    @Test
+    public void shouldNotPartitionWhenRowBoundsGiven() throws Exception {
+        RowBounds rowBounds = new RowBounds(0, 2);
+        List<String> inMemory = query(0, rowBounds);
+        assertEquals("[3:c[30:v], 1:a[10:x]]", inMemory.toString());
+        assertEquals(inMemory, query(1, rowBounds));
+    }
+
+    private List<String> query(long memoryBudget, RowBounds rowBounds) throws Exception {
+        Configuration configuration = new Configuration();
+        configuration.setNestedResultMemoryBudget(memoryBudget);
+        List<ResultMapping> childMappings = new ArrayList<ResultMapping>();
+        childMappings.add(new ResultMapping.Builder(configuration, "id", "CHILD_ID", Integer.class)
+                .flags(Collections.singletonList(ResultFlag.ID)).build());
+        childMappings.add(new ResultMapping.Builder(configuration, "name", "CHILD_NAME", String.class).build());
+        configuration.addResultMap(new ResultMap.Builder(configuration, "childMap", Child.class, childMappings).build());
+        List<ResultMapping> parentMappings = new ArrayList<ResultMapping>();
+        parentMappings.add(new ResultMapping.Builder(configuration, "id", "ID", Integer.class)
+                .flags(Collections.singletonList(ResultFlag.ID)).build());
+        parentMappings.add(new ResultMapping.Builder(configuration, "name", "NAME", String.class).build());
+        parentMappings.add(new ResultMapping.Builder(configuration, "children").nestedResultMapId("childMap").build());
+        ResultMap parentMap = new ResultMap.Builder(configuration, "parentMap", Parent.class, parentMappings).build();
+        MappedStatement ms = new MappedStatement.Builder(configuration, "selectParents", new StaticSqlSource(configuration, "select"), SqlCommandType.SELECT)
+                .resultMaps(Collections.singletonList(parentMap)).build();
+        FakeResultSet rs = new FakeResultSet(new String[]{"ID", "NAME", "CHILD_ID", "CHILD_NAME"},
+                new int[]{Types.INTEGER, Types.VARCHAR, Types.INTEGER, Types.VARCHAR},
+                new String[]{"java.lang.Integer", "java.lang.String", "java.lang.Integer", "java.lang.String"})
+                .addRow(3, "c", 30, "v")
+                .addRow(1, "a", 10, "x")
+                .addRow(2, "b", 20, "z")
+                .addRow(1, "a", 11, "y")
+                .addRow(2, "b", 21, "w");
+        DefaultResultSetHandler handler = new DefaultResultSetHandler(null, ms, null, null, ms.getBoundSql(null), rowBounds);
+        List<Object> results = handler.handleResultSets(rs.statement());
+        List<String> values = new ArrayList<String>();
+        for (Object result : results) {
+            values.add(result.toString());
+        }
+        return values;
+    }
+
+    public static class Parent {
+        private int id;
+        private String name;
+        private List<Child> children;
+
+        public void setId(int id) {
+            this.id = id;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+
+        public List<Child> getChildren() {
+            return children;
+        }
+
+        public void setChildren(List<Child> children) {
+            this.children = children;
+        }
+
+        @Override
+        public String toString() {
+            return id + ":" + name + children;
+        }
+    }
+
+    public static class Child {
+        private int id;
+        private String name;
+
+        public void setId(int id) {
+            this.id = id;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public String toString() {
+            return id + ":" + name;
+        }
+    }
+
+}
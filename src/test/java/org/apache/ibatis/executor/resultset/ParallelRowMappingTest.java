@@ -0,0 +1,126 @@
+/**
+ * Copyright 2009-2015 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ibatis.executor.resultset;
+
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.ibatis.builder.StaticSqlSource;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.ResultMap;
+import org.apache.ibatis.mapping.ResultMapping;
+import org.apache.ibatis.mapping.SqlCommandType;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.ResultContext;
+import org.apache.ibatis.session.ResultHandler;
+import org.apache.ibatis.session.RowBounds;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class ParallelRowMappingTest {
+
+    private static final int ROWS = 2000;
+
+    @Test
+    public void shouldKeepResultOrder() throws Exception {
+        List<Object> sequential = query(false, RowBounds.DEFAULT);
+        List<Object> parallel = query(true, RowBounds.DEFAULT);
+        assertEquals(ROWS, parallel.size());
+        assertEquals(sequential.toString(), parallel.toString());
+        assertEquals("7:user7:0.5", parallel.get(7).toString());
+    }
+
+    @Test
+    public void shouldApplyRowBounds() throws Exception {
+        List<Object> parallel = query(true, new RowBounds(300, 500));
+        assertEquals(500, parallel.size());
+        assertEquals("300:user300:0.5", parallel.get(0).toString());
+        assertEquals("799:user799:0.5", parallel.get(499).toString());
+    }
+
+    @Test
+    public void shouldDeliverToResultHandlerInOrderUntilStopped() throws Exception {
+        MappedStatement ms = newStatement(true);
+        final List<Object> handled = new ArrayList<Object>();
+        DefaultResultSetHandler handler = new DefaultResultSetHandler(null, ms, null, new ResultHandler<Object>() {
+            @Override
+            public void handleResult(ResultContext<?> context) {
+                handled.add(((User) context.getResultObject()).id);
+                if (context.getResultCount() == 1000) {
+                    context.stop();
+                }
+            }
+        }, ms.getBoundSql(null), RowBounds.DEFAULT);
+        handler.handleResultSets(newResultSet().statement());
+        assertEquals(1000, handled.size());
+        for (int i = 0; i < handled.size(); i++) {
+            assertEquals(i, handled.get(i));
+        }
+    }
+
+    private List<Object> query(boolean parallel, RowBounds rowBounds) throws Exception {
+        MappedStatement ms = newStatement(parallel);
+        DefaultResultSetHandler handler = new DefaultResultSetHandler(null, ms, null, null, ms.getBoundSql(null), rowBounds);
+        return handler.handleResultSets(newResultSet().statement());
+    }
+
+    private MappedStatement newStatement(boolean parallel) {
+        Configuration configuration = new Configuration();
+        configuration.setParallelRowMappingEnabled(parallel);
+        List<ResultMapping> mappings = new ArrayList<ResultMapping>();
+        mappings.add(new ResultMapping.Builder(configuration, "name", "USER_NAME", String.class).build());
+        ResultMap resultMap = new ResultMap.Builder(configuration, "userMap", User.class, mappings).build();
+        return new MappedStatement.Builder(configuration, "selectUsers", new StaticSqlSource(configuration, "select"), SqlCommandType.SELECT)
+                .resultMaps(Collections.singletonList(resultMap)).build();
+    }
+
+    private FakeResultSet newResultSet() {
+        FakeResultSet rs = new FakeResultSet(new String[]{"ID", "USER_NAME", "SCORE"},
+                new int[]{Types.INTEGER, Types.VARCHAR, Types.DOUBLE},
+                new String[]{"java.lang.Integer", "java.lang.String", "java.lang.Double"});
+        for (int i = 0; i < ROWS; i++) {
+            rs.addRow(i, "user" + i, 0.5d);
+        }
+        return rs;
+    }
+
+    public static class User {
+        private int id;
+        private String name;
+        private double score;
+
+        public void setId(int id) {
+            this.id = id;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+
+        public void setScore(double score) {
+            this.score = score;
+        }
+
+        @Override
+        public String toString() {
+            return id + ":" + name + ":" + score;
+        }
+    }
+
+}
@@ -0,0 +1,92 @@
+/**
+ * Copyright 2009-2015 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ibatis.executor.resultset;
+
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.apache.ibatis.builder.StaticSqlSource;
+import org.apache.ibatis.mapping.Discriminator;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.ResultMap;
+import org.apache.ibatis.mapping.ResultMapping;
+import org.apache.ibatis.mapping.SqlCommandType;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.RowBounds;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class ResultSetWrapperTest {
+
+    @Test
+    public void shouldUseFirstColumnForDuplicateLabels() throws Exception {
+        FakeResultSet rs = new FakeResultSet(new String[]{"ID", "NAME", "id"},
+                new int[]{Types.INTEGER, Types.VARCHAR, Types.INTEGER},
+                new String[]{"java.lang.Integer", "java.lang.String", "java.lang.Integer"});
+        ResultSetWrapper rsw = new ResultSetWrapper(rs.resultSet(), new Configuration());
+        assertEquals(1, rsw.getColumnIndex("ID"));
+        assertEquals(1, rsw.getColumnIndex("id"));
+        assertEquals(2, rsw.getColumnIndex("NAME"));
+    }
+
+    @Test
+    public void shouldMatchColumnNamesIgnoringCase() throws Exception {
+        FakeResultSet rs = new FakeResultSet(new String[]{"userName", "SCORE"},
+                new int[]{Types.VARCHAR, Types.BIGINT},
+                new String[]{"java.lang.String", "java.lang.Long"});
+        ResultSetWrapper rsw = new ResultSetWrapper(rs.resultSet(), new Configuration());
+        assertEquals(1, rsw.getColumnIndex("userName"));
+        assertEquals(1, rsw.getColumnIndex("USERNAME"));
+        assertEquals(1, rsw.getColumnIndex("username"));
+        assertEquals(2, rsw.getColumnIndex("score"));
+        assertEquals(-1, rsw.getColumnIndex("missing"));
+        assertEquals(-1, rsw.getColumnIndex(null));
+    }
+
+    @Test
+    public void shouldReadByLabelWhenColumnIsNotInMetaData() throws Exception {
+        Configuration configuration = new Configuration();
+        //列名为ID、KIND_CODE，只能按标签KIND读取鉴别器的值
+        configuration.setUseColumnLabel(false);
+        configuration.addResultMap(new ResultMap.Builder(configuration, "treeMap", TreeMap.class, new ArrayList<ResultMapping>()).build());
+        Map<String, String> cases = new HashMap<String, String>();
+        cases.put("tree", "treeMap");
+        Discriminator discriminator = new Discriminator.Builder(configuration,
+                new ResultMapping.Builder(configuration, null, "kind", String.class).build(), cases).build();
+        ResultMap resultMap = new ResultMap.Builder(configuration, "rowMap", HashMap.class, new ArrayList<ResultMapping>())
+                .discriminator(discriminator).build();
+        MappedStatement ms = new MappedStatement.Builder(configuration, "selectRows", new StaticSqlSource(configuration, "select"), SqlCommandType.SELECT)
+                .resultMaps(Collections.singletonList(resultMap)).build();
+        FakeResultSet rs = new FakeResultSet(new String[]{"ID", "KIND"},
+                new int[]{Types.INTEGER, Types.VARCHAR},
+                new String[]{"java.lang.Integer", "java.lang.String"})
+                .columnNames("ID", "KIND_CODE")
+                .addRow(1, "tree")
+                .addRow(2, "hash");
+        DefaultResultSetHandler handler = new DefaultResultSetHandler(null, ms, null, null, ms.getBoundSql(null), RowBounds.DEFAULT);
+        List<Object> results = handler.handleResultSets(rs.statement());
+        assertEquals(TreeMap.class, results.get(0).getClass());
+        assertEquals(HashMap.class, results.get(1).getClass());
+        assertEquals(2, rs.getLabelReads());
+    }
+
+}
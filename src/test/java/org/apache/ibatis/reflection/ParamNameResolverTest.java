@@ -1,10 +1,16 @@
 package org.apache.ibatis.reflection;
 
+import java.util.Map;
+
 import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.binding.BindingException;
+import org.apache.ibatis.binding.IndexedParamMap;
 import org.apache.ibatis.session.Configuration;
 import org.apache.ibatis.session.RowBounds;
 import org.junit.Test;
 
+import static org.junit.Assert.*;
+
 /**
  * Created by zhiqianye on 2017/3/24.
  */
@@ -15,6 +21,30 @@ public class ParamNameResolverTest {
 
     }
 
+    @Test
+    public void shouldLookUpNamedParamsByIndex() throws Exception {
+        ParamNameResolver resolver = new ParamNameResolver(new Configuration(), TestParam.class.getMethod("namedParam", int.class, RowBounds.class, String.class));
+        Object[] args = {1, RowBounds.DEFAULT, "b"};
+        @SuppressWarnings("unchecked")
+        Map<String, Object> params = (Map<String, Object>) resolver.getNamedParams(args);
+        assertTrue(params instanceof IndexedParamMap);
+        //@Param("param2")的参数不会被第一个参数的param2覆盖
+        assertEquals("b", params.get("param2"));
+        assertEquals(1, params.get("id"));
+        assertEquals(1, params.get("param1"));
+        assertFalse(params.containsKey("param3"));
+        try {
+            params.get("missing");
+            fail();
+        } catch (BindingException e) {
+            assertTrue(e.getMessage().contains("Parameter 'missing' not found"));
+        }
+        //其他Map操作按普通ParamMap处理
+        params.put("extra", 3);
+        assertEquals(4, params.size());
+        assertEquals(3, params.get("extra"));
+        assertEquals("b", params.get("param2"));
+    }
 
 }
 
@@ -27,4 +57,8 @@ class TestParam{
     public void noParam(int i, @Param("rb")RowBounds rb, int j){
 
     }
+
+    public void namedParam(@Param("id") int id, RowBounds rb, @Param("param2") String name){
+
+    }
 }